@@ -1,13 +1,29 @@
 package org.epics.pvmarshaller.marshaller;
 
+import java.lang.ref.SoftReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+import java.util.WeakHashMap;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
+import org.epics.pvdata.misc.BitSet;
 import org.epics.pvdata.pv.PVStructure;
+import org.epics.pvdata.pv.Structure;
+import org.epics.pvmarshaller.marshaller.api.ICollectionFactory;
 import org.epics.pvmarshaller.marshaller.api.IPVStructureDeserialiser;
+import org.epics.pvmarshaller.marshaller.api.IPVStructureMarshallerProvider;
 import org.epics.pvmarshaller.marshaller.api.IPVStructureSerialiser;
 import org.epics.pvmarshaller.marshaller.deserialisers.Deserialiser;
 import org.epics.pvmarshaller.marshaller.serialisers.Serialiser;
+import org.epics.pvmarshaller.marshaller.serialisers.StructureInterner;
 
 /**
  * Class to provide the ability to convert any Object into a PVStructure representing that object and back
@@ -21,6 +37,65 @@ public class PVMarshaller {
 	Map<Class<?>, String> registeredIds = new LinkedHashMap<Class<?>, String>();
 	Serialiser serialiser = new Serialiser();
 	Deserialiser deserialiser = new Deserialiser();
+
+	private static final Logger logger = Logger.getLogger(PVMarshaller.class.getName());
+
+	/**
+	 * The providers found by ServiceLoader for each context class loader, held weakly and softly so that they don't
+	 * stop the class loader from being unloaded
+	 */
+	private static final Map<ClassLoader, SoftReference<List<IPVStructureMarshallerProvider>>> providers = new WeakHashMap<ClassLoader, SoftReference<List<IPVStructureMarshallerProvider>>>();
+	
+	/**
+	 * Constructor. Registers the serialisers and deserialisers of any {@link IPVStructureMarshallerProvider}
+	 * implementations found by ServiceLoader with the context class loader, such as those generated for classes marked with
+	 * {@link org.epics.pvmarshaller.marshaller.api.PVMarshallable}. The providers are only looked up the first time a
+	 * PVMarshaller is created with each class loader
+	 */
+	public PVMarshaller() {
+		for (IPVStructureMarshallerProvider provider : getProviders(Thread.currentThread().getContextClassLoader())) {
+			registerProvider(provider);
+		}
+	}
+
+	/**
+	 * Gets the providers found by ServiceLoader with a class loader, looking them up the first time the class loader is seen
+	 * @param classLoader The class loader
+	 * @return The providers
+	 */
+	private static List<IPVStructureMarshallerProvider> getProviders(ClassLoader classLoader) {
+		synchronized (providers) {
+			SoftReference<List<IPVStructureMarshallerProvider>> reference = providers.get(classLoader);
+			List<IPVStructureMarshallerProvider> loadedProviders = reference != null ? reference.get() : null;
+			if (loadedProviders == null) {
+				loadedProviders = loadProviders(classLoader);
+				providers.put(classLoader, new SoftReference<List<IPVStructureMarshallerProvider>>(loadedProviders));
+			}
+			return loadedProviders;
+		}
+	}
+
+	/**
+	 * Loads the providers with ServiceLoader. Providers that can't be loaded, e.g. because a service file lists a class
+	 * that no longer exists, are reported and skipped so that they don't stop the others from being used
+	 * @param classLoader The class loader
+	 * @return The providers
+	 */
+	private static List<IPVStructureMarshallerProvider> loadProviders(ClassLoader classLoader) {
+		List<IPVStructureMarshallerProvider> loadedProviders = new ArrayList<IPVStructureMarshallerProvider>();
+		Iterator<IPVStructureMarshallerProvider> iterator = ServiceLoader.load(IPVStructureMarshallerProvider.class, classLoader).iterator();
+		while (true) {
+			try {
+				if (!iterator.hasNext()) {
+					break;
+				}
+				loadedProviders.add(iterator.next());
+			} catch (ServiceConfigurationError e) {
+				logger.log(Level.WARNING, "Skipping an IPVStructureMarshallerProvider that could not be loaded", e);
+			}
+		}
+		return Collections.unmodifiableList(loadedProviders);
+	}
 	
 	/**
 	 * Creates a PVStructure representation of the supplied Object
@@ -35,6 +110,38 @@ public class PVMarshaller {
 		return pvStructure;
 	}
 
+	/**
+	 * Repopulates an existing PVStructure with the values of the supplied Object, so that an object that is published
+	 * repeatedly can reuse the same PVStructure. This only succeeds if the object would still be serialised into the same
+	 * Structure, e.g. no fields have become null and no maps have gained or lost keys
+	 * @param source The object to serialise
+	 * @param target The PVStructure to populate, previously created by toPVStructure
+	 * @return true if the PVStructure was updated, or false if the shape of the object no longer matches it, in which case
+	 * the PVStructure is left unchanged and a new one should be created with toPVStructure
+	 * @throws Exception
+	 */
+	public boolean updatePVStructure(Object source, PVStructure target) throws Exception
+	{
+		return serialiser.updatePVStructure(source, target, registeredSerialisers, registeredIds);
+	}
+
+	/**
+	 * Updates an existing PVStructure with the values of the supplied Object and sets the bit of each field whose value changed,
+	 * so the BitSet can be used as the changed BitSet of a monitor element. Fields within nested structures are marked
+	 * individually and arrays are marked as a whole. Bits are only set, never cleared, so changes accumulate until the caller
+	 * clears the BitSet
+	 * @param source The object to serialise
+	 * @param target The PVStructure to update, previously created by toPVStructure
+	 * @param changedBitSet The BitSet to set the offsets of the changed fields in
+	 * @return true if the PVStructure was updated, or false if the shape of the object no longer matches it, in which case
+	 * the PVStructure and BitSet are left unchanged and a new PVStructure should be created with toPVStructure
+	 * @throws Exception
+	 */
+	public boolean updatePVStructure(Object source, PVStructure target, BitSet changedBitSet) throws Exception
+	{
+		return serialiser.updatePVStructure(source, target, changedBitSet, registeredSerialisers, registeredIds);
+	}
+
 	/**
 	 * Creates an Object of specific type from the supplied PVStructure
 	 * @param pvStructure The PVStructure to deserialise
@@ -47,6 +154,51 @@ public class PVMarshaller {
 		return deserialiser.fromPVStructure(pvStructure, targetClass, registeredDeserialisers);
 	}
 	
+	/**
+	 * Populates an existing Object from the supplied PVStructure, so that an object that is received repeatedly can be
+	 * overwritten in place. Nested objects are reused if they are of the field's declared class and primitive arrays are
+	 * reused if they have the same length, in both cases without calling their setters. Other fields are set as by
+	 * fromPVStructure
+	 * @param pvStructure The PVStructure to deserialise
+	 * @param existing The object to populate
+	 * @return The populated object, which is a new object if a custom deserialiser is registered for the PVStructure's id
+	 * @throws Exception
+	 */
+	public <T> T fromPVStructure(PVStructure pvStructure, T existing) throws Exception
+	{
+		return deserialiser.fromPVStructure(pvStructure, existing, registeredDeserialisers);
+	}
+	
+	/**
+	 * Populates an existing Object with only the fields of the supplied PVStructure that are marked in a changed BitSet, such
+	 * as that of a monitor element. Unchanged fields and nested structures with no changed fields are not visited, so the
+	 * object must previously have been populated from a PVStructure with the same Structure. Fields are otherwise
+	 * deserialised as by fromPVStructure(PVStructure, Object)
+	 * @param pvStructure The PVStructure to deserialise
+	 * @param changedBitSet The offsets of the changed fields in the PVStructure
+	 * @param existing The object to populate
+	 * @return The populated object, which is a new object if a custom deserialiser is registered for the PVStructure's id
+	 * @throws Exception
+	 */
+	public <T> T fromPVStructure(PVStructure pvStructure, BitSet changedBitSet, T existing) throws Exception
+	{
+		return deserialiser.fromPVStructure(pvStructure, changedBitSet, existing, registeredDeserialisers);
+	}
+	
+	/**
+	 * Returns whether a PVStructure can be deserialised into an object of the specified class, e.g. to check a PVStructure
+	 * received from a channel before deserialising it. The deserialisation plan for its Structure and the class is cached,
+	 * and is also found for equal Structures by their fingerprint, so checking another PVStructure of the same shape is a
+	 * constant time lookup
+	 * @param pvStructure The PVStructure to check
+	 * @param targetClass The class of the expected return object
+	 * @return True if a PVStructure with this Structure can be deserialised into the class
+	 */
+	public boolean isCompatible(PVStructure pvStructure, Class<?> targetClass)
+	{
+		return deserialiser.isCompatible(pvStructure, targetClass, registeredDeserialisers);
+	}
+	
 	/**
 	 * Sets whether fields that exist in a PVStructure but not in the object will cause an exception
 	 * to be thrown during deserialisation. (False by default)
@@ -56,6 +208,100 @@ public class PVMarshaller {
 		deserialiser.setIgnoreUnknownFields(ignore);
 	}
 	
+	/**
+	 * Sets whether a serialiser is compiled for each class the first time it is serialised, instead of reflecting over
+	 * the class on every call. Custom serialisers still take priority, and classes for which a serialiser cannot be
+	 * compiled are serialised by reflection. (False by default)
+	 * @param useCompiledSerialisers True if compiled serialisers should be used
+	 */
+	public void setUseCompiledSerialisers(boolean useCompiledSerialisers) {
+		serialiser.setUseCompiledSerialisers(useCompiledSerialisers);
+	}
+
+	/**
+	 * Sets whether fields are read and written directly instead of through their getters and setters, so that
+	 * classes without accessor methods can be marshalled and each field is read only once per pass when serialising.
+	 * Transient fields are still left out. (False by default)
+	 * @param useFieldAccess True if fields should be accessed directly
+	 */
+	public void setUseFieldAccess(boolean useFieldAccess) {
+		serialiser.setUseFieldAccess(useFieldAccess);
+		deserialiser.setUseFieldAccess(useFieldAccess);
+	}
+
+	/**
+	 * Sets whether arrays of primitive types (other than char) are shared by reference between objects and PVStructures instead
+	 * of being copied, so that large arrays such as waveforms are not duplicated. When serialising, the array becomes owned
+	 * by the PVStructure, so it must not be modified afterwards and may be overwritten if the PVStructure is updated in place;
+	 * a new array should be used for each update. When deserialising, the object's field holds the array backing the
+	 * PVStructure, so neither must be modified while the other is in use. Arrays with boxed elements, lists and PVArrays with
+	 * spare capacity are still copied. (False by default)
+	 * @param shareArrays True if arrays should be shared
+	 */
+	public void setShareArrays(boolean shareArrays) {
+		serialiser.setShareArrays(shareArrays);
+		deserialiser.setShareArrays(shareArrays);
+	}
+	
+	/**
+	 * Sets whether every object of a class is serialised into the same Structure, derived from the declared types of the class's
+	 * fields and their generic type arguments, rather than a Structure that depends on the object's values. Null fields are then
+	 * kept with default values, which are deserialised as zero, empty strings, empty arrays and nested objects with default
+	 * values, lists are typed from their declared element type, and lists and arrays of objects are always present, so that a
+	 * channel publishing the objects keeps one introspection interface. Classes with map fields, fields declared as Object,
+	 * an interface or a type variable, or that contain themselves can't be serialised in this mode, and nested objects must
+	 * be of their field's declared class. Custom serialisers must build their Structure without looking at the source object,
+	 * as those of {@link org.epics.pvmarshaller.marshaller.api.PVMarshallable} classes do. (False by default)
+	 * @param schemaFirst True if Structures should be derived from declared types
+	 */
+	public void setSchemaFirst(boolean schemaFirst) {
+		serialiser.setSchemaFirst(schemaFirst);
+	}
+	
+	/**
+	 * Gets the Structure that objects of the specified class are serialised into when schema-first serialisation is in use,
+	 * without needing an instance of the class. The Structure is built once for each class and reused
+	 * @param clazz The class to get the Structure for
+	 * @return The Structure
+	 * @throws IllegalArgumentException if the class has a field that can't be given a fixed Structure
+	 * @throws Exception
+	 */
+	public Structure getStructure(Class<?> clazz) throws Exception
+	{
+		return serialiser.buildStructure(clazz, registeredSerialisers, registeredIds);
+	}
+	
+	/**
+	 * Sets whether lists and arrays of objects whose elements all have the same Structure are serialised into a structure array
+	 * with that element Structure, rather than a union array in which every element is a variant union carrying its own type.
+	 * Each element's Structure is then sent once for the whole array, and the elements are deserialised with a single plan.
+	 * Lists and arrays with null, primitive or container elements, or whose elements differ in Structure, are still serialised
+	 * into union arrays. When schema-first serialisation is in use, the element Structure is that of the declared element class
+	 * and every element must be of that class or null. Either form is deserialised whatever this setting. (False by default)
+	 * @param useStructureArrays True if structure arrays should be used for lists and arrays of objects with the same Structure
+	 */
+	public void setUseStructureArrays(boolean useStructureArrays) {
+		serialiser.setUseStructureArrays(useStructureArrays);
+	}
+	
+	/**
+	 * Gets the interner that canonicalises the Structures built when serialising, so that equal Structures are the same
+	 * instance, e.g. to read its hit and miss counts
+	 * @return The {@link StructureInterner}
+	 */
+	public StructureInterner getStructureInterner() {
+		return serialiser.getStructureInterner();
+	}
+	
+	/**
+	 * Sets the interner that canonicalises the Structures built when serialising. Sharing one interner between marshallers
+	 * gives objects serialised by any of them the same Structure instances
+	 * @param structureInterner The {@link StructureInterner} to use
+	 */
+	public void setStructureInterner(StructureInterner structureInterner) {
+		serialiser.setStructureInterner(structureInterner);
+	}
+	
 	/**
 	 * Registers a custom serialiser for a parcticular class
 	 * @param clazz The class to use this custom serialiser for
@@ -64,6 +310,7 @@ public class PVMarshaller {
 	public <T> void registerSerialiser(Class<T> clazz, IPVStructureSerialiser<T> serialiser)
 	{
 		registeredSerialisers.put(clazz, serialiser);
+		this.serialiser.clearCaches();
 	}
 	
 	/**
@@ -74,8 +321,42 @@ public class PVMarshaller {
 	public <T> void registerIdForClass(Class<T> clazz, String id)
 	{
 		registeredIds.put(clazz, id);
+		serialiser.clearCaches();
 	}	
 	
+	/**
+	 * Registers the serialiser and deserialiser of a provider for a particular class
+	 * @param provider The {@link IPVStructureMarshallerProvider} to register
+	 */
+	public void registerProvider(IPVStructureMarshallerProvider provider)
+	{
+		registeredSerialisers.put(provider.getMarshalledClass(), provider.getSerialiser());
+		registeredDeserialisers.put(provider.getId(), provider.getDeserialiser());
+		serialiser.clearCaches();
+	}
+	
+	/**
+	 * Registers a factory used to create instances of a particular class during deserialisation, in place of its no-arg constructor.
+	 * This applies to objects and to the concrete collection classes of fields
+	 * @param clazz The class to use this factory for
+	 * @param factory The factory
+	 */
+	public <T> void registerFactory(Class<T> clazz, Supplier<? extends T> factory)
+	{
+		deserialiser.getInstantiator().registerFactory(clazz, factory);
+	}
+	
+	/**
+	 * Sets the factory used to create the lists and maps that arrays and map structures are deserialised into. By default
+	 * lists declared as an interface are created as presized ArrayLists and maps declared as Map as presized LinkedHashMaps,
+	 * with other classes created as by registerFactory
+	 * @param collectionFactory The {@link ICollectionFactory} to use
+	 */
+	public void setCollectionFactory(ICollectionFactory collectionFactory)
+	{
+		deserialiser.setCollectionFactory(collectionFactory);
+	}
+	
 	/**
 	 * Registers a custom deserialiser for a parcticular class
 	 * @param structureId The Id to use this custom deserialiser for
@@ -0,0 +1,579 @@
+package org.epics.pvmarshaller.marshaller.accessors;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+
+/**
+ * Creates Getter and Setter accessors for getter and setter methods, or for reading and writing fields directly.
+ * Where the method and the types it uses are public and visible to this class, the accessor is generated with
+ * LambdaMetafactory, so calls go straight to the method and can be inlined by the JIT. Otherwise the accessor wraps
+ * a MethodHandle, and if that cannot be created it falls back to calling the method through reflection.
+ * Primitive properties get a primitive specialised accessor (e.g. IntGetter, DoubleSetter) so that values are not boxed.
+ * @author Matt Taylor
+ *
+ */
+public class Accessors {
+
+	private static final MethodHandles.Lookup lookup = MethodHandles.lookup();
+
+	/**
+	 * Creates the fastest available Getter for the specified getter method
+	 * @param method The getter method, which must have already been made accessible
+	 * @return The Getter
+	 */
+	public static Getter getter(Method method) {
+		Getter getter = lambdaGetter(method);
+		if (getter == null) {
+			getter = methodHandleGetter(method);
+		}
+		if (getter == null) {
+			getter = reflectiveGetter(method);
+		}
+		return getter;
+	}
+
+	/**
+	 * Creates the fastest available Setter for the specified setter method
+	 * @param method The setter method, which must have already been made accessible
+	 * @return The Setter
+	 */
+	public static Setter setter(Method method) {
+		Setter setter = lambdaSetter(method);
+		if (setter == null) {
+			setter = methodHandleSetter(method);
+		}
+		if (setter == null) {
+			setter = reflectiveSetter(method);
+		}
+		return setter;
+	}
+
+	/**
+	 * Creates a Getter generated with LambdaMetafactory
+	 * @param method The getter method
+	 * @return The Getter, or null if the method is not accessible enough for one to be generated
+	 */
+	public static Getter lambdaGetter(Method method) {
+		if (!Modifier.isPublic(method.getModifiers()) || !isVisible(method.getDeclaringClass())) {
+			return null;
+		}
+
+		Class<?> returnType = method.getReturnType();
+		Class<?> getterInterface = getGetterInterface(returnType);
+		Class<?> samReturnType = returnType.isPrimitive() ? returnType : Object.class;
+
+		MethodType samType = MethodType.methodType(samReturnType, Object.class);
+		MethodType instantiatedType = MethodType.methodType(samReturnType, method.getDeclaringClass());
+
+		return (Getter) generate(method, getterInterface, getMethodName(getterInterface), samType, instantiatedType);
+	}
+
+	/**
+	 * Creates a Setter generated with LambdaMetafactory
+	 * @param method The setter method
+	 * @return The Setter, or null if the method is not accessible enough for one to be generated
+	 */
+	public static Setter lambdaSetter(Method method) {
+		Class<?> parameterType = method.getParameterTypes()[0];
+		if (!Modifier.isPublic(method.getModifiers()) || !isVisible(method.getDeclaringClass()) || !isVisible(parameterType)) {
+			return null;
+		}
+
+		Class<?> setterInterface = getSetterInterface(parameterType);
+		Class<?> samParameterType = parameterType.isPrimitive() ? parameterType : Object.class;
+
+		MethodType samType = MethodType.methodType(void.class, Object.class, samParameterType);
+		MethodType instantiatedType = MethodType.methodType(void.class, method.getDeclaringClass(), parameterType);
+
+		Setter setter = (Setter) generate(method, setterInterface, getMethodName(setterInterface), samType, instantiatedType);
+		if (setter == null || parameterType.isPrimitive() || parameterType.equals(Object.class)) {
+			return setter;
+		}
+
+		// The generated setter casts the value, so check its type first to fail in the same way as reflection
+		return (target, value) -> {
+			if (value != null && !parameterType.isInstance(value)) {
+				throw new IllegalArgumentException("argument type mismatch");
+			}
+			setter.set(target, value);
+		};
+	}
+
+	/**
+	 * Creates a Getter that calls the method through a MethodHandle
+	 * @param method The getter method
+	 * @return The Getter, or null if a MethodHandle cannot be created for the method
+	 */
+	public static Getter methodHandleGetter(Method method) {
+		MethodHandle methodHandle;
+		try {
+			methodHandle = lookup.unreflect(method);
+		} catch (IllegalAccessException e) {
+			return null;
+		}
+
+		return handleGetter(methodHandle, method.getReturnType());
+	}
+
+	/**
+	 * Creates a Getter that reads a field directly through a MethodHandle, bypassing any getter method
+	 * @param field The field, which must have already been made accessible
+	 * @return The Getter
+	 */
+	public static Getter fieldGetter(final Field field) {
+		try {
+			return handleGetter(lookup.unreflectGetter(field), field.getType());
+		} catch (IllegalAccessException e) {
+			return target -> {
+				try {
+					return field.get(target);
+				} catch (IllegalAccessException ex) {
+					throw new IllegalArgumentException(ex.getMessage(), ex);
+				}
+			};
+		}
+	}
+
+	/**
+	 * Creates a Getter that calls a MethodHandle taking the target object
+	 * @param methodHandle The handle
+	 * @param returnType The type returned by the handle
+	 * @return The Getter
+	 */
+	private static Getter handleGetter(MethodHandle methodHandle, Class<?> returnType) {
+		Class<?> handleReturnType = returnType.isPrimitive() ? returnType : Object.class;
+		final MethodHandle handle = methodHandle.asType(MethodType.methodType(handleReturnType, Object.class));
+
+		if (returnType.equals(int.class)) {
+			return (IntGetter) target -> {
+				try {
+					return (int) handle.invokeExact(target);
+				} catch (Throwable t) {
+					throw wrap(t);
+				}
+			};
+		} else if (returnType.equals(short.class)) {
+			return (ShortGetter) target -> {
+				try {
+					return (short) handle.invokeExact(target);
+				} catch (Throwable t) {
+					throw wrap(t);
+				}
+			};
+		} else if (returnType.equals(long.class)) {
+			return (LongGetter) target -> {
+				try {
+					return (long) handle.invokeExact(target);
+				} catch (Throwable t) {
+					throw wrap(t);
+				}
+			};
+		} else if (returnType.equals(byte.class)) {
+			return (ByteGetter) target -> {
+				try {
+					return (byte) handle.invokeExact(target);
+				} catch (Throwable t) {
+					throw wrap(t);
+				}
+			};
+		} else if (returnType.equals(boolean.class)) {
+			return (BooleanGetter) target -> {
+				try {
+					return (boolean) handle.invokeExact(target);
+				} catch (Throwable t) {
+					throw wrap(t);
+				}
+			};
+		} else if (returnType.equals(float.class)) {
+			return (FloatGetter) target -> {
+				try {
+					return (float) handle.invokeExact(target);
+				} catch (Throwable t) {
+					throw wrap(t);
+				}
+			};
+		} else if (returnType.equals(double.class)) {
+			return (DoubleGetter) target -> {
+				try {
+					return (double) handle.invokeExact(target);
+				} catch (Throwable t) {
+					throw wrap(t);
+				}
+			};
+		} else if (returnType.equals(char.class)) {
+			return (CharGetter) target -> {
+				try {
+					return (char) handle.invokeExact(target);
+				} catch (Throwable t) {
+					throw wrap(t);
+				}
+			};
+		}
+
+		return target -> {
+			try {
+				return (Object) handle.invokeExact(target);
+			} catch (Throwable t) {
+				throw wrap(t);
+			}
+		};
+	}
+
+	/**
+	 * Creates a Setter that calls the method through a MethodHandle
+	 * @param method The setter method
+	 * @return The Setter, or null if a MethodHandle cannot be created for the method
+	 */
+	public static Setter methodHandleSetter(Method method) {
+		MethodHandle methodHandle;
+		try {
+			methodHandle = lookup.unreflect(method);
+		} catch (IllegalAccessException e) {
+			return null;
+		}
+
+		return handleSetter(methodHandle, method.getParameterTypes()[0]);
+	}
+
+	/**
+	 * Creates a Setter that writes a field directly through a MethodHandle, bypassing any setter method.
+	 * Falls back to reflection where a MethodHandle can't write the field, e.g. final fields on older JVMs
+	 * @param field The field, which must have already been made accessible
+	 * @return The Setter
+	 */
+	public static Setter fieldSetter(final Field field) {
+		try {
+			return handleSetter(lookup.unreflectSetter(field), field.getType());
+		} catch (IllegalAccessException e) {
+			return (target, value) -> {
+				try {
+					field.set(target, value);
+				} catch (IllegalAccessException ex) {
+					throw new IllegalArgumentException(ex.getMessage(), ex);
+				}
+			};
+		}
+	}
+
+	/**
+	 * Creates a Setter that calls a MethodHandle taking the target object and the value
+	 * @param methodHandle The handle
+	 * @param parameterType The type of the value taken by the handle
+	 * @return The Setter
+	 */
+	private static Setter handleSetter(MethodHandle methodHandle, final Class<?> parameterType) {
+		Class<?> handleParameterType = parameterType.isPrimitive() ? parameterType : Object.class;
+		final MethodHandle handle = methodHandle.asType(MethodType.methodType(void.class, Object.class, handleParameterType));
+
+		if (parameterType.equals(int.class)) {
+			return (IntSetter) (target, value) -> {
+				try {
+					handle.invokeExact(target, value);
+				} catch (Throwable t) {
+					throw wrap(t);
+				}
+			};
+		} else if (parameterType.equals(short.class)) {
+			return (ShortSetter) (target, value) -> {
+				try {
+					handle.invokeExact(target, value);
+				} catch (Throwable t) {
+					throw wrap(t);
+				}
+			};
+		} else if (parameterType.equals(long.class)) {
+			return (LongSetter) (target, value) -> {
+				try {
+					handle.invokeExact(target, value);
+				} catch (Throwable t) {
+					throw wrap(t);
+				}
+			};
+		} else if (parameterType.equals(byte.class)) {
+			return (ByteSetter) (target, value) -> {
+				try {
+					handle.invokeExact(target, value);
+				} catch (Throwable t) {
+					throw wrap(t);
+				}
+			};
+		} else if (parameterType.equals(boolean.class)) {
+			return (BooleanSetter) (target, value) -> {
+				try {
+					handle.invokeExact(target, value);
+				} catch (Throwable t) {
+					throw wrap(t);
+				}
+			};
+		} else if (parameterType.equals(float.class)) {
+			return (FloatSetter) (target, value) -> {
+				try {
+					handle.invokeExact(target, value);
+				} catch (Throwable t) {
+					throw wrap(t);
+				}
+			};
+		} else if (parameterType.equals(double.class)) {
+			return (DoubleSetter) (target, value) -> {
+				try {
+					handle.invokeExact(target, value);
+				} catch (Throwable t) {
+					throw wrap(t);
+				}
+			};
+		} else if (parameterType.equals(char.class)) {
+			return (CharSetter) (target, value) -> {
+				try {
+					handle.invokeExact(target, value);
+				} catch (Throwable t) {
+					throw wrap(t);
+				}
+			};
+		}
+
+		return (target, value) -> {
+			if (value != null && !parameterType.isInstance(value)) {
+				throw new IllegalArgumentException("argument type mismatch");
+			}
+			try {
+				handle.invokeExact(target, value);
+			} catch (Throwable t) {
+				throw wrap(t);
+			}
+		};
+	}
+
+	/**
+	 * Creates a Getter that calls the method through reflection
+	 * @param method The getter method
+	 * @return The Getter
+	 */
+	public static Getter reflectiveGetter(final Method method) {
+		return target -> {
+			try {
+				return method.invoke(target);
+			} catch (IllegalAccessException e) {
+				throw new IllegalArgumentException(e.getMessage(), e);
+			}
+		};
+	}
+
+	/**
+	 * Creates a Setter that calls the method through reflection
+	 * @param method The setter method
+	 * @return The Setter
+	 */
+	public static Setter reflectiveSetter(final Method method) {
+		return (target, value) -> {
+			try {
+				method.invoke(target, value);
+			} catch (IllegalAccessException e) {
+				throw new IllegalArgumentException(e.getMessage(), e);
+			}
+		};
+	}
+
+	/**
+	 * Generates an implementation of an accessor interface with LambdaMetafactory
+	 * @param method The method to call
+	 * @param accessorInterface The accessor interface to implement
+	 * @param samName The name of the abstract method of the interface
+	 * @param samType The type of the abstract method of the interface
+	 * @param instantiatedType The type of the abstract method specialised for the method
+	 * @return The accessor, or null if it could not be generated
+	 */
+	private static Object generate(Method method, Class<?> accessorInterface, String samName, MethodType samType, MethodType instantiatedType) {
+		try {
+			MethodHandle handle = lookup.unreflect(method);
+			CallSite callSite = LambdaMetafactory.metafactory(lookup, samName, MethodType.methodType(accessorInterface),
+					samType, handle, instantiatedType);
+			return callSite.getTarget().invoke();
+		} catch (Throwable t) {
+			return null;
+		}
+	}
+
+	/**
+	 * Gets whether a class can be referenced from generated code, i.e. it and any classes enclosing it are public
+	 * and it can be loaded by the class loader of this class
+	 * @param clazz The class to check
+	 * @return
+	 */
+	private static boolean isVisible(Class<?> clazz) {
+		while (clazz.isArray()) {
+			clazz = clazz.getComponentType();
+		}
+		if (clazz.isPrimitive()) {
+			return true;
+		}
+
+		for (Class<?> enclosing = clazz; enclosing != null; enclosing = enclosing.getEnclosingClass()) {
+			if (!Modifier.isPublic(enclosing.getModifiers())) {
+				return false;
+			}
+		}
+
+		try {
+			return Class.forName(clazz.getName(), false, Accessors.class.getClassLoader()) == clazz;
+		} catch (ClassNotFoundException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Gets the Getter interface to use for a property type
+	 * @param type The type of the property
+	 * @return
+	 */
+	private static Class<?> getGetterInterface(Class<?> type) {
+		if (type.equals(int.class)) {
+			return IntGetter.class;
+		} else if (type.equals(short.class)) {
+			return ShortGetter.class;
+		} else if (type.equals(long.class)) {
+			return LongGetter.class;
+		} else if (type.equals(byte.class)) {
+			return ByteGetter.class;
+		} else if (type.equals(boolean.class)) {
+			return BooleanGetter.class;
+		} else if (type.equals(float.class)) {
+			return FloatGetter.class;
+		} else if (type.equals(double.class)) {
+			return DoubleGetter.class;
+		} else if (type.equals(char.class)) {
+			return CharGetter.class;
+		}
+		return Getter.class;
+	}
+
+	/**
+	 * Gets the Setter interface to use for a property type
+	 * @param type The type of the property
+	 * @return
+	 */
+	private static Class<?> getSetterInterface(Class<?> type) {
+		if (type.equals(int.class)) {
+			return IntSetter.class;
+		} else if (type.equals(short.class)) {
+			return ShortSetter.class;
+		} else if (type.equals(long.class)) {
+			return LongSetter.class;
+		} else if (type.equals(byte.class)) {
+			return ByteSetter.class;
+		} else if (type.equals(boolean.class)) {
+			return BooleanSetter.class;
+		} else if (type.equals(float.class)) {
+			return FloatSetter.class;
+		} else if (type.equals(double.class)) {
+			return DoubleSetter.class;
+		} else if (type.equals(char.class)) {
+			return CharSetter.class;
+		}
+		return Setter.class;
+	}
+
+	/**
+	 * Gets the name of the abstract method of an accessor interface
+	 * @param accessorInterface The accessor interface
+	 * @return
+	 */
+	private static String getMethodName(Class<?> accessorInterface) {
+		for (Method method : accessorInterface.getMethods()) {
+			if (Modifier.isAbstract(method.getModifiers())) {
+				return method.getName();
+			}
+		}
+		throw new IllegalArgumentException(accessorInterface + " is not an accessor interface");
+	}
+
+	/**
+	 * Converts an exception thrown by an accessed method so it is thrown in the same way as from the generated accessors
+	 * @param t The exception
+	 * @return The InvocationTargetException to throw for checked exceptions
+	 */
+	private static InvocationTargetException wrap(Throwable t) {
+		if (t instanceof RuntimeException) {
+			throw (RuntimeException) t;
+		} else if (t instanceof Error) {
+			throw (Error) t;
+		}
+		return new InvocationTargetException(t);
+	}
+
+	// The conversions below follow the unboxing and widening rules applied by Method.invoke
+
+	static int toInt(Object value) {
+		if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+			return ((Number) value).intValue();
+		} else if (value instanceof Character) {
+			return (Character) value;
+		}
+		throw mismatch(value, int.class);
+	}
+
+	static short toShort(Object value) {
+		if (value instanceof Short || value instanceof Byte) {
+			return ((Number) value).shortValue();
+		}
+		throw mismatch(value, short.class);
+	}
+
+	static long toLong(Object value) {
+		if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+			return ((Number) value).longValue();
+		} else if (value instanceof Character) {
+			return (Character) value;
+		}
+		throw mismatch(value, long.class);
+	}
+
+	static byte toByte(Object value) {
+		if (value instanceof Byte) {
+			return (Byte) value;
+		}
+		throw mismatch(value, byte.class);
+	}
+
+	static boolean toBoolean(Object value) {
+		if (value instanceof Boolean) {
+			return (Boolean) value;
+		}
+		throw mismatch(value, boolean.class);
+	}
+
+	static float toFloat(Object value) {
+		if (value instanceof Float || value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+			return ((Number) value).floatValue();
+		} else if (value instanceof Character) {
+			return (Character) value;
+		}
+		throw mismatch(value, float.class);
+	}
+
+	static double toDouble(Object value) {
+		if (value instanceof Double || value instanceof Float || value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+			return ((Number) value).doubleValue();
+		} else if (value instanceof Character) {
+			return (Character) value;
+		}
+		throw mismatch(value, double.class);
+	}
+
+	static char toChar(Object value) {
+		if (value instanceof Character) {
+			return (Character) value;
+		}
+		throw mismatch(value, char.class);
+	}
+
+	private static IllegalArgumentException mismatch(Object value, Class<?> type) {
+		return new IllegalArgumentException("Unable to set " + type + " property from " + (value == null ? "null" : value.getClass().getName()));
+	}
+}
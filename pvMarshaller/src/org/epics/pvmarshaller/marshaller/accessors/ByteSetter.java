@@ -0,0 +1,24 @@
+package org.epics.pvmarshaller.marshaller.accessors;
+
+import java.lang.reflect.InvocationTargetException;
+
+/**
+ * Setter specialised for byte properties, so that the value is written without boxing
+ * @author Matt Taylor
+ *
+ */
+public interface ByteSetter extends Setter {
+
+	/**
+	 * Sets the value of the property on the specified object
+	 * @param target The object to write to
+	 * @param value The value to set
+	 * @throws InvocationTargetException
+	 */
+	public void setByte(Object target, byte value) throws InvocationTargetException;
+
+	@Override
+	public default void set(Object target, Object value) throws IllegalArgumentException, InvocationTargetException {
+		setByte(target, Accessors.toByte(value));
+	}
+}
@@ -0,0 +1,24 @@
+package org.epics.pvmarshaller.marshaller.accessors;
+
+import java.lang.reflect.InvocationTargetException;
+
+/**
+ * Getter specialised for char properties, so that the value is read without boxing
+ * @author Matt Taylor
+ *
+ */
+public interface CharGetter extends Getter {
+
+	/**
+	 * Gets the value of the property from the specified object
+	 * @param target The object to read from
+	 * @return The value of the property
+	 * @throws InvocationTargetException
+	 */
+	public char getChar(Object target) throws InvocationTargetException;
+
+	@Override
+	public default Object get(Object target) throws InvocationTargetException {
+		return Character.valueOf(getChar(target));
+	}
+}
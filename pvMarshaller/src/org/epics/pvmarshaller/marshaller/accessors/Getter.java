@@ -0,0 +1,19 @@
+package org.epics.pvmarshaller.marshaller.accessors;
+
+import java.lang.reflect.InvocationTargetException;
+
+/**
+ * Reads the value of a property from an object
+ * @author Matt Taylor
+ *
+ */
+public interface Getter {
+
+	/**
+	 * Gets the value of the property from the specified object
+	 * @param target The object to read from
+	 * @return The value of the property, boxed if it is a primitive
+	 * @throws InvocationTargetException
+	 */
+	public Object get(Object target) throws InvocationTargetException;
+}
@@ -0,0 +1,20 @@
+package org.epics.pvmarshaller.marshaller.accessors;
+
+import java.lang.reflect.InvocationTargetException;
+
+/**
+ * Writes the value of a property to an object
+ * @author Matt Taylor
+ *
+ */
+public interface Setter {
+
+	/**
+	 * Sets the value of the property on the specified object
+	 * @param target The object to write to
+	 * @param value The value to set, boxed if the property is a primitive
+	 * @throws IllegalArgumentException if the value cannot be converted to the type of the property
+	 * @throws InvocationTargetException
+	 */
+	public void set(Object target, Object value) throws IllegalArgumentException, InvocationTargetException;
+}
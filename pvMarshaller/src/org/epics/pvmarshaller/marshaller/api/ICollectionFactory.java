@@ -0,0 +1,35 @@
+package org.epics.pvmarshaller.marshaller.api;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Interface for creating the lists and maps that arrays and map structures are deserialised into. The number of elements
+ * is known before the collection is created, so implementations can presize it or return a primitive-backed collection
+ * @author Matt Taylor
+ *
+ */
+public interface ICollectionFactory {
+
+	/**
+	 * Creates a list to deserialise an array into
+	 * @param listClass The declared class of the list, which may be an interface such as List or Collection
+	 * @param elementClass The class of the elements, or null if it is not known
+	 * @param size The number of elements that will be added
+	 * @return The empty list, which must be an instance of listClass
+	 * @throws InstantiationException
+	 * @throws InvocationTargetException
+	 */
+	public <E> List<E> createList(Class<?> listClass, Class<?> elementClass, int size) throws InstantiationException, InvocationTargetException;
+
+	/**
+	 * Creates a map to deserialise a structure into
+	 * @param mapClass The declared class of the map, which may be the Map interface
+	 * @param size The number of entries that will be added
+	 * @return The empty map, which must be an instance of mapClass
+	 * @throws InstantiationException
+	 * @throws InvocationTargetException
+	 */
+	public <K, V> Map<K, V> createMap(Class<?> mapClass, int size) throws InstantiationException, InvocationTargetException;
+}
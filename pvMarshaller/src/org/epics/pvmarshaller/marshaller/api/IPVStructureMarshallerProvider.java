@@ -0,0 +1,43 @@
+package org.epics.pvmarshaller.marshaller.api;
+
+import org.epics.pvdata.pv.Structure;
+
+/**
+ * Service interface for a paired serialiser and deserialiser for a single class. Implementations listed in
+ * META-INF/services are registered with every new PVMarshaller. Implementations are normally generated by the
+ * {@link org.epics.pvmarshaller.marshaller.processor.PVMarshallableProcessor} for classes marked with {@link PVMarshallable}
+ * @author Matt Taylor
+ *
+ */
+public interface IPVStructureMarshallerProvider {
+
+	/**
+	 * Gets the class that this provider converts
+	 * @return
+	 */
+	public Class<?> getMarshalledClass();
+
+	/**
+	 * Gets the id of the Structure that the class is converted to
+	 * @return
+	 */
+	public String getId();
+
+	/**
+	 * Gets the Structure that the class is converted to
+	 * @return
+	 */
+	public Structure getStructure();
+
+	/**
+	 * Gets the serialiser for the class
+	 * @return
+	 */
+	public IPVStructureSerialiser<?> getSerialiser();
+
+	/**
+	 * Gets the deserialiser for Structures with the id of this provider
+	 * @return
+	 */
+	public IPVStructureDeserialiser getDeserialiser();
+}
@@ -15,9 +15,11 @@ import org.epics.pvmarshaller.marshaller.serialisers.Serialiser;
 public interface IPVStructureSerialiser<T> {
 	
 	/**
-	 * Builds a Structure object from the specified object
+	 * Builds a Structure object from the specified object.
+	 * When Structures are derived from declared types (see PVMarshaller.setSchemaFirst) this is called with a null source to get
+	 * the fixed Structure of the class, so serialisers used that way must build their Structure without reading the source
 	 * @param serialiser The serialiser member of the PVMarshaller
-	 * @param source The object to serialise
+	 * @param source The object to serialise, or null when building the fixed Structure of the class
 	 * @return The Structure representation of the object
 	 * @throws IllegalArgumentException
 	 * @throws IllegalAccessException
@@ -0,0 +1,28 @@
+package org.epics.pvmarshaller.marshaller.api;
+
+/**
+ * Interface for a List implementation that stores its elements in a primitive array. Lists implementing this are
+ * serialised from and deserialised into that array directly, rather than by boxing or unboxing each element
+ * @author Matt Taylor
+ *
+ */
+public interface IPrimitiveList {
+
+	/**
+	 * Gets the primitive type of the elements, e.g. double.class
+	 * @return
+	 */
+	public Class<?> getPrimitiveType();
+
+	/**
+	 * Gets a new primitive array containing the elements of the list in order
+	 * @return
+	 */
+	public Object toPrimitiveArray();
+
+	/**
+	 * Appends the elements of a primitive array of the list's primitive type, which is not retained by the list
+	 * @param array The array of elements to add
+	 */
+	public void addPrimitiveArray(Object array);
+}
@@ -0,0 +1,31 @@
+package org.epics.pvmarshaller.marshaller.api;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a class for which a marshaller should be generated at compile time by the
+ * {@link org.epics.pvmarshaller.marshaller.processor.PVMarshallableProcessor}.
+ * The generated marshaller implements {@link IPVStructureMarshallerProvider} and is found by the PVMarshaller through
+ * ServiceLoader, so the class is converted without any reflection.
+ * <p>
+ * Supported field types are Java primitives and their wrappers, Strings, arrays of these (other than char) and other
+ * classes marked with this annotation. Generated marshallers always use the same Structure, so null fields are left at
+ * their default value rather than being left out of the Structure.
+ * @author Matt Taylor
+ *
+ */
+@Documented
+@Retention(RetentionPolicy.CLASS)
+@Target(ElementType.TYPE)
+public @interface PVMarshallable {
+
+	/**
+	 * The id of the generated Structure. Defaults to the fully qualified name of the class
+	 * @return
+	 */
+	String id() default "";
+}
@@ -0,0 +1,171 @@
+package org.epics.pvmarshaller.marshaller.collections;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.RandomAccess;
+
+import org.epics.pvmarshaller.marshaller.api.IPrimitiveList;
+
+/**
+ * List of doubles stored in a double array. It is serialised to and deserialised from a double scalar array without boxing
+ * the elements, and the getDouble and addDouble methods allow the list itself to be used without boxing
+ * @author Matt Taylor
+ *
+ */
+public class DoubleList extends AbstractList<Double> implements IPrimitiveList, RandomAccess {
+
+	private double[] elements;
+	private int size;
+
+	/**
+	 * Constructor
+	 */
+	public DoubleList() {
+		this(10);
+	}
+
+	/**
+	 * Constructor
+	 * @param initialCapacity The number of elements to allocate space for
+	 */
+	public DoubleList(int initialCapacity) {
+		if (initialCapacity < 0) {
+			throw new IllegalArgumentException("Illegal capacity: " + initialCapacity);
+		}
+		elements = new double[initialCapacity];
+	}
+
+	/**
+	 * Creates a list containing the specified elements
+	 * @param values The elements, which are copied
+	 * @return The list
+	 */
+	public static DoubleList of(double... values) {
+		DoubleList list = new DoubleList(values.length);
+		list.addPrimitiveArray(values);
+		return list;
+	}
+
+	/**
+	 * Gets an element without boxing it
+	 * @param index The index of the element
+	 * @return The element
+	 */
+	public double getDouble(int index) {
+		checkIndex(index);
+		return elements[index];
+	}
+
+	/**
+	 * Sets an element without boxing it
+	 * @param index The index of the element
+	 * @param value The new value
+	 * @return The previous value
+	 */
+	public double setDouble(int index, double value) {
+		checkIndex(index);
+		double previous = elements[index];
+		elements[index] = value;
+		return previous;
+	}
+
+	/**
+	 * Appends an element without boxing it
+	 * @param value The element to add
+	 */
+	public void addDouble(double value) {
+		ensureCapacity(size + 1);
+		elements[size++] = value;
+		modCount++;
+	}
+
+	/**
+	 * Gets a new array containing the elements of the list
+	 * @return
+	 */
+	public double[] toDoubleArray() {
+		return Arrays.copyOf(elements, size);
+	}
+
+	/**
+	 * Ensures that the list can hold the specified number of elements without reallocating
+	 * @param capacity The number of elements
+	 */
+	public void ensureCapacity(int capacity) {
+		if (capacity > elements.length) {
+			elements = Arrays.copyOf(elements, Math.max(capacity, elements.length + (elements.length >> 1) + 1));
+		}
+	}
+
+	@Override
+	public Double get(int index) {
+		return getDouble(index);
+	}
+
+	@Override
+	public Double set(int index, Double element) {
+		return setDouble(index, element);
+	}
+
+	@Override
+	public void add(int index, Double element) {
+		if (index < 0 || index > size) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+		}
+		ensureCapacity(size + 1);
+		System.arraycopy(elements, index, elements, index + 1, size - index);
+		elements[index] = element;
+		size++;
+		modCount++;
+	}
+
+	@Override
+	public Double remove(int index) {
+		checkIndex(index);
+		double previous = elements[index];
+		System.arraycopy(elements, index + 1, elements, index, size - index - 1);
+		size--;
+		modCount++;
+		return previous;
+	}
+
+	@Override
+	public void clear() {
+		size = 0;
+		modCount++;
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public Class<?> getPrimitiveType() {
+		return double.class;
+	}
+
+	@Override
+	public Object toPrimitiveArray() {
+		return toDoubleArray();
+	}
+
+	@Override
+	public void addPrimitiveArray(Object array) {
+		double[] values = (double[]) array;
+		ensureCapacity(size + values.length);
+		System.arraycopy(values, 0, elements, size, values.length);
+		size += values.length;
+		modCount++;
+	}
+
+	/**
+	 * Checks that an index refers to an element of the list
+	 * @param index The index
+	 */
+	private void checkIndex(int index) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+		}
+	}
+}
@@ -0,0 +1,171 @@
+package org.epics.pvmarshaller.marshaller.collections;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.RandomAccess;
+
+import org.epics.pvmarshaller.marshaller.api.IPrimitiveList;
+
+/**
+ * List of ints stored in a int array. It is serialised to and deserialised from a int scalar array without boxing
+ * the elements, and the getInt and addInt methods allow the list itself to be used without boxing
+ * @author Matt Taylor
+ *
+ */
+public class IntList extends AbstractList<Integer> implements IPrimitiveList, RandomAccess {
+
+	private int[] elements;
+	private int size;
+
+	/**
+	 * Constructor
+	 */
+	public IntList() {
+		this(10);
+	}
+
+	/**
+	 * Constructor
+	 * @param initialCapacity The number of elements to allocate space for
+	 */
+	public IntList(int initialCapacity) {
+		if (initialCapacity < 0) {
+			throw new IllegalArgumentException("Illegal capacity: " + initialCapacity);
+		}
+		elements = new int[initialCapacity];
+	}
+
+	/**
+	 * Creates a list containing the specified elements
+	 * @param values The elements, which are copied
+	 * @return The list
+	 */
+	public static IntList of(int... values) {
+		IntList list = new IntList(values.length);
+		list.addPrimitiveArray(values);
+		return list;
+	}
+
+	/**
+	 * Gets an element without boxing it
+	 * @param index The index of the element
+	 * @return The element
+	 */
+	public int getInt(int index) {
+		checkIndex(index);
+		return elements[index];
+	}
+
+	/**
+	 * Sets an element without boxing it
+	 * @param index The index of the element
+	 * @param value The new value
+	 * @return The previous value
+	 */
+	public int setInt(int index, int value) {
+		checkIndex(index);
+		int previous = elements[index];
+		elements[index] = value;
+		return previous;
+	}
+
+	/**
+	 * Appends an element without boxing it
+	 * @param value The element to add
+	 */
+	public void addInt(int value) {
+		ensureCapacity(size + 1);
+		elements[size++] = value;
+		modCount++;
+	}
+
+	/**
+	 * Gets a new array containing the elements of the list
+	 * @return
+	 */
+	public int[] toIntArray() {
+		return Arrays.copyOf(elements, size);
+	}
+
+	/**
+	 * Ensures that the list can hold the specified number of elements without reallocating
+	 * @param capacity The number of elements
+	 */
+	public void ensureCapacity(int capacity) {
+		if (capacity > elements.length) {
+			elements = Arrays.copyOf(elements, Math.max(capacity, elements.length + (elements.length >> 1) + 1));
+		}
+	}
+
+	@Override
+	public Integer get(int index) {
+		return getInt(index);
+	}
+
+	@Override
+	public Integer set(int index, Integer element) {
+		return setInt(index, element);
+	}
+
+	@Override
+	public void add(int index, Integer element) {
+		if (index < 0 || index > size) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+		}
+		ensureCapacity(size + 1);
+		System.arraycopy(elements, index, elements, index + 1, size - index);
+		elements[index] = element;
+		size++;
+		modCount++;
+	}
+
+	@Override
+	public Integer remove(int index) {
+		checkIndex(index);
+		int previous = elements[index];
+		System.arraycopy(elements, index + 1, elements, index, size - index - 1);
+		size--;
+		modCount++;
+		return previous;
+	}
+
+	@Override
+	public void clear() {
+		size = 0;
+		modCount++;
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public Class<?> getPrimitiveType() {
+		return int.class;
+	}
+
+	@Override
+	public Object toPrimitiveArray() {
+		return toIntArray();
+	}
+
+	@Override
+	public void addPrimitiveArray(Object array) {
+		int[] values = (int[]) array;
+		ensureCapacity(size + values.length);
+		System.arraycopy(values, 0, elements, size, values.length);
+		size += values.length;
+		modCount++;
+	}
+
+	/**
+	 * Checks that an index refers to an element of the list
+	 * @param index The index
+	 */
+	private void checkIndex(int index) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+		}
+	}
+}
@@ -0,0 +1,171 @@
+package org.epics.pvmarshaller.marshaller.collections;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.RandomAccess;
+
+import org.epics.pvmarshaller.marshaller.api.IPrimitiveList;
+
+/**
+ * List of longs stored in a long array. It is serialised to and deserialised from a long scalar array without boxing
+ * the elements, and the getLong and addLong methods allow the list itself to be used without boxing
+ * @author Matt Taylor
+ *
+ */
+public class LongList extends AbstractList<Long> implements IPrimitiveList, RandomAccess {
+
+	private long[] elements;
+	private int size;
+
+	/**
+	 * Constructor
+	 */
+	public LongList() {
+		this(10);
+	}
+
+	/**
+	 * Constructor
+	 * @param initialCapacity The number of elements to allocate space for
+	 */
+	public LongList(int initialCapacity) {
+		if (initialCapacity < 0) {
+			throw new IllegalArgumentException("Illegal capacity: " + initialCapacity);
+		}
+		elements = new long[initialCapacity];
+	}
+
+	/**
+	 * Creates a list containing the specified elements
+	 * @param values The elements, which are copied
+	 * @return The list
+	 */
+	public static LongList of(long... values) {
+		LongList list = new LongList(values.length);
+		list.addPrimitiveArray(values);
+		return list;
+	}
+
+	/**
+	 * Gets an element without boxing it
+	 * @param index The index of the element
+	 * @return The element
+	 */
+	public long getLong(int index) {
+		checkIndex(index);
+		return elements[index];
+	}
+
+	/**
+	 * Sets an element without boxing it
+	 * @param index The index of the element
+	 * @param value The new value
+	 * @return The previous value
+	 */
+	public long setLong(int index, long value) {
+		checkIndex(index);
+		long previous = elements[index];
+		elements[index] = value;
+		return previous;
+	}
+
+	/**
+	 * Appends an element without boxing it
+	 * @param value The element to add
+	 */
+	public void addLong(long value) {
+		ensureCapacity(size + 1);
+		elements[size++] = value;
+		modCount++;
+	}
+
+	/**
+	 * Gets a new array containing the elements of the list
+	 * @return
+	 */
+	public long[] toLongArray() {
+		return Arrays.copyOf(elements, size);
+	}
+
+	/**
+	 * Ensures that the list can hold the specified number of elements without reallocating
+	 * @param capacity The number of elements
+	 */
+	public void ensureCapacity(int capacity) {
+		if (capacity > elements.length) {
+			elements = Arrays.copyOf(elements, Math.max(capacity, elements.length + (elements.length >> 1) + 1));
+		}
+	}
+
+	@Override
+	public Long get(int index) {
+		return getLong(index);
+	}
+
+	@Override
+	public Long set(int index, Long element) {
+		return setLong(index, element);
+	}
+
+	@Override
+	public void add(int index, Long element) {
+		if (index < 0 || index > size) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+		}
+		ensureCapacity(size + 1);
+		System.arraycopy(elements, index, elements, index + 1, size - index);
+		elements[index] = element;
+		size++;
+		modCount++;
+	}
+
+	@Override
+	public Long remove(int index) {
+		checkIndex(index);
+		long previous = elements[index];
+		System.arraycopy(elements, index + 1, elements, index, size - index - 1);
+		size--;
+		modCount++;
+		return previous;
+	}
+
+	@Override
+	public void clear() {
+		size = 0;
+		modCount++;
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public Class<?> getPrimitiveType() {
+		return long.class;
+	}
+
+	@Override
+	public Object toPrimitiveArray() {
+		return toLongArray();
+	}
+
+	@Override
+	public void addPrimitiveArray(Object array) {
+		long[] values = (long[]) array;
+		ensureCapacity(size + values.length);
+		System.arraycopy(values, 0, elements, size, values.length);
+		size += values.length;
+		modCount++;
+	}
+
+	/**
+	 * Checks that an index refers to an element of the list
+	 * @param index The index
+	 */
+	private void checkIndex(int index) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+		}
+	}
+}
@@ -3,6 +3,8 @@ package org.epics.pvmarshaller.marshaller.deserialisers;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
 import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Provides useful functions for collection classes
@@ -10,6 +12,13 @@ import java.util.List;
  *
  */
 public class ContainerFunctions {
+	
+	private static final ClassValue<ConcurrentHashMap<String, Optional<ResolvedFieldType>>> fieldTypes = new ClassValue<ConcurrentHashMap<String, Optional<ResolvedFieldType>>>() {
+		@Override
+		protected ConcurrentHashMap<String, Optional<ResolvedFieldType>> computeValue(Class<?> clazz) {
+			return new ConcurrentHashMap<String, Optional<ResolvedFieldType>>();
+		}
+	};
 
 	/**
 	 * Returns true if the specified type is an array
@@ -122,6 +131,22 @@ public class ContainerFunctions {
 		return null;
 	}
 	
+	/**
+	 * Gets the resolved type of a field in the specified class or its superclasses, resolving it the first time the field is asked for
+	 * @param clazz The class containing the field
+	 * @param variableName The name of the field
+	 * @return The resolved type, or null if the class has no such field
+	 */
+	public static ResolvedFieldType getFieldType(Class<?> clazz, String variableName) {
+		ConcurrentHashMap<String, Optional<ResolvedFieldType>> classFieldTypes = fieldTypes.get(clazz);
+		Optional<ResolvedFieldType> fieldType = classFieldTypes.get(variableName);
+		if (fieldType == null) {
+			fieldType = Optional.ofNullable(resolveFieldType(clazz, variableName));
+			classFieldTypes.put(variableName, fieldType);
+		}
+		return fieldType.orElse(null);
+	}
+	
 	/**
 	 * Gets the field class of a list
 	 * @param object The parent object containing the list
@@ -130,26 +155,11 @@ public class ContainerFunctions {
 	 * @throws NoSuchFieldException
 	 */
 	public static Class<?> getListFieldClass(Object object, String variableName) throws NoSuchFieldException {
-		Class<?> clazz = object.getClass();
-		while (clazz != Object.class)  {
-			try {
-				java.lang.reflect.Field listField = clazz.getDeclaredField(variableName);
-	            ParameterizedType listType = (ParameterizedType) listField.getGenericType();
-	            Type type = listType.getActualTypeArguments()[0];
-	            if (type instanceof Class) {
-		            Class<?> listClass = (Class<?>) type; 
-		            return listClass;
-	            } else if (type instanceof ParameterizedType) {
-	            	ParameterizedType pt = (ParameterizedType) type;
-	            	Class<?> listClass = (Class<?>)pt.getRawType();
-		            return listClass;
-	            }
-			} catch (NoSuchFieldException ex) {
-				
-			}
-		    clazz = clazz.getSuperclass();
+		ResolvedFieldType fieldType = getFieldType(object.getClass(), variableName);
+		if (fieldType == null || fieldType.getComponentClass() == null) {
+			throw new NoSuchFieldException("Unable to find field for " + variableName + " in class " + object.getClass());
 		}
-		throw new NoSuchFieldException("Unable to find field for " + variableName + " in class " + object.getClass());
+		return fieldType.getComponentClass();
 	}
 	
 	/**
@@ -160,28 +170,35 @@ public class ContainerFunctions {
 	 * @throws NoSuchFieldException
 	 */
 	public static Type getMapTypeFromListComponentParent(Object parentObject, String variableName) throws NoSuchFieldException {
-		Class<?> clazz = parentObject.getClass();
-		while (clazz != Object.class)  {
-			try {
-				java.lang.reflect.Field listField = clazz.getDeclaredField(variableName);
-	            ParameterizedType listType = (ParameterizedType) listField.getGenericType();
-	            Type type = listType.getActualTypeArguments()[0];
-	            if (type instanceof Class) {
-		            Class<?> listClass = (Class<?>) type; 
-		            return listClass;
-	            } else if (type instanceof ParameterizedType) {
-	            	ParameterizedType pt = (ParameterizedType) type;
-	            	if (!pt.getActualTypeArguments()[0].equals(String.class)) {
-	    				throw new IllegalArgumentException("Map key type was not String");
-	    			}
-	    			
-	    			return pt.getActualTypeArguments()[1];
-	            }
-			} catch (NoSuchFieldException ex) {
-				
+		ResolvedFieldType fieldType = getFieldType(parentObject.getClass(), variableName);
+		if (fieldType != null) {
+			if (fieldType.getComponentType() instanceof Class) {
+				return fieldType.getComponentClass();
+			} else if (fieldType.getKeyType() != null) {
+				if (!fieldType.getKeyType().equals(String.class)) {
+					throw new IllegalArgumentException("Map key type was not String");
+				}
+				return fieldType.getValueType();
 			}
-		    clazz = clazz.getSuperclass();
 		}
 		throw new NoSuchFieldException("Unable to find field for " + variableName + " in class " + parentObject.getClass());
 	}
+	
+	/**
+	 * Searches the class hierarchy for the named field and resolves its type
+	 * @param clazz The class to search
+	 * @param variableName The name of the field
+	 * @return The resolved type, or null if there is no such field
+	 */
+	private static ResolvedFieldType resolveFieldType(Class<?> clazz, String variableName) {
+		while (clazz != null && clazz != Object.class)  {
+			for (java.lang.reflect.Field field : clazz.getDeclaredFields()) {
+				if (field.getName().equals(variableName)) {
+					return new ResolvedFieldType(field);
+				}
+			}
+		    clazz = clazz.getSuperclass();
+		}
+		return null;
+	}
 }
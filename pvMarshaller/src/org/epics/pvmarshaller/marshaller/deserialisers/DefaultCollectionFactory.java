@@ -0,0 +1,47 @@
+package org.epics.pvmarshaller.marshaller.deserialisers;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.epics.pvmarshaller.marshaller.api.ICollectionFactory;
+
+/**
+ * Default {@link ICollectionFactory}. Lists declared as an interface are created as an ArrayList and maps declared as Map
+ * as a LinkedHashMap, both presized for the number of elements. Concrete classes are created by the {@link Instantiator}
+ * @author Matt Taylor
+ *
+ */
+public class DefaultCollectionFactory implements ICollectionFactory {
+
+	private final Instantiator instantiator;
+
+	/**
+	 * Constructor
+	 * @param instantiator The instantiator to create concrete collection classes with
+	 */
+	public DefaultCollectionFactory(Instantiator instantiator) {
+		this.instantiator = instantiator;
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public <E> List<E> createList(Class<?> listClass, Class<?> elementClass, int size) throws InstantiationException, InvocationTargetException {
+		if (listClass.isInterface()) {
+			return new ArrayList<E>(size);
+		}
+		return (List<E>) instantiator.newInstance(listClass);
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public <K, V> Map<K, V> createMap(Class<?> mapClass, int size) throws InstantiationException, InvocationTargetException {
+		if (mapClass.equals(Map.class)) {
+			// Capacity for the default load factor of 0.75, so that the map is not rehashed while it is populated
+			return new LinkedHashMap<K, V>(size + size / 3 + 1);
+		}
+		return (Map<K, V>) instantiator.newInstance(mapClass);
+	}
+}
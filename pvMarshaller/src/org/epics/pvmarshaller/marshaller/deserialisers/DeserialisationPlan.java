@@ -0,0 +1,578 @@
+package org.epics.pvmarshaller.marshaller.deserialisers;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.epics.pvdata.factory.ConvertFactory;
+import org.epics.pvdata.misc.BitSet;
+import org.epics.pvdata.pv.Convert;
+import org.epics.pvdata.pv.Field;
+import org.epics.pvdata.pv.PVBoolean;
+import org.epics.pvdata.pv.PVByte;
+import org.epics.pvdata.pv.PVDouble;
+import org.epics.pvdata.pv.PVField;
+import org.epics.pvdata.pv.PVFloat;
+import org.epics.pvdata.pv.PVInt;
+import org.epics.pvdata.pv.PVLong;
+import org.epics.pvdata.pv.PVScalarArray;
+import org.epics.pvdata.pv.PVShort;
+import org.epics.pvdata.pv.PVString;
+import org.epics.pvdata.pv.PVStructure;
+import org.epics.pvdata.pv.Scalar;
+import org.epics.pvdata.pv.ScalarArray;
+import org.epics.pvdata.pv.Structure;
+import org.epics.pvdata.pv.Union;
+import org.epics.pvmarshaller.marshaller.accessors.BooleanSetter;
+import org.epics.pvmarshaller.marshaller.accessors.Accessors;
+import org.epics.pvmarshaller.marshaller.accessors.ByteSetter;
+import org.epics.pvmarshaller.marshaller.accessors.DoubleSetter;
+import org.epics.pvmarshaller.marshaller.accessors.FloatSetter;
+import org.epics.pvmarshaller.marshaller.accessors.Getter;
+import org.epics.pvmarshaller.marshaller.accessors.IntSetter;
+import org.epics.pvmarshaller.marshaller.accessors.LongSetter;
+import org.epics.pvmarshaller.marshaller.accessors.Setter;
+import org.epics.pvmarshaller.marshaller.accessors.ShortSetter;
+
+/**
+ * The steps needed to deserialise PVStructures with a particular Structure into objects of a particular class.
+ * Field names, setters and field types are resolved once when the plan is compiled, so that deserialising uses
+ * the index of each field in the PVStructure and the resolved setter without any lookups.
+ * A plan can also update an existing object, reusing its nested objects and primitive arrays where they still fit,
+ * and can limit the update to the fields marked in a changed BitSet.
+ * @author Matt Taylor
+ *
+ */
+public class DeserialisationPlan {
+
+	private static final Convert convert = ConvertFactory.getConvert();
+
+	private final Structure structure;
+	private final Class<?> targetClass;
+	private final FieldStep[] steps;
+
+	/**
+	 * Constructor
+	 * @param structure The Structure the plan was compiled for
+	 * @param targetClass The class the plan was compiled for
+	 * @param steps The steps for each field to deserialise
+	 */
+	private DeserialisationPlan(Structure structure, Class<?> targetClass, FieldStep[] steps) {
+		this.structure = structure;
+		this.targetClass = targetClass;
+		this.steps = steps;
+	}
+
+	/**
+	 * Compiles a plan to deserialise PVStructures with the specified Structure into objects of the specified class
+	 * @param deserialiser The deserialiser
+	 * @param structure The Structure of the PVStructures to deserialise
+	 * @param targetClass The class of the objects to create
+	 * @return The plan
+	 * @throws IllegalArgumentException if a field is not supported, or has no setter and unknown fields are not ignored
+	 */
+	public static DeserialisationPlan compile(Deserialiser deserialiser, Structure structure, Class<?> targetClass) throws IllegalArgumentException {
+		List<FieldStep> steps = new ArrayList<FieldStep>();
+
+		Field fields[] = structure.getFields();
+
+		for (int i = 0; i < fields.length; i++) {
+			String fieldName = structure.getFieldName(i);
+			FieldStep step;
+
+			switch (fields[i].getType()) {
+			case scalar:
+				step = compileScalarStep(deserialiser, targetClass, fieldName, (Scalar)fields[i]);
+				break;
+			case scalarArray:
+				step = compileScalarArrayStep(deserialiser, targetClass, fieldName, (ScalarArray)fields[i]);
+				break;
+			case structure:
+				step = compileStructureStep(deserialiser, targetClass, fieldName, (Structure)fields[i]);
+				break;
+			case structureArray:
+				step = compileDelegatingStep(deserialiser, targetClass, fieldName, deserialiser.getStructureArrayDeserialiser()::deserialise);
+				break;
+			case union:
+				if (!((Union)fields[i]).isVariant()) {
+					throw new IllegalArgumentException("Regular unions are not supported");
+				}
+				step = compileDelegatingStep(deserialiser, targetClass, fieldName, deserialiser.getUnionDeserialiser()::deserialise);
+				break;
+			case unionArray:
+				step = compileDelegatingStep(deserialiser, targetClass, fieldName, deserialiser.getUnionArrayDeserialiser()::deserialise);
+				break;
+			default:
+				step = null;
+				break;
+			}
+
+			if (step != null) {
+				step.index = i;
+				steps.add(step);
+			}
+		}
+
+		return new DeserialisationPlan(structure, targetClass, steps.toArray(new FieldStep[steps.size()]));
+	}
+
+	/**
+	 * Populates the target object with data from a PVStructure
+	 * @param target The object to populate, which must be of the class the plan was compiled for
+	 * @param pvStructure The PVStructure, which must have the Structure the plan was compiled for
+	 * @throws IllegalArgumentException
+	 * @throws IllegalAccessException
+	 * @throws InvocationTargetException
+	 * @throws NoSuchFieldException
+	 * @throws SecurityException
+	 * @throws InstantiationException
+	 */
+	public void apply(Object target, PVStructure pvStructure) throws IllegalArgumentException, IllegalAccessException, InvocationTargetException, NoSuchFieldException, SecurityException, InstantiationException {
+		PVField pvFields[] = pvStructure.getPVFields();
+		for (FieldStep step : steps) {
+			step.apply(target, pvFields[step.index]);
+		}
+	}
+
+	/**
+	 * Populates an existing object with data from a PVStructure. Nested objects of the expected class are updated in place
+	 * and primitive arrays of the same length are overwritten, without calling their setters. Other fields are set as by apply
+	 * @param target The object to update, which must be of the class the plan was compiled for
+	 * @param pvStructure The PVStructure, which must have the Structure the plan was compiled for
+	 * @throws IllegalArgumentException
+	 * @throws IllegalAccessException
+	 * @throws InvocationTargetException
+	 * @throws NoSuchFieldException
+	 * @throws SecurityException
+	 * @throws InstantiationException
+	 */
+	public void update(Object target, PVStructure pvStructure) throws IllegalArgumentException, IllegalAccessException, InvocationTargetException, NoSuchFieldException, SecurityException, InstantiationException {
+		PVField pvFields[] = pvStructure.getPVFields();
+		for (FieldStep step : steps) {
+			step.update(target, pvFields[step.index]);
+		}
+	}
+
+	/**
+	 * Populates an existing object with only the fields of a PVStructure that are marked as changed, as for a monitor update.
+	 * Nested structures with no changed fields are skipped, and those with some changed fields are updated field by field
+	 * @param target The object to update, which must be of the class the plan was compiled for
+	 * @param pvStructure The PVStructure, which must have the Structure the plan was compiled for
+	 * @param changedBitSet The offsets of the changed fields within the top level PVStructure
+	 * @throws IllegalArgumentException
+	 * @throws IllegalAccessException
+	 * @throws InvocationTargetException
+	 * @throws NoSuchFieldException
+	 * @throws SecurityException
+	 * @throws InstantiationException
+	 */
+	public void update(Object target, PVStructure pvStructure, BitSet changedBitSet) throws IllegalArgumentException, IllegalAccessException, InvocationTargetException, NoSuchFieldException, SecurityException, InstantiationException {
+		if (changedBitSet.get(pvStructure.getFieldOffset())) {
+			// The whole structure has changed
+			update(target, pvStructure);
+			return;
+		}
+		
+		PVField pvFields[] = pvStructure.getPVFields();
+		for (FieldStep step : steps) {
+			PVField pvField = pvFields[step.index];
+			int changedOffset = changedBitSet.nextSetBit(pvField.getFieldOffset());
+			if (changedOffset >= 0 && changedOffset < pvField.getNextFieldOffset()) {
+				step.updateChanged(target, pvField, changedBitSet);
+			}
+		}
+	}
+
+	/**
+	 * Gets the Structure the plan was compiled for
+	 * @return
+	 */
+	public Structure getStructure() {
+		return structure;
+	}
+
+	/**
+	 * Gets the class the plan was compiled for
+	 * @return
+	 */
+	public Class<?> getTargetClass() {
+		return targetClass;
+	}
+
+	/**
+	 * Compiles the step for a scalar field, following the same rules as ScalarDeserialiser
+	 * @param deserialiser The deserialiser
+	 * @param targetClass The class of the target object
+	 * @param fieldName The name of the field
+	 * @param scalar The scalar field
+	 * @return The step, or null if the field has no setter and unknown fields are ignored
+	 */
+	private static FieldStep compileScalarStep(Deserialiser deserialiser, Class<?> targetClass, String fieldName, Scalar scalar) {
+		switch (scalar.getScalarType()) {
+		case pvUInt:
+			throw new IllegalArgumentException("Field type of Unsigned Int is not supported (" + fieldName + ")");
+		case pvUShort:
+			throw new IllegalArgumentException("Field type of Unsigned Short is not supported (" + fieldName + ")");
+		case pvULong:
+			throw new IllegalArgumentException("Field type of Unsigned Long is not supported (" + fieldName + ")");
+		case pvUByte:
+			throw new IllegalArgumentException("Field type of Unsigned Byte is not supported (" + fieldName + ")");
+		default:
+			break;
+		}
+
+		Setter setter = deserialiser.findSetterAccessor(targetClass, fieldName);
+		if (setter == null) {
+			return null;
+		}
+
+		switch (scalar.getScalarType()) {
+		case pvInt:
+			if (setter instanceof IntSetter) {
+				IntSetter intSetter = (IntSetter) setter;
+				return new WriterStep((target, pvField) -> intSetter.setInt(target, ((PVInt) pvField).get()));
+			}
+			return new WriterStep((target, pvField) -> setter.set(target, ((PVInt) pvField).get()));
+		case pvShort:
+			if (setter instanceof ShortSetter) {
+				ShortSetter shortSetter = (ShortSetter) setter;
+				return new WriterStep((target, pvField) -> shortSetter.setShort(target, ((PVShort) pvField).get()));
+			}
+			return new WriterStep((target, pvField) -> setter.set(target, ((PVShort) pvField).get()));
+		case pvLong:
+			if (setter instanceof LongSetter) {
+				LongSetter longSetter = (LongSetter) setter;
+				return new WriterStep((target, pvField) -> longSetter.setLong(target, ((PVLong) pvField).get()));
+			}
+			return new WriterStep((target, pvField) -> setter.set(target, ((PVLong) pvField).get()));
+		case pvByte:
+			if (setter instanceof ByteSetter) {
+				ByteSetter byteSetter = (ByteSetter) setter;
+				return new WriterStep((target, pvField) -> byteSetter.setByte(target, ((PVByte) pvField).get()));
+			}
+			return new WriterStep((target, pvField) -> setter.set(target, ((PVByte) pvField).get()));
+		case pvBoolean:
+			if (setter instanceof BooleanSetter) {
+				BooleanSetter booleanSetter = (BooleanSetter) setter;
+				return new WriterStep((target, pvField) -> booleanSetter.setBoolean(target, ((PVBoolean) pvField).get()));
+			}
+			return new WriterStep((target, pvField) -> setter.set(target, ((PVBoolean) pvField).get()));
+		case pvFloat:
+			if (setter instanceof FloatSetter) {
+				FloatSetter floatSetter = (FloatSetter) setter;
+				return new WriterStep((target, pvField) -> floatSetter.setFloat(target, ((PVFloat) pvField).get()));
+			}
+			return new WriterStep((target, pvField) -> setter.set(target, ((PVFloat) pvField).get()));
+		case pvDouble:
+			if (setter instanceof DoubleSetter) {
+				DoubleSetter doubleSetter = (DoubleSetter) setter;
+				return new WriterStep((target, pvField) -> doubleSetter.setDouble(target, ((PVDouble) pvField).get()));
+			}
+			return new WriterStep((target, pvField) -> setter.set(target, ((PVDouble) pvField).get()));
+		case pvString:
+			// Determine if the object member is a string or a char
+			Class<?> parameterType = deserialiser.findSetterType(targetClass, fieldName);
+			if (parameterType.equals(Character.class) || parameterType.equals(char.class)) {
+				return new WriterStep((target, pvField) ->
+					setter.set(target, ScalarDeserialiser.toCharacter(((PVString) pvField).get(), parameterType, fieldName)));
+			}
+			return new WriterStep((target, pvField) -> setter.set(target, ((PVString) pvField).get()));
+		default:
+			throw new IllegalArgumentException("Unsupported field type for " + fieldName);
+		}
+	}
+
+	/**
+	 * Compiles the step for a scalar array field, which reuses the existing array when updating a field declared as an array
+	 * of the matching primitive type
+	 * @param deserialiser The deserialiser
+	 * @param targetClass The class of the target object
+	 * @param fieldName The name of the field
+	 * @param scalarArray The scalar array field
+	 * @return The step, or null if the field has no setter and unknown fields are ignored
+	 */
+	private static FieldStep compileScalarArrayStep(Deserialiser deserialiser, Class<?> targetClass, String fieldName, ScalarArray scalarArray) {
+		switch (scalarArray.getElementType()) {
+		case pvUInt:
+			throw new IllegalArgumentException("Field type of Unsigned Int Array is not supported (" + fieldName + ")");
+		case pvUShort:
+			throw new IllegalArgumentException("Field type of Unsigned Short Array is not supported (" + fieldName + ")");
+		case pvULong:
+			throw new IllegalArgumentException("Field type of Unsigned Long Array is not supported (" + fieldName + ")");
+		case pvUByte:
+			throw new IllegalArgumentException("Field type of Unsigned Byte Array is not supported (" + fieldName + ")");
+		default:
+			break;
+		}
+
+		if (deserialiser.findSetterType(targetClass, fieldName) == null) {
+			return null;
+		}
+
+		NamedFieldDeserialiser fieldDeserialiser = deserialiser.getScalarArrayDeserialiser()::deserialise;
+
+		ArrayCopier copier;
+		Class<?> arrayClass;
+		switch (scalarArray.getElementType()) {
+		case pvByte:
+			arrayClass = byte[].class;
+			copier = (from, offset, length, to) -> convert.toByteArray(from, offset, length, (byte[]) to, offset);
+			break;
+		case pvShort:
+			arrayClass = short[].class;
+			copier = (from, offset, length, to) -> convert.toShortArray(from, offset, length, (short[]) to, offset);
+			break;
+		case pvInt:
+			arrayClass = int[].class;
+			copier = (from, offset, length, to) -> convert.toIntArray(from, offset, length, (int[]) to, offset);
+			break;
+		case pvLong:
+			arrayClass = long[].class;
+			copier = (from, offset, length, to) -> convert.toLongArray(from, offset, length, (long[]) to, offset);
+			break;
+		case pvFloat:
+			arrayClass = float[].class;
+			copier = (from, offset, length, to) -> convert.toFloatArray(from, offset, length, (float[]) to, offset);
+			break;
+		case pvDouble:
+			arrayClass = double[].class;
+			copier = (from, offset, length, to) -> convert.toDoubleArray(from, offset, length, (double[]) to, offset);
+			break;
+		default:
+			return new DelegatingStep(fieldName, fieldDeserialiser);
+		}
+
+		// Shared arrays are set by reference rather than copied into the existing array
+		java.lang.reflect.Field field = SetterCache.getField(targetClass, fieldName);
+		if (field == null || field.getType() != arrayClass || deserialiser.isShareArrays()) {
+			return new DelegatingStep(fieldName, fieldDeserialiser);
+		}
+
+		return new PrimitiveArrayStep(fieldName, fieldDeserialiser, Accessors.fieldGetter(field), arrayClass, copier);
+	}
+
+	/**
+	 * Compiles the step for a field that is handed to another deserialiser, checking that the field can be set first so
+	 * that a plan is only compiled for Structures that can be deserialised
+	 * @param deserialiser The deserialiser
+	 * @param targetClass The class of the target object
+	 * @param fieldName The name of the field
+	 * @param fieldDeserialiser The deserialiser for the field
+	 * @return The step, or null if the field has no setter and unknown fields are ignored
+	 */
+	private static FieldStep compileDelegatingStep(Deserialiser deserialiser, Class<?> targetClass, String fieldName, NamedFieldDeserialiser fieldDeserialiser) {
+		if (deserialiser.findSetterType(targetClass, fieldName) == null) {
+			return null;
+		}
+		return new DelegatingStep(fieldName, fieldDeserialiser);
+	}
+
+	/**
+	 * Compiles the step for a structure field, following the same rules as StructureDeserialiser.deserialise
+	 * @param deserialiser The deserialiser
+	 * @param targetClass The class of the target object
+	 * @param fieldName The name of the field
+	 * @param fieldStructure The Structure of the field
+	 * @return The step, or null if the field is unknown or has no setter and unknown fields are ignored
+	 */
+	private static FieldStep compileStructureStep(Deserialiser deserialiser, Class<?> targetClass, String fieldName, Structure fieldStructure) {
+		StructureDeserialiser structureDeserialiser = deserialiser.getStructureDeserialiser();
+
+		Class<?> fieldClass = structureDeserialiser.getClassFromFieldName(targetClass, fieldName);
+		if (fieldClass == null) {
+			return null;
+		}
+		Setter setter = deserialiser.findSetterAccessor(targetClass, fieldName);
+		if (setter == null) {
+			return null;
+		}
+
+		if (Map.class.isAssignableFrom(fieldClass)) {
+			return new WriterStep((target, pvField) -> setter.set(target,
+				(Object) deserialiser.getMapDeserialiser().createMapFromPVStructure((PVStructure) pvField, target, fieldName)));
+		}
+
+		NestedStructureStep step = new NestedStructureStep();
+		step.structureDeserialiser = structureDeserialiser;
+		step.fieldClass = fieldClass;
+		step.setter = setter;
+		java.lang.reflect.Field field = SetterCache.getField(targetClass, fieldName);
+		step.reader = field == null ? null : Accessors.fieldGetter(field);
+		// The nested plan is compiled when first used, as a custom deserialiser may be registered for the nested structure
+		step.fieldStructure = fieldStructure;
+		return step;
+	}
+
+	/**
+	 * Writes a field from the PVStructure into the target object
+	 */
+	private interface FieldWriter {
+		public void write(Object target, PVField pvField) throws IllegalArgumentException, IllegalAccessException, InvocationTargetException, NoSuchFieldException, SecurityException, InstantiationException;
+	}
+
+	/**
+	 * Deserialises a field by name, as the deserialisers for containers and unions do
+	 */
+	private interface NamedFieldDeserialiser {
+		public void deserialise(Object target, String fieldName, PVField pvField) throws IllegalArgumentException, IllegalAccessException, InvocationTargetException, NoSuchFieldException, SecurityException, InstantiationException;
+	}
+
+	/**
+	 * Copies part of a scalar array into a Java primitive array
+	 */
+	private interface ArrayCopier {
+		public int copy(PVScalarArray from, int offset, int length, Object to);
+	}
+
+	/**
+	 * Step for a single field of the PVStructure
+	 */
+	private static abstract class FieldStep {
+		int index;
+
+		abstract void apply(Object target, PVField pvField) throws IllegalArgumentException, IllegalAccessException, InvocationTargetException, NoSuchFieldException, SecurityException, InstantiationException;
+
+		/**
+		 * Populates the field of an existing object, reusing the current value of the field where possible
+		 */
+		void update(Object target, PVField pvField) throws IllegalArgumentException, IllegalAccessException, InvocationTargetException, NoSuchFieldException, SecurityException, InstantiationException {
+			apply(target, pvField);
+		}
+
+		/**
+		 * Populates the field of an existing object when the field, or a field within it, is marked as changed
+		 */
+		void updateChanged(Object target, PVField pvField, BitSet changedBitSet) throws IllegalArgumentException, IllegalAccessException, InvocationTargetException, NoSuchFieldException, SecurityException, InstantiationException {
+			update(target, pvField);
+		}
+	}
+
+	/**
+	 * Step that writes a field with a resolved setter
+	 */
+	private static class WriterStep extends FieldStep {
+		final FieldWriter writer;
+
+		WriterStep(FieldWriter writer) {
+			this.writer = writer;
+		}
+
+		@Override
+		void apply(Object target, PVField pvField) throws IllegalArgumentException, IllegalAccessException, InvocationTargetException, NoSuchFieldException, SecurityException, InstantiationException {
+			writer.write(target, pvField);
+		}
+	}
+
+	/**
+	 * Step that hands a field to another deserialiser with its name
+	 */
+	private static class DelegatingStep extends FieldStep {
+		final String fieldName;
+		final NamedFieldDeserialiser fieldDeserialiser;
+
+		DelegatingStep(String fieldName, NamedFieldDeserialiser fieldDeserialiser) {
+			this.fieldName = fieldName;
+			this.fieldDeserialiser = fieldDeserialiser;
+		}
+
+		@Override
+		void apply(Object target, PVField pvField) throws IllegalArgumentException, IllegalAccessException, InvocationTargetException, NoSuchFieldException, SecurityException, InstantiationException {
+			fieldDeserialiser.deserialise(target, fieldName, pvField);
+		}
+	}
+
+	/**
+	 * Step for a primitive array field, which overwrites the existing array when updating an object if it has the same length
+	 */
+	private static class PrimitiveArrayStep extends DelegatingStep {
+		final Getter reader;
+		final Class<?> arrayClass;
+		final ArrayCopier copier;
+
+		PrimitiveArrayStep(String fieldName, NamedFieldDeserialiser fieldDeserialiser, Getter reader, Class<?> arrayClass, ArrayCopier copier) {
+			super(fieldName, fieldDeserialiser);
+			this.reader = reader;
+			this.arrayClass = arrayClass;
+			this.copier = copier;
+		}
+
+		@Override
+		void update(Object target, PVField pvField) throws IllegalArgumentException, IllegalAccessException, InvocationTargetException, NoSuchFieldException, SecurityException, InstantiationException {
+			PVScalarArray pvArray = (PVScalarArray) pvField;
+			Object current = reader.get(target);
+			int length = pvArray.getLength();
+
+			if (current != null && current.getClass() == arrayClass && Array.getLength(current) == length) {
+				int numCopied = 0;
+				while (numCopied < length) {
+					numCopied += copier.copy(pvArray, numCopied, length - numCopied, current);
+				}
+			} else {
+				apply(target, pvField);
+			}
+		}
+	}
+
+	/**
+	 * Step that creates an object from a nested structure with its own plan and sets it in the target object
+	 */
+	private static class NestedStructureStep extends FieldStep {
+		StructureDeserialiser structureDeserialiser;
+		Structure fieldStructure;
+		Class<?> fieldClass;
+		Setter setter;
+		Getter reader;
+		volatile DeserialisationPlan nestedPlan;
+
+		@Override
+		void apply(Object target, PVField pvField) throws IllegalArgumentException, IllegalAccessException, InvocationTargetException, NoSuchFieldException, SecurityException, InstantiationException {
+			PVStructure nestedPVStructure = (PVStructure) pvField;
+			Object newObject;
+			if (structureDeserialiser.hasCustomDeserialiser(fieldStructure)) {
+				newObject = structureDeserialiser.createObjectFromPVStructure(nestedPVStructure, fieldClass);
+			} else {
+				newObject = structureDeserialiser.createObjectWithPlan(nestedPVStructure, getNestedPlan());
+			}
+			setter.set(target, newObject);
+		}
+
+		@Override
+		void update(Object target, PVField pvField) throws IllegalArgumentException, IllegalAccessException, InvocationTargetException, NoSuchFieldException, SecurityException, InstantiationException {
+			if (reader != null && !structureDeserialiser.hasCustomDeserialiser(fieldStructure)) {
+				Object current = reader.get(target);
+				if (current != null && current.getClass() == fieldClass) {
+					getNestedPlan().update(current, (PVStructure) pvField);
+					return;
+				}
+			}
+			apply(target, pvField);
+		}
+
+		@Override
+		void updateChanged(Object target, PVField pvField, BitSet changedBitSet) throws IllegalArgumentException, IllegalAccessException, InvocationTargetException, NoSuchFieldException, SecurityException, InstantiationException {
+			if (reader != null && !structureDeserialiser.hasCustomDeserialiser(fieldStructure)) {
+				Object current = reader.get(target);
+				if (current != null && current.getClass() == fieldClass) {
+					getNestedPlan().update(current, (PVStructure) pvField, changedBitSet);
+					return;
+				}
+			}
+			apply(target, pvField);
+		}
+
+		/**
+		 * Gets the plan for the nested structure, looking it up the first time it is needed
+		 * @return The plan
+		 */
+		DeserialisationPlan getNestedPlan() {
+			DeserialisationPlan plan = nestedPlan;
+			if (plan == null) {
+				plan = structureDeserialiser.getPlan(fieldStructure, fieldClass);
+				nestedPlan = plan;
+			}
+			return plan;
+		}
+	}
+}
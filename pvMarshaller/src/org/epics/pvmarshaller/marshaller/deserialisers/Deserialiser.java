@@ -4,7 +4,10 @@ import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.Map;
 
+import org.epics.pvdata.misc.BitSet;
 import org.epics.pvdata.pv.PVStructure;
+import org.epics.pvmarshaller.marshaller.accessors.Setter;
+import org.epics.pvmarshaller.marshaller.api.ICollectionFactory;
 import org.epics.pvmarshaller.marshaller.api.IPVStructureDeserialiser;
 
 /**
@@ -14,6 +17,8 @@ import org.epics.pvmarshaller.marshaller.api.IPVStructureDeserialiser;
  */
 public class Deserialiser {
 	
+	Instantiator instantiator = new Instantiator();
+	ICollectionFactory collectionFactory = new DefaultCollectionFactory(instantiator);
 	MapDeserialiser mapDeserialiser = new MapDeserialiser(this);
 	MapScalarArrayDeserialiser mapScalarArrayDeserialiser = new MapScalarArrayDeserialiser();
 	ScalarArrayDeserialiser scalarArrayDeserialiser = new ScalarArrayDeserialiser(this);
@@ -24,6 +29,8 @@ public class Deserialiser {
 	UnionArrayDeserialiser unionArrayDeserialiser = new UnionArrayDeserialiser(this);
 	
 	boolean ignoreUnknownFields = false;
+	boolean useFieldAccess = false;
+	boolean shareArrays = false;
 	
 	/**
 	 * Converts the specified PVStructure into an object of the type specified
@@ -62,6 +69,84 @@ public class Deserialiser {
 		return fromPVStructure(pvStructure, targetClass);
 	}
 
+	/**
+	 * Populates an existing object from the specified PVStructure with a given set of custom deserialisers. Nested objects
+	 * of the expected class are updated in place and primitive arrays of the same length are overwritten
+	 * @param pvStructure The PVStructure to convert
+	 * @param existing The object to populate
+	 * @param customDeserialisers A collection of custom deserialisers
+	 * @return The populated object, which is a new object if a custom deserialiser is registered for the PVStructure
+	 * @throws InstantiationException
+	 * @throws IllegalAccessException
+	 * @throws IllegalArgumentException
+	 * @throws InvocationTargetException
+	 * @throws NoSuchFieldException
+	 * @throws SecurityException
+	 */
+	public <T> T fromPVStructure(PVStructure pvStructure, T existing, Map<String, IPVStructureDeserialiser> customDeserialisers) throws InstantiationException, IllegalAccessException, IllegalArgumentException, InvocationTargetException, NoSuchFieldException, SecurityException {
+		structureDeserialiser.setCustomDeserialisers(customDeserialisers);
+		
+		return structureDeserialiser.updateObjectFromPVStructure(pvStructure, existing);
+	}
+
+	/**
+	 * Populates an existing object with the fields of the specified PVStructure that are marked as changed, with a given set of
+	 * custom deserialisers. Nested structures with no changed fields are skipped
+	 * @param pvStructure The PVStructure to convert
+	 * @param changedBitSet The offsets of the changed fields
+	 * @param existing The object to populate
+	 * @param customDeserialisers A collection of custom deserialisers
+	 * @return The populated object, which is a new object if a custom deserialiser is registered for the PVStructure
+	 * @throws InstantiationException
+	 * @throws IllegalAccessException
+	 * @throws IllegalArgumentException
+	 * @throws InvocationTargetException
+	 * @throws NoSuchFieldException
+	 * @throws SecurityException
+	 */
+	public <T> T fromPVStructure(PVStructure pvStructure, BitSet changedBitSet, T existing, Map<String, IPVStructureDeserialiser> customDeserialisers) throws InstantiationException, IllegalAccessException, IllegalArgumentException, InvocationTargetException, NoSuchFieldException, SecurityException {
+		structureDeserialiser.setCustomDeserialisers(customDeserialisers);
+		
+		return structureDeserialiser.updateObjectFromPVStructure(pvStructure, changedBitSet, existing);
+	}
+	
+	/**
+	 * Returns whether the specified PVStructure can be deserialised into an object of the type specified with a given set of custom deserialisers
+	 * @param pvStructure The PVStructure to check
+	 * @param targetClass The class of the expected output object
+	 * @param customDeserialisers A collection of custom deserialisers
+	 * @return
+	 */
+	public boolean isCompatible(PVStructure pvStructure, Class<?> targetClass, Map<String, IPVStructureDeserialiser> customDeserialisers) {
+		structureDeserialiser.setCustomDeserialisers(customDeserialisers);
+		
+		return structureDeserialiser.isCompatible(pvStructure.getStructure(), targetClass);
+	}
+
+	/**
+	 * Gets the Instantiator used for creating objects and collections
+	 * @return
+	 */
+	public Instantiator getInstantiator() {
+		return instantiator;
+	}
+
+	/**
+	 * Gets the factory used for creating the lists and maps that containers are deserialised into
+	 * @return
+	 */
+	public ICollectionFactory getCollectionFactory() {
+		return collectionFactory;
+	}
+
+	/**
+	 * Sets the factory used for creating the lists and maps that containers are deserialised into
+	 * @param collectionFactory
+	 */
+	public void setCollectionFactory(ICollectionFactory collectionFactory) {
+		this.collectionFactory = collectionFactory;
+	}
+
 	/**
 	 * Gets the MapDeserialiser used for converting maps
 	 * @return
@@ -140,6 +225,7 @@ public class Deserialiser {
 	 */
 	public void setIgnoreUnknownFields(boolean ignoreUnknownMembers) {
 		this.ignoreUnknownFields = ignoreUnknownMembers;
+		structureDeserialiser.clearPlans();
 	}
 	
 	/**
@@ -150,21 +236,101 @@ public class Deserialiser {
 	 * @throws IllegalArgumentException
 	 */
 	public Method findSetter(Object object, String variableName) throws IllegalArgumentException {
-		Class<?> clazz = object.getClass();
-		while (clazz != Object.class)  {
-			Method[] allMethods = clazz.getDeclaredMethods();
-			 
-		    for (Method m : allMethods) {
-		    	if (m.getName().toLowerCase().equals("set" + variableName.toLowerCase()) && m.getParameters().length == 1) {
-		    		m.setAccessible(true);
-		    		return m;
-		    	}
-		    }
-		    clazz = clazz.getSuperclass();
-		}
-		if (ignoreUnknownFields == false) {
+		Method method = SetterCache.getSetter(object.getClass(), variableName);
+		if (method == null && ignoreUnknownFields == false) {
 			throw new IllegalArgumentException("Unable to find setter for " + variableName + " in class " + object.getClass());
 		}
-		return null;
+		return method;
+	}
+
+	/**
+	 * Sets whether fields are written directly rather than through their setters
+	 * @param useFieldAccess
+	 */
+	public void setUseFieldAccess(boolean useFieldAccess) {
+		this.useFieldAccess = useFieldAccess;
+		structureDeserialiser.clearPlans();
+	}
+
+	/**
+	 * Sets whether arrays of primitive types are taken from the PVStructure by reference rather than copied
+	 * @param shareArrays
+	 */
+	public void setShareArrays(boolean shareArrays) {
+		this.shareArrays = shareArrays;
+		structureDeserialiser.clearPlans();
+	}
+
+	/**
+	 * Gets whether arrays of primitive types are taken from the PVStructure by reference rather than copied
+	 * @return
+	 */
+	public boolean isShareArrays() {
+		return shareArrays;
+	}
+
+	/**
+	 * Finds the type accepted by the setter for a given member in the specified Object, which is the type of the field itself when fields are written directly
+	 * @param object The object to find the setter in
+	 * @param variableName The name of the member to find the setter for
+	 * @return the type, or null if no setter is found and IgnoreUnknownFields has been set to true
+	 * @throws IllegalArgumentException
+	 */
+	public Class<?> findSetterType(Object object, String variableName) throws IllegalArgumentException {
+		return findSetterType(object.getClass(), variableName);
+	}
+
+	/**
+	 * Finds the type accepted by the setter for a given member in the specified class, which is the type of the field itself when fields are written directly
+	 * @param clazz The class to find the setter in
+	 * @param variableName The name of the member to find the setter for
+	 * @return the type, or null if no setter is found and IgnoreUnknownFields has been set to true
+	 * @throws IllegalArgumentException
+	 */
+	public Class<?> findSetterType(Class<?> clazz, String variableName) throws IllegalArgumentException {
+		Class<?> type = useFieldAccess ? SetterCache.getFieldType(clazz, variableName) : SetterCache.getSetterType(clazz, variableName);
+		if (type == null && ignoreUnknownFields == false) {
+			throw new IllegalArgumentException(getMissingSetterMessage(clazz, variableName));
+		}
+		return type;
+	}
+
+	/**
+	 * Finds the accessor for the setter method of a given member in the specified Object
+	 * @param object The object to find the setter in
+	 * @param variableName The name of the member to find the setter for
+	 * @return the Setter accessor, or null if no setter is found and IgnoreUnknownFields has been set to true
+	 * @throws IllegalArgumentException
+	 */
+	public Setter findSetterAccessor(Object object, String variableName) throws IllegalArgumentException {
+		return findSetterAccessor(object.getClass(), variableName);
+	}
+
+	/**
+	 * Finds the accessor for the setter method of a given member in the specified class, or for the field itself when fields are written directly
+	 * @param clazz The class to find the setter in
+	 * @param variableName The name of the member to find the setter for
+	 * @return the Setter accessor, or null if no setter is found and IgnoreUnknownFields has been set to true
+	 * @throws IllegalArgumentException
+	 */
+	public Setter findSetterAccessor(Class<?> clazz, String variableName) throws IllegalArgumentException {
+		Setter setter = useFieldAccess ? SetterCache.getFieldAccessor(clazz, variableName) : SetterCache.getAccessor(clazz, variableName);
+		if (setter == null && ignoreUnknownFields == false) {
+			throw new IllegalArgumentException(getMissingSetterMessage(clazz, variableName));
+		}
+		return setter;
+	}
+
+	/**
+	 * Gets the message for the exception thrown when a member cannot be written to
+	 * @param clazz The class
+	 * @param variableName The name of the member
+	 * @return
+	 */
+	private String getMissingSetterMessage(Class<?> clazz, String variableName) {
+		if (useFieldAccess) {
+			return "Unable to find field " + variableName + " in class " + clazz;
+		}
+		return "Unable to find setter for " + variableName + " in class " + clazz;
 	}
 }
@@ -0,0 +1,132 @@
+package org.epics.pvmarshaller.marshaller.deserialisers;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Modifier;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Creates the objects and collections that PVStructures are deserialised into. Factories can be registered for
+ * particular classes, otherwise the no-arg constructor of the class is used through a MethodHandle that is
+ * looked up once per class
+ * @author Matt Taylor
+ *
+ */
+public class Instantiator {
+
+	private static final MethodType CONSTRUCTOR_TYPE = MethodType.methodType(Object.class);
+	private static final ClassValue<MethodHandle> constructors = new ClassValue<MethodHandle>() {
+		@Override
+		protected MethodHandle computeValue(Class<?> clazz) {
+			try {
+				return lookupConstructor(clazz);
+			} catch (InstantiationException e) {
+				// Not cached by the ClassValue, so the lookup is retried and fails again the next time
+				throw new ConstructorLookupException(e);
+			}
+		}
+	};
+
+	private final ConcurrentHashMap<Class<?>, Supplier<?>> registeredFactories = new ConcurrentHashMap<Class<?>, Supplier<?>>();
+
+	/**
+	 * Registers a factory to create instances of the specified class in place of its no-arg constructor
+	 * @param clazz The class to use the factory for
+	 * @param factory The factory
+	 */
+	public <T> void registerFactory(Class<T> clazz, Supplier<? extends T> factory) {
+		registeredFactories.put(clazz, factory);
+	}
+
+	/**
+	 * Creates a new instance of the specified class, using its registered factory if there is one
+	 * @param clazz The class to create an instance of
+	 * @return The new instance
+	 * @throws InstantiationException if the class is abstract, an interface or has no no-arg constructor
+	 * @throws InvocationTargetException if the constructor throws a checked exception
+	 */
+	public <T> T newInstance(Class<T> clazz) throws InstantiationException, InvocationTargetException {
+		Supplier<?> factory = registeredFactories.get(clazz);
+		if (factory != null) {
+			return clazz.cast(factory.get());
+		}
+		return construct(clazz);
+	}
+
+	/**
+	 * Creates a new instance of the specified class with its no-arg constructor
+	 * @param clazz The class to create an instance of
+	 * @return The new instance
+	 * @throws InstantiationException if the class is abstract, an interface or has no no-arg constructor
+	 * @throws InvocationTargetException if the constructor throws a checked exception
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T> T construct(Class<T> clazz) throws InstantiationException, InvocationTargetException {
+		MethodHandle constructor = getConstructor(clazz);
+		try {
+			return (T) (Object) constructor.invokeExact();
+		} catch (RuntimeException | Error e) {
+			throw e;
+		} catch (Throwable e) {
+			throw new InvocationTargetException(e);
+		}
+	}
+
+	/**
+	 * Gets the MethodHandle for the no-arg constructor of the specified class, looking it up the first time the class is seen.
+	 * The MethodHandle is held against the class so that it does not keep the class loader of the class alive
+	 * @param clazz The class
+	 * @return The MethodHandle, returning Object
+	 * @throws InstantiationException if the class is abstract, an interface or has no no-arg constructor
+	 */
+	private static MethodHandle getConstructor(Class<?> clazz) throws InstantiationException {
+		try {
+			return constructors.get(clazz);
+		} catch (ConstructorLookupException e) {
+			throw e.getCause();
+		}
+	}
+
+	/**
+	 * Looks up the MethodHandle for the no-arg constructor of the specified class
+	 * @param clazz The class
+	 * @return The MethodHandle, returning Object
+	 * @throws InstantiationException if the class is abstract, an interface or has no no-arg constructor
+	 */
+	private static MethodHandle lookupConstructor(Class<?> clazz) throws InstantiationException {
+		if (clazz.isInterface() || Modifier.isAbstract(clazz.getModifiers()) || clazz.isArray() || clazz.isPrimitive()) {
+			throw new InstantiationException("Cannot create an instance of " + clazz.getName());
+		}
+		try {
+			Constructor<?> declaredConstructor = clazz.getDeclaredConstructor();
+			declaredConstructor.setAccessible(true);
+			return MethodHandles.lookup().unreflectConstructor(declaredConstructor).asType(CONSTRUCTOR_TYPE);
+		} catch (NoSuchMethodException e) {
+			throw new InstantiationException("No no-arg constructor for " + clazz.getName());
+		} catch (IllegalAccessException | SecurityException e) {
+			InstantiationException instantiationException = new InstantiationException("Unable to access the no-arg constructor of " + clazz.getName());
+			instantiationException.initCause(e);
+			throw instantiationException;
+		}
+	}
+
+	/**
+	 * Carries an InstantiationException out of the ClassValue that looks up constructors
+	 */
+	private static class ConstructorLookupException extends RuntimeException {
+		private static final long serialVersionUID = 1L;
+
+		ConstructorLookupException(InstantiationException cause) {
+			super(cause);
+		}
+
+		@Override
+		public synchronized InstantiationException getCause() {
+			return (InstantiationException) super.getCause();
+		}
+	}
+}
@@ -3,7 +3,6 @@ package org.epics.pvmarshaller.marshaller.deserialisers;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
-import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -57,17 +56,16 @@ public class MapDeserialiser {
 	 */
 	public Map createMapFromPVStructure(PVStructure pvStructure, Object parentObject, String fieldName) throws InstantiationException, IllegalAccessException, NoSuchFieldException, SecurityException, IllegalArgumentException, InvocationTargetException {
 		
-		Class<?> mapClass = null;
-		Type keyClass;
-		Type valueClass = null;
-		java.lang.reflect.Field objectField = parentObject.getClass().getDeclaredField(fieldName);
-		mapClass = objectField.getType();
-		ParameterizedType pt = (ParameterizedType)objectField.getGenericType();
-        
-		keyClass = pt.getActualTypeArguments()[0];
-		valueClass = pt.getActualTypeArguments()[1];
+		ResolvedFieldType fieldType = ContainerFunctions.getFieldType(parentObject.getClass(), fieldName);
+		if (fieldType == null) {
+			throw new NoSuchFieldException(fieldName);
+		}
+		
+		Class<?> mapClass = fieldType.getRawClass();
+		Type keyClass = fieldType.getKeyType();
+		Type valueClass = fieldType.getValueType();
 		
-		if (!keyClass.equals(String.class)) {
+		if (keyClass == null || !keyClass.equals(String.class)) {
 			throw new IllegalArgumentException("Map key type was not String");
 		}
 		
@@ -89,17 +87,10 @@ public class MapDeserialiser {
 	 */
 	public Map createMapFromPVStructure(PVStructure pvStructure, Class<?> mapClass, Type valueClass) throws InstantiationException, IllegalAccessException, NoSuchFieldException, SecurityException, IllegalArgumentException, InvocationTargetException {
 		
-		Map newMap;
-		
-		// If the declared class is just of the Map interface, then create a LinkedHashMap, else use the concrete type declared
-		if (mapClass.equals(Map.class)) {
-			newMap = new LinkedHashMap<>();
-		} else {
-			newMap = (Map) mapClass.newInstance();
-		}
-		
 		Structure structure = pvStructure.getStructure();
 		
+		Map newMap = deserialiser.getCollectionFactory().createMap(mapClass, structure.getFields().length);
+		
 		Field structureFields[] = structure.getFields();
 		
 		for (int i = 0; i < structureFields.length; i++) {
@@ -218,8 +209,8 @@ public class MapDeserialiser {
 	 * @throws SecurityException
 	 * @throws InstantiationException
 	 */
-	private static void setScalarArrayValue(Map newMap, String key, PVField pvField, Type valueClass) throws IllegalArgumentException, IllegalAccessException, InvocationTargetException, NoSuchFieldException, SecurityException, InstantiationException {
-		Object newObject = MapScalarArrayDeserialiser.deserialise(pvField, valueClass);
+	private void setScalarArrayValue(Map newMap, String key, PVField pvField, Type valueClass) throws IllegalArgumentException, IllegalAccessException, InvocationTargetException, NoSuchFieldException, SecurityException, InstantiationException {
+		Object newObject = MapScalarArrayDeserialiser.deserialise(pvField, valueClass, deserialiser.getCollectionFactory());
 		newMap.put(key, newObject);
 	}
 	
@@ -4,7 +4,6 @@ import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
 import java.util.Collection;
-import java.util.LinkedList;
 import java.util.List;
 
 import org.epics.pvdata.pv.PVBooleanArray;
@@ -15,15 +14,8 @@ import org.epics.pvdata.pv.PVIntArray;
 import org.epics.pvdata.pv.PVLongArray;
 import org.epics.pvdata.pv.PVShortArray;
 import org.epics.pvdata.pv.PVStringArray;
-import org.epics.pvdata.pv.BooleanArrayData;
-import org.epics.pvdata.pv.ByteArrayData;
-import org.epics.pvdata.pv.DoubleArrayData;
-import org.epics.pvdata.pv.FloatArrayData;
-import org.epics.pvdata.pv.IntArrayData;
-import org.epics.pvdata.pv.LongArrayData;
 import org.epics.pvdata.pv.PVField;
-import org.epics.pvdata.pv.ShortArrayData;
-import org.epics.pvdata.pv.StringArrayData;
+import org.epics.pvmarshaller.marshaller.api.ICollectionFactory;
 
 /**
  * Deserialises into a map scalar array object
@@ -32,6 +24,8 @@ import org.epics.pvdata.pv.StringArrayData;
  */
 public class MapScalarArrayDeserialiser {
 	
+	private static final ICollectionFactory defaultCollectionFactory = new DefaultCollectionFactory(new Instantiator());
+	
 	/**
 	 * Returns the value of the PVField 
 	 * @param pvField The field to deserialise
@@ -45,31 +39,48 @@ public class MapScalarArrayDeserialiser {
 	 * @throws InstantiationException
 	 */
 	public static Object deserialise(PVField pvField, Type valueClass) throws IllegalArgumentException, IllegalAccessException, InvocationTargetException, NoSuchFieldException, SecurityException, InstantiationException {
+		return deserialise(pvField, valueClass, defaultCollectionFactory);
+	}
+	
+	/**
+	 * Returns the value of the PVField, creating any list with the specified factory
+	 * @param pvField The field to deserialise
+	 * @param valueClass The type of container to deserialise into
+	 * @param collectionFactory The factory to create lists with
+	 * @return
+	 * @throws IllegalArgumentException
+	 * @throws IllegalAccessException
+	 * @throws InvocationTargetException
+	 * @throws NoSuchFieldException
+	 * @throws SecurityException
+	 * @throws InstantiationException
+	 */
+	public static Object deserialise(PVField pvField, Type valueClass, ICollectionFactory collectionFactory) throws IllegalArgumentException, IllegalAccessException, InvocationTargetException, NoSuchFieldException, SecurityException, InstantiationException {
 		
 		if (pvField instanceof PVIntArray) {
 			PVIntArray bpvField = (PVIntArray)pvField;
-			return setIntArrayValue(valueClass, bpvField);
+			return setIntArrayValue(valueClass, bpvField, collectionFactory);
 		} else if (pvField instanceof PVShortArray) {
 			PVShortArray bpvField = (PVShortArray)pvField;
-			return setShortArrayValue(valueClass, bpvField);
+			return setShortArrayValue(valueClass, bpvField, collectionFactory);
 		} else if (pvField instanceof PVLongArray) {
 			PVLongArray bpvField = (PVLongArray)pvField;
-			return setLongArrayValue(valueClass, bpvField);
+			return setLongArrayValue(valueClass, bpvField, collectionFactory);
 		} else if (pvField instanceof PVByteArray) {
 			PVByteArray bpvField = (PVByteArray)pvField;
-			return setByteArrayValue(valueClass, bpvField);
+			return setByteArrayValue(valueClass, bpvField, collectionFactory);
 		} else if (pvField instanceof PVBooleanArray) {
 			PVBooleanArray bpvField = (PVBooleanArray)pvField;
-			return setBooleanArrayValue(valueClass, bpvField);
+			return setBooleanArrayValue(valueClass, bpvField, collectionFactory);
 		} else if (pvField instanceof PVFloatArray) {
 			PVFloatArray bpvField = (PVFloatArray)pvField;
-			return setFloatArrayValue(valueClass, bpvField);
+			return setFloatArrayValue(valueClass, bpvField, collectionFactory);
 		} else if (pvField instanceof PVDoubleArray) {
 			PVDoubleArray bpvField = (PVDoubleArray)pvField;
-			return setDoubleArrayValue(valueClass, bpvField);
+			return setDoubleArrayValue(valueClass, bpvField, collectionFactory);
 		} else if (pvField instanceof PVStringArray) {
 			PVStringArray bpvField = (PVStringArray)pvField;
-			return setStringArrayValue(valueClass, bpvField);
+			return setStringArrayValue(valueClass, bpvField, collectionFactory);
 		} 
 		return null;
 	}
@@ -78,30 +89,17 @@ public class MapScalarArrayDeserialiser {
 	 * Creates a new int container from field values
 	 * @param type The type of container to create
 	 * @param bpvField The field values
+	 * @param collectionFactory The factory to create lists with
 	 * @return
 	 * @throws IllegalArgumentException
 	 * @throws IllegalAccessException
 	 * @throws InvocationTargetException
 	 * @throws InstantiationException
 	 */
-	private static Object setIntArrayValue(Type type, PVIntArray bpvField) throws IllegalArgumentException, IllegalAccessException, InvocationTargetException, InstantiationException {
-		
-		int dataArray[] = new int[bpvField.getLength()];
-		IntArrayData intArrayData = new IntArrayData();
+	private static Object setIntArrayValue(Type type, PVIntArray bpvField, ICollectionFactory collectionFactory) throws IllegalArgumentException, IllegalAccessException, InvocationTargetException, InstantiationException {
 		
-		int numGot = 0;
-		int totalGot = 0;
-		int gotArray[];
-		
-		while (totalGot < bpvField.getLength()) {
-			numGot = bpvField.get(numGot, bpvField.getLength() - numGot, intArrayData);
-			totalGot += numGot;
-			gotArray = intArrayData.data;
-			
-			for (int i = 0; i < numGot; i++) {
-				dataArray[intArrayData.offset + i] = gotArray[i];
-			}
-		}
+		// The array backing the PVArray is only read from unless it is returned as it is
+		int dataArray[] = ScalarArrayReader.toIntArray(bpvField, !type.equals(int[].class));
 		
 		if (isArray(type)) {
 			Class<?> componentType = getComponentType(type);
@@ -119,13 +117,7 @@ public class MapScalarArrayDeserialiser {
 				throw new IllegalArgumentException("Unknown setter type");
 			}
 		} else if (isList(type)) {
-			List<Integer> list;
-			Class<?> clazz = getListClass(type);
-			if (clazz.isInterface()) {
-				list = new LinkedList<Integer>();
-			} else {
-				list = (List) clazz.newInstance();
-			}
+			List<Integer> list = collectionFactory.createList(getListClass(type), Integer.class, dataArray.length);
 			
 			for (int integer : dataArray) {
 				list.add(integer);
@@ -140,30 +132,17 @@ public class MapScalarArrayDeserialiser {
 	 * Creates a new short container from field values
 	 * @param type The type of container to create
 	 * @param bpvField The field values
+	 * @param collectionFactory The factory to create lists with
 	 * @return
 	 * @throws IllegalArgumentException
 	 * @throws IllegalAccessException
 	 * @throws InvocationTargetException
 	 * @throws InstantiationException
 	 */
-	private static Object setShortArrayValue(Type type, PVShortArray bpvField) throws IllegalArgumentException, IllegalAccessException, InvocationTargetException, InstantiationException {
-		
-		short dataArray[] = new short[bpvField.getLength()];
-		ShortArrayData shortArrayData = new ShortArrayData();
+	private static Object setShortArrayValue(Type type, PVShortArray bpvField, ICollectionFactory collectionFactory) throws IllegalArgumentException, IllegalAccessException, InvocationTargetException, InstantiationException {
 		
-		int numGot = 0;
-		int totalGot = 0;
-		short gotArray[];
-		
-		while (totalGot < bpvField.getLength()) {
-			numGot = bpvField.get(numGot, bpvField.getLength() - numGot, shortArrayData);
-			totalGot += numGot;
-			gotArray = shortArrayData.data;
-			
-			for (int i = 0; i < numGot; i++) {
-				dataArray[shortArrayData.offset + i] = gotArray[i];
-			}
-		}
+		// The array backing the PVArray is only read from unless it is returned as it is
+		short dataArray[] = ScalarArrayReader.toShortArray(bpvField, !type.equals(short[].class));
 		
 		if (isArray(type)) {
 			Class<?> componentType = getComponentType(type);
@@ -181,15 +160,11 @@ public class MapScalarArrayDeserialiser {
 				throw new IllegalArgumentException("Unknown setter type");
 			}
 		} else if (isList(type)) {
-			List<Short> list;
-			Class<?> clazz = getListClass(type);
-			if (clazz.isInterface()) {
-				list = new LinkedList<Short>();
-			} else {
-				list = (List) clazz.newInstance();
-			}
-			for (short shortValue : dataArray) {
-				list.add(shortValue);
+			List<Short> list = collectionFactory.createList(getListClass(type), Short.class, dataArray.length);
+			if (!ScalarArrayReader.addToPrimitiveList(list, short.class, dataArray)) {
+				for (short shortValue : dataArray) {
+					list.add(shortValue);
+				}
 			}
 			return list;
 		} else {
@@ -201,30 +176,17 @@ public class MapScalarArrayDeserialiser {
 	 * Creates a new long container from field values
 	 * @param type The type of container to create
 	 * @param bpvField The field values
+	 * @param collectionFactory The factory to create lists with
 	 * @return
 	 * @throws IllegalArgumentException
 	 * @throws IllegalAccessException
 	 * @throws InvocationTargetException
 	 * @throws InstantiationException
 	 */
-	private static Object setLongArrayValue(Type type, PVLongArray bpvField) throws IllegalArgumentException, IllegalAccessException, InvocationTargetException, InstantiationException {
+	private static Object setLongArrayValue(Type type, PVLongArray bpvField, ICollectionFactory collectionFactory) throws IllegalArgumentException, IllegalAccessException, InvocationTargetException, InstantiationException {
 		
-		long dataArray[] = new long[bpvField.getLength()];
-		LongArrayData longArrayData = new LongArrayData();
-		
-		int numGot = 0;
-		int totalGot = 0;
-		long gotArray[];
-		
-		while (totalGot < bpvField.getLength()) {
-			numGot = bpvField.get(numGot, bpvField.getLength() - numGot, longArrayData);
-			totalGot += numGot;
-			gotArray = longArrayData.data;
-			
-			for (int i = 0; i < numGot; i++) {
-				dataArray[longArrayData.offset + i] = gotArray[i];
-			}
-		}
+		// The array backing the PVArray is only read from unless it is returned as it is
+		long dataArray[] = ScalarArrayReader.toLongArray(bpvField, !type.equals(long[].class));
 		
 		if (isArray(type)) {
 			Class<?> componentType = getComponentType(type);
@@ -242,15 +204,11 @@ public class MapScalarArrayDeserialiser {
 				throw new IllegalArgumentException("Unknown setter type");
 			}
 		} else if (isList(type)) {
-			List<Long> list;
-			Class<?> clazz = getListClass(type);
-			if (clazz.isInterface()) {
-				list = new LinkedList<Long>();
-			} else {
-				list = (List) clazz.newInstance();
-			}
-			for (long longValue : dataArray) {
-				list.add(longValue);
+			List<Long> list = collectionFactory.createList(getListClass(type), Long.class, dataArray.length);
+			if (!ScalarArrayReader.addToPrimitiveList(list, long.class, dataArray)) {
+				for (long longValue : dataArray) {
+					list.add(longValue);
+				}
 			}
 			return list;
 		} else {
@@ -262,30 +220,17 @@ public class MapScalarArrayDeserialiser {
 	 * Creates a new byte container from field values
 	 * @param type The type of container to create
 	 * @param bpvField The field values
+	 * @param collectionFactory The factory to create lists with
 	 * @return
 	 * @throws IllegalArgumentException
 	 * @throws IllegalAccessException
 	 * @throws InvocationTargetException
 	 * @throws InstantiationException
 	 */
-	private static Object setByteArrayValue(Type type, PVByteArray bpvField) throws IllegalArgumentException, IllegalAccessException, InvocationTargetException, InstantiationException {
-		
-		byte dataArray[] = new byte[bpvField.getLength()];
-		ByteArrayData byteArrayData = new ByteArrayData();
+	private static Object setByteArrayValue(Type type, PVByteArray bpvField, ICollectionFactory collectionFactory) throws IllegalArgumentException, IllegalAccessException, InvocationTargetException, InstantiationException {
 		
-		int numGot = 0;
-		int totalGot = 0;
-		byte gotArray[];
-		
-		while (totalGot < bpvField.getLength()) {
-			numGot = bpvField.get(numGot, bpvField.getLength() - numGot, byteArrayData);
-			totalGot += numGot;
-			gotArray = byteArrayData.data;
-			
-			for (int i = 0; i < numGot; i++) {
-				dataArray[byteArrayData.offset + i] = gotArray[i];
-			}
-		}
+		// The array backing the PVArray is only read from unless it is returned as it is
+		byte dataArray[] = ScalarArrayReader.toByteArray(bpvField, !type.equals(byte[].class));
 		
 		if (isArray(type)) {
 			Class<?> componentType = getComponentType(type);
@@ -303,15 +248,11 @@ public class MapScalarArrayDeserialiser {
 				throw new IllegalArgumentException("Unknown setter type");
 			}
 		} else if (isList(type)) {
-			List<Byte> list;
-			Class<?> clazz = getListClass(type);
-			if (clazz.isInterface()) {
-				list = new LinkedList<Byte>();
-			} else {
-				list = (List) clazz.newInstance();
-			}
-			for (byte byteValue : dataArray) {
-				list.add(byteValue);
+			List<Byte> list = collectionFactory.createList(getListClass(type), Byte.class, dataArray.length);
+			if (!ScalarArrayReader.addToPrimitiveList(list, byte.class, dataArray)) {
+				for (byte byteValue : dataArray) {
+					list.add(byteValue);
+				}
 			}
 			return list;
 		} else {
@@ -323,30 +264,17 @@ public class MapScalarArrayDeserialiser {
 	 * Creates a new boolean container from field values
 	 * @param type The type of container to create
 	 * @param bpvField The field values
+	 * @param collectionFactory The factory to create lists with
 	 * @return
 	 * @throws IllegalArgumentException
 	 * @throws IllegalAccessException
 	 * @throws InvocationTargetException
 	 * @throws InstantiationException
 	 */
-	private static Object setBooleanArrayValue(Type type, PVBooleanArray bpvField) throws IllegalArgumentException, IllegalAccessException, InvocationTargetException, InstantiationException {
-		
-		boolean dataArray[] = new boolean[bpvField.getLength()];
-		BooleanArrayData booleanArrayData = new BooleanArrayData();
+	private static Object setBooleanArrayValue(Type type, PVBooleanArray bpvField, ICollectionFactory collectionFactory) throws IllegalArgumentException, IllegalAccessException, InvocationTargetException, InstantiationException {
 		
-		int numGot = 0;
-		int totalGot = 0;
-		boolean gotArray[];
-		
-		while (totalGot < bpvField.getLength()) {
-			numGot = bpvField.get(numGot, bpvField.getLength() - numGot, booleanArrayData);
-			totalGot += numGot;
-			gotArray = booleanArrayData.data;
-			
-			for (int i = 0; i < numGot; i++) {
-				dataArray[booleanArrayData.offset + i] = gotArray[i];
-			}
-		}
+		// The array backing the PVArray is only read from unless it is returned as it is
+		boolean dataArray[] = ScalarArrayReader.toBooleanArray(bpvField, !type.equals(boolean[].class));
 		
 		if (isArray(type)) {
 			Class<?> componentType = getComponentType(type);
@@ -364,15 +292,11 @@ public class MapScalarArrayDeserialiser {
 				throw new IllegalArgumentException("Unknown setter type");
 			}
 		} else if (isList(type)) {
-			List<Boolean> list;
-			Class<?> clazz = getListClass(type);
-			if (clazz.isInterface()) {
-				list = new LinkedList<Boolean>();
-			} else {
-				list = (List) clazz.newInstance();
-			}
-			for (boolean booleanValue : dataArray) {
-				list.add(booleanValue);
+			List<Boolean> list = collectionFactory.createList(getListClass(type), Boolean.class, dataArray.length);
+			if (!ScalarArrayReader.addToPrimitiveList(list, boolean.class, dataArray)) {
+				for (boolean booleanValue : dataArray) {
+					list.add(booleanValue);
+				}
 			}
 			return list;
 		} else {
@@ -384,31 +308,18 @@ public class MapScalarArrayDeserialiser {
 	 * Creates a new float container from field values
 	 * @param type The type of container to create
 	 * @param bpvField The field values
+	 * @param collectionFactory The factory to create lists with
 	 * @return
 	 * @throws IllegalArgumentException
 	 * @throws IllegalAccessException
 	 * @throws InvocationTargetException
 	 * @throws InstantiationException
 	 */
-	private static Object setFloatArrayValue(Type type, PVFloatArray bpvField) throws IllegalArgumentException, IllegalAccessException, InvocationTargetException, InstantiationException {
+	private static Object setFloatArrayValue(Type type, PVFloatArray bpvField, ICollectionFactory collectionFactory) throws IllegalArgumentException, IllegalAccessException, InvocationTargetException, InstantiationException {
 		
-		float dataArray[] = new float[bpvField.getLength()];
-		FloatArrayData floatArrayData = new FloatArrayData();
+		// The array backing the PVArray is only read from unless it is returned as it is
+		float dataArray[] = ScalarArrayReader.toFloatArray(bpvField, !type.equals(float[].class));
 		
-		int numGot = 0;
-		int totalGot = 0;
-		float gotArray[];
-		
-		while (totalGot < bpvField.getLength()) {
-			numGot = bpvField.get(numGot, bpvField.getLength() - numGot, floatArrayData);
-			totalGot += numGot;
-			gotArray = floatArrayData.data;
-			
-			for (int i = 0; i < numGot; i++) {
-				dataArray[floatArrayData.offset + i] = gotArray[i];
-			}
-		}
-
 		if (isArray(type)) {
 			Class<?> componentType = getComponentType(type);
 			
@@ -425,15 +336,11 @@ public class MapScalarArrayDeserialiser {
 				throw new IllegalArgumentException("Unknown setter type");
 			}
 		} else if (isList(type)) {
-			List<Float> list;
-			Class<?> clazz = getListClass(type);
-			if (clazz.isInterface()) {
-				list = new LinkedList<Float>();
-			} else {
-				list = (List) clazz.newInstance();
-			}
-			for (float floatValue : dataArray) {
-				list.add(floatValue);
+			List<Float> list = collectionFactory.createList(getListClass(type), Float.class, dataArray.length);
+			if (!ScalarArrayReader.addToPrimitiveList(list, float.class, dataArray)) {
+				for (float floatValue : dataArray) {
+					list.add(floatValue);
+				}
 			}
 			return list;
 		} else {
@@ -445,30 +352,17 @@ public class MapScalarArrayDeserialiser {
 	 * Creates a new double container from field values
 	 * @param type The type of container to create
 	 * @param bpvField The field values
+	 * @param collectionFactory The factory to create lists with
 	 * @return
 	 * @throws IllegalArgumentException
 	 * @throws IllegalAccessException
 	 * @throws InvocationTargetException
 	 * @throws InstantiationException
 	 */
-	private static Object setDoubleArrayValue(Type type, PVDoubleArray bpvField) throws IllegalArgumentException, IllegalAccessException, InvocationTargetException, InstantiationException {
-		
-		double dataArray[] = new double[bpvField.getLength()];
-		DoubleArrayData doubleArrayData = new DoubleArrayData();
+	private static Object setDoubleArrayValue(Type type, PVDoubleArray bpvField, ICollectionFactory collectionFactory) throws IllegalArgumentException, IllegalAccessException, InvocationTargetException, InstantiationException {
 		
-		int numGot = 0;
-		int totalGot = 0;
-		double gotArray[];
-		
-		while (totalGot < bpvField.getLength()) {
-			numGot = bpvField.get(numGot, bpvField.getLength() - numGot, doubleArrayData);
-			totalGot += numGot;
-			gotArray = doubleArrayData.data;
-			
-			for (int i = 0; i < numGot; i++) {
-				dataArray[doubleArrayData.offset + i] = gotArray[i];
-			}
-		}
+		// The array backing the PVArray is only read from unless it is returned as it is
+		double dataArray[] = ScalarArrayReader.toDoubleArray(bpvField, !type.equals(double[].class));
 		
 		if (isArray(type)) {
 			Class<?> componentType = getComponentType(type);
@@ -486,15 +380,11 @@ public class MapScalarArrayDeserialiser {
 				throw new IllegalArgumentException("Unknown setter type");
 			}
 		} else if (isList(type)) {
-			List<Double> list;
-			Class<?> clazz = getListClass(type);
-			if (clazz.isInterface()) {
-				list = new LinkedList<Double>();
-			} else {
-				list = (List) clazz.newInstance();
-			}
-			for (double doubleValue : dataArray) {
-				list.add(doubleValue);
+			List<Double> list = collectionFactory.createList(getListClass(type), Double.class, dataArray.length);
+			if (!ScalarArrayReader.addToPrimitiveList(list, double.class, dataArray)) {
+				for (double doubleValue : dataArray) {
+					list.add(doubleValue);
+				}
 			}
 			return list;
 		} else {
@@ -506,30 +396,17 @@ public class MapScalarArrayDeserialiser {
 	 * Creates a new string or char container from field values
 	 * @param type The type of container to create
 	 * @param bpvField The field values
+	 * @param collectionFactory The factory to create lists with
 	 * @return
 	 * @throws IllegalArgumentException
 	 * @throws IllegalAccessException
 	 * @throws InvocationTargetException
 	 * @throws InstantiationException
 	 */
-	private static Object setStringArrayValue(Type type, PVStringArray bpvField) throws IllegalArgumentException, IllegalAccessException, InvocationTargetException, NoSuchFieldException, SecurityException, InstantiationException {
+	private static Object setStringArrayValue(Type type, PVStringArray bpvField, ICollectionFactory collectionFactory) throws IllegalArgumentException, IllegalAccessException, InvocationTargetException, NoSuchFieldException, SecurityException, InstantiationException {
 		
-		String dataArray[] = new String[bpvField.getLength()];
-		StringArrayData StringArrayData = new StringArrayData();
-		
-		int numGot = 0;
-		int totalGot = 0;
-		String gotArray[];
-		
-		while (totalGot < bpvField.getLength()) {
-			numGot = bpvField.get(numGot, bpvField.getLength() - numGot, StringArrayData);
-			totalGot += numGot;
-			gotArray = StringArrayData.data;
-			
-			for (int i = 0; i < numGot; i++) {
-				dataArray[StringArrayData.offset + i] = gotArray[i];
-			}
-		}
+		// The array backing the PVArray is only read from unless it is returned as it is
+		String dataArray[] = ScalarArrayReader.toStringArray(bpvField, !type.equals(String[].class));
 		
 		if (isArray(type)) {
 			Class<?> componentType = getComponentType(type);
@@ -558,25 +435,13 @@ public class MapScalarArrayDeserialiser {
             Class<?> listClass = getListComponentClass(type);
             
             if (listClass.equals(String.class)) {
-    			List<String> list;
-    			Class<?> clazz = getListClass(type);
-    			if (clazz.isInterface()) {
-    				list = new LinkedList<String>();
-    			} else {
-    				list = (List) clazz.newInstance();
-    			}
+    			List<String> list = collectionFactory.createList(getListClass(type), String.class, dataArray.length);
 				for (String StringValue : dataArray) {
 					list.add(StringValue);
 				}
 				return list;
 			} else if (listClass.equals(Character.class)) {
-				List<Character> list;
-				Class<?> clazz = getListClass(type);
-				if (clazz.isInterface()) {
-					list = new LinkedList<Character>();
-				} else {
-					list = (List) clazz.newInstance();
-				}
+				List<Character> list = collectionFactory.createList(getListClass(type), Character.class, dataArray.length);
 				for (String stringValue : dataArray) {
 					if (stringValue.length() > 1) {
 						throw new IllegalArgumentException(bpvField.getFieldName() + " has too many characters for a single char");
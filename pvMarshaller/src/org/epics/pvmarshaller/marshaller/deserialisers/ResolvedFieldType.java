@@ -0,0 +1,126 @@
+package org.epics.pvmarshaller.marshaller.deserialisers;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.Map;
+
+/**
+ * The declared type of a field with its generic type arguments resolved, so that containers can be deserialised
+ * without inspecting the field again for each element
+ * @author Matt Taylor
+ *
+ */
+public class ResolvedFieldType {
+
+	private final Field field;
+	private final Class<?> rawClass;
+	private final Type componentType;
+	private final Class<?> componentClass;
+	private final Type keyType;
+	private final Type valueType;
+
+	/**
+	 * Constructor
+	 * @param field The field to resolve the type of
+	 */
+	ResolvedFieldType(Field field) {
+		this.field = field;
+		this.rawClass = field.getType();
+
+		Type genericType = field.getGenericType();
+		Type[] typeArguments = genericType instanceof ParameterizedType ? ((ParameterizedType) genericType).getActualTypeArguments() : new Type[0];
+
+		if (rawClass.isArray()) {
+			componentType = rawClass.getComponentType();
+		} else if (typeArguments.length > 0) {
+			componentType = typeArguments[0];
+		} else {
+			componentType = null;
+		}
+		componentClass = getRawClass(componentType);
+
+		if (Map.class.isAssignableFrom(rawClass) && typeArguments.length == 2) {
+			// The key and value of the map itself
+			keyType = typeArguments[0];
+			valueType = typeArguments[1];
+		} else if (componentType instanceof ParameterizedType && ((ParameterizedType) componentType).getActualTypeArguments().length == 2) {
+			// The key and value of the maps in a container of maps
+			keyType = ((ParameterizedType) componentType).getActualTypeArguments()[0];
+			valueType = ((ParameterizedType) componentType).getActualTypeArguments()[1];
+		} else {
+			keyType = null;
+			valueType = null;
+		}
+	}
+
+	/**
+	 * Gets the field
+	 * @return
+	 */
+	public Field getField() {
+		return field;
+	}
+
+	/**
+	 * Gets the declared class of the field
+	 * @return
+	 */
+	public Class<?> getRawClass() {
+		return rawClass;
+	}
+
+	/**
+	 * Gets the generic type of the field
+	 * @return
+	 */
+	public Type getGenericType() {
+		return field.getGenericType();
+	}
+
+	/**
+	 * Gets the component type of an array, or the first type argument of a generic field such as a list
+	 * @return The type or null if there isn't one
+	 */
+	public Type getComponentType() {
+		return componentType;
+	}
+
+	/**
+	 * Gets the raw class of the component type
+	 * @return The class or null if there is no component type or it is not a class or parameterised type
+	 */
+	public Class<?> getComponentClass() {
+		return componentClass;
+	}
+
+	/**
+	 * Gets the key type of a map field, or of the maps contained in a container field
+	 * @return The type or null if the field is not a map or container of maps
+	 */
+	public Type getKeyType() {
+		return keyType;
+	}
+
+	/**
+	 * Gets the value type of a map field, or of the maps contained in a container field
+	 * @return The type or null if the field is not a map or container of maps
+	 */
+	public Type getValueType() {
+		return valueType;
+	}
+
+	/**
+	 * Gets the raw class of a type
+	 * @param type The type
+	 * @return The class or null if the type is not a class or parameterised type
+	 */
+	private static Class<?> getRawClass(Type type) {
+		if (type instanceof Class) {
+			return (Class<?>) type;
+		} else if (type instanceof ParameterizedType) {
+			return (Class<?>) ((ParameterizedType) type).getRawType();
+		}
+		return null;
+	}
+}
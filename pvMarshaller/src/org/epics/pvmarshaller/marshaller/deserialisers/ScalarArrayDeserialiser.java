@@ -1,19 +1,9 @@
 package org.epics.pvmarshaller.marshaller.deserialisers;
 
 import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
-import java.lang.reflect.Parameter;
-import java.lang.reflect.ParameterizedType;
 import java.util.Collection;
-import java.util.LinkedList;
 import java.util.List;
 
-import org.epics.pvdata.pv.BooleanArrayData;
-import org.epics.pvdata.pv.ByteArrayData;
-import org.epics.pvdata.pv.DoubleArrayData;
-import org.epics.pvdata.pv.FloatArrayData;
-import org.epics.pvdata.pv.IntArrayData;
-import org.epics.pvdata.pv.LongArrayData;
 import org.epics.pvdata.pv.PVBooleanArray;
 import org.epics.pvdata.pv.PVByteArray;
 import org.epics.pvdata.pv.PVDoubleArray;
@@ -27,8 +17,7 @@ import org.epics.pvdata.pv.PVUByteArray;
 import org.epics.pvdata.pv.PVUIntArray;
 import org.epics.pvdata.pv.PVULongArray;
 import org.epics.pvdata.pv.PVUShortArray;
-import org.epics.pvdata.pv.ShortArrayData;
-import org.epics.pvdata.pv.StringArrayData;
+import org.epics.pvmarshaller.marshaller.accessors.Setter;
 
 /**
  * Deserialises a Scalar Array
@@ -110,58 +99,38 @@ public class ScalarArrayDeserialiser {
 	 */
 	private void setIntArrayValue(Object target, String variableName, PVIntArray bpvField) throws IllegalArgumentException, IllegalAccessException, InvocationTargetException, InstantiationException {
 		
-		int dataArray[] = new int[bpvField.getLength()];
-		IntArrayData intArrayData = new IntArrayData();
+		Class<?> setterType = deserialiser.findSetterType(target, variableName);
 		
-		int numGot = 0;
-		int totalGot = 0;
-		int gotArray[];
-		
-		while (totalGot < bpvField.getLength()) {
-			numGot = bpvField.get(totalGot, bpvField.getLength() - totalGot, intArrayData);
-			totalGot += numGot;
-			gotArray = intArrayData.data;
-			
-			for (int i = 0; i < numGot; i++) {
-				dataArray[intArrayData.offset + i] = gotArray[i];
-			}
-		}
-		
-		Method method = deserialiser.findSetter(target, variableName);
-		
-		if (method == null) {
+		if (setterType == null) {
 			return;
 		}
+		Setter setter = deserialiser.findSetterAccessor(target, variableName);
 		
-		Parameter parameters[] = method.getParameters();
+		// The array backing the PVArray is only read from unless it is set on the object, which requires arrays to be shared
+		int dataArray[] = ScalarArrayReader.toIntArray(bpvField, deserialiser.isShareArrays() || !setterType.equals(int[].class));
 		
-		if (parameters[0].getType().isArray()) {
-			Class<?> componentType = parameters[0].getType().getComponentType();
+		if (setterType.isArray()) {
+			Class<?> componentType = setterType.getComponentType();
 			
 			if (componentType.equals(int.class)) {
-				method.invoke(target, dataArray);
+				setter.set(target, dataArray);
 			} else if (componentType.equals(Integer.class)) {
 				Integer integerArray[] = new Integer[dataArray.length];
 				
 				for (int i = 0; i < dataArray.length; i++) {
 					integerArray[i] = dataArray[i];
 				}
-				method.invoke(target, (Object)integerArray);
+				setter.set(target, (Object)integerArray);
 			} else {
 				throw new IllegalArgumentException("Unknown setter type");
 			}
-		} else if (List.class.isAssignableFrom(parameters[0].getType()) || parameters[0].getType().equals(Collection.class)) {
-			List<Integer> list;
-			if (parameters[0].getType().isInterface()) {
-				list = new LinkedList<Integer>();
-			} else {
-				list = (List) parameters[0].getType().newInstance();
-			}
+		} else if (List.class.isAssignableFrom(setterType) || setterType.equals(Collection.class)) {
+			List<Integer> list = deserialiser.getCollectionFactory().createList(setterType, Integer.class, dataArray.length);
 			
 			for (int integer : dataArray) {
 				list.add(integer);
 			}
-			method.invoke(target, list);
+			setter.set(target, list);
 		} else {
 			throw new IllegalArgumentException("Unsupported container type");
 		}		
@@ -179,57 +148,39 @@ public class ScalarArrayDeserialiser {
 	 */
 	private void setShortArrayValue(Object target, String variableName, PVShortArray bpvField) throws IllegalArgumentException, IllegalAccessException, InvocationTargetException, InstantiationException {
 		
-		short dataArray[] = new short[bpvField.getLength()];
-		ShortArrayData shortArrayData = new ShortArrayData();
-		
-		int numGot = 0;
-		int totalGot = 0;
-		short gotArray[];
-		
-		while (totalGot < bpvField.getLength()) {
-			numGot = bpvField.get(totalGot, bpvField.getLength() - totalGot, shortArrayData);
-			totalGot += numGot;
-			gotArray = shortArrayData.data;
-			
-			for (int i = 0; i < numGot; i++) {
-				dataArray[shortArrayData.offset + i] = gotArray[i];
-			}
-		}
+		Class<?> setterType = deserialiser.findSetterType(target, variableName);
 		
-		Method method = deserialiser.findSetter(target, variableName);
-		
-		if (method == null) {
+		if (setterType == null) {
 			return;
 		}
+		Setter setter = deserialiser.findSetterAccessor(target, variableName);
 		
-		Parameter parameters[] = method.getParameters();
+		// The array backing the PVArray is only read from unless it is set on the object, which requires arrays to be shared
+		short dataArray[] = ScalarArrayReader.toShortArray(bpvField, deserialiser.isShareArrays() || !setterType.equals(short[].class));
 		
-		if (parameters[0].getType().isArray()) {
-			Class<?> componentType = parameters[0].getType().getComponentType();
+		if (setterType.isArray()) {
+			Class<?> componentType = setterType.getComponentType();
 			
 			if (componentType.equals(short.class)) {
-				method.invoke(target, dataArray);
+				setter.set(target, dataArray);
 			} else if (componentType.equals(Short.class)) {
 				Short shortArray[] = new Short[dataArray.length];
 				
 				for (int i = 0; i < dataArray.length; i++) {
 					shortArray[i] = dataArray[i];
 				}
-				method.invoke(target, (Object)shortArray);
+				setter.set(target, (Object)shortArray);
 			} else {
 				throw new IllegalArgumentException("Unknown setter type");
 			}
-		} else if (List.class.isAssignableFrom(parameters[0].getType()) || parameters[0].getType().equals(Collection.class)) {
-			List<Short> list;
-			if (parameters[0].getType().isInterface()) {
-				list = new LinkedList<Short>();
-			} else {
-				list = (List) parameters[0].getType().newInstance();
-			}
-			for (short shortValue : dataArray) {
-				list.add(shortValue);
+		} else if (List.class.isAssignableFrom(setterType) || setterType.equals(Collection.class)) {
+			List<Short> list = deserialiser.getCollectionFactory().createList(setterType, Short.class, dataArray.length);
+			if (!ScalarArrayReader.addToPrimitiveList(list, short.class, dataArray)) {
+				for (short shortValue : dataArray) {
+					list.add(shortValue);
+				}
 			}
-			method.invoke(target, list);
+			setter.set(target, list);
 		} else {
 			throw new IllegalArgumentException("Unsupported container type");
 		}		
@@ -247,57 +198,39 @@ public class ScalarArrayDeserialiser {
 	 */
 	private void setLongArrayValue(Object target, String variableName, PVLongArray bpvField) throws IllegalArgumentException, IllegalAccessException, InvocationTargetException, InstantiationException {
 		
-		long dataArray[] = new long[bpvField.getLength()];
-		LongArrayData longArrayData = new LongArrayData();
-		
-		int numGot = 0;
-		int totalGot = 0;
-		long gotArray[];
+		Class<?> setterType = deserialiser.findSetterType(target, variableName);
 		
-		while (totalGot < bpvField.getLength()) {
-			numGot = bpvField.get(totalGot, bpvField.getLength() - totalGot, longArrayData);
-			totalGot += numGot;
-			gotArray = longArrayData.data;
-			
-			for (int i = 0; i < numGot; i++) {
-				dataArray[longArrayData.offset + i] = gotArray[i];
-			}
-		}
-		
-		Method method = deserialiser.findSetter(target, variableName);
-		
-		if (method == null) {
+		if (setterType == null) {
 			return;
 		}
+		Setter setter = deserialiser.findSetterAccessor(target, variableName);
 		
-		Parameter parameters[] = method.getParameters();
+		// The array backing the PVArray is only read from unless it is set on the object, which requires arrays to be shared
+		long dataArray[] = ScalarArrayReader.toLongArray(bpvField, deserialiser.isShareArrays() || !setterType.equals(long[].class));
 		
-		if (parameters[0].getType().isArray()) {
-			Class<?> componentType = parameters[0].getType().getComponentType();
+		if (setterType.isArray()) {
+			Class<?> componentType = setterType.getComponentType();
 			
 			if (componentType.equals(long.class)) {
-				method.invoke(target, dataArray);
+				setter.set(target, dataArray);
 			} else if (componentType.equals(Long.class)) {
 				Long longArray[] = new Long[dataArray.length];
 				
 				for (int i = 0; i < dataArray.length; i++) {
 					longArray[i] = dataArray[i];
 				}
-				method.invoke(target, (Object)longArray);
+				setter.set(target, (Object)longArray);
 			} else {
 				throw new IllegalArgumentException("Unknown setter type");
 			}
-		} else if (List.class.isAssignableFrom(parameters[0].getType()) || parameters[0].getType().equals(Collection.class)) {
-			List<Long> list;
-			if (parameters[0].getType().isInterface()) {
-				list = new LinkedList<Long>();
-			} else {
-				list = (List) parameters[0].getType().newInstance();
-			}
-			for (long longValue : dataArray) {
-				list.add(longValue);
+		} else if (List.class.isAssignableFrom(setterType) || setterType.equals(Collection.class)) {
+			List<Long> list = deserialiser.getCollectionFactory().createList(setterType, Long.class, dataArray.length);
+			if (!ScalarArrayReader.addToPrimitiveList(list, long.class, dataArray)) {
+				for (long longValue : dataArray) {
+					list.add(longValue);
+				}
 			}
-			method.invoke(target, list);
+			setter.set(target, list);
 		} else {
 			throw new IllegalArgumentException("Unsupported container type");
 		}		
@@ -315,57 +248,39 @@ public class ScalarArrayDeserialiser {
 	 */
 	private void setByteArrayValue(Object target, String variableName, PVByteArray bpvField) throws IllegalArgumentException, IllegalAccessException, InvocationTargetException, InstantiationException {
 		
-		byte dataArray[] = new byte[bpvField.getLength()];
-		ByteArrayData byteArrayData = new ByteArrayData();
-		
-		int numGot = 0;
-		int totalGot = 0;
-		byte gotArray[];
+		Class<?> setterType = deserialiser.findSetterType(target, variableName);
 		
-		while (totalGot < bpvField.getLength()) {
-			numGot = bpvField.get(totalGot, bpvField.getLength() - totalGot, byteArrayData);
-			totalGot += numGot;
-			gotArray = byteArrayData.data;
-			
-			for (int i = 0; i < numGot; i++) {
-				dataArray[byteArrayData.offset + i] = gotArray[i];
-			}
-		}
-		
-		Method method = deserialiser.findSetter(target, variableName);
-		
-		if (method == null) {
+		if (setterType == null) {
 			return;
 		}
+		Setter setter = deserialiser.findSetterAccessor(target, variableName);
 		
-		Parameter parameters[] = method.getParameters();
+		// The array backing the PVArray is only read from unless it is set on the object, which requires arrays to be shared
+		byte dataArray[] = ScalarArrayReader.toByteArray(bpvField, deserialiser.isShareArrays() || !setterType.equals(byte[].class));
 		
-		if (parameters[0].getType().isArray()) {
-			Class<?> componentType = parameters[0].getType().getComponentType();
+		if (setterType.isArray()) {
+			Class<?> componentType = setterType.getComponentType();
 			
 			if (componentType.equals(byte.class)) {
-				method.invoke(target, dataArray);
+				setter.set(target, dataArray);
 			} else if (componentType.equals(Byte.class)) {
 				Byte byteArray[] = new Byte[dataArray.length];
 				
 				for (int i = 0; i < dataArray.length; i++) {
 					byteArray[i] = dataArray[i];
 				}
-				method.invoke(target, (Object)byteArray);
+				setter.set(target, (Object)byteArray);
 			} else {
 				throw new IllegalArgumentException("Unknown setter type");
 			}
-		} else if (List.class.isAssignableFrom(parameters[0].getType()) || parameters[0].getType().equals(Collection.class)) {
-			List<Byte> list;
-			if (parameters[0].getType().isInterface()) {
-				list = new LinkedList<Byte>();
-			} else {
-				list = (List) parameters[0].getType().newInstance();
-			}
-			for (byte byteValue : dataArray) {
-				list.add(byteValue);
+		} else if (List.class.isAssignableFrom(setterType) || setterType.equals(Collection.class)) {
+			List<Byte> list = deserialiser.getCollectionFactory().createList(setterType, Byte.class, dataArray.length);
+			if (!ScalarArrayReader.addToPrimitiveList(list, byte.class, dataArray)) {
+				for (byte byteValue : dataArray) {
+					list.add(byteValue);
+				}
 			}
-			method.invoke(target, list);
+			setter.set(target, list);
 		} else {
 			throw new IllegalArgumentException("Unsupported container type");
 		}		
@@ -383,57 +298,39 @@ public class ScalarArrayDeserialiser {
 	 */
 	private void setBooleanArrayValue(Object target, String variableName, PVBooleanArray bpvField) throws IllegalArgumentException, IllegalAccessException, InvocationTargetException, InstantiationException {
 		
-		boolean dataArray[] = new boolean[bpvField.getLength()];
-		BooleanArrayData booleanArrayData = new BooleanArrayData();
+		Class<?> setterType = deserialiser.findSetterType(target, variableName);
 		
-		int numGot = 0;
-		int totalGot = 0;
-		boolean gotArray[];
-		
-		while (totalGot < bpvField.getLength()) {
-			numGot = bpvField.get(totalGot, bpvField.getLength() - totalGot, booleanArrayData);
-			totalGot += numGot;
-			gotArray = booleanArrayData.data;
-			
-			for (int i = 0; i < numGot; i++) {
-				dataArray[booleanArrayData.offset + i] = gotArray[i];
-			}
-		}
-		
-		Method method = deserialiser.findSetter(target, variableName);
-		
-		if (method == null) {
+		if (setterType == null) {
 			return;
 		}
+		Setter setter = deserialiser.findSetterAccessor(target, variableName);
 		
-		Parameter parameters[] = method.getParameters();
+		// The array backing the PVArray is only read from unless it is set on the object, which requires arrays to be shared
+		boolean dataArray[] = ScalarArrayReader.toBooleanArray(bpvField, deserialiser.isShareArrays() || !setterType.equals(boolean[].class));
 		
-		if (parameters[0].getType().isArray()) {
-			Class<?> componentType = parameters[0].getType().getComponentType();
+		if (setterType.isArray()) {
+			Class<?> componentType = setterType.getComponentType();
 			
 			if (componentType.equals(boolean.class)) {
-				method.invoke(target, dataArray);
+				setter.set(target, dataArray);
 			} else if (componentType.equals(Boolean.class)) {
 				Boolean booleanArray[] = new Boolean[dataArray.length];
 				
 				for (int i = 0; i < dataArray.length; i++) {
 					booleanArray[i] = dataArray[i];
 				}
-				method.invoke(target, (Object)booleanArray);
+				setter.set(target, (Object)booleanArray);
 			} else {
 				throw new IllegalArgumentException("Unknown setter type");
 			}
-		} else if (List.class.isAssignableFrom(parameters[0].getType()) || parameters[0].getType().equals(Collection.class)) {
-			List<Boolean> list;
-			if (parameters[0].getType().isInterface()) {
-				list = new LinkedList<Boolean>();
-			} else {
-				list = (List) parameters[0].getType().newInstance();
-			}
-			for (boolean booleanValue : dataArray) {
-				list.add(booleanValue);
+		} else if (List.class.isAssignableFrom(setterType) || setterType.equals(Collection.class)) {
+			List<Boolean> list = deserialiser.getCollectionFactory().createList(setterType, Boolean.class, dataArray.length);
+			if (!ScalarArrayReader.addToPrimitiveList(list, boolean.class, dataArray)) {
+				for (boolean booleanValue : dataArray) {
+					list.add(booleanValue);
+				}
 			}
-			method.invoke(target, list);
+			setter.set(target, list);
 		} else {
 			throw new IllegalArgumentException("Unsupported container type");
 		}		
@@ -451,57 +348,39 @@ public class ScalarArrayDeserialiser {
 	 */
 	private void setFloatArrayValue(Object target, String variableName, PVFloatArray bpvField) throws IllegalArgumentException, IllegalAccessException, InvocationTargetException, InstantiationException {
 		
-		float dataArray[] = new float[bpvField.getLength()];
-		FloatArrayData floatArrayData = new FloatArrayData();
-		
-		int numGot = 0;
-		int totalGot = 0;
-		float gotArray[];
-		
-		while (totalGot < bpvField.getLength()) {
-			numGot = bpvField.get(totalGot, bpvField.getLength() - totalGot, floatArrayData);
-			totalGot += numGot;
-			gotArray = floatArrayData.data;
-			
-			for (int i = 0; i < numGot; i++) {
-				dataArray[floatArrayData.offset + i] = gotArray[i];
-			}
-		}
+		Class<?> setterType = deserialiser.findSetterType(target, variableName);
 		
-		Method method = deserialiser.findSetter(target, variableName);
-		
-		if (method == null) {
+		if (setterType == null) {
 			return;
 		}
+		Setter setter = deserialiser.findSetterAccessor(target, variableName);
 		
-		Parameter parameters[] = method.getParameters();
+		// The array backing the PVArray is only read from unless it is set on the object, which requires arrays to be shared
+		float dataArray[] = ScalarArrayReader.toFloatArray(bpvField, deserialiser.isShareArrays() || !setterType.equals(float[].class));
 		
-		if (parameters[0].getType().isArray()) {
-			Class<?> componentType = parameters[0].getType().getComponentType();
+		if (setterType.isArray()) {
+			Class<?> componentType = setterType.getComponentType();
 			
 			if (componentType.equals(float.class)) {
-				method.invoke(target, dataArray);
+				setter.set(target, dataArray);
 			} else if (componentType.equals(Float.class)) {
 				Float floatArray[] = new Float[dataArray.length];
 				
 				for (int i = 0; i < dataArray.length; i++) {
 					floatArray[i] = dataArray[i];
 				}
-				method.invoke(target, (Object)floatArray);
+				setter.set(target, (Object)floatArray);
 			} else {
 				throw new IllegalArgumentException("Unknown setter type");
 			}
-		} else if (List.class.isAssignableFrom(parameters[0].getType()) || parameters[0].getType().equals(Collection.class)) {
-			List<Float> list;
-			if (parameters[0].getType().isInterface()) {
-				list = new LinkedList<Float>();
-			} else {
-				list = (List) parameters[0].getType().newInstance();
-			}
-			for (float floatValue : dataArray) {
-				list.add(floatValue);
+		} else if (List.class.isAssignableFrom(setterType) || setterType.equals(Collection.class)) {
+			List<Float> list = deserialiser.getCollectionFactory().createList(setterType, Float.class, dataArray.length);
+			if (!ScalarArrayReader.addToPrimitiveList(list, float.class, dataArray)) {
+				for (float floatValue : dataArray) {
+					list.add(floatValue);
+				}
 			}
-			method.invoke(target, list);
+			setter.set(target, list);
 		} else {
 			throw new IllegalArgumentException("Unsupported container type");
 		}		
@@ -519,57 +398,39 @@ public class ScalarArrayDeserialiser {
 	 */
 	private void setDoubleArrayValue(Object target, String variableName, PVDoubleArray bpvField) throws IllegalArgumentException, IllegalAccessException, InvocationTargetException, InstantiationException {
 		
-		double dataArray[] = new double[bpvField.getLength()];
-		DoubleArrayData doubleArrayData = new DoubleArrayData();
-		
-		int numGot = 0;
-		int totalGot = 0;
-		double gotArray[];
-		
-		while (totalGot < bpvField.getLength()) {
-			numGot = bpvField.get(totalGot, bpvField.getLength() - totalGot, doubleArrayData);
-			totalGot += numGot;
-			gotArray = doubleArrayData.data;
-			
-			for (int i = 0; i < numGot; i++) {
-				dataArray[doubleArrayData.offset + i] = gotArray[i];
-			}
-		}
-		
-		Method method = deserialiser.findSetter(target, variableName);
+		Class<?> setterType = deserialiser.findSetterType(target, variableName);
 		
-		if (method == null) {
+		if (setterType == null) {
 			return;
 		}
+		Setter setter = deserialiser.findSetterAccessor(target, variableName);
 		
-		Parameter parameters[] = method.getParameters();
+		// The array backing the PVArray is only read from unless it is set on the object, which requires arrays to be shared
+		double dataArray[] = ScalarArrayReader.toDoubleArray(bpvField, deserialiser.isShareArrays() || !setterType.equals(double[].class));
 		
-		if (parameters[0].getType().isArray()) {
-			Class<?> componentType = parameters[0].getType().getComponentType();
+		if (setterType.isArray()) {
+			Class<?> componentType = setterType.getComponentType();
 			
 			if (componentType.equals(double.class)) {
-				method.invoke(target, dataArray);
+				setter.set(target, dataArray);
 			} else if (componentType.equals(Double.class)) {
 				Double doubleArray[] = new Double[dataArray.length];
 				
 				for (int i = 0; i < dataArray.length; i++) {
 					doubleArray[i] = dataArray[i];
 				}
-				method.invoke(target, (Object)doubleArray);
+				setter.set(target, (Object)doubleArray);
 			} else {
 				throw new IllegalArgumentException("Unknown setter type");
 			}
-		} else if (List.class.isAssignableFrom(parameters[0].getType()) || parameters[0].getType().equals(Collection.class)) {
-			List<Double> list;
-			if (parameters[0].getType().isInterface()) {
-				list = new LinkedList<Double>();
-			} else {
-				list = (List) parameters[0].getType().newInstance();
-			}
-			for (double doubleValue : dataArray) {
-				list.add(doubleValue);
+		} else if (List.class.isAssignableFrom(setterType) || setterType.equals(Collection.class)) {
+			List<Double> list = deserialiser.getCollectionFactory().createList(setterType, Double.class, dataArray.length);
+			if (!ScalarArrayReader.addToPrimitiveList(list, double.class, dataArray)) {
+				for (double doubleValue : dataArray) {
+					list.add(doubleValue);
+				}
 			}
-			method.invoke(target, list);
+			setter.set(target, list);
 		} else {
 			throw new IllegalArgumentException("Unsupported container type");
 		}		
@@ -587,42 +448,27 @@ public class ScalarArrayDeserialiser {
 	 */
 	private void setStringArrayValue(Object target, String variableName, PVStringArray bpvField) throws IllegalArgumentException, IllegalAccessException, InvocationTargetException, NoSuchFieldException, SecurityException, InstantiationException {
 		
-		String dataArray[] = new String[bpvField.getLength()];
-		StringArrayData StringArrayData = new StringArrayData();
-		
-		int numGot = 0;
-		int totalGot = 0;
-		String gotArray[];
-		
-		while (totalGot < bpvField.getLength()) {
-			numGot = bpvField.get(totalGot, bpvField.getLength() - totalGot, StringArrayData);
-			totalGot += numGot;
-			gotArray = StringArrayData.data;
-			
-			for (int i = 0; i < numGot; i++) {
-				dataArray[StringArrayData.offset + i] = gotArray[i];
-			}
-		}
-		
-		Method method = deserialiser.findSetter(target, variableName);
+		Class<?> setterType = deserialiser.findSetterType(target, variableName);
 		
-		if (method == null) {
+		if (setterType == null) {
 			return;
 		}
+		Setter setter = deserialiser.findSetterAccessor(target, variableName);
 		
-		Parameter parameters[] = method.getParameters();
+		// The array backing the PVArray is only read from unless it is set on the object
+		String dataArray[] = ScalarArrayReader.toStringArray(bpvField, !setterType.equals(String[].class));
 		
-		if (parameters[0].getType().isArray()) {
-			Class<?> componentType = parameters[0].getType().getComponentType();
+		if (setterType.isArray()) {
+			Class<?> componentType = setterType.getComponentType();
 			
 			if (componentType.equals(String.class)) {
-				method.invoke(target, (Object)dataArray);
+				setter.set(target, (Object)dataArray);
 			} else if (componentType.equals(char.class)) {
 				char charArray[] = new char[dataArray.length];
 				for (int i = 0; i < dataArray.length; i++) {
 					charArray[i] = dataArray[i].charAt(0);
 				}
-				method.invoke(target, (Object)charArray);
+				setter.set(target, (Object)charArray);
 			} else if (componentType.equals(Character.class)) {
 				Character charArray[] = new Character[dataArray.length];
 				for (int i = 0; i < dataArray.length; i++) {
@@ -631,38 +477,28 @@ public class ScalarArrayDeserialiser {
 					}
 					charArray[i] = dataArray[i].charAt(0);
 				}
-				method.invoke(target, (Object)charArray);
+				setter.set(target, (Object)charArray);
 			} else {
 				throw new IllegalArgumentException("Unknown setter type");
 			}
-		} else if (List.class.isAssignableFrom(parameters[0].getType()) || parameters[0].getType().equals(Collection.class)) {
-            Class<?> listClass = getListFieldClass(target, variableName);
+		} else if (List.class.isAssignableFrom(setterType) || setterType.equals(Collection.class)) {
+            Class<?> listClass = ContainerFunctions.getListFieldClass(target, variableName);
             
             if (listClass.equals(String.class)) {
-    			List<String> list;
-    			if (parameters[0].getType().isInterface()) {
-    				list = new LinkedList<String>();
-    			} else {
-    				list = (List) parameters[0].getType().newInstance();
-    			}
+    			List<String> list = deserialiser.getCollectionFactory().createList(setterType, String.class, dataArray.length);
 				for (String StringValue : dataArray) {
 					list.add(StringValue);
 				}
-				method.invoke(target, list);
+				setter.set(target, list);
 			} else if (listClass.equals(Character.class)) {
-				List<Character> list;
-				if (parameters[0].getType().isInterface()) {
-					list = new LinkedList<Character>();
-				} else {
-					list = (List) parameters[0].getType().newInstance();
-				}
+				List<Character> list = deserialiser.getCollectionFactory().createList(setterType, Character.class, dataArray.length);
 				for (String stringValue : dataArray) {
 					if (stringValue.length() > 1) {
 						throw new IllegalArgumentException(variableName + " has too many characters for a single char");
 					}
 					list.add(stringValue.charAt(0));
 				}
-				method.invoke(target, list);
+				setter.set(target, list);
 			} else {
 				throw new IllegalArgumentException("Unknown List type");
 			}
@@ -670,27 +506,4 @@ public class ScalarArrayDeserialiser {
 			throw new IllegalArgumentException("Unsupported container type");
 		}		
 	}
-	
-	/**
-	 * Gets the type of field of a list in a parent object
-	 * @param object The object to check
-	 * @param variableName The name of the field
-	 * @return
-	 * @throws NoSuchFieldException
-	 */
-	private static Class<?> getListFieldClass(Object object, String variableName) throws NoSuchFieldException {
-		Class<?> clazz = object.getClass();
-		while (clazz != Object.class)  {
-			try {
-				java.lang.reflect.Field listField = clazz.getDeclaredField(variableName);
-	            ParameterizedType listType = (ParameterizedType) listField.getGenericType();
-	            Class<?> listClass = (Class<?>) listType.getActualTypeArguments()[0];
-	            return listClass;
-			} catch (NoSuchFieldException ex) {
-				
-			}
-		    clazz = clazz.getSuperclass();
-		}
-		throw new NoSuchFieldException("Unable to find field for " + variableName + " in class " + object.getClass());
-	}
 }
@@ -0,0 +1,252 @@
+package org.epics.pvmarshaller.marshaller.deserialisers;
+
+import java.util.List;
+
+import org.epics.pvdata.pv.BooleanArrayData;
+import org.epics.pvdata.pv.ByteArrayData;
+import org.epics.pvdata.pv.DoubleArrayData;
+import org.epics.pvdata.pv.FloatArrayData;
+import org.epics.pvdata.pv.IntArrayData;
+import org.epics.pvdata.pv.LongArrayData;
+import org.epics.pvdata.pv.PVBooleanArray;
+import org.epics.pvdata.pv.PVByteArray;
+import org.epics.pvdata.pv.PVDoubleArray;
+import org.epics.pvdata.pv.PVFloatArray;
+import org.epics.pvdata.pv.PVIntArray;
+import org.epics.pvdata.pv.PVLongArray;
+import org.epics.pvdata.pv.PVShortArray;
+import org.epics.pvdata.pv.PVStringArray;
+import org.epics.pvdata.pv.ShortArrayData;
+import org.epics.pvdata.pv.StringArrayData;
+import org.epics.pvmarshaller.marshaller.api.IPrimitiveList;
+
+/**
+ * Reads the elements of scalar arrays in bulk, copying each chunk of the array at once rather than element by element
+ * @author Matt Taylor
+ *
+ */
+public class ScalarArrayReader {
+
+	/**
+	 * Gets the elements of an int array
+	 * @param pvArray The array to read
+	 * @param share True if the array backing the PVArray may be returned rather than a copy when it holds exactly the
+	 * elements of the PVArray, in which case it must not be modified
+	 * @return The elements
+	 */
+	public static int[] toIntArray(PVIntArray pvArray, boolean share) {
+		int length = pvArray.getLength();
+		IntArrayData arrayData = new IntArrayData();
+		int totalGot = pvArray.get(0, length, arrayData);
+		
+		if (share && totalGot == length && arrayData.offset == 0 && arrayData.data.length == length) {
+			return arrayData.data;
+		}
+		
+		int[] dataArray = new int[length];
+		System.arraycopy(arrayData.data, arrayData.offset, dataArray, 0, totalGot);
+		while (totalGot < length) {
+			int numGot = pvArray.get(totalGot, length - totalGot, arrayData);
+			System.arraycopy(arrayData.data, arrayData.offset, dataArray, totalGot, numGot);
+			totalGot += numGot;
+		}
+		return dataArray;
+	}
+	
+	/**
+	 * Gets the elements of a short array
+	 * @param pvArray The array to read
+	 * @param share True if the array backing the PVArray may be returned rather than a copy when it holds exactly the
+	 * elements of the PVArray, in which case it must not be modified
+	 * @return The elements
+	 */
+	public static short[] toShortArray(PVShortArray pvArray, boolean share) {
+		int length = pvArray.getLength();
+		ShortArrayData arrayData = new ShortArrayData();
+		int totalGot = pvArray.get(0, length, arrayData);
+		
+		if (share && totalGot == length && arrayData.offset == 0 && arrayData.data.length == length) {
+			return arrayData.data;
+		}
+		
+		short[] dataArray = new short[length];
+		System.arraycopy(arrayData.data, arrayData.offset, dataArray, 0, totalGot);
+		while (totalGot < length) {
+			int numGot = pvArray.get(totalGot, length - totalGot, arrayData);
+			System.arraycopy(arrayData.data, arrayData.offset, dataArray, totalGot, numGot);
+			totalGot += numGot;
+		}
+		return dataArray;
+	}
+	
+	/**
+	 * Gets the elements of a long array
+	 * @param pvArray The array to read
+	 * @param share True if the array backing the PVArray may be returned rather than a copy when it holds exactly the
+	 * elements of the PVArray, in which case it must not be modified
+	 * @return The elements
+	 */
+	public static long[] toLongArray(PVLongArray pvArray, boolean share) {
+		int length = pvArray.getLength();
+		LongArrayData arrayData = new LongArrayData();
+		int totalGot = pvArray.get(0, length, arrayData);
+		
+		if (share && totalGot == length && arrayData.offset == 0 && arrayData.data.length == length) {
+			return arrayData.data;
+		}
+		
+		long[] dataArray = new long[length];
+		System.arraycopy(arrayData.data, arrayData.offset, dataArray, 0, totalGot);
+		while (totalGot < length) {
+			int numGot = pvArray.get(totalGot, length - totalGot, arrayData);
+			System.arraycopy(arrayData.data, arrayData.offset, dataArray, totalGot, numGot);
+			totalGot += numGot;
+		}
+		return dataArray;
+	}
+	
+	/**
+	 * Gets the elements of a byte array
+	 * @param pvArray The array to read
+	 * @param share True if the array backing the PVArray may be returned rather than a copy when it holds exactly the
+	 * elements of the PVArray, in which case it must not be modified
+	 * @return The elements
+	 */
+	public static byte[] toByteArray(PVByteArray pvArray, boolean share) {
+		int length = pvArray.getLength();
+		ByteArrayData arrayData = new ByteArrayData();
+		int totalGot = pvArray.get(0, length, arrayData);
+		
+		if (share && totalGot == length && arrayData.offset == 0 && arrayData.data.length == length) {
+			return arrayData.data;
+		}
+		
+		byte[] dataArray = new byte[length];
+		System.arraycopy(arrayData.data, arrayData.offset, dataArray, 0, totalGot);
+		while (totalGot < length) {
+			int numGot = pvArray.get(totalGot, length - totalGot, arrayData);
+			System.arraycopy(arrayData.data, arrayData.offset, dataArray, totalGot, numGot);
+			totalGot += numGot;
+		}
+		return dataArray;
+	}
+	
+	/**
+	 * Gets the elements of a boolean array
+	 * @param pvArray The array to read
+	 * @param share True if the array backing the PVArray may be returned rather than a copy when it holds exactly the
+	 * elements of the PVArray, in which case it must not be modified
+	 * @return The elements
+	 */
+	public static boolean[] toBooleanArray(PVBooleanArray pvArray, boolean share) {
+		int length = pvArray.getLength();
+		BooleanArrayData arrayData = new BooleanArrayData();
+		int totalGot = pvArray.get(0, length, arrayData);
+		
+		if (share && totalGot == length && arrayData.offset == 0 && arrayData.data.length == length) {
+			return arrayData.data;
+		}
+		
+		boolean[] dataArray = new boolean[length];
+		System.arraycopy(arrayData.data, arrayData.offset, dataArray, 0, totalGot);
+		while (totalGot < length) {
+			int numGot = pvArray.get(totalGot, length - totalGot, arrayData);
+			System.arraycopy(arrayData.data, arrayData.offset, dataArray, totalGot, numGot);
+			totalGot += numGot;
+		}
+		return dataArray;
+	}
+	
+	/**
+	 * Gets the elements of a float array
+	 * @param pvArray The array to read
+	 * @param share True if the array backing the PVArray may be returned rather than a copy when it holds exactly the
+	 * elements of the PVArray, in which case it must not be modified
+	 * @return The elements
+	 */
+	public static float[] toFloatArray(PVFloatArray pvArray, boolean share) {
+		int length = pvArray.getLength();
+		FloatArrayData arrayData = new FloatArrayData();
+		int totalGot = pvArray.get(0, length, arrayData);
+		
+		if (share && totalGot == length && arrayData.offset == 0 && arrayData.data.length == length) {
+			return arrayData.data;
+		}
+		
+		float[] dataArray = new float[length];
+		System.arraycopy(arrayData.data, arrayData.offset, dataArray, 0, totalGot);
+		while (totalGot < length) {
+			int numGot = pvArray.get(totalGot, length - totalGot, arrayData);
+			System.arraycopy(arrayData.data, arrayData.offset, dataArray, totalGot, numGot);
+			totalGot += numGot;
+		}
+		return dataArray;
+	}
+	
+	/**
+	 * Gets the elements of a double array
+	 * @param pvArray The array to read
+	 * @param share True if the array backing the PVArray may be returned rather than a copy when it holds exactly the
+	 * elements of the PVArray, in which case it must not be modified
+	 * @return The elements
+	 */
+	public static double[] toDoubleArray(PVDoubleArray pvArray, boolean share) {
+		int length = pvArray.getLength();
+		DoubleArrayData arrayData = new DoubleArrayData();
+		int totalGot = pvArray.get(0, length, arrayData);
+		
+		if (share && totalGot == length && arrayData.offset == 0 && arrayData.data.length == length) {
+			return arrayData.data;
+		}
+		
+		double[] dataArray = new double[length];
+		System.arraycopy(arrayData.data, arrayData.offset, dataArray, 0, totalGot);
+		while (totalGot < length) {
+			int numGot = pvArray.get(totalGot, length - totalGot, arrayData);
+			System.arraycopy(arrayData.data, arrayData.offset, dataArray, totalGot, numGot);
+			totalGot += numGot;
+		}
+		return dataArray;
+	}
+	
+	/**
+	 * Gets the elements of a String array
+	 * @param pvArray The array to read
+	 * @param share True if the array backing the PVArray may be returned rather than a copy when it holds exactly the
+	 * elements of the PVArray, in which case it must not be modified
+	 * @return The elements
+	 */
+	public static String[] toStringArray(PVStringArray pvArray, boolean share) {
+		int length = pvArray.getLength();
+		StringArrayData arrayData = new StringArrayData();
+		int totalGot = pvArray.get(0, length, arrayData);
+		
+		if (share && totalGot == length && arrayData.offset == 0 && arrayData.data.length == length) {
+			return arrayData.data;
+		}
+		
+		String[] dataArray = new String[length];
+		System.arraycopy(arrayData.data, arrayData.offset, dataArray, 0, totalGot);
+		while (totalGot < length) {
+			int numGot = pvArray.get(totalGot, length - totalGot, arrayData);
+			System.arraycopy(arrayData.data, arrayData.offset, dataArray, totalGot, numGot);
+			totalGot += numGot;
+		}
+		return dataArray;
+	}
+	/**
+	 * Adds the elements of a primitive array to a list without boxing them, if the list is an {@link IPrimitiveList} of the
+	 * same primitive type
+	 * @param list The list to add the elements to
+	 * @param primitiveType The primitive type of the array
+	 * @param array The array of elements, which is not retained by the list
+	 * @return true if the elements were added, or false if they must be boxed and added individually
+	 */
+	public static boolean addToPrimitiveList(List<?> list, Class<?> primitiveType, Object array) {
+		if (list instanceof IPrimitiveList && ((IPrimitiveList) list).getPrimitiveType() == primitiveType) {
+			((IPrimitiveList) list).addPrimitiveArray(array);
+			return true;
+		}
+		return false;
+	}
+}
@@ -1,8 +1,6 @@
 package org.epics.pvmarshaller.marshaller.deserialisers;
 
 import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
-import java.lang.reflect.Parameter;
 
 import org.epics.pvdata.pv.PVBoolean;
 import org.epics.pvdata.pv.PVByte;
@@ -17,6 +15,14 @@ import org.epics.pvdata.pv.PVUByte;
 import org.epics.pvdata.pv.PVUInt;
 import org.epics.pvdata.pv.PVULong;
 import org.epics.pvdata.pv.PVUShort;
+import org.epics.pvmarshaller.marshaller.accessors.BooleanSetter;
+import org.epics.pvmarshaller.marshaller.accessors.ByteSetter;
+import org.epics.pvmarshaller.marshaller.accessors.DoubleSetter;
+import org.epics.pvmarshaller.marshaller.accessors.FloatSetter;
+import org.epics.pvmarshaller.marshaller.accessors.IntSetter;
+import org.epics.pvmarshaller.marshaller.accessors.LongSetter;
+import org.epics.pvmarshaller.marshaller.accessors.Setter;
+import org.epics.pvmarshaller.marshaller.accessors.ShortSetter;
 
 /**
  * Deserialise a Scalar value
@@ -48,25 +54,25 @@ public class ScalarDeserialiser {
 		
 		if (pvField instanceof PVInt) {
 			PVInt bpvField = (PVInt)pvField;
-			setValue(target, fieldName, bpvField.get());
+			setIntValue(target, fieldName, bpvField.get());
 		} else if (pvField instanceof PVShort) {
 			PVShort bpvField = (PVShort)pvField;
-			setValue(target, fieldName, bpvField.get());
+			setShortValue(target, fieldName, bpvField.get());
 		} else if (pvField instanceof PVLong) {
 			PVLong bpvField = (PVLong)pvField;
-			setValue(target, fieldName, bpvField.get());
+			setLongValue(target, fieldName, bpvField.get());
 		} else if (pvField instanceof PVByte) {
 			PVByte bpvField = (PVByte)pvField;
-			setValue(target, fieldName, bpvField.get());
+			setByteValue(target, fieldName, bpvField.get());
 		} else if (pvField instanceof PVBoolean) {
 			PVBoolean bpvField = (PVBoolean)pvField;
-			setValue(target, fieldName, bpvField.get());
+			setBooleanValue(target, fieldName, bpvField.get());
 		} else if (pvField instanceof PVFloat) {
 			PVFloat bpvField = (PVFloat)pvField;
-			setValue(target, fieldName, bpvField.get());
+			setFloatValue(target, fieldName, bpvField.get());
 		} else if (pvField instanceof PVDouble) {
 			PVDouble bpvField = (PVDouble)pvField;
-			setValue(target, fieldName, bpvField.get());
+			setDoubleValue(target, fieldName, bpvField.get());
 		} else if (pvField instanceof PVString) {
 			PVString bpvField = (PVString)pvField;
 			setStringValue(target, fieldName, bpvField.get());
@@ -132,18 +138,121 @@ public class ScalarDeserialiser {
 	}
 	
 	/**
-	 * Sets the value of a field in the target object
+	 * Sets the value of a int field in the target object
+	 * @param target The target object
+	 * @param variableName The name of the field to set
+	 * @param value The value to use
+	 * @throws IllegalArgumentException
+	 * @throws InvocationTargetException
+	 */
+	private void setIntValue(Object target, String variableName, int value) throws IllegalArgumentException, InvocationTargetException {
+		Setter setter = deserialiser.findSetterAccessor(target, variableName);
+		if (setter instanceof IntSetter) {
+			((IntSetter) setter).setInt(target, value);
+		} else if (setter != null) {
+			setter.set(target, value);
+		}
+	}
+	
+	/**
+	 * Sets the value of a short field in the target object
+	 * @param target The target object
+	 * @param variableName The name of the field to set
+	 * @param value The value to use
+	 * @throws IllegalArgumentException
+	 * @throws InvocationTargetException
+	 */
+	private void setShortValue(Object target, String variableName, short value) throws IllegalArgumentException, InvocationTargetException {
+		Setter setter = deserialiser.findSetterAccessor(target, variableName);
+		if (setter instanceof ShortSetter) {
+			((ShortSetter) setter).setShort(target, value);
+		} else if (setter != null) {
+			setter.set(target, value);
+		}
+	}
+	
+	/**
+	 * Sets the value of a long field in the target object
+	 * @param target The target object
+	 * @param variableName The name of the field to set
+	 * @param value The value to use
+	 * @throws IllegalArgumentException
+	 * @throws InvocationTargetException
+	 */
+	private void setLongValue(Object target, String variableName, long value) throws IllegalArgumentException, InvocationTargetException {
+		Setter setter = deserialiser.findSetterAccessor(target, variableName);
+		if (setter instanceof LongSetter) {
+			((LongSetter) setter).setLong(target, value);
+		} else if (setter != null) {
+			setter.set(target, value);
+		}
+	}
+	
+	/**
+	 * Sets the value of a byte field in the target object
 	 * @param target The target object
 	 * @param variableName The name of the field to set
 	 * @param value The value to use
 	 * @throws IllegalArgumentException
-	 * @throws IllegalAccessException
 	 * @throws InvocationTargetException
 	 */
-	private void setValue(Object target, String variableName, Object value) throws IllegalArgumentException, IllegalAccessException, InvocationTargetException {
-		Method method = deserialiser.findSetter(target, variableName);
-		if (method != null) {
-			method.invoke(target, value);
+	private void setByteValue(Object target, String variableName, byte value) throws IllegalArgumentException, InvocationTargetException {
+		Setter setter = deserialiser.findSetterAccessor(target, variableName);
+		if (setter instanceof ByteSetter) {
+			((ByteSetter) setter).setByte(target, value);
+		} else if (setter != null) {
+			setter.set(target, value);
+		}
+	}
+	
+	/**
+	 * Sets the value of a boolean field in the target object
+	 * @param target The target object
+	 * @param variableName The name of the field to set
+	 * @param value The value to use
+	 * @throws IllegalArgumentException
+	 * @throws InvocationTargetException
+	 */
+	private void setBooleanValue(Object target, String variableName, boolean value) throws IllegalArgumentException, InvocationTargetException {
+		Setter setter = deserialiser.findSetterAccessor(target, variableName);
+		if (setter instanceof BooleanSetter) {
+			((BooleanSetter) setter).setBoolean(target, value);
+		} else if (setter != null) {
+			setter.set(target, value);
+		}
+	}
+	
+	/**
+	 * Sets the value of a float field in the target object
+	 * @param target The target object
+	 * @param variableName The name of the field to set
+	 * @param value The value to use
+	 * @throws IllegalArgumentException
+	 * @throws InvocationTargetException
+	 */
+	private void setFloatValue(Object target, String variableName, float value) throws IllegalArgumentException, InvocationTargetException {
+		Setter setter = deserialiser.findSetterAccessor(target, variableName);
+		if (setter instanceof FloatSetter) {
+			((FloatSetter) setter).setFloat(target, value);
+		} else if (setter != null) {
+			setter.set(target, value);
+		}
+	}
+	
+	/**
+	 * Sets the value of a double field in the target object
+	 * @param target The target object
+	 * @param variableName The name of the field to set
+	 * @param value The value to use
+	 * @throws IllegalArgumentException
+	 * @throws InvocationTargetException
+	 */
+	private void setDoubleValue(Object target, String variableName, double value) throws IllegalArgumentException, InvocationTargetException {
+		Setter setter = deserialiser.findSetterAccessor(target, variableName);
+		if (setter instanceof DoubleSetter) {
+			((DoubleSetter) setter).setDouble(target, value);
+		} else if (setter != null) {
+			setter.set(target, value);
 		}
 	}
 	
@@ -158,18 +267,14 @@ public class ScalarDeserialiser {
 	 */
 	private void setStringValue(Object target, String variableName, String value) throws IllegalArgumentException, IllegalAccessException, InvocationTargetException {
 		// Determine if the object member is a string or a char
-		Method method = deserialiser.findSetter(target, variableName);
-		if (method != null) {
-			Parameter parameters[] = method.getParameters();
-			if (parameters[0].getType().equals(Character.class) || 
-				parameters[0].getType().equals(char.class)) {
-				if (value.length() > 1) {
-					throw new IllegalArgumentException(variableName + " has too many characters for a single char");
-				}
-				char charValue = value.charAt(0);
-				method.invoke(target, charValue);
+		Class<?> setterType = deserialiser.findSetterType(target, variableName);
+		if (setterType != null) {
+			Setter setter = deserialiser.findSetterAccessor(target, variableName);
+			if (setterType.equals(Character.class) || 
+				setterType.equals(char.class)) {
+				setter.set(target, toCharacter(value, setterType, variableName));
 			} else {
-				method.invoke(target, value);
+				setter.set(target, value);
 			}
 		}
 	}
@@ -188,13 +293,28 @@ public class ScalarDeserialiser {
 
 		if (componentType.equals(Character.class) || 
 				componentType.equals(char.class)) {
-			if (value.length() > 1) {
-				throw new IllegalArgumentException(variableName + " has too many characters for a single char");
-			}
-			char charValue = value.charAt(0);
-			return charValue;
+			return toCharacter(value, componentType, variableName);
 		} else {
 			return value;
 		}
 	}
+
+	/**
+	 * Gets the char value of a string for a char or Character field. An empty string, which is how a null Character is
+	 * written when Structures are derived from declared types, gives null for a Character and '\0' for a char
+	 * @param value The source String value
+	 * @param type The type of the field, char or Character
+	 * @param variableName The name of the variable
+	 * @return
+	 * @throws IllegalArgumentException if the string has more than one character
+	 */
+	static Character toCharacter(String value, Class<?> type, String variableName) {
+		if (value.length() > 1) {
+			throw new IllegalArgumentException(variableName + " has too many characters for a single char");
+		}
+		if (value.isEmpty()) {
+			return type.equals(char.class) ? Character.valueOf('\0') : null;
+		}
+		return value.charAt(0);
+	}
 }
@@ -0,0 +1,193 @@
+package org.epics.pvmarshaller.marshaller.deserialisers;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.epics.pvmarshaller.marshaller.accessors.Accessors;
+import org.epics.pvmarshaller.marshaller.accessors.Setter;
+
+/**
+ * Cache of the resolved setter methods, and their accessors, for each class and field name. Fields that have no setter
+ * are also cached so that unknown fields are only searched for once per class. Accessors that write the fields directly
+ * are cached separately for use when getters and setters are bypassed
+ * @author Matt Taylor
+ *
+ */
+public class SetterCache {
+
+	// The resolved setters of each class by member name, for setter methods and for direct field access
+	private static final ClassValue<ConcurrentHashMap<String, SetterEntry>> setters = new ClassEntries();
+	private static final ClassValue<ConcurrentHashMap<String, SetterEntry>> fieldSetters = new ClassEntries();
+
+	/**
+	 * Gets the setter method for a given member of the specified class
+	 * @param clazz The class to find the setter in
+	 * @param variableName The name of the member to find the setter for
+	 * @return The setter method, or null if the class has no setter for the member
+	 */
+	public static Method getSetter(Class<?> clazz, String variableName) {
+		return getEntry(clazz, variableName).method;
+	}
+
+	/**
+	 * Gets the accessor for the setter method of a given member of the specified class
+	 * @param clazz The class to find the setter in
+	 * @param variableName The name of the member to find the setter for
+	 * @return The accessor, or null if the class has no setter for the member
+	 */
+	public static Setter getAccessor(Class<?> clazz, String variableName) {
+		return getEntry(clazz, variableName).accessor;
+	}
+
+	/**
+	 * Gets the parameter type of the setter method for a given member of the specified class
+	 * @param clazz The class to find the setter in
+	 * @param variableName The name of the member to find the setter for
+	 * @return The parameter type, or null if the class has no setter for the member
+	 */
+	public static Class<?> getSetterType(Class<?> clazz, String variableName) {
+		return getEntry(clazz, variableName).type;
+	}
+
+	/**
+	 * Gets an accessor that writes a given field of the specified class directly, bypassing its setter
+	 * @param clazz The class to find the field in
+	 * @param variableName The name of the field
+	 * @return The accessor, or null if the class has no such field
+	 */
+	public static Setter getFieldAccessor(Class<?> clazz, String variableName) {
+		return getFieldEntry(clazz, variableName).accessor;
+	}
+
+	/**
+	 * Gets a given field of the specified class, searching its superclasses
+	 * @param clazz The class to find the field in
+	 * @param variableName The name of the field
+	 * @return The field, or null if the class has no such field
+	 */
+	public static Field getField(Class<?> clazz, String variableName) {
+		return getFieldEntry(clazz, variableName).field;
+	}
+
+	/**
+	 * Gets the declared type of a given field of the specified class
+	 * @param clazz The class to find the field in
+	 * @param variableName The name of the field
+	 * @return The type, or null if the class has no such field
+	 */
+	public static Class<?> getFieldType(Class<?> clazz, String variableName) {
+		return getFieldEntry(clazz, variableName).type;
+	}
+
+	/**
+	 * Gets the cache entry for a given member of the specified class, resolving the setter if this is the first time it has been asked for
+	 * @param clazz The class to find the setter in
+	 * @param variableName The name of the member to find the setter for
+	 * @return The cache entry
+	 */
+	private static SetterEntry getEntry(Class<?> clazz, String variableName) {
+		ConcurrentHashMap<String, SetterEntry> classSetters = setters.get(clazz);
+
+		SetterEntry entry = classSetters.get(variableName);
+		if (entry == null) {
+			entry = new SetterEntry(scanForSetter(clazz, variableName));
+			classSetters.put(variableName, entry);
+		}
+		return entry;
+	}
+
+	/**
+	 * Gets the cache entry for a given field of the specified class, resolving the field if this is the first time it has been asked for
+	 * @param clazz The class to find the field in
+	 * @param variableName The name of the field
+	 * @return The cache entry
+	 */
+	private static SetterEntry getFieldEntry(Class<?> clazz, String variableName) {
+		ConcurrentHashMap<String, SetterEntry> classSetters = fieldSetters.get(clazz);
+
+		SetterEntry entry = classSetters.get(variableName);
+		if (entry == null) {
+			entry = new SetterEntry(scanForField(clazz, variableName));
+			classSetters.put(variableName, entry);
+		}
+		return entry;
+	}
+
+	/**
+	 * Searches the class hierarchy for a single argument 'set' method for the given member
+	 * @param clazz The class to search
+	 * @param variableName The name of the member
+	 * @return The setter method or null if there isn't one
+	 */
+	private static Method scanForSetter(Class<?> clazz, String variableName) {
+		String setName = "set" + variableName.toLowerCase();
+
+		while (clazz != null && clazz != Object.class)  {
+			Method[] allMethods = clazz.getDeclaredMethods();
+
+		    for (Method m : allMethods) {
+		    	if (m.getName().toLowerCase().equals(setName) && m.getParameterTypes().length == 1) {
+		    		m.setAccessible(true);
+		    		return m;
+		    	}
+		    }
+		    clazz = clazz.getSuperclass();
+		}
+		return null;
+	}
+
+	/**
+	 * Searches the class hierarchy for a non-static field with the given name
+	 * @param clazz The class to search
+	 * @param variableName The name of the field
+	 * @return The field or null if there isn't one
+	 */
+	private static Field scanForField(Class<?> clazz, String variableName) {
+		while (clazz != null && clazz != Object.class)  {
+			for (Field field : clazz.getDeclaredFields()) {
+				if (field.getName().equals(variableName) && !Modifier.isStatic(field.getModifiers())) {
+					field.setAccessible(true);
+					return field;
+				}
+			}
+			clazz = clazz.getSuperclass();
+		}
+		return null;
+	}
+
+	/**
+	 * The map of cache entries for each class, created the first time the class is seen
+	 */
+	private static class ClassEntries extends ClassValue<ConcurrentHashMap<String, SetterEntry>> {
+		@Override
+		protected ConcurrentHashMap<String, SetterEntry> computeValue(Class<?> clazz) {
+			return new ConcurrentHashMap<String, SetterEntry>();
+		}
+	}
+
+	/**
+	 * Cache entry holding a resolved setter or field, the type it accepts and its accessor, or nulls for a member with no setter
+	 */
+	private static class SetterEntry {
+		final Method method;
+		final Field field;
+		final Class<?> type;
+		final Setter accessor;
+
+		SetterEntry(Method method) {
+			this.method = method;
+			this.field = null;
+			this.type = method == null ? null : method.getParameterTypes()[0];
+			this.accessor = method == null ? null : Accessors.setter(method);
+		}
+
+		SetterEntry(Field field) {
+			this.method = null;
+			this.field = field;
+			this.type = field == null ? null : field.getType();
+			this.accessor = field == null ? null : Accessors.fieldSetter(field);
+		}
+	}
+}
@@ -2,19 +2,18 @@ package org.epics.pvmarshaller.marshaller.deserialisers;
 
 import java.lang.reflect.Array;
 import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
-import java.lang.reflect.Parameter;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
 import java.util.Collection;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 
 import org.epics.pvdata.pv.PVField;
 import org.epics.pvdata.pv.PVStructure;
 import org.epics.pvdata.pv.PVStructureArray;
+import org.epics.pvdata.pv.Structure;
 import org.epics.pvdata.pv.StructureArrayData;
+import org.epics.pvmarshaller.marshaller.accessors.Setter;
 
 /**
  * Deserialises a Structure Array
@@ -50,63 +49,52 @@ public class StructureArrayDeserialiser {
 		if (pvField instanceof PVStructureArray) {
 			PVStructureArray structureArrayField = (PVStructureArray)pvField;
 			
-			PVStructure dataArray[] = new PVStructure[structureArrayField.getLength()];
-			StructureArrayData structureArrayData = new StructureArrayData();
+			Class<?> setterType = deserialiser.findSetterType(target, fieldName);
 			
-			int numGot = 0;
-			int totalGot = 0;
-			PVStructure gotArray[];
-			
-			while (totalGot < structureArrayField.getLength()) {
-				numGot = structureArrayField.get(numGot, structureArrayField.getLength() - numGot, structureArrayData);
-				totalGot += numGot;
-				gotArray = structureArrayData.data;
-				
-				for (int i = 0; i < numGot; i++) {
-					dataArray[structureArrayData.offset + i] = gotArray[i];
-				}
+			if (setterType == null) {
+				return;
 			}
+			Setter setter = deserialiser.findSetterAccessor(target, fieldName);
 			
-			Method method = deserialiser.findSetter(target, fieldName);
+			PVStructure dataArray[] = getElements(structureArrayField);
 			
-			Parameter parameters[] = method.getParameters();
-			
-			if (parameters[0].getType().isArray()) {
-				Class<?> componentType = parameters[0].getType().getComponentType();
-				System.out.println(componentType);
+			if (setterType.isArray()) {
+				Class<?> componentType = setterType.getComponentType();
+				DeserialisationPlan plan = getElementPlan(structureArrayField, componentType);
 				
 				Object newArray[] = (Object[])Array.newInstance(componentType, dataArray.length);
 				
 				for (int i = 0; i < dataArray.length; i++) {
-					PVStructure arrayPVStructure = dataArray[i];
-					Object newObject = deserialiser.getStructureDeserialiser().createObjectFromPVStructure(arrayPVStructure, componentType);
-					newArray[i] = newObject;
+					newArray[i] = createElement(dataArray[i], componentType, plan);
 				}
 				
-				method.invoke(target, (Object)newArray);
+				setter.set(target, (Object)newArray);
 				
-			} else if (List.class.isAssignableFrom(parameters[0].getType()) || parameters[0].getType().equals(Collection.class)) {
+			} else if (List.class.isAssignableFrom(setterType) || setterType.equals(Collection.class)) {
 	            Class<?> listClass = ContainerFunctions.getListFieldClass(target, fieldName);
-
-				List list;
-				if (parameters[0].getType().isInterface()) {
-					list = new LinkedList<>();
-				} else {
-					list = (List) parameters[0].getType().newInstance();
+	            Type mapValueType = null;
+				DeserialisationPlan plan = null;
+				if (!Map.class.isAssignableFrom(listClass)) {
+					plan = getElementPlan(structureArrayField, listClass);
 				}
+
+				List<Object> list = deserialiser.getCollectionFactory().createList(setterType, listClass, dataArray.length);
 				
 				for (int i = 0; i < dataArray.length; i++) {
 					PVStructure arrayPVStructure = dataArray[i];
 					Object newObject;
 					if (Map.class.isAssignableFrom(listClass)) {
-						Type componentType = ContainerFunctions.getMapTypeFromListComponentParent(target, fieldName);
-						newObject = deserialiser.getMapDeserialiser().createMapFromPVStructure(arrayPVStructure, listClass, componentType);
+						if (mapValueType == null) {
+							// Resolve the map type once for the list rather than for each element
+							mapValueType = ContainerFunctions.getMapTypeFromListComponentParent(target, fieldName);
+						}
+						newObject = deserialiser.getMapDeserialiser().createMapFromPVStructure(arrayPVStructure, listClass, mapValueType);
 					} else {
-						newObject = deserialiser.getStructureDeserialiser().createObjectFromPVStructure(arrayPVStructure, listClass);
+						newObject = createElement(arrayPVStructure, listClass, plan);
 					}
 					list.add(newObject);
 				}
-				method.invoke(target, list);
+				setter.set(target, list);
 			} else {
 				throw new IllegalArgumentException("Unsupported container type");
 			}
@@ -130,33 +118,16 @@ public class StructureArrayDeserialiser {
 		if (pvField instanceof PVStructureArray) {
 			PVStructureArray structureArrayField = (PVStructureArray)pvField;
 			
-			PVStructure dataArray[] = new PVStructure[structureArrayField.getLength()];
-			StructureArrayData structureArrayData = new StructureArrayData();
-			
-			int numGot = 0;
-			int totalGot = 0;
-			PVStructure gotArray[];
-			
-			while (totalGot < structureArrayField.getLength()) {
-				numGot = structureArrayField.get(numGot, structureArrayField.getLength() - numGot, structureArrayData);
-				totalGot += numGot;
-				gotArray = structureArrayData.data;
-				
-				for (int i = 0; i < numGot; i++) {
-					dataArray[structureArrayData.offset + i] = gotArray[i];
-				}
-			}
+			PVStructure dataArray[] = getElements(structureArrayField);
 			
 			if (ContainerFunctions.isArray(valueClass)) {
 				Class<?> componentType = ContainerFunctions.getComponentType(valueClass);
-				System.out.println(componentType);
+				DeserialisationPlan plan = getElementPlan(structureArrayField, componentType);
 				
 				Object newArray[] = (Object[])Array.newInstance(componentType, dataArray.length);
 				
 				for (int i = 0; i < dataArray.length; i++) {
-					PVStructure arrayPVStructure = dataArray[i];
-					Object newObject = deserialiser.getStructureDeserialiser().createObjectFromPVStructure(arrayPVStructure, componentType);
-					newArray[i] = newObject;
+					newArray[i] = createElement(dataArray[i], componentType, plan);
 				}
 				
 				return (Object)newArray;
@@ -164,18 +135,12 @@ public class StructureArrayDeserialiser {
 			} else if (ContainerFunctions.isList(valueClass) || valueClass.equals(Collection.class)) {
 	            Class<?> listClass = ContainerFunctions.getListClass(valueClass);
 	            Class<?> componentType = ContainerFunctions.getListComponentClass(valueClass);
+				DeserialisationPlan plan = getElementPlan(structureArrayField, componentType);
 
-				List list;
-				if (ContainerFunctions.isInterface(listClass)) {
-					list = new LinkedList<>();
-				} else {
-					list = (List) ((Class<?>)listClass).newInstance();
-				}
+				List<Object> list = deserialiser.getCollectionFactory().createList(listClass, componentType, dataArray.length);
 				
 				for (int i = 0; i < dataArray.length; i++) {
-					PVStructure arrayPVStructure = dataArray[i];
-					Object newObject = deserialiser.getStructureDeserialiser().createObjectFromPVStructure(arrayPVStructure, componentType);
-					list.add(newObject);
+					list.add(createElement(dataArray[i], componentType, plan));
 				}
 				return list;
 			} else {
@@ -184,4 +149,62 @@ public class StructureArrayDeserialiser {
 		}
 		return null;
 	}
+	
+	/**
+	 * Gets the elements of a structure array
+	 * @param structureArrayField The structure array
+	 * @return The elements
+	 */
+	private static PVStructure[] getElements(PVStructureArray structureArrayField) {
+		int length = structureArrayField.getLength();
+		PVStructure dataArray[] = new PVStructure[length];
+		StructureArrayData structureArrayData = new StructureArrayData();
+		
+		int totalGot = 0;
+		while (totalGot < length) {
+			int numGot = structureArrayField.get(totalGot, length - totalGot, structureArrayData);
+			System.arraycopy(structureArrayData.data, structureArrayData.offset, dataArray, totalGot, numGot);
+			totalGot += numGot;
+		}
+		return dataArray;
+	}
+	
+	/**
+	 * Gets the plan for deserialising the elements of a structure array. As all the elements share the element Structure of the array,
+	 * the plan is looked up once for the whole array rather than for each element
+	 * @param structureArrayField The structure array
+	 * @param componentType The class to deserialise the elements into
+	 * @return The plan, or null if the array is empty or a custom deserialiser is registered for the element Structure
+	 */
+	private DeserialisationPlan getElementPlan(PVStructureArray structureArrayField, Class<?> componentType) {
+		Structure elementStructure = structureArrayField.getStructureArray().getStructure();
+		StructureDeserialiser structureDeserialiser = deserialiser.getStructureDeserialiser();
+		
+		if (structureArrayField.getLength() == 0 || structureDeserialiser.hasCustomDeserialiser(elementStructure)) {
+			return null;
+		}
+		return structureDeserialiser.getPlan(elementStructure, componentType);
+	}
+	
+	/**
+	 * Creates the object for an element of a structure array
+	 * @param pvStructure The element
+	 * @param componentType The class to deserialise the element into
+	 * @param plan The plan for the element Structure, or null to deserialise the element without a plan
+	 * @return The object, or null for a null element
+	 * @throws InstantiationException
+	 * @throws IllegalAccessException
+	 * @throws IllegalArgumentException
+	 * @throws InvocationTargetException
+	 * @throws NoSuchFieldException
+	 * @throws SecurityException
+	 */
+	private Object createElement(PVStructure pvStructure, Class<?> componentType, DeserialisationPlan plan) throws InstantiationException, IllegalAccessException, IllegalArgumentException, InvocationTargetException, NoSuchFieldException, SecurityException {
+		if (pvStructure == null) {
+			return null;
+		} else if (plan != null) {
+			return deserialiser.getStructureDeserialiser().createObjectWithPlan(pvStructure, plan);
+		}
+		return deserialiser.getStructureDeserialiser().createObjectFromPVStructure(pvStructure, componentType);
+	}
 }
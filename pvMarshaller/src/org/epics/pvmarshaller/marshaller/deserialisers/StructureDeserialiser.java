@@ -1,16 +1,19 @@
 package org.epics.pvmarshaller.marshaller.deserialisers;
 
 import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.epics.pvdata.factory.BasePVStructure;
+import org.epics.pvdata.misc.BitSet;
 import org.epics.pvdata.pv.Field;
 import org.epics.pvdata.pv.PVField;
 import org.epics.pvdata.pv.PVStructure;
 import org.epics.pvdata.pv.Structure;
+import org.epics.pvmarshaller.marshaller.accessors.Setter;
 import org.epics.pvmarshaller.marshaller.api.IPVStructureDeserialiser;
+import org.epics.pvmarshaller.marshaller.serialisers.StructureFingerprint;
 
 /**
  * Deserialises a Structure
@@ -22,6 +25,16 @@ public class StructureDeserialiser {
 	Map<String, IPVStructureDeserialiser> registeredDeserialisers = new LinkedHashMap<String, IPVStructureDeserialiser>();
 	Deserialiser deserialiser;
 	
+	/**
+	 * The maximum number of deserialisation plans to cache, to limit the memory used when many different Structures are seen.
+	 * When it is reached the cache is cleared and refilled with the plans that are still in use
+	 */
+	public static final int MAX_PLANS = 1024;
+	
+	private final ConcurrentHashMap<PlanKey, DeserialisationPlan> plans = new ConcurrentHashMap<PlanKey, DeserialisationPlan>();
+	private final ConcurrentHashMap<FingerprintKey, DeserialisationPlan> plansByFingerprint = new ConcurrentHashMap<FingerprintKey, DeserialisationPlan>();
+	private final ConcurrentHashMap<FingerprintKey, Structure> incompatibleStructures = new ConcurrentHashMap<FingerprintKey, Structure>();
+	
 	/**
 	 * Constructor
 	 * @param deserialiser
@@ -67,6 +80,114 @@ public class StructureDeserialiser {
 			IPVStructureDeserialiser structureSeserialiser = registeredDeserialisers.get(id);
 			newObject = structureSeserialiser.fromPVStructure(deserialiser, pvStructure);
 		} else {
+			newObject = createObjectWithPlan(pvStructure, getPlan(pvStructure.getStructure(), objectClass));
+		}
+		return newObject;
+	}
+	
+	/**
+	 * Populates an existing object with data from the specified PVStructure, reusing its nested objects and primitive arrays where possible
+	 * @param pvStructure The PVStructure to deserialise
+	 * @param existing The object to populate
+	 * @return The populated object, which is a new object if a custom deserialiser is registered for the PVStructure
+	 * @throws InstantiationException
+	 * @throws IllegalAccessException
+	 * @throws IllegalArgumentException
+	 * @throws InvocationTargetException
+	 * @throws NoSuchFieldException
+	 * @throws SecurityException
+	 */
+	public <T> T updateObjectFromPVStructure(PVStructure pvStructure, T existing) throws InstantiationException, IllegalAccessException, IllegalArgumentException, InvocationTargetException, NoSuchFieldException, SecurityException {
+		if (existing == null) {
+			throw new IllegalArgumentException("Cannot deserialise into a null object");
+		}
+		
+		String id = pvStructure.getStructure().getID();
+		
+		if (registeredDeserialisers.containsKey(id)) {
+			IPVStructureDeserialiser structureSeserialiser = registeredDeserialisers.get(id);
+			return replacement(structureSeserialiser.fromPVStructure(deserialiser, pvStructure), existing);
+		}
+		
+		getPlan(pvStructure.getStructure(), existing.getClass()).update(existing, pvStructure);
+		return existing;
+	}
+	
+	/**
+	 * Populates an existing object with the fields of the specified PVStructure that are marked as changed
+	 * @param pvStructure The PVStructure to deserialise
+	 * @param changedBitSet The offsets of the changed fields
+	 * @param existing The object to populate
+	 * @return The populated object, which is a new object if a custom deserialiser is registered for the PVStructure
+	 * @throws InstantiationException
+	 * @throws IllegalAccessException
+	 * @throws IllegalArgumentException
+	 * @throws InvocationTargetException
+	 * @throws NoSuchFieldException
+	 * @throws SecurityException
+	 */
+	public <T> T updateObjectFromPVStructure(PVStructure pvStructure, BitSet changedBitSet, T existing) throws InstantiationException, IllegalAccessException, IllegalArgumentException, InvocationTargetException, NoSuchFieldException, SecurityException {
+		if (existing == null) {
+			throw new IllegalArgumentException("Cannot deserialise into a null object");
+		}
+		
+		String id = pvStructure.getStructure().getID();
+		
+		if (registeredDeserialisers.containsKey(id)) {
+			IPVStructureDeserialiser structureSeserialiser = registeredDeserialisers.get(id);
+			return replacement(structureSeserialiser.fromPVStructure(deserialiser, pvStructure), existing);
+		}
+		
+		getPlan(pvStructure.getStructure(), existing.getClass()).update(existing, pvStructure, changedBitSet);
+		return existing;
+	}
+	
+	/**
+	 * Returns the object created by a custom deserialiser in place of the existing object. Custom deserialisers are not typed,
+	 * so as for any other object they create, its type is checked where the caller uses it
+	 * @param replacement The object created by the custom deserialiser
+	 * @param existing The object it replaces
+	 * @return The replacement
+	 */
+	@SuppressWarnings("unchecked")
+	private static <T> T replacement(Object replacement, T existing) {
+		return (T) replacement;
+	}
+	
+	/**
+	 * Creates an object and populates it from a PVStructure using the given plan
+	 * @param pvStructure The PVStructure to deserialise, which must have the Structure the plan was compiled for
+	 * @param plan The plan
+	 * @return The constructed object
+	 * @throws InstantiationException
+	 * @throws IllegalAccessException
+	 * @throws IllegalArgumentException
+	 * @throws InvocationTargetException
+	 * @throws NoSuchFieldException
+	 * @throws SecurityException
+	 */
+	Object createObjectWithPlan(PVStructure pvStructure, DeserialisationPlan plan) throws InstantiationException, IllegalAccessException, IllegalArgumentException, InvocationTargetException, NoSuchFieldException, SecurityException {
+		Object newObject = deserialiser.getInstantiator().newInstance(plan.getTargetClass());
+		plan.apply(newObject, pvStructure);
+		return newObject;
+	}
+	
+	/**
+	 * Gets the plan for deserialising PVStructures with the given Structure into objects of the given class, compiling it the first time the pair is seen
+	 * @param structure The Structure
+	 * @param objectClass The class of the target object
+	 * @return The plan
+	 * @throws IllegalArgumentException
+	 */
+	DeserialisationPlan getPlan(Structure structure, Class<?> objectClass) throws IllegalArgumentException {
+		PlanKey key = new PlanKey(structure, objectClass);
+		DeserialisationPlan plan = plans.get(key);
+		if (plan == null) {
+			plan = getPlanForEqualStructure(structure, objectClass);
+			if (plan != null) {
+				cachePlan(key, plan);
+				return plan;
+			}
 			
 			if ((objectClass == null) || (objectClass == Object.class)) {
 				throw new IllegalArgumentException("Unknown class type: " + objectClass);
@@ -74,46 +195,100 @@ public class StructureDeserialiser {
 		
 			if (Map.class.isAssignableFrom(objectClass)) {
 				throw new IllegalArgumentException("Deserialising directly into a map is not currently supported");
-			} else {
+			}
 			
-				if (objectClass.isInterface()) {
-					throw new IllegalArgumentException("Cannot create an instance of an interface (" + objectClass + ")");
-				}
-				newObject = objectClass.newInstance();
-				
-				Structure structure = pvStructure.getStructure();
-				
-				Field pvFields[] = structure.getFields();
-				
-				for (int i = 0; i < pvFields.length; i++) {					
-					PVField pvField = pvStructure.getSubField(structure.getFieldName(i));
-					
-					switch (pvFields[i].getType()) {
-					case scalar:
-						deserialiser.getScalarDeserialiser().deserialise(newObject, structure.getFieldName(i), pvField);
-						break;
-					case scalarArray:
-						deserialiser.getScalarArrayDeserialiser().deserialise(newObject, structure.getFieldName(i), pvField);
-						break;
-					case structure:
-						deserialise(newObject, structure.getFieldName(i), pvField);
-						break;
-					case structureArray:
-						deserialiser.getStructureArrayDeserialiser().deserialise(newObject, structure.getFieldName(i), pvField);
-						break;
-					case union:
-						deserialiser.getUnionDeserialiser().deserialise(newObject, structure.getFieldName(i), pvField);
-						break;
-					case unionArray:
-						deserialiser.getUnionArrayDeserialiser().deserialise(newObject, structure.getFieldName(i), pvField);
-						break;
-					default:
-						break;
-					}
-				}
+			if (objectClass.isInterface()) {
+				throw new IllegalArgumentException("Cannot create an instance of an interface (" + objectClass + ")");
 			}
+			
+			plan = DeserialisationPlan.compile(deserialiser, structure, objectClass);
+			cachePlan(key, plan);
 		}
-		return newObject;
+		return plan;
+	}
+	
+	/**
+	 * Caches a plan under its Structure instance and its fingerprint, first clearing the cache if it is full
+	 * @param key The key of the plan
+	 * @param plan The plan
+	 */
+	private void cachePlan(PlanKey key, DeserialisationPlan plan) {
+		if (plans.size() >= MAX_PLANS) {
+			plans.clear();
+			plansByFingerprint.clear();
+		}
+		plans.put(key, plan);
+		plansByFingerprint.put(new FingerprintKey(StructureFingerprint.of(plan.getStructure()), plan.getTargetClass()), plan);
+	}
+	
+	/**
+	 * Gets a cached plan compiled for a different Structure instance that is equal to the given one, e.g. one received in a
+	 * different PVStructure. The plan is found by fingerprint, so the Structures are only walked to confirm a match
+	 * @param structure The Structure
+	 * @param objectClass The class of the target object
+	 * @return The plan, or null if there isn't one
+	 */
+	private DeserialisationPlan getPlanForEqualStructure(Structure structure, Class<?> objectClass) {
+		DeserialisationPlan plan = plansByFingerprint.get(new FingerprintKey(StructureFingerprint.of(structure), objectClass));
+		if (plan != null && plan.getStructure().equals(structure)) {
+			return plan;
+		}
+		return null;
+	}
+	
+	/**
+	 * Returns whether PVStructures with the given Structure can be deserialised into objects of the given class. Once a plan
+	 * has been cached for the Structure, or one equal to it, this is a single lookup. Otherwise the plan is compiled and cached.
+	 * Structures that fail to compile are also remembered by fingerprint, so they are not compiled again
+	 * @param structure The Structure
+	 * @param objectClass The class of the target object
+	 * @return
+	 */
+	public boolean isCompatible(Structure structure, Class<?> objectClass) {
+		if (hasCustomDeserialiser(structure)) {
+			return true;
+		}
+		FingerprintKey key = new FingerprintKey(StructureFingerprint.of(structure), objectClass);
+		Structure incompatibleStructure = incompatibleStructures.get(key);
+		if (incompatibleStructure != null && incompatibleStructure.equals(structure)) {
+			return false;
+		}
+		try {
+			getPlan(structure, objectClass);
+			return true;
+		} catch (IllegalArgumentException e) {
+			if (incompatibleStructures.size() >= MAX_PLANS) {
+				incompatibleStructures.clear();
+			}
+			incompatibleStructures.put(key, structure);
+			return false;
+		}
+	}
+	
+	/**
+	 * Gets whether a custom deserialiser is registered for the id of the given Structure
+	 * @param structure The Structure
+	 * @return
+	 */
+	boolean hasCustomDeserialiser(Structure structure) {
+		return registeredDeserialisers.containsKey(structure.getID());
+	}
+	
+	/**
+	 * Gets the number of cached deserialisation plans
+	 * @return
+	 */
+	public int getPlanCount() {
+		return plans.size();
+	}
+	
+	/**
+	 * Removes all cached deserialisation plans, and the Structures found to be incompatible. Must be called when settings that the plans depend on change
+	 */
+	public void clearPlans() {
+		plans.clear();
+		plansByFingerprint.clear();
+		incompatibleStructures.clear();
 	}
 	
 	/**
@@ -142,8 +317,10 @@ public class StructureDeserialiser {
 				} else {
 					newObject = createObjectFromPVStructure(structureField, fieldClass);
 				}
-				Method method = deserialiser.findSetter(target, fieldName);
-				method.invoke(target, (Object) newObject);
+				Setter setter = deserialiser.findSetterAccessor(target, fieldName);
+				if (setter != null) {
+					setter.set(target, (Object) newObject);
+				}
 			}
 		}
 	}
@@ -163,9 +340,19 @@ public class StructureDeserialiser {
 	 * @return The class of the field
 	 */
 	private Class<?> getClassFromFieldName(Object target, String fieldName) {
+		return getClassFromFieldName(target.getClass(), fieldName);
+	}
+	
+	/**
+	 * Gets the class of a specified field in a class
+	 * @param targetClass The class to get the field from
+	 * @param fieldName The name of the field
+	 * @return The class of the field
+	 */
+	Class<?> getClassFromFieldName(Class<?> targetClass, String fieldName) {
 		Class<?> foundClass = null;
 		
-		Class<?> currentClass = target.getClass();
+		Class<?> currentClass = targetClass;
 		
 		while (currentClass != Object.class) {
 			try {
@@ -184,4 +371,58 @@ public class StructureDeserialiser {
 		
 		return foundClass;
 	}
+	
+	/**
+	 * Key of a cached plan. Structures are compared by identity, as they are immutable and shared between PVStructures of the same shape
+	 */
+	private static class PlanKey {
+		final Structure structure;
+		final Class<?> objectClass;
+		
+		PlanKey(Structure structure, Class<?> objectClass) {
+			this.structure = structure;
+			this.objectClass = objectClass;
+		}
+		
+		@Override
+		public int hashCode() {
+			return 31 * System.identityHashCode(structure) + (objectClass == null ? 0 : objectClass.hashCode());
+		}
+		
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof PlanKey)) {
+				return false;
+			}
+			PlanKey other = (PlanKey) obj;
+			return structure == other.structure && objectClass == other.objectClass;
+		}
+	}
+	
+	/**
+	 * Key of a cached plan by the fingerprint of its Structure, used to find the plan for an equal Structure instance
+	 */
+	private static class FingerprintKey {
+		final long fingerprint;
+		final Class<?> objectClass;
+		
+		FingerprintKey(long fingerprint, Class<?> objectClass) {
+			this.fingerprint = fingerprint;
+			this.objectClass = objectClass;
+		}
+		
+		@Override
+		public int hashCode() {
+			return 31 * (int) (fingerprint ^ (fingerprint >>> 32)) + (objectClass == null ? 0 : objectClass.hashCode());
+		}
+		
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof FingerprintKey)) {
+				return false;
+			}
+			FingerprintKey other = (FingerprintKey) obj;
+			return fingerprint == other.fingerprint && objectClass == other.objectClass;
+		}
+	}
 }
@@ -2,12 +2,9 @@ package org.epics.pvmarshaller.marshaller.deserialisers;
 
 import java.lang.reflect.Array;
 import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
-import java.lang.reflect.Parameter;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
 import java.util.Collection;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 
@@ -19,6 +16,7 @@ import org.epics.pvdata.pv.PVStructureArray;
 import org.epics.pvdata.pv.PVUnion;
 import org.epics.pvdata.pv.PVUnionArray;
 import org.epics.pvdata.pv.UnionArrayData;
+import org.epics.pvmarshaller.marshaller.accessors.Setter;
 
 /**
  * Deserialises a Union Array
@@ -52,6 +50,13 @@ public class UnionArrayDeserialiser {
 		if (pvField instanceof PVUnionArray) {
 			PVUnionArray unionArrayField = (PVUnionArray)pvField;
 			
+			Class<?> setterType = deserialiser.findSetterType(target, fieldName);
+			
+			if (setterType == null) {
+				return;
+			}
+			Setter setter = deserialiser.findSetterAccessor(target, fieldName);
+			
 			PVUnion dataArray[] = new PVUnion[unionArrayField.getLength()];
 			UnionArrayData unionArrayData = new UnionArrayData();
 			
@@ -69,12 +74,8 @@ public class UnionArrayDeserialiser {
 				}
 			}
 			
-			Method method = deserialiser.findSetter(target, fieldName);
-			
-			Parameter parameters[] = method.getParameters();
-			
-			if (parameters[0].getType().isArray()) {
-				Class<?> componentType = parameters[0].getType().getComponentType();
+			if (setterType.isArray()) {
+				Class<?> componentType = setterType.getComponentType();
 				System.out.println(componentType);
 				
 				Object newArray = Array.newInstance(componentType, dataArray.length);
@@ -101,17 +102,13 @@ public class UnionArrayDeserialiser {
 					}
 				}
 				
-				method.invoke(target, (Object)newArray);
+				setter.set(target, (Object)newArray);
 				
-			} else if (List.class.isAssignableFrom(parameters[0].getType()) || parameters[0].getType().equals(Collection.class)) {
+			} else if (List.class.isAssignableFrom(setterType) || setterType.equals(Collection.class)) {
 	            Class<?> listClass = ContainerFunctions.getListFieldClass(target, fieldName);
+	            Type mapValueType = null;
 
-				List list;
-				if (parameters[0].getType().isInterface()) {
-					list = new LinkedList<>();
-				} else {
-					list = (List) parameters[0].getType().newInstance();
-				}
+				List<Object> list = deserialiser.getCollectionFactory().createList(setterType, listClass, dataArray.length);
 				
 				for (int i = 0; i < dataArray.length; i++) {
 					PVUnion arrayPVUnion = dataArray[i];
@@ -128,8 +125,11 @@ public class UnionArrayDeserialiser {
 					} else if (unionValue instanceof PVStructure) {
 						PVStructure arrayPVStructure = (PVStructure)unionValue;
 						if (Map.class.isAssignableFrom(listClass)) {
-							Type componentType = ContainerFunctions.getMapTypeFromListComponentParent(target, fieldName);
-							newObject = deserialiser.getMapDeserialiser().createMapFromPVStructure(arrayPVStructure, listClass, componentType);
+							if (mapValueType == null) {
+								// Resolve the map type once for the list rather than for each element
+								mapValueType = ContainerFunctions.getMapTypeFromListComponentParent(target, fieldName);
+							}
+							newObject = deserialiser.getMapDeserialiser().createMapFromPVStructure(arrayPVStructure, listClass, mapValueType);
 						} else {
 							newObject = deserialiser.getStructureDeserialiser().createObjectFromPVStructure(arrayPVStructure, listClass);
 						}
@@ -141,7 +141,7 @@ public class UnionArrayDeserialiser {
 										
 					list.add(newObject);
 				}
-				method.invoke(target, list);
+				setter.set(target, list);
 			} else {
 				throw new IllegalArgumentException("Unsupported container type");
 			}
@@ -216,12 +216,7 @@ public class UnionArrayDeserialiser {
 	            Class<?> listClass = ContainerFunctions.getListClass(valueClass);
 	            Class<?> componentType = ContainerFunctions.getListComponentClass(valueClass);
 
-				List list;
-				if (ContainerFunctions.isInterface(listClass)) {
-					list = new LinkedList<>();
-				} else {
-					list = (List) ((Class<?>)listClass).newInstance();
-				}
+				List<Object> list = deserialiser.getCollectionFactory().createList(listClass, componentType, dataArray.length);
 				
 				for (int i = 0; i < dataArray.length; i++) {
 					PVUnion arrayPVUnion = dataArray[i];
@@ -0,0 +1,669 @@
+package org.epics.pvmarshaller.marshaller.processor;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardLocation;
+
+import org.epics.pvmarshaller.marshaller.api.IPVStructureMarshallerProvider;
+import org.epics.pvmarshaller.marshaller.api.PVMarshallable;
+
+/**
+ * Annotation processor that generates a marshaller for each class marked with {@link PVMarshallable}.
+ * For a class Foo, the generated class Foo_PVMarshaller holds the Structure of Foo as a constant and implements
+ * IPVStructureSerialiser, IPVStructureDeserialiser and IPVStructureMarshallerProvider with straight-line code that
+ * reads and writes each field directly, or through its getter and setter if the field is not accessible.
+ * The generated classes are listed in META-INF/services so that they are found by the PVMarshaller.
+ * @author Matt Taylor
+ *
+ */
+@SupportedAnnotationTypes("org.epics.pvmarshaller.marshaller.api.PVMarshallable")
+public class PVMarshallableProcessor extends AbstractProcessor {
+
+	/**
+	 * The suffix added to the name of each annotated class to make the name of its generated marshaller
+	 */
+	public static final String SUFFIX = "_PVMarshaller";
+
+	private final List<String> generatedProviders = new ArrayList<String>();
+
+	@Override
+	public SourceVersion getSupportedSourceVersion() {
+		return SourceVersion.latestSupported();
+	}
+
+	@Override
+	public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+		for (Element element : roundEnv.getElementsAnnotatedWith(PVMarshallable.class)) {
+			if (element.getKind() != ElementKind.CLASS) {
+				error(element, "@PVMarshallable can only be used on classes");
+				continue;
+			}
+			try {
+				generateMarshaller((TypeElement) element);
+			} catch (IllegalArgumentException e) {
+				error(element, e.getMessage());
+			} catch (IOException e) {
+				error(element, "Unable to write marshaller: " + e.getMessage());
+			}
+		}
+
+		if (roundEnv.processingOver() && !generatedProviders.isEmpty()) {
+			try {
+				writeServiceFile();
+			} catch (IOException e) {
+				processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Unable to write service file: " + e.getMessage());
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Generates the marshaller source for an annotated class
+	 * @param typeElement The annotated class
+	 * @throws IOException
+	 * @throws IllegalArgumentException if the class or one of its fields is not supported
+	 */
+	private void generateMarshaller(TypeElement typeElement) throws IOException {
+		checkClass(typeElement);
+
+		String packageName = getPackage(typeElement).getQualifiedName().toString();
+		String className = typeElement.getQualifiedName().toString();
+		String generatedName = getGeneratedSimpleName(typeElement);
+		String generatedQualifiedName = packageName.isEmpty() ? generatedName : packageName + "." + generatedName;
+
+		String id = typeElement.getAnnotation(PVMarshallable.class).id();
+		if (id.isEmpty()) {
+			id = className;
+		}
+
+		List<FieldModel> fields = getFields(typeElement);
+
+		StringBuilder source = new StringBuilder();
+		if (!packageName.isEmpty()) {
+			source.append("package ").append(packageName).append(";\n\n");
+		}
+		source.append("import org.epics.pvdata.factory.FieldFactory;\n");
+		source.append("import org.epics.pvdata.pv.*;\n");
+		source.append("import org.epics.pvmarshaller.marshaller.api.IPVStructureDeserialiser;\n");
+		source.append("import org.epics.pvmarshaller.marshaller.api.IPVStructureMarshallerProvider;\n");
+		source.append("import org.epics.pvmarshaller.marshaller.api.IPVStructureSerialiser;\n");
+		source.append("import org.epics.pvmarshaller.marshaller.deserialisers.Deserialiser;\n");
+		source.append("import org.epics.pvmarshaller.marshaller.serialisers.Serialiser;\n\n");
+		source.append("/**\n * Marshaller for {@link ").append(className).append("}, generated by ")
+			.append(PVMarshallableProcessor.class.getSimpleName()).append(". Do not edit.\n */\n");
+		source.append("public final class ").append(generatedName).append(" implements IPVStructureMarshallerProvider, IPVStructureSerialiser<")
+			.append(className).append(">, IPVStructureDeserialiser {\n\n");
+
+		// Structure constant
+		source.append("\tpublic static final String ID = \"").append(escape(id)).append("\";\n\n");
+		source.append("\tpublic static final Structure STRUCTURE = FieldFactory.getFieldCreate().createFieldBuilder()\n");
+		for (FieldModel field : fields) {
+			source.append("\t\t.").append(field.structureEntry()).append("\n");
+		}
+		source.append("\t\t.setId(ID)\n\t\t.createStructure();\n\n");
+
+		// Serialisation
+		source.append("\tpublic static void populate(").append(className).append(" source, PVStructure pvStructure) {\n");
+		source.append("\t\tPVField[] pvFields = pvStructure.getPVFields();\n");
+		for (int i = 0; i < fields.size(); i++) {
+			source.append(fields.get(i).populateStatement(i));
+		}
+		source.append("\t}\n\n");
+		source.append("\tpublic static void clear(PVStructure pvStructure) {\n");
+		source.append("\t\tPVField[] pvFields = pvStructure.getPVFields();\n");
+		for (int i = 0; i < fields.size(); i++) {
+			source.append("\t\t").append(fields.get(i).clearStatement(i)).append("\n");
+		}
+		source.append("\t}\n\n");
+
+		// Deserialisation
+		source.append("\tpublic static ").append(className).append(" create(PVStructure pvStructure) {\n");
+		source.append("\t\t").append(className).append(" target = new ").append(className).append("();\n");
+		for (int i = 0; i < fields.size(); i++) {
+			source.append(fields.get(i).createStatement(i));
+		}
+		source.append("\t\treturn target;\n\t}\n\n");
+
+		// Interface implementations
+		source.append("\t@Override\n\tpublic Class<?> getMarshalledClass() {\n\t\treturn ").append(className).append(".class;\n\t}\n\n");
+		source.append("\t@Override\n\tpublic String getId() {\n\t\treturn ID;\n\t}\n\n");
+		source.append("\t@Override\n\tpublic Structure getStructure() {\n\t\treturn STRUCTURE;\n\t}\n\n");
+		source.append("\t@Override\n\tpublic IPVStructureSerialiser<?> getSerialiser() {\n\t\treturn this;\n\t}\n\n");
+		source.append("\t@Override\n\tpublic IPVStructureDeserialiser getDeserialiser() {\n\t\treturn this;\n\t}\n\n");
+		source.append("\t@Override\n\tpublic Structure buildStructure(Serialiser serialiser, ").append(className).append(" source) {\n\t\treturn STRUCTURE;\n\t}\n\n");
+		source.append("\t@Override\n\tpublic void populatePVStructure(Serialiser serialiser, ").append(className)
+			.append(" source, PVStructure pvStructure) {\n\t\tpopulate(source, pvStructure);\n\t}\n\n");
+		source.append("\t@Override\n\tpublic Object fromPVStructure(Deserialiser deserialiser, PVStructure pvStructure) {\n\t\treturn create(pvStructure);\n\t}\n");
+		source.append("}\n");
+
+		JavaFileObject sourceFile = processingEnv.getFiler().createSourceFile(generatedQualifiedName, typeElement);
+		try (Writer writer = sourceFile.openWriter()) {
+			writer.write(source.toString());
+		}
+
+		generatedProviders.add(generatedQualifiedName);
+	}
+
+	/**
+	 * Writes the service file listing the generated marshallers. Any marshallers already listed in the file are kept,
+	 * so that an incremental compilation of some of the annotated classes does not drop the others
+	 * @throws IOException
+	 */
+	private void writeServiceFile() throws IOException {
+		String serviceFileName = "META-INF/services/" + IPVStructureMarshallerProvider.class.getName();
+		Set<String> providers = new LinkedHashSet<String>(readServiceFile(serviceFileName));
+		providers.addAll(generatedProviders);
+
+		FileObject serviceFile = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", serviceFileName);
+		try (Writer writer = serviceFile.openWriter()) {
+			for (String provider : providers) {
+				writer.write(provider);
+				writer.write("\n");
+			}
+		}
+	}
+
+	/**
+	 * Reads the providers listed in an existing service file from an earlier compilation
+	 * @param serviceFileName The name of the service file
+	 * @return The providers, or an empty list if there is no existing file
+	 */
+	private List<String> readServiceFile(String serviceFileName) {
+		List<String> providers = new ArrayList<String>();
+		try {
+			FileObject serviceFile = processingEnv.getFiler().getResource(StandardLocation.CLASS_OUTPUT, "", serviceFileName);
+			try (BufferedReader reader = new BufferedReader(serviceFile.openReader(true))) {
+				String line;
+				while ((line = reader.readLine()) != null) {
+					int commentStart = line.indexOf('#');
+					if (commentStart >= 0) {
+						line = line.substring(0, commentStart);
+					}
+					line = line.trim();
+					if (!line.isEmpty()) {
+						providers.add(line);
+					}
+				}
+			}
+		} catch (IOException | IllegalArgumentException e) {
+			// No existing file, or the Filer can't read it back
+		}
+		return providers;
+	}
+
+	/**
+	 * Checks that the generated marshaller will be able to create and access instances of the class
+	 * @param typeElement The annotated class
+	 * @throws IllegalArgumentException if it won't be able to
+	 */
+	private void checkClass(TypeElement typeElement) {
+		if (typeElement.getModifiers().contains(Modifier.ABSTRACT)) {
+			throw new IllegalArgumentException("@PVMarshallable classes cannot be abstract");
+		}
+		for (Element enclosing = typeElement; enclosing.getKind().isClass(); enclosing = enclosing.getEnclosingElement()) {
+			if (enclosing.getModifiers().contains(Modifier.PRIVATE)) {
+				throw new IllegalArgumentException("@PVMarshallable classes cannot be private");
+			}
+			if (((TypeElement) enclosing).getNestingKind() == NestingKind.MEMBER && !enclosing.getModifiers().contains(Modifier.STATIC)) {
+				throw new IllegalArgumentException("@PVMarshallable classes must be static if they are nested in another class");
+			}
+		}
+
+		for (ExecutableElement constructor : ElementFilter.constructorsIn(typeElement.getEnclosedElements())) {
+			if (constructor.getParameters().isEmpty() && !constructor.getModifiers().contains(Modifier.PRIVATE)) {
+				return;
+			}
+		}
+		throw new IllegalArgumentException("@PVMarshallable classes must have a non-private constructor with no arguments");
+	}
+
+	/**
+	 * Gets the serialisable fields of the class and its superclasses, in the same order as the reflective serialiser
+	 * @param typeElement The annotated class
+	 * @return
+	 * @throws IllegalArgumentException if a field is not supported
+	 */
+	private List<FieldModel> getFields(TypeElement typeElement) {
+		List<FieldModel> fields = new ArrayList<FieldModel>();
+
+		TypeElement classToCheck = typeElement;
+		while (classToCheck != null && !classToCheck.getQualifiedName().contentEquals(Object.class.getName())) {
+			for (VariableElement field : ElementFilter.fieldsIn(classToCheck.getEnclosedElements())) {
+				if (!field.getModifiers().contains(Modifier.TRANSIENT) && !field.getModifiers().contains(Modifier.STATIC)) {
+					fields.add(createFieldModel(typeElement, field));
+				}
+			}
+
+			TypeMirror superclass = classToCheck.getSuperclass();
+			classToCheck = superclass.getKind() == TypeKind.DECLARED ? (TypeElement) ((DeclaredType) superclass).asElement() : null;
+		}
+		return fields;
+	}
+
+	/**
+	 * Creates the model of how a field is marshalled
+	 * @param typeElement The annotated class
+	 * @param field The field
+	 * @return
+	 * @throws IllegalArgumentException if the field is not supported
+	 */
+	private FieldModel createFieldModel(TypeElement typeElement, VariableElement field) {
+		String name = field.getSimpleName().toString();
+		TypeMirror type = field.asType();
+
+		FieldModel model = new FieldModel(name, processingEnv.getTypeUtils().erasure(type).toString());
+
+		if (type.getKind() == TypeKind.ARRAY) {
+			TypeMirror componentType = ((ArrayType) type).getComponentType();
+			String[] scalar = getScalar(componentType);
+			if (scalar == null || isCharacter(componentType)) {
+				throw new IllegalArgumentException("Field " + name + " has an array type that is not supported by @PVMarshallable: " + type);
+			}
+			model.kind = FieldKind.SCALAR_ARRAY;
+			model.scalarType = scalar[0];
+			model.pvClass = scalar[1] + "Array";
+			model.arrayDataClass = scalar[1].substring(2) + "ArrayData";
+			if (componentType.getKind() == TypeKind.DECLARED && !isString(componentType)) {
+				model.unboxedType = processingEnv.getTypeUtils().unboxedType(componentType).toString();
+			}
+		} else if (getScalar(type) != null) {
+			String[] scalar = getScalar(type);
+			model.kind = isCharacter(type) ? FieldKind.CHAR : FieldKind.SCALAR;
+			model.scalarType = scalar[0];
+			model.pvClass = scalar[1];
+			model.nullable = !type.getKind().isPrimitive();
+		} else if (type.getKind() == TypeKind.DECLARED && ((DeclaredType) type).asElement().getAnnotation(PVMarshallable.class) != null) {
+			TypeElement nestedElement = (TypeElement) ((DeclaredType) type).asElement();
+			String nestedPackage = getPackage(nestedElement).getQualifiedName().toString();
+			model.kind = FieldKind.NESTED;
+			model.nestedMarshaller = (nestedPackage.isEmpty() ? "" : nestedPackage + ".") + getGeneratedSimpleName(nestedElement);
+		} else {
+			throw new IllegalArgumentException("Field " + name + " has a type that is not supported by @PVMarshallable: " + type);
+		}
+
+		model.readExpression = getReadExpression(typeElement, field);
+		model.writeFormat = getWriteFormat(typeElement, field);
+
+		return model;
+	}
+
+	/**
+	 * Gets the expression that reads the field from 'source', using the field directly if possible, otherwise its getter
+	 * @param typeElement The annotated class
+	 * @param field The field
+	 * @return
+	 * @throws IllegalArgumentException if the field cannot be read
+	 */
+	private String getReadExpression(TypeElement typeElement, VariableElement field) {
+		String name = field.getSimpleName().toString();
+		if (isAccessible(typeElement, field)) {
+			return "source." + name;
+		}
+
+		ExecutableElement getter = findMethod(typeElement, "get" + name, 0);
+		if (getter == null) {
+			getter = findMethod(typeElement, "is" + name, 0);
+		}
+		if (getter == null) {
+			throw new IllegalArgumentException("Field " + name + " is not accessible and has no accessible getter");
+		}
+		return "source." + getter.getSimpleName() + "()";
+	}
+
+	/**
+	 * Gets the format of the statement that writes a value ('%s') to the field of 'target', using the field directly if
+	 * possible, otherwise its setter
+	 * @param typeElement The annotated class
+	 * @param field The field
+	 * @return
+	 * @throws IllegalArgumentException if the field cannot be written
+	 */
+	private String getWriteFormat(TypeElement typeElement, VariableElement field) {
+		String name = field.getSimpleName().toString();
+		if (isAccessible(typeElement, field) && !field.getModifiers().contains(Modifier.FINAL)) {
+			return "target." + name + " = %s;";
+		}
+
+		ExecutableElement setter = findMethod(typeElement, "set" + name, 1);
+		if (setter == null) {
+			throw new IllegalArgumentException("Field " + name + " is not accessible and has no accessible setter");
+		}
+		return "target." + setter.getSimpleName() + "(%s);";
+	}
+
+	/**
+	 * Finds an accessible method in the class or its superclasses with a name matching (ignoring case) and the given number of parameters
+	 * @param typeElement The annotated class
+	 * @param methodName The name of the method
+	 * @param parameterCount The number of parameters
+	 * @return The method or null if there isn't one
+	 */
+	private ExecutableElement findMethod(TypeElement typeElement, String methodName, int parameterCount) {
+		TypeElement classToCheck = typeElement;
+		while (classToCheck != null) {
+			for (ExecutableElement method : ElementFilter.methodsIn(classToCheck.getEnclosedElements())) {
+				if (method.getSimpleName().toString().equalsIgnoreCase(methodName) && method.getParameters().size() == parameterCount
+						&& !method.getModifiers().contains(Modifier.STATIC) && isAccessible(typeElement, method)) {
+					return method;
+				}
+			}
+			TypeMirror superclass = classToCheck.getSuperclass();
+			classToCheck = superclass.getKind() == TypeKind.DECLARED ? (TypeElement) ((DeclaredType) superclass).asElement() : null;
+		}
+		return null;
+	}
+
+	/**
+	 * Gets whether a member can be accessed from the generated marshaller, which is in the package of the annotated class
+	 * @param typeElement The annotated class
+	 * @param member The field or method
+	 * @return
+	 */
+	private boolean isAccessible(TypeElement typeElement, Element member) {
+		Set<Modifier> modifiers = member.getModifiers();
+		if (modifiers.contains(Modifier.PUBLIC)) {
+			return true;
+		}
+		if (modifiers.contains(Modifier.PRIVATE)) {
+			return false;
+		}
+		return getPackage(member).equals(getPackage(typeElement));
+	}
+
+	/**
+	 * Gets the PVData scalar type and PVField class name of a type
+	 * @param type The type
+	 * @return An array of the ScalarType name and PVField class name, or null if the type is not a scalar
+	 */
+	private String[] getScalar(TypeMirror type) {
+		switch (type.getKind()) {
+		case INT:
+			return new String[] {"pvInt", "PVInt"};
+		case SHORT:
+			return new String[] {"pvShort", "PVShort"};
+		case LONG:
+			return new String[] {"pvLong", "PVLong"};
+		case BYTE:
+			return new String[] {"pvByte", "PVByte"};
+		case BOOLEAN:
+			return new String[] {"pvBoolean", "PVBoolean"};
+		case FLOAT:
+			return new String[] {"pvFloat", "PVFloat"};
+		case DOUBLE:
+			return new String[] {"pvDouble", "PVDouble"};
+		case CHAR:
+			return new String[] {"pvString", "PVString"};
+		case DECLARED:
+			String name = ((TypeElement) ((DeclaredType) type).asElement()).getQualifiedName().toString();
+			if (name.equals(String.class.getName()) || name.equals(Character.class.getName())) {
+				return new String[] {"pvString", "PVString"};
+			}
+			try {
+				return getScalar(processingEnv.getTypeUtils().unboxedType(type));
+			} catch (IllegalArgumentException e) {
+				return null;
+			}
+		default:
+			return null;
+		}
+	}
+
+	/**
+	 * Gets whether a type is a String
+	 * @param type The type
+	 * @return
+	 */
+	private boolean isString(TypeMirror type) {
+		return type.getKind() == TypeKind.DECLARED
+				&& ((TypeElement) ((DeclaredType) type).asElement()).getQualifiedName().contentEquals(String.class.getName());
+	}
+
+	/**
+	 * Gets whether a type is a char or Character
+	 * @param type The type
+	 * @return
+	 */
+	private boolean isCharacter(TypeMirror type) {
+		return type.getKind() == TypeKind.CHAR || (type.getKind() == TypeKind.DECLARED
+				&& ((TypeElement) ((DeclaredType) type).asElement()).getQualifiedName().contentEquals(Character.class.getName()));
+	}
+
+	/**
+	 * Gets the simple name of the generated marshaller for a class, e.g. Outer_Inner_PVMarshaller for the nested class Outer.Inner
+	 * @param typeElement The class
+	 * @return
+	 */
+	private static String getGeneratedSimpleName(TypeElement typeElement) {
+		String name = typeElement.getSimpleName().toString();
+		for (Element enclosing = typeElement.getEnclosingElement(); enclosing.getKind().isClass(); enclosing = enclosing.getEnclosingElement()) {
+			name = enclosing.getSimpleName() + "_" + name;
+		}
+		return name + SUFFIX;
+	}
+
+	private PackageElement getPackage(Element element) {
+		return processingEnv.getElementUtils().getPackageOf(element);
+	}
+
+	private void error(Element element, String message) {
+		processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+	}
+
+	private static String escape(String value) {
+		return value.replace("\\", "\\\\").replace("\"", "\\\"");
+	}
+
+	/**
+	 * The way a field is marshalled
+	 */
+	private enum FieldKind {
+		SCALAR,
+		CHAR,
+		SCALAR_ARRAY,
+		NESTED
+	}
+
+	/**
+	 * Model of how a single field is marshalled, used to write the generated code for the field
+	 */
+	private static class FieldModel {
+		final String name;
+		final String javaType;
+		FieldKind kind;
+		String scalarType;
+		String pvClass;
+		String arrayDataClass;
+		String unboxedType;
+		String nestedMarshaller;
+		boolean nullable;
+		String readExpression;
+		String writeFormat;
+
+		FieldModel(String name, String javaType) {
+			this.name = name;
+			this.javaType = javaType;
+		}
+
+		/**
+		 * Gets the FieldBuilder call that adds the field to the Structure
+		 * @return
+		 */
+		String structureEntry() {
+			switch (kind) {
+			case SCALAR_ARRAY:
+				return "addArray(\"" + name + "\", ScalarType." + scalarType + ")";
+			case NESTED:
+				return "add(\"" + name + "\", " + nestedMarshaller + ".STRUCTURE)";
+			default:
+				return "add(\"" + name + "\", ScalarType." + scalarType + ")";
+			}
+		}
+
+		/**
+		 * Gets the statements that copy the field from 'source' into the PVField at the given index of 'pvFields'
+		 * @param index The index of the field in the Structure
+		 * @return
+		 */
+		String populateStatement(int index) {
+			String pvField = "((" + pvClass + ") pvFields[" + index + "])";
+			switch (kind) {
+			case SCALAR:
+				if (!nullable) {
+					return "\t\t" + pvField + ".put(" + readExpression + ");\n";
+				}
+				break;
+			case CHAR:
+				if (!nullable) {
+					return "\t\t" + pvField + ".put(String.valueOf(" + readExpression + "));\n";
+				}
+				break;
+			default:
+				break;
+			}
+
+			StringBuilder statement = new StringBuilder();
+			statement.append("\t\t{\n\t\t\t").append(javaType).append(" value = ").append(readExpression).append(";\n");
+			statement.append("\t\t\tif (value != null) {\n");
+			switch (kind) {
+			case SCALAR:
+				statement.append("\t\t\t\t").append(pvField).append(".put(value);\n");
+				break;
+			case CHAR:
+				statement.append("\t\t\t\t").append(pvField).append(".put(String.valueOf(value));\n");
+				break;
+			case SCALAR_ARRAY:
+				String array = "value";
+				if (unboxedType != null) {
+					// Wrapper arrays are unboxed into a primitive array to put into the PVField
+					statement.append("\t\t\t\t").append(unboxedType).append("[] unboxed = new ").append(unboxedType).append("[value.length];\n");
+					statement.append("\t\t\t\tfor (int i = 0; i < value.length; i++) {\n\t\t\t\t\tunboxed[i] = value[i];\n\t\t\t\t}\n");
+					array = "unboxed";
+				}
+				statement.append("\t\t\t\t").append(pvField).append(".put(0, value.length, ").append(array).append(", 0);\n");
+				statement.append("\t\t\t\t").append(pvField).append(".setLength(value.length);\n");
+				break;
+			case NESTED:
+				statement.append("\t\t\t\t").append(nestedMarshaller).append(".populate(value, (PVStructure) pvFields[").append(index).append("]);\n");
+				break;
+			}
+			// Reset null fields, as the PVStructure may be being updated in place
+			statement.append("\t\t\t} else {\n\t\t\t\t").append(clearStatement(index)).append("\n");
+			statement.append("\t\t\t}\n\t\t}\n");
+			return statement.toString();
+		}
+
+		/**
+		 * Gets the statement that resets the PVField at the given index of 'pvFields' to its default value,
+		 * following the same rules as SchemaStructureBuilder.clearValue
+		 * @param index The index of the field in the Structure
+		 * @return
+		 */
+		String clearStatement(int index) {
+			String pvField = "((" + pvClass + ") pvFields[" + index + "])";
+			switch (kind) {
+			case SCALAR_ARRAY:
+				return pvField + ".setLength(0);";
+			case NESTED:
+				return nestedMarshaller + ".clear((PVStructure) pvFields[" + index + "]);";
+			default:
+				return pvField + ".put(" + getDefaultValue() + ");";
+			}
+		}
+
+		/**
+		 * Gets the literal for the default value of a scalar field
+		 * @return
+		 */
+		private String getDefaultValue() {
+			switch (scalarType) {
+			case "pvString":
+				return "\"\"";
+			case "pvBoolean":
+				return "false";
+			case "pvByte":
+				return "(byte) 0";
+			case "pvShort":
+				return "(short) 0";
+			case "pvLong":
+				return "0L";
+			case "pvFloat":
+				return "0f";
+			case "pvDouble":
+				return "0d";
+			default:
+				return "0";
+			}
+		}
+
+		/**
+		 * Gets the statements that copy the field from 'pvStructure' into 'target'. Fields are looked up by name so that
+		 * PVStructures from other sources can be deserialised, and fields that are missing are left unset
+		 * @param index The index of the field, used to make variable names unique
+		 * @return
+		 */
+		String createStatement(int index) {
+			StringBuilder statement = new StringBuilder();
+			String variable = "pvField" + index;
+			String lookupClass = kind == FieldKind.NESTED ? "PVStructure" : pvClass;
+			statement.append("\t\t").append(lookupClass).append(" ").append(variable).append(" = pvStructure.getSubField(")
+				.append(lookupClass).append(".class, \"").append(name).append("\");\n");
+			statement.append("\t\tif (").append(variable).append(" != null) {\n");
+			switch (kind) {
+			case SCALAR:
+				statement.append("\t\t\t").append(String.format(writeFormat, variable + ".get()")).append("\n");
+				break;
+			case CHAR:
+				statement.append("\t\t\tString value = ").append(variable).append(".get();\n");
+				statement.append("\t\t\tif (value.length() > 1) {\n\t\t\t\tthrow new IllegalArgumentException(\"")
+					.append(name).append(" has too many characters for a single char\");\n\t\t\t}\n");
+				// An empty string is a cleared field, so is read back as null or '\0' as it is for reflective deserialisation
+				String emptyValue = nullable ? "null" : "'\\0'";
+				statement.append("\t\t\t").append(String.format(writeFormat, "value.isEmpty() ? " + emptyValue + " : value.charAt(0)")).append("\n");
+				break;
+			case SCALAR_ARRAY:
+				statement.append("\t\t\tint length = ").append(variable).append(".getLength();\n");
+				statement.append("\t\t\t").append(arrayDataClass).append(" data = new ").append(arrayDataClass).append("();\n");
+				statement.append("\t\t\t").append(variable).append(".get(0, length, data);\n");
+				statement.append("\t\t\t").append(javaType).append(" value = new ").append(javaType.replace("[]", "[length]")).append(";\n");
+				if (unboxedType != null) {
+					statement.append("\t\t\tfor (int i = 0; i < length; i++) {\n\t\t\t\tvalue[i] = data.data[data.offset + i];\n\t\t\t}\n");
+				} else {
+					statement.append("\t\t\tSystem.arraycopy(data.data, data.offset, value, 0, length);\n");
+				}
+				statement.append("\t\t\t").append(String.format(writeFormat, "value")).append("\n");
+				break;
+			case NESTED:
+				statement.append("\t\t\t").append(String.format(writeFormat, nestedMarshaller + ".create(" + variable + ")")).append("\n");
+				break;
+			}
+			statement.append("\t\t}\n");
+			return statement.toString();
+		}
+	}
+}
@@ -2,21 +2,26 @@ package org.epics.pvmarshaller.marshaller.serialisers;
 
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Collection;
 
 import org.epics.pvdata.factory.PVDataFactory;
 import org.epics.pvdata.pv.PVBooleanArray;
 import org.epics.pvdata.pv.PVByteArray;
 import org.epics.pvdata.pv.PVDataCreate;
 import org.epics.pvdata.pv.PVDoubleArray;
+import org.epics.pvdata.pv.PVField;
 import org.epics.pvdata.pv.PVFloatArray;
 import org.epics.pvdata.pv.PVIntArray;
 import org.epics.pvdata.pv.PVLongArray;
 import org.epics.pvdata.pv.PVShortArray;
 import org.epics.pvdata.pv.PVStringArray;
 import org.epics.pvdata.pv.PVStructure;
+import org.epics.pvdata.pv.PVStructureArray;
 import org.epics.pvdata.pv.PVUnion;
 import org.epics.pvdata.pv.PVUnionArray;
+import org.epics.pvdata.pv.Structure;
+import org.epics.pvdata.pv.UnionArrayData;
 
 /**
  * Serialises arrays
@@ -49,8 +54,7 @@ public class ArraySerialiser {
 	public static void setPrimitiveArrayValue(Field field, PVStructure structure, Object object) throws IllegalArgumentException, IllegalAccessException, InvocationTargetException {
 		Class<?> fieldType = field.getType();
 		Class<?> componentType = fieldType.getComponentType();
-		Method method = findGetter(object, field.getName());
-		Object arrayObject = method.invoke(object);
+		Object arrayObject = Serialiser.findAccessor(object, field.getName()).get(object);
 		if (arrayObject != null) {
 			setPrimitiveArrayValue(field.getName(), componentType, structure, arrayObject);
 		}
@@ -66,6 +70,23 @@ public class ArraySerialiser {
 	 * @throws IllegalAccessException
 	 */
 	public static void setPrimitiveArrayValue(String name, Class<?> componentType, PVStructure structure, Object arrayObject) throws IllegalArgumentException, IllegalAccessException
+	{
+		setPrimitiveArrayValue(name, componentType, structure, arrayObject, false);
+	}
+	
+	/**
+	 * Sets the values of an array containing primitives, optionally handing a Java primitive array to the PVArray by reference
+	 * instead of copying it. A shared array is owned by the PVStructure from then on, so it must not be modified by the caller
+	 * and may be overwritten if the PVStructure is later updated in place
+	 * @param name The name of the field
+	 * @param componentType The type of data contained in the field
+	 * @param structure The structure to populate the data with
+	 * @param arrayObject The array containing the data
+	 * @param shareArray True if an array of a primitive type should be shared rather than copied
+	 * @throws IllegalArgumentException
+	 * @throws IllegalAccessException
+	 */
+	public static void setPrimitiveArrayValue(String name, Class<?> componentType, PVStructure structure, Object arrayObject, boolean shareArray) throws IllegalArgumentException, IllegalAccessException
 	{
 		int numPut = 0;
 		
@@ -81,6 +102,11 @@ public class ArraySerialiser {
 				}
 			}
 			PVIntArray array = structure.getSubField(PVIntArray.class, name);
+			if (shareArray && componentType.equals(int.class)) {
+				array.shareData(value);
+				return;
+			}
+			array.setCapacity(value.length);
 			while (numPut < value.length)
 			{
 				numPut += array.put(numPut, value.length - numPut, value, numPut);
@@ -97,6 +123,11 @@ public class ArraySerialiser {
 				}
 			}
 			PVShortArray array = structure.getSubField(PVShortArray.class, name);
+			if (shareArray && componentType.equals(short.class)) {
+				array.shareData(value);
+				return;
+			}
+			array.setCapacity(value.length);
 			while (numPut < value.length)
 			{
 				numPut += array.put(numPut, value.length - numPut, value, numPut);
@@ -113,6 +144,11 @@ public class ArraySerialiser {
 				}
 			}
 			PVLongArray array = structure.getSubField(PVLongArray.class, name);
+			if (shareArray && componentType.equals(long.class)) {
+				array.shareData(value);
+				return;
+			}
+			array.setCapacity(value.length);
 			while (numPut < value.length)
 			{
 				numPut += array.put(numPut, value.length - numPut, value, numPut);
@@ -129,6 +165,11 @@ public class ArraySerialiser {
 				}
 			}
 			PVByteArray array = structure.getSubField(PVByteArray.class, name);
+			if (shareArray && componentType.equals(byte.class)) {
+				array.shareData(value);
+				return;
+			}
+			array.setCapacity(value.length);
 			while (numPut < value.length)
 			{
 				numPut += array.put(numPut, value.length - numPut, value, numPut);
@@ -145,6 +186,11 @@ public class ArraySerialiser {
 				}
 			}
 			PVBooleanArray array = structure.getSubField(PVBooleanArray.class, name);
+			if (shareArray && componentType.equals(boolean.class)) {
+				array.shareData(value);
+				return;
+			}
+			array.setCapacity(value.length);
 			while (numPut < value.length)
 			{
 				numPut += array.put(numPut, value.length - numPut, value, numPut);
@@ -161,6 +207,11 @@ public class ArraySerialiser {
 				}
 			}
 			PVFloatArray array = structure.getSubField(PVFloatArray.class, name);
+			if (shareArray && componentType.equals(float.class)) {
+				array.shareData(value);
+				return;
+			}
+			array.setCapacity(value.length);
 			while (numPut < value.length)
 			{
 				numPut += array.put(numPut, value.length - numPut, value, numPut);
@@ -177,6 +228,11 @@ public class ArraySerialiser {
 				}
 			}
 			PVDoubleArray array = structure.getSubField(PVDoubleArray.class, name);
+			if (shareArray && componentType.equals(double.class)) {
+				array.shareData(value);
+				return;
+			}
+			array.setCapacity(value.length);
 			while (numPut < value.length)
 			{
 				numPut += array.put(numPut, value.length - numPut, value, numPut);
@@ -197,6 +253,7 @@ public class ArraySerialiser {
 				stringArray[i] = String.valueOf(value[i]);
 			}
 			PVStringArray array = structure.getSubField(PVStringArray.class, name);
+			array.setCapacity(value.length);
 			while (numPut < value.length)
 			{
 				numPut += array.put(numPut, stringArray.length - numPut, stringArray, numPut);
@@ -204,6 +261,7 @@ public class ArraySerialiser {
 		} else if (componentType.equals(String.class)) {
 			String[] value = (String[])arrayObject;
 			PVStringArray array = structure.getSubField(PVStringArray.class, name);
+			array.setCapacity(value.length);
 			while (numPut < value.length)
 			{
 				numPut += array.put(numPut, value.length - numPut, value, numPut);
@@ -222,8 +280,7 @@ public class ArraySerialiser {
 	 */
 	public void setObjectArrayValue(Field field, PVStructure structure, Object object) throws Exception
 	{
-		Method method = findGetter(object, field.getName());
-		Object fieldObject = method.invoke(object);
+		Object fieldObject = Serialiser.findAccessor(object, field.getName()).get(object);
 		Object[] value = (Object[])fieldObject;
 		
 		setObjectArrayValue(field.getName(), structure, value);
@@ -241,61 +298,96 @@ public class ArraySerialiser {
 	{
 		Object[] value = (Object[])arrayObject;
 		
-		PVUnionArray pvUnionValue = structure.getSubField(PVUnionArray.class, name);
-		PVUnion[] unionArray = new PVUnion[value.length];
+		PVField pvField = structure.getSubField(name);
+		if (pvField instanceof PVStructureArray) {
+			setStructureArrayValue((PVStructureArray)pvField, Arrays.asList(value));
+			return;
+		}
 		
-		//PVStructureArray array = structure.getSubField(PVStructureArray.class, name);
-		//PVStructure[] pvStructures = new PVStructure[value.length];
+		setUnionArrayValue(structure.getSubField(PVUnionArray.class, name), Arrays.asList(value));
+	}
+	
+	/**
+	 * Sets the values of a variant union array from a list or array of objects. When the union array is being repopulated, the
+	 * PVUnion and PVStructure already at each index are reused if the object still has the same Structure, rather than
+	 * creating new ones for every element on every update
+	 * @param pvUnionArray The union array to populate
+	 * @param elements The objects in the list or array
+	 * @throws Exception
+	 */
+	public void setUnionArrayValue(PVUnionArray pvUnionArray, Collection<?> elements) throws Exception
+	{
+		PVUnion[] existingArray = null;
+		int existingOffset = 0;
+		int existingLength = 0;
+		if (pvUnionArray.getLength() > 0) {
+			UnionArrayData unionArrayData = new UnionArrayData();
+			existingLength = pvUnionArray.get(0, pvUnionArray.getLength(), unionArrayData);
+			existingArray = unionArrayData.data;
+			existingOffset = unionArrayData.offset;
+		}
+		
+		PVUnion[] unionArray = new PVUnion[elements.size()];
 		
-		for (int i = 0; i < value.length; i++) {
-			//pvStructures[i] = pvDataCreate.createPVStructure(array.getStructureArray().getStructure());
-			//PVStructure pvs = pvStructures[i];
+		int index = 0;
+		for (Object element : elements) {
+			Structure elementStructure = serialiser.buildStructure(element);
 			
-			PVStructure pvs = serialiser.toPVStructure(value[i]);
-
-			PVUnion pvUnion = pvDataCreate.createPVVariantUnion();
+			PVUnion pvUnion = null;
+			if (index < existingLength) {
+				pvUnion = existingArray[existingOffset + index];
+				PVField existingValue = pvUnion != null ? pvUnion.get() : null;
+				if (existingValue instanceof PVStructure && StructureFingerprint.matches(elementStructure, existingValue.getField())) {
+					serialiser.setValues(element, (PVStructure)existingValue);
+				} else {
+					pvUnion = null;
+				}
+			}
 			
-			pvUnion.set(pvs);
-			//serialiser.getObjectSerialiser().setValues(value[i], pvs);
-			unionArray[i] = pvUnion;
+			if (pvUnion == null) {
+				PVStructure pvs = pvDataCreate.createPVStructure(elementStructure);
+				serialiser.setValues(element, pvs);
+				
+				pvUnion = pvDataCreate.createPVVariantUnion();
+				pvUnion.set(pvs);
+			}
+			unionArray[index++] = pvUnion;
 		}
 		int numPut = 0;
+		pvUnionArray.setCapacity(unionArray.length);
 		while (numPut < unionArray.length)
 		{
-			numPut += pvUnionValue.put(numPut, unionArray.length - numPut, unionArray, numPut);
+			numPut += pvUnionArray.put(numPut, unionArray.length - numPut, unionArray, numPut);
 		}
 	}
 	
 	/**
-	 * Helper method to find the getter Method for a named field in an object
-	 * @param object The object to get the getter in
-	 * @param variableName The name of the field to get the getter for
-	 * @return
-	 * @throws IllegalArgumentException
+	 * Sets the values of a structure array from a list or array of objects that all have its element Structure, populating a
+	 * PVStructure for each object without building its Structure again. Null objects are left as null elements
+	 * @param pvStructureArray The structure array to populate
+	 * @param elements The objects in the list or array
+	 * @throws Exception
 	 */
-	private static Method findGetter(Object object, String variableName) throws IllegalArgumentException {
-		Class<?> clazz = object.getClass();
-		while (clazz != Object.class)  {
-			Method[] allMethods = clazz.getDeclaredMethods();
-			 
-		    for (Method m : allMethods) {
-		    	if (m.getName().toLowerCase().equals("get" + variableName.toLowerCase()) && m.getParameters().length == 0) {
-		    		m.setAccessible(true);
-		    		return m;
-		    	}
-		    }
-		    
-		    // Didn't find a 'get' method, try 'is'
-		    for (Method m : allMethods) {
-		    	if (m.getName().toLowerCase().equals("is" + variableName.toLowerCase()) && m.getParameters().length == 0) {
-		    		m.setAccessible(true);
-		    		return m;
-		    	}
-		    }
-		    
-		    // Didn't find any method in this class, try the superclass
-		    clazz = clazz.getSuperclass();
+	public void setStructureArrayValue(PVStructureArray pvStructureArray, Collection<?> elements) throws Exception
+	{
+		Structure elementStructure = pvStructureArray.getStructureArray().getStructure();
+		PVStructure[] pvStructures = new PVStructure[elements.size()];
+		
+		int index = 0;
+		for (Object element : elements) {
+			if (element != null) {
+				PVStructure pvs = pvDataCreate.createPVStructure(elementStructure);
+				serialiser.getObjectSerialiser().checkFitsStructure(pvStructureArray.getFieldName(), element, null, pvs);
+				serialiser.setValues(element, pvs);
+				pvStructures[index] = pvs;
+			}
+			index++;
+		}
+		int numPut = 0;
+		pvStructureArray.setCapacity(pvStructures.length);
+		while (numPut < pvStructures.length)
+		{
+			numPut += pvStructureArray.put(numPut, pvStructures.length - numPut, pvStructures, numPut);
 		}
-		throw new IllegalArgumentException("Unable to find getter for " + variableName + " in class " + object.getClass());
 	}
 }
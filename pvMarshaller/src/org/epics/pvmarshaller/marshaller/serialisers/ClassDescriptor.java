@@ -0,0 +1,310 @@
+package org.epics.pvmarshaller.marshaller.serialisers;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.epics.pvmarshaller.marshaller.accessors.Accessors;
+import org.epics.pvmarshaller.marshaller.accessors.Getter;
+
+/**
+ * Cached description of the serialisable fields of a class, built once per class on first use
+ * so that the class hierarchy does not have to be reflected over for every serialisation
+ * @author Matt Taylor
+ *
+ */
+public class ClassDescriptor {
+
+	/**
+	 * The way a field is serialised
+	 */
+	public enum FieldKind {
+		PRIMITIVE,
+		CONTAINER,
+		OBJECT
+	}
+
+	// Held by each class rather than in a static map, so that the descriptor does not stop the class loader from being unloaded
+	private static final ClassValue<ClassDescriptor> descriptors = new ClassValue<ClassDescriptor>() {
+		@Override
+		protected ClassDescriptor computeValue(Class<?> clazz) {
+			return new ClassDescriptor(clazz);
+		}
+	};
+
+	private final Class<?> describedClass;
+	private final List<FieldDescriptor> fields;
+	private final Map<String, Method> getters = new ConcurrentHashMap<String, Method>();
+	private final Map<String, Getter> accessors = new ConcurrentHashMap<String, Getter>();
+
+	/**
+	 * Gets the descriptor for the specified class, building it if this is the first time the class has been seen
+	 * @param clazz The class to describe
+	 * @return The descriptor
+	 */
+	public static ClassDescriptor forClass(Class<?> clazz) {
+		return descriptors.get(clazz);
+	}
+
+	/**
+	 * Constructor
+	 * @param clazz The class to describe
+	 */
+	private ClassDescriptor(Class<?> clazz) {
+		this.describedClass = clazz;
+
+		List<FieldDescriptor> fieldList = new ArrayList<FieldDescriptor>();
+
+		Class<?> classToCheck = clazz;
+
+		while (classToCheck != null && classToCheck != Object.class)
+		{
+			for (Field field : classToCheck.getDeclaredFields())
+			{
+				if (!field.getName().equals("this$0"))
+				{
+					if (!Modifier.isTransient(field.getModifiers())) {
+						field.setAccessible(true);
+
+						Method getter = scanForGetter(clazz, field.getName());
+						Getter accessor = null;
+						if (getter != null) {
+							accessor = Accessors.getter(getter);
+							getters.put(field.getName(), getter);
+							accessors.put(field.getName(), accessor);
+						}
+
+						fieldList.add(new FieldDescriptor(clazz, field, getter, accessor, getKind(field.getType())));
+					}
+				}
+			}
+
+			classToCheck = classToCheck.getSuperclass();
+		}
+
+		fields = Collections.unmodifiableList(fieldList);
+	}
+
+	/**
+	 * Gets the class that this descriptor describes
+	 * @return
+	 */
+	public Class<?> getDescribedClass() {
+		return describedClass;
+	}
+
+	/**
+	 * Gets the non-transient fields of the class and its superclasses, in serialisation order
+	 * @return
+	 */
+	public List<FieldDescriptor> getFields() {
+		return fields;
+	}
+
+	/**
+	 * Finds the getter method for the given variable
+	 * @param variableName The name of the variable
+	 * @return The getter method
+	 * @throws IllegalArgumentException if there is no getter for the variable
+	 */
+	public Method findGetter(String variableName) throws IllegalArgumentException {
+		Method getter = getters.get(variableName);
+		if (getter == null) {
+			getter = scanForGetter(describedClass, variableName);
+			if (getter == null) {
+				throw new IllegalArgumentException("Unable to find getter for " + variableName + " in class " + describedClass);
+			}
+			getters.put(variableName, getter);
+		}
+		return getter;
+	}
+
+	/**
+	 * Finds the accessor for the getter method of the given variable
+	 * @param variableName The name of the variable
+	 * @return The accessor
+	 * @throws IllegalArgumentException if there is no getter for the variable
+	 */
+	public Getter findAccessor(String variableName) throws IllegalArgumentException {
+		Getter accessor = accessors.get(variableName);
+		if (accessor == null) {
+			accessor = Accessors.getter(findGetter(variableName));
+			accessors.put(variableName, accessor);
+		}
+		return accessor;
+	}
+
+	/**
+	 * Gets the kind of serialisation needed for the specified field type
+	 * @param fieldType The declared type of the field
+	 * @return
+	 */
+	private static FieldKind getKind(Class<?> fieldType) {
+		if (PrimitiveSerialiser.isPrimitive(fieldType)) {
+			return FieldKind.PRIMITIVE;
+		} else if (ContainerSerialiser.isContainer(fieldType)) {
+			return FieldKind.CONTAINER;
+		}
+		return FieldKind.OBJECT;
+	}
+
+	/**
+	 * Searches the class hierarchy for a 'get' or 'is' method for the given variable
+	 * @param clazz The class to search
+	 * @param variableName The name of the variable
+	 * @return The getter method or null if there isn't one
+	 */
+	private static Method scanForGetter(Class<?> clazz, String variableName) {
+		String getName = "get" + variableName.toLowerCase();
+		String isName = "is" + variableName.toLowerCase();
+
+		while (clazz != null && clazz != Object.class)  {
+			Method[] allMethods = clazz.getDeclaredMethods();
+
+		    for (Method m : allMethods) {
+		    	if (m.getName().toLowerCase().equals(getName) && m.getParameterTypes().length == 0) {
+		    		m.setAccessible(true);
+		    		return m;
+		    	}
+		    }
+
+		    // Didn't find a 'get' method, try 'is'
+		    for (Method m : allMethods) {
+		    	if (m.getName().toLowerCase().equals(isName) && m.getParameterTypes().length == 0) {
+		    		m.setAccessible(true);
+		    		return m;
+		    	}
+		    }
+
+		    // Didn't find any method in this class, try the superclass
+		    clazz = clazz.getSuperclass();
+		}
+		return null;
+	}
+
+	/**
+	 * Cached description of a single serialisable field
+	 * @author Matt Taylor
+	 *
+	 */
+	public static class FieldDescriptor {
+		private final Class<?> ownerClass;
+		private final Field field;
+		private final Method getter;
+		private final Getter accessor;
+		private final FieldKind kind;
+		private final boolean nullable;
+		private volatile Getter fieldAccessor;
+
+		/**
+		 * Constructor
+		 * @param ownerClass The class being described
+		 * @param field The field
+		 * @param getter The resolved getter, or null if the class has no getter for the field
+		 * @param accessor The accessor for the getter, or null if the class has no getter for the field
+		 * @param kind The kind of the field
+		 */
+		FieldDescriptor(Class<?> ownerClass, Field field, Method getter, Getter accessor, FieldKind kind) {
+			this.ownerClass = ownerClass;
+			this.field = field;
+			this.getter = getter;
+			this.accessor = accessor;
+			this.kind = kind;
+			this.nullable = !field.getType().isPrimitive();
+		}
+
+		/**
+		 * Gets the field
+		 * @return
+		 */
+		public Field getField() {
+			return field;
+		}
+
+		/**
+		 * Gets the name of the field
+		 * @return
+		 */
+		public String getName() {
+			return field.getName();
+		}
+
+		/**
+		 * Gets the declared type of the field
+		 * @return
+		 */
+		public Class<?> getType() {
+			return field.getType();
+		}
+
+		/**
+		 * Gets the getter method of the field
+		 * @return
+		 * @throws IllegalArgumentException if the class has no getter for the field
+		 */
+		public Method getGetter() throws IllegalArgumentException {
+			if (getter == null) {
+				throw new IllegalArgumentException("Unable to find getter for " + field.getName() + " in class " + ownerClass);
+			}
+			return getter;
+		}
+
+		/**
+		 * Gets the accessor for the getter method of the field
+		 * @return
+		 * @throws IllegalArgumentException if the class has no getter for the field
+		 */
+		public Getter getAccessor() throws IllegalArgumentException {
+			if (accessor == null) {
+				throw new IllegalArgumentException("Unable to find getter for " + field.getName() + " in class " + ownerClass);
+			}
+			return accessor;
+		}
+
+		/**
+		 * Gets an accessor that reads the field directly, bypassing its getter
+		 * @return
+		 */
+		public Getter getFieldAccessor() {
+			Getter accessor = fieldAccessor;
+			if (accessor == null) {
+				accessor = Accessors.fieldGetter(field);
+				fieldAccessor = accessor;
+			}
+			return accessor;
+		}
+
+		/**
+		 * Gets the kind of the field
+		 * @return
+		 */
+		public FieldKind getKind() {
+			return kind;
+		}
+
+		/**
+		 * Gets whether the field can hold a null value (i.e. it is not a Java primitive)
+		 * @return
+		 */
+		public boolean isNullable() {
+			return nullable;
+		}
+
+		/**
+		 * Gets the value of the field from the specified object using its getter
+		 * @param object The object to get the value from
+		 * @return The value
+		 * @throws IllegalArgumentException
+		 * @throws InvocationTargetException
+		 */
+		public Object getValue(Object object) throws IllegalArgumentException, InvocationTargetException {
+			return getAccessor().get(object);
+		}
+	}
+}
@@ -0,0 +1,510 @@
+package org.epics.pvmarshaller.marshaller.serialisers;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.epics.pvdata.factory.FieldFactory;
+import org.epics.pvdata.pv.FieldBuilder;
+import org.epics.pvdata.pv.FieldCreate;
+import org.epics.pvdata.pv.PVBoolean;
+import org.epics.pvdata.pv.PVByte;
+import org.epics.pvdata.pv.PVDouble;
+import org.epics.pvdata.pv.PVField;
+import org.epics.pvdata.pv.PVFloat;
+import org.epics.pvdata.pv.PVInt;
+import org.epics.pvdata.pv.PVLong;
+import org.epics.pvdata.pv.PVShort;
+import org.epics.pvdata.pv.PVString;
+import org.epics.pvdata.pv.PVStructure;
+import org.epics.pvdata.pv.ScalarType;
+import org.epics.pvdata.pv.Structure;
+import org.epics.pvmarshaller.marshaller.accessors.BooleanGetter;
+import org.epics.pvmarshaller.marshaller.accessors.ByteGetter;
+import org.epics.pvmarshaller.marshaller.accessors.CharGetter;
+import org.epics.pvmarshaller.marshaller.accessors.DoubleGetter;
+import org.epics.pvmarshaller.marshaller.accessors.FloatGetter;
+import org.epics.pvmarshaller.marshaller.accessors.Getter;
+import org.epics.pvmarshaller.marshaller.accessors.IntGetter;
+import org.epics.pvmarshaller.marshaller.accessors.LongGetter;
+import org.epics.pvmarshaller.marshaller.accessors.ShortGetter;
+import org.epics.pvmarshaller.marshaller.api.IPVStructureSerialiser;
+import org.epics.pvmarshaller.marshaller.serialisers.ClassDescriptor.FieldDescriptor;
+
+/**
+ * Serialiser compiled for a single class. When the serialiser is created, each field of the class is turned into a step
+ * bound to the accessor for the field's getter, or for the field itself when direct field access is in use. The structure is then built and populated by running the steps in order,
+ * without inspecting the class again. Primitive fields are written straight to their PVField without boxing or looking
+ * the field up by name. The output is the same as the reflective ObjectSerialiser.
+ * @author Matt Taylor
+ *
+ * @param <T> The class that this serialiser converts from
+ */
+public class CompiledObjectSerialiser<T> implements IPVStructureSerialiser<T> {
+
+	// The serialiser compiled for each class, with getter access and with direct field access
+	private static final ClassValue<CompiledEntry> compiledSerialisers = new CompiledEntries(false);
+	private static final ClassValue<CompiledEntry> compiledFieldSerialisers = new CompiledEntries(true);
+
+	private static final FieldCreate fieldCreate = FieldFactory.getFieldCreate();
+
+	private final Class<T> compiledClass;
+	private final FieldStep[] steps;
+
+	/**
+	 * Gets the compiled serialiser for the specified class, compiling it if this is the first time the class has been seen
+	 * @param clazz The class to compile a serialiser for
+	 * @return The serialiser, or null if one cannot be compiled for the class, e.g. because a field has no getter
+	 */
+	public static <T> CompiledObjectSerialiser<T> forClass(Class<T> clazz) {
+		return forClass(clazz, false);
+	}
+
+	/**
+	 * Gets the compiled serialiser for the specified class, compiling it if this is the first time the class has been seen
+	 * @param clazz The class to compile a serialiser for
+	 * @param fieldAccess Whether the fields are read directly rather than through their getters
+	 * @return The serialiser, or null if one cannot be compiled for the class, e.g. because a field has no getter
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T> CompiledObjectSerialiser<T> forClass(Class<T> clazz, boolean fieldAccess) {
+		CompiledEntry entry = (fieldAccess ? compiledFieldSerialisers : compiledSerialisers).get(clazz);
+		return (CompiledObjectSerialiser<T>) entry.serialiser;
+	}
+
+	/**
+	 * Compiles a serialiser for the specified class
+	 * @param clazz The class to compile a serialiser for
+	 * @param fieldAccess Whether the fields are read directly rather than through their getters
+	 * @return The serialiser, or null if one cannot be compiled for the class
+	 */
+	private static <T> CompiledObjectSerialiser<T> compile(Class<T> clazz, boolean fieldAccess) {
+		List<FieldDescriptor> fields = ClassDescriptor.forClass(clazz).getFields();
+		List<FieldStep> steps = new ArrayList<FieldStep>(fields.size());
+
+		for (FieldDescriptor fieldDescriptor : fields) {
+			Getter getter;
+			if (fieldAccess) {
+				getter = fieldDescriptor.getFieldAccessor();
+			} else {
+				try {
+					getter = fieldDescriptor.getAccessor();
+				} catch (IllegalArgumentException e) {
+					return null;
+				}
+			}
+
+			switch (fieldDescriptor.getKind()) {
+			case PRIMITIVE:
+				steps.add(createPrimitiveStep(fieldDescriptor, getter));
+				break;
+			case CONTAINER:
+				steps.add(new ContainerStep(fieldDescriptor, getter));
+				break;
+			default:
+				steps.add(new ObjectStep(fieldDescriptor, getter));
+				break;
+			}
+		}
+
+		return new CompiledObjectSerialiser<T>(clazz, steps.toArray(new FieldStep[steps.size()]));
+	}
+
+	/**
+	 * Creates the step for a primitive field, specialised for the type of its getter where possible
+	 * @param fieldDescriptor The field
+	 * @param getter The accessor for the field's getter
+	 * @return The step
+	 */
+	private static FieldStep createPrimitiveStep(FieldDescriptor fieldDescriptor, Getter getter) {
+		if (getter instanceof IntGetter) {
+			return new IntStep(fieldDescriptor, (IntGetter) getter);
+		} else if (getter instanceof ShortGetter) {
+			return new ShortStep(fieldDescriptor, (ShortGetter) getter);
+		} else if (getter instanceof LongGetter) {
+			return new LongStep(fieldDescriptor, (LongGetter) getter);
+		} else if (getter instanceof ByteGetter) {
+			return new ByteStep(fieldDescriptor, (ByteGetter) getter);
+		} else if (getter instanceof BooleanGetter) {
+			return new BooleanStep(fieldDescriptor, (BooleanGetter) getter);
+		} else if (getter instanceof FloatGetter) {
+			return new FloatStep(fieldDescriptor, (FloatGetter) getter);
+		} else if (getter instanceof DoubleGetter) {
+			return new DoubleStep(fieldDescriptor, (DoubleGetter) getter);
+		} else if (getter instanceof CharGetter) {
+			return new CharStep(fieldDescriptor, (CharGetter) getter);
+		}
+		return new BoxedPrimitiveStep(fieldDescriptor, getter);
+	}
+
+	/**
+	 * Constructor
+	 * @param compiledClass The class the serialiser was compiled for
+	 * @param steps The steps for each field of the class
+	 */
+	private CompiledObjectSerialiser(Class<T> compiledClass, FieldStep[] steps) {
+		this.compiledClass = compiledClass;
+		this.steps = steps;
+	}
+
+	/**
+	 * Gets the class the serialiser was compiled for
+	 * @return
+	 */
+	public Class<T> getCompiledClass() {
+		return compiledClass;
+	}
+
+	@Override
+	public Structure buildStructure(Serialiser serialiser, T source) throws IllegalArgumentException, IllegalAccessException, InvocationTargetException {
+		return buildObjectStructure(serialiser, source);
+	}
+
+	/**
+	 * Builds the Structure of the source object
+	 * @param serialiser The serialiser member of the PVMarshaller
+	 * @param source The object to serialise
+	 * @return The Structure
+	 * @throws IllegalArgumentException
+	 * @throws IllegalAccessException
+	 * @throws InvocationTargetException
+	 */
+	Structure buildObjectStructure(Serialiser serialiser, Object source) throws IllegalArgumentException, IllegalAccessException, InvocationTargetException {
+		FieldBuilder fieldBuilder = fieldCreate.createFieldBuilder();
+
+		for (FieldStep step : steps) {
+			step.addToStructure(serialiser, fieldBuilder, source);
+		}
+
+		String idMapping = serialiser.getObjectSerialiser().getIdMappingForClass(compiledClass);
+		if (idMapping != null) {
+			fieldBuilder.setId(idMapping);
+		}
+
+		return fieldBuilder.createStructure();
+	}
+
+	@Override
+	public void populatePVStructure(Serialiser serialiser, T source, PVStructure pvStructure) throws IllegalArgumentException, IllegalAccessException, InvocationTargetException {
+		try {
+			setValues(serialiser, source, pvStructure);
+		} catch (IllegalArgumentException | IllegalAccessException | InvocationTargetException e) {
+			throw e;
+		} catch (RuntimeException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new InvocationTargetException(e);
+		}
+	}
+
+	/**
+	 * Populates the specified PVStructure with data from the source object
+	 * @param serialiser The serialiser member of the PVMarshaller
+	 * @param source The object to serialise
+	 * @param pvStructure The PVStructure to populate
+	 * @throws Exception
+	 */
+	void setValues(Serialiser serialiser, Object source, PVStructure pvStructure) throws Exception {
+		PVField[] pvFields = pvStructure.getPVFields();
+		int index = 0;
+
+		for (FieldStep step : steps) {
+			// Fields are normally in the same order as the steps, with some missing for null values, so try the next field before searching by name
+			PVField pvField;
+			if (index < pvFields.length && pvFields[index].getFieldName().equals(step.name)) {
+				pvField = pvFields[index++];
+			} else {
+				pvField = pvStructure.getSubField(step.name);
+			}
+			step.setValue(serialiser, source, pvStructure, pvField);
+		}
+	}
+
+	/**
+	 * Cache entry holding a compiled serialiser, or null for a class that could not be compiled
+	 */
+	private static class CompiledEntry {
+		final CompiledObjectSerialiser<?> serialiser;
+
+		CompiledEntry(CompiledObjectSerialiser<?> serialiser) {
+			this.serialiser = serialiser;
+		}
+	}
+
+	/**
+	 * The compiled serialiser for each class, compiled the first time the class is seen
+	 */
+	private static class CompiledEntries extends ClassValue<CompiledEntry> {
+		final boolean fieldAccess;
+
+		CompiledEntries(boolean fieldAccess) {
+			this.fieldAccess = fieldAccess;
+		}
+
+		@Override
+		protected CompiledEntry computeValue(Class<?> clazz) {
+			return new CompiledEntry(compile(clazz, fieldAccess));
+		}
+	}
+
+	/**
+	 * Serialises a single field of the compiled class
+	 */
+	private static abstract class FieldStep {
+		final FieldDescriptor fieldDescriptor;
+		final String name;
+
+		FieldStep(FieldDescriptor fieldDescriptor) {
+			this.fieldDescriptor = fieldDescriptor;
+			this.name = fieldDescriptor.getName();
+		}
+
+		/**
+		 * Adds the field to the structure being built, unless it should be left out
+		 * @param serialiser The serialiser member of the PVMarshaller
+		 * @param fieldBuilder The field builder of the structure
+		 * @param source The object being serialised
+		 */
+		abstract void addToStructure(Serialiser serialiser, FieldBuilder fieldBuilder, Object source) throws IllegalArgumentException, IllegalAccessException, InvocationTargetException;
+
+		/**
+		 * Populates the field in the PVStructure
+		 * @param serialiser The serialiser member of the PVMarshaller
+		 * @param source The object being serialised
+		 * @param pvStructure The PVStructure being populated
+		 * @param pvField The PVField for this field, or null if it is not in the PVStructure
+		 */
+		abstract void setValue(Serialiser serialiser, Object source, PVStructure pvStructure, PVField pvField) throws Exception;
+	}
+
+	/**
+	 * Step for a primitive field with a getter returning a Java primitive, which is always added to the structure
+	 */
+	private static abstract class UnboxedPrimitiveStep extends FieldStep {
+		final ScalarType scalarType;
+
+		UnboxedPrimitiveStep(FieldDescriptor fieldDescriptor) {
+			super(fieldDescriptor);
+			this.scalarType = PrimitiveSerialiser.getScalarType(fieldDescriptor.getType());
+		}
+
+		@Override
+		void addToStructure(Serialiser serialiser, FieldBuilder fieldBuilder, Object source) {
+			fieldBuilder.add(name, scalarType);
+		}
+	}
+
+	private static class IntStep extends UnboxedPrimitiveStep {
+		final IntGetter getter;
+
+		IntStep(FieldDescriptor fieldDescriptor, IntGetter getter) {
+			super(fieldDescriptor);
+			this.getter = getter;
+		}
+
+		@Override
+		void setValue(Serialiser serialiser, Object source, PVStructure pvStructure, PVField pvField) throws InvocationTargetException {
+			((PVInt) pvField).put(getter.getInt(source));
+		}
+	}
+
+	private static class ShortStep extends UnboxedPrimitiveStep {
+		final ShortGetter getter;
+
+		ShortStep(FieldDescriptor fieldDescriptor, ShortGetter getter) {
+			super(fieldDescriptor);
+			this.getter = getter;
+		}
+
+		@Override
+		void setValue(Serialiser serialiser, Object source, PVStructure pvStructure, PVField pvField) throws InvocationTargetException {
+			((PVShort) pvField).put(getter.getShort(source));
+		}
+	}
+
+	private static class LongStep extends UnboxedPrimitiveStep {
+		final LongGetter getter;
+
+		LongStep(FieldDescriptor fieldDescriptor, LongGetter getter) {
+			super(fieldDescriptor);
+			this.getter = getter;
+		}
+
+		@Override
+		void setValue(Serialiser serialiser, Object source, PVStructure pvStructure, PVField pvField) throws InvocationTargetException {
+			((PVLong) pvField).put(getter.getLong(source));
+		}
+	}
+
+	private static class ByteStep extends UnboxedPrimitiveStep {
+		final ByteGetter getter;
+
+		ByteStep(FieldDescriptor fieldDescriptor, ByteGetter getter) {
+			super(fieldDescriptor);
+			this.getter = getter;
+		}
+
+		@Override
+		void setValue(Serialiser serialiser, Object source, PVStructure pvStructure, PVField pvField) throws InvocationTargetException {
+			((PVByte) pvField).put(getter.getByte(source));
+		}
+	}
+
+	private static class BooleanStep extends UnboxedPrimitiveStep {
+		final BooleanGetter getter;
+
+		BooleanStep(FieldDescriptor fieldDescriptor, BooleanGetter getter) {
+			super(fieldDescriptor);
+			this.getter = getter;
+		}
+
+		@Override
+		void setValue(Serialiser serialiser, Object source, PVStructure pvStructure, PVField pvField) throws InvocationTargetException {
+			((PVBoolean) pvField).put(getter.getBoolean(source));
+		}
+	}
+
+	private static class FloatStep extends UnboxedPrimitiveStep {
+		final FloatGetter getter;
+
+		FloatStep(FieldDescriptor fieldDescriptor, FloatGetter getter) {
+			super(fieldDescriptor);
+			this.getter = getter;
+		}
+
+		@Override
+		void setValue(Serialiser serialiser, Object source, PVStructure pvStructure, PVField pvField) throws InvocationTargetException {
+			((PVFloat) pvField).put(getter.getFloat(source));
+		}
+	}
+
+	private static class DoubleStep extends UnboxedPrimitiveStep {
+		final DoubleGetter getter;
+
+		DoubleStep(FieldDescriptor fieldDescriptor, DoubleGetter getter) {
+			super(fieldDescriptor);
+			this.getter = getter;
+		}
+
+		@Override
+		void setValue(Serialiser serialiser, Object source, PVStructure pvStructure, PVField pvField) throws InvocationTargetException {
+			((PVDouble) pvField).put(getter.getDouble(source));
+		}
+	}
+
+	private static class CharStep extends UnboxedPrimitiveStep {
+		final CharGetter getter;
+
+		CharStep(FieldDescriptor fieldDescriptor, CharGetter getter) {
+			super(fieldDescriptor);
+			this.getter = getter;
+		}
+
+		@Override
+		void setValue(Serialiser serialiser, Object source, PVStructure pvStructure, PVField pvField) throws InvocationTargetException {
+			((PVString) pvField).put(String.valueOf(getter.getChar(source)));
+		}
+	}
+
+	/**
+	 * Step for a primitive field with a getter returning a boxed value or String, which is left out when null unless the field is a Java primitive
+	 */
+	private static class BoxedPrimitiveStep extends FieldStep {
+		final Getter getter;
+
+		BoxedPrimitiveStep(FieldDescriptor fieldDescriptor, Getter getter) {
+			super(fieldDescriptor);
+			this.getter = getter;
+		}
+
+		@Override
+		void addToStructure(Serialiser serialiser, FieldBuilder fieldBuilder, Object source) throws IllegalArgumentException, IllegalAccessException, InvocationTargetException {
+			if (!fieldDescriptor.isNullable() || getter.get(source) != null) {
+				PrimitiveSerialiser.addToPVStructure(fieldDescriptor.getField(), fieldBuilder);
+			}
+		}
+
+		@Override
+		void setValue(Serialiser serialiser, Object source, PVStructure pvStructure, PVField pvField) throws Exception {
+			if (pvField != null) {
+				Object value = getter.get(source);
+				if (value != null) {
+					PrimitiveSerialiser.setValue(name, pvStructure, value);
+				} else {
+					SchemaStructureBuilder.clearValue(pvField);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Step for an array, list or map field, which is left out when null, or reset when the structure is fixed for the class
+	 */
+	private static class ContainerStep extends FieldStep {
+		final Getter getter;
+
+		ContainerStep(FieldDescriptor fieldDescriptor, Getter getter) {
+			super(fieldDescriptor);
+			this.getter = getter;
+		}
+
+		@Override
+		void addToStructure(Serialiser serialiser, FieldBuilder fieldBuilder, Object source) throws IllegalArgumentException, IllegalAccessException, InvocationTargetException {
+			Object containerObject = getter.get(source);
+			if (containerObject != null) {
+				serialiser.getContainerSerialiser().addContainerToPVStructure(fieldDescriptor.getField(), fieldBuilder, containerObject);
+			}
+		}
+
+		@Override
+		void setValue(Serialiser serialiser, Object source, PVStructure pvStructure, PVField pvField) throws Exception {
+			Object containerObject = getter.get(source);
+			if (containerObject != null) {
+				serialiser.getContainerSerialiser().setContainerValue(fieldDescriptor.getField(), pvStructure, containerObject);
+			} else if (pvField != null) {
+				SchemaStructureBuilder.clearValue(pvField);
+			}
+		}
+	}
+
+	/**
+	 * Step for a nested object field, which is left out when null, or reset when the structure is fixed for the class
+	 */
+	private static class ObjectStep extends FieldStep {
+		final Getter getter;
+
+		ObjectStep(FieldDescriptor fieldDescriptor, Getter getter) {
+			super(fieldDescriptor);
+			this.getter = getter;
+		}
+
+		@Override
+		void addToStructure(Serialiser serialiser, FieldBuilder fieldBuilder, Object source) throws IllegalArgumentException, IllegalAccessException, InvocationTargetException {
+			Object nestedObject = getter.get(source);
+			if (nestedObject != null) {
+				Class<?> nestedObjectClass = nestedObject.getClass();
+
+				// Check again for primitive here in case of generic class not showing up as a primitive before.
+				if (PrimitiveSerialiser.isPrimitive(nestedObjectClass)) {
+					PrimitiveSerialiser.addGenericToPVStructure(fieldDescriptor.getField(), fieldBuilder, nestedObject);
+				} else {
+					fieldBuilder.add(name, serialiser.getObjectSerialiser().buildObjectFromClass(nestedObjectClass, nestedObject));
+				}
+			}
+		}
+
+		@Override
+		void setValue(Serialiser serialiser, Object source, PVStructure pvStructure, PVField pvField) throws Exception {
+			Object nestedObject = getter.get(source);
+			if (nestedObject != null) {
+				if (PrimitiveSerialiser.isPrimitive(nestedObject.getClass())) {
+					PrimitiveSerialiser.setValue(name, pvStructure, nestedObject);
+				} else {
+					serialiser.getObjectSerialiser().setValues(nestedObject, (PVStructure) pvField);
+				}
+			} else if (pvField != null) {
+				SchemaStructureBuilder.clearValue(pvField);
+			}
+		}
+	}
+}
@@ -3,15 +3,16 @@ package org.epics.pvmarshaller.marshaller.serialisers;
 import java.lang.reflect.Array;
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 
 import org.epics.pvdata.factory.FieldFactory;
 import org.epics.pvdata.pv.FieldBuilder;
+import org.epics.pvdata.pv.PVArray;
 import org.epics.pvdata.pv.PVStructure;
 import org.epics.pvdata.pv.Structure;
 import org.epics.pvdata.pv.Union;
@@ -93,11 +94,22 @@ public class ContainerSerialiser {
 	 * @throws InvocationTargetException
 	 */
 	public void addToPVStructure(Field field, FieldBuilder fieldBuilder, Object parentObject) throws IllegalArgumentException, IllegalAccessException, InvocationTargetException {
+		Object containerObject = Serialiser.findAccessor(parentObject, field.getName()).get(parentObject);
+		addContainerToPVStructure(field, fieldBuilder, containerObject);
+	}
+	
+	/**
+	 * Adds a structure representing a container field to the field builder, using the value of the field that has already been read
+	 * @param field The container field of the object
+	 * @param fieldBuilder The fieldBuilder object with the current structure
+	 * @param containerObject The value of the container field
+	 * @throws IllegalArgumentException
+	 * @throws IllegalAccessException
+	 * @throws InvocationTargetException
+	 */
+	public void addContainerToPVStructure(Field field, FieldBuilder fieldBuilder, Object containerObject) throws IllegalArgumentException, IllegalAccessException, InvocationTargetException {
 		String name = field.getName();
 		
-		Method m = Serialiser.findGetter(parentObject, field.getName());
-		Object containerObject = m.invoke(parentObject);
-		
 		Class<?> fieldType = containerObject.getClass();
 		
 		if (fieldType.isArray()) {
@@ -110,19 +122,17 @@ public class ContainerSerialiser {
 				// Java doesn't support Arrays of generics so should never get here
 				throw new IllegalArgumentException("Unable to create an Arrays of Maps");
 			} else {
-				Method method = Serialiser.findGetter(parentObject, field.getName());
-				Object arrayObject = method.invoke(parentObject);
-				int arrayLength = Array.getLength(arrayObject);
-				if (arrayLength >  0) {
-					Union union = FieldFactory.getFieldCreate().createVariantUnion();
+				int arrayLength = Array.getLength(containerObject);
+				Structure elementStructure = getSharedElementStructure(Arrays.asList((Object[])containerObject));
+				if (elementStructure != null) {
+					fieldBuilder.addArray(name, elementStructure);
+				} else if (arrayLength >  0) {
+					Union union = serialiser.getStructureInterner().intern(FieldFactory.getFieldCreate().createVariantUnion());
 					fieldBuilder.addArray(name, union);
 				}
 			}
 		} else if (List.class.isAssignableFrom(fieldType)) {
-			field.setAccessible(true);
-			Method method = Serialiser.findGetter(parentObject, field.getName());
-			Object listObject = method.invoke(parentObject);
-			List<?> list = (List<?>)listObject;
+			List<?> list = (List<?>)containerObject;
 			Class<?> componentType = ListSerialiser.getClassFromList(list);
 
 			if (PrimitiveSerialiser.isPrimitive(componentType)) {
@@ -130,9 +140,12 @@ public class ContainerSerialiser {
 			} else if (isArrayTypeContainer(componentType)) {
 				throw new IllegalArgumentException("PVData does not support Arrays of Arrays");
 			} else {
-				// All lists are union arrays
-				if (list.size() > 0) {
-					Union union = FieldFactory.getFieldCreate().createVariantUnion();
+				// Lists are union arrays unless all their elements have the same Structure and structure arrays are in use
+				Structure elementStructure = getSharedElementStructure(list);
+				if (elementStructure != null) {
+					fieldBuilder.addArray(name, elementStructure);
+				} else if (list.size() > 0) {
+					Union union = serialiser.getStructureInterner().intern(FieldFactory.getFieldCreate().createVariantUnion());
 					fieldBuilder.addArray(name, union);
 				}
 			}
@@ -144,10 +157,7 @@ public class ContainerSerialiser {
             } else if (!types[0].equals(String.class)) {
             	throw new IllegalArgumentException("Map keys must be strings: " + name);
             } else {
-            	field.setAccessible(true);
-    			Method method = Serialiser.findGetter(parentObject, field.getName());
-    			Object mapObject = method.invoke(parentObject);
-				Map<String, ?> map = (Map<String, ?>)mapObject;
+				Map<String, ?> map = (Map<String, ?>)containerObject;
 				Structure componentStructure = serialiser.getMapSerialiser().buildStructureFromMap(map);
 				fieldBuilder.add(name, componentStructure);
             }
@@ -175,8 +185,7 @@ public class ContainerSerialiser {
 			} else if (isArrayTypeContainer(componentType)) {
 				throw new IllegalArgumentException("PVData does not support Arrays of Arrays");
 			} else {
-				Union union = FieldFactory.getFieldCreate().createVariantUnion();
-				fieldBuilder.addArray(name, union);
+				addObjectArray(name, fieldBuilder, Arrays.asList((Object[])containerObject));
 			}
 		} else if (List.class.isAssignableFrom(fieldType)) {
 			List<?> list = (List<?>)containerObject;
@@ -187,8 +196,7 @@ public class ContainerSerialiser {
 			} else if (isArrayTypeContainer(componentType)) {
 				throw new IllegalArgumentException("PVData does not support Arrays of Arrays");
 			} else {
-				Union union = FieldFactory.getFieldCreate().createVariantUnion();
-				fieldBuilder.addArray(name, union);
+				addObjectArray(name, fieldBuilder, list);
 			}
 		} else if (Map.class.isAssignableFrom(fieldType)) {			
             	Map<String, ?> map = (Map<String, ?>)containerObject;
@@ -199,6 +207,63 @@ public class ContainerSerialiser {
 		}
 	}
 	
+	/**
+	 * Adds a structure array if all the objects have the same Structure and structure arrays are in use, or otherwise a union array
+	 * @param name The name of the field
+	 * @param fieldBuilder The fieldBuilder object
+	 * @param elements The objects in the list or array
+	 * @throws IllegalArgumentException
+	 * @throws IllegalAccessException
+	 * @throws InvocationTargetException
+	 */
+	private void addObjectArray(String name, FieldBuilder fieldBuilder, Collection<?> elements) throws IllegalArgumentException, IllegalAccessException, InvocationTargetException {
+		Structure elementStructure = getSharedElementStructure(elements);
+		if (elementStructure != null) {
+			fieldBuilder.addArray(name, elementStructure);
+		} else {
+			Union union = serialiser.getStructureInterner().intern(FieldFactory.getFieldCreate().createVariantUnion());
+			fieldBuilder.addArray(name, union);
+		}
+	}
+	
+	/**
+	 * Gets the Structure shared by all the objects in a list or array, so that they can be serialised into a structure array
+	 * @param elements The objects in the list or array
+	 * @return The Structure, or null if structure arrays are not in use, there are no objects, or they don't all have the same Structure
+	 * @throws IllegalArgumentException
+	 * @throws IllegalAccessException
+	 * @throws InvocationTargetException
+	 */
+	public Structure getSharedElementStructure(Collection<?> elements) throws IllegalArgumentException, IllegalAccessException, InvocationTargetException {
+		if (!serialiser.isUseStructureArrays()) {
+			return null;
+		}
+		
+		Structure sharedStructure = null;
+		for (Object element : elements) {
+			if (element == null || !isStructureElement(element.getClass())) {
+				return null;
+			}
+			Structure structure = serialiser.buildStructure(element);
+			if (sharedStructure == null) {
+				sharedStructure = structure;
+			} else if (!StructureFingerprint.matches(structure, sharedStructure)) {
+				return null;
+			}
+		}
+		return sharedStructure;
+	}
+	
+	/**
+	 * Returns whether objects of the specified class are serialised into structures, i.e. they are not primitives or containers
+	 * @param elementType
+	 * @return
+	 */
+	static boolean isStructureElement(Class<?> elementType) {
+		return !PrimitiveSerialiser.isPrimitive(elementType) && !elementType.isArray() 
+				&& !Map.class.isAssignableFrom(elementType) && !Collection.class.isAssignableFrom(elementType);
+	}
+	
 	/**
 	 * Populates the value of a field in the PVStructure from the field in the specified object
 	 * @param field The field
@@ -207,19 +272,27 @@ public class ContainerSerialiser {
 	 * @throws Exception
 	 */
 	public void setFieldValue(Field field, PVStructure structure, Object object) throws Exception {
-		Method m = Serialiser.findGetter(object, field.getName());
-		Object containerObject = m.invoke(object);
-		
+		Object containerObject = Serialiser.findAccessor(object, field.getName()).get(object);
+		setContainerValue(field, structure, containerObject);
+	}
+	
+	/**
+	 * Populates the value of a field in the PVStructure from the value of the field that has already been read
+	 * @param field The field
+	 * @param structure The PVStructure to populate
+	 * @param containerObject The value of the container field
+	 * @throws Exception
+	 */
+	public void setContainerValue(Field field, PVStructure structure, Object containerObject) throws Exception {
 		if (containerObject != null) {
 			Class<?> fieldType = containerObject.getClass();
 	
-			field.setAccessible(true);
 			if (fieldType.isArray()) {
-				setArrayFieldValue(field, structure, object);
+				setArrayFieldValue(field, structure, containerObject);
 			} else if (List.class.isAssignableFrom(fieldType)) {
-				setListFieldValue(field, structure, object);
+				setListFieldValue(field, structure, (List<?>)containerObject);
 			} else if (Map.class.isAssignableFrom(fieldType)) {
-				setMapFieldValue(field, structure, object);
+				serialiser.getMapSerialiser().setMapValues(field.getName(), structure, (Map<String, ?>)containerObject);
 			}
 		}
 	}
@@ -246,24 +319,24 @@ public class ContainerSerialiser {
 	}
 
 	/**
-	 * Populates the value of an array field with a field in the given object 
-	 * @param source The field
+	 * Populates the value of an array field with the value of the field in the parent object
+	 * @param field The field
 	 * @param structure The PVStructure to populate
-	 * @param object The parent object
+	 * @param arrayObject The array
 	 * @throws Exception
 	 */
-	private void setArrayFieldValue(Field field, PVStructure structure, Object object)
+	private void setArrayFieldValue(Field field, PVStructure structure, Object arrayObject)
 			throws Exception {
 		Class<?> componentType = field.getType().getComponentType();
 		
 		if (PrimitiveSerialiser.isPrimitive(componentType)) {
-			ArraySerialiser.setPrimitiveArrayValue(field, structure, object);
+			ArraySerialiser.setPrimitiveArrayValue(field.getName(), componentType, structure, arrayObject, serialiser.isShareArrays());
 		} else if (isArrayTypeContainer(componentType)) {
 			throw new IllegalArgumentException(field.getName() + " is an array of arrays.");
 		} else if (isStructureTypeContainer(componentType)) {
 			throw new IllegalArgumentException("Unable to create an Arrays of Maps");
 		} else {
-			serialiser.getArraySerialiser().setObjectArrayValue(field, structure, object);
+			serialiser.getArraySerialiser().setObjectArrayValue(field.getName(), structure, arrayObject);
 		}
 	}
 
@@ -280,7 +353,7 @@ public class ContainerSerialiser {
 		Class<?> componentType = arrayObject.getClass().getComponentType();
 		
 		if (PrimitiveSerialiser.isPrimitive(componentType)) {
-			ArraySerialiser.setPrimitiveArrayValue(fieldName, componentType, structure, arrayObject);
+			ArraySerialiser.setPrimitiveArrayValue(fieldName, componentType, structure, arrayObject, serialiser.isShareArrays());
 		} else if (isArrayTypeContainer(componentType)) {
 			throw new IllegalArgumentException(fieldName + " is an array of arrays.");
 		} else if (isStructureTypeContainer(componentType)) {
@@ -291,30 +364,28 @@ public class ContainerSerialiser {
 	}
 	
 	/**
-	 * Populates the value of a list field with a field in the given object
+	 * Populates the value of a list field with the value of the field in the parent object
 	 * @param field The field
 	 * @param structure The PVStructure to populate
-	 * @param parentObject The parent object
+	 * @param list The list
 	 * @throws Exception
 	 */
-	private void setListFieldValue(Field field, PVStructure structure, Object parentObject)
+	private void setListFieldValue(Field field, PVStructure structure, List<?> list)
 			throws Exception {
 
-		Method method = Serialiser.findGetter(parentObject, field.getName());
-		Object listObject = method.invoke(parentObject);
-		List<?> list = (List<?>)listObject;
-		if (list != null) {
-			Class<?> componentType = ListSerialiser.getClassFromList(list);
-			
-			if (PrimitiveSerialiser.isPrimitive(componentType)) {
-				ListSerialiser.setPrimitiveListValue(field.getName(), structure, list, componentType);
-			} else if (isArrayTypeContainer(componentType)) {
-				throw new IllegalArgumentException(field.getName() + " is a list of lists.");
-			} else if (isStructureTypeContainer(componentType)) {
-				serialiser.getListSerialiser().setMapListValue(field, structure, parentObject);
-			} else {
-				serialiser.getListSerialiser().setObjectListValue(field, structure, parentObject);
-			}
+		Class<?> componentType = ListSerialiser.getClassFromList(list);
+		
+		if (componentType == null) {
+			// An empty list has no element to take its type from, but is only in the structure when it is fixed for the class
+			structure.getSubField(PVArray.class, field.getName()).setLength(0);
+		} else if (PrimitiveSerialiser.isPrimitive(componentType)) {
+			ListSerialiser.setPrimitiveListValue(field.getName(), structure, list, componentType);
+		} else if (isArrayTypeContainer(componentType)) {
+			throw new IllegalArgumentException(field.getName() + " is a list of lists.");
+		} else if (isStructureTypeContainer(componentType)) {
+			serialiser.getListSerialiser().setMapListValue(field.getName(), structure, list);
+		} else {
+			serialiser.getListSerialiser().setObjectListValue(field.getName(), structure, list);
 		}
 	}
 	
@@ -354,8 +425,7 @@ public class ContainerSerialiser {
 	public void setMapFieldValue(Field field, PVStructure structure, Object parentObject)
 			throws Exception {
 
-		Method method = Serialiser.findGetter(parentObject, field.getName());
-		Object mapObject = method.invoke(parentObject);
+		Object mapObject = Serialiser.findAccessor(parentObject, field.getName()).get(parentObject);
 		Map<String, ?> map = (Map<String, ?>)mapObject;
 		if (map != null) {
 			serialiser.getMapSerialiser().setMapValues(field.getName(), structure, map);
@@ -0,0 +1,193 @@
+package org.epics.pvmarshaller.marshaller.serialisers;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.epics.pvdata.factory.ConvertFactory;
+import org.epics.pvdata.factory.PVDataFactory;
+import org.epics.pvdata.misc.BitSet;
+import org.epics.pvdata.pv.Convert;
+import org.epics.pvdata.pv.PVDataCreate;
+import org.epics.pvdata.pv.PVField;
+import org.epics.pvdata.pv.PVScalarArray;
+import org.epics.pvdata.pv.PVStructure;
+import org.epics.pvdata.pv.PVStructureArray;
+import org.epics.pvdata.pv.PVUnion;
+import org.epics.pvdata.pv.PVUnionArray;
+import org.epics.pvdata.pv.Structure;
+import org.epics.pvdata.pv.UnionArrayData;
+
+/**
+ * Updates an existing PVStructure from an object and records which fields changed, for use as the changed BitSet of a monitor.
+ * The object is first serialised into a scratch PVStructure with the same Structure, which is kept for the next update, and only
+ * the fields that differ from the target are copied across. The elements of union arrays are reused when they are repopulated,
+ * so they are copied into the target's own PVUnions rather than shared with the scratch PVStructure
+ * @author Matt Taylor
+ *
+ */
+public class DeltaSerialiser {
+
+	/**
+	 * The maximum number of scratch PVStructures to keep, one per Structure
+	 */
+	public static final int MAX_SCRATCH_STRUCTURES = 64;
+
+	private static final Convert convert = ConvertFactory.getConvert();
+	private static final PVDataCreate pvDataCreate = PVDataFactory.getPVDataCreate();
+
+	private final Serialiser serialiser;
+	private final ConcurrentHashMap<Structure, PVStructure> scratchStructures = new ConcurrentHashMap<Structure, PVStructure>();
+
+	/**
+	 * Constructor
+	 * @param serialiser
+	 */
+	public DeltaSerialiser(Serialiser serialiser) {
+		this.serialiser = serialiser;
+	}
+
+	/**
+	 * Updates the target PVStructure with the values of an object and sets the bits of the fields that changed. Bits are only
+	 * ever set, so changes can be accumulated over several updates before the BitSet is cleared
+	 * @param source The object to get the values from
+	 * @param target The PVStructure to update
+	 * @param changedBitSet The BitSet to set the offsets of changed fields in
+	 * @return true if the PVStructure was updated, or false if its Structure does not match the object, in which case it is left unchanged
+	 * @throws Exception
+	 */
+	public boolean updatePVStructure(Object source, PVStructure target, BitSet changedBitSet) throws Exception {
+		Structure structure = serialiser.buildStructure(source);
+
+		if (!StructureFingerprint.matches(structure, target.getStructure())) {
+			return false;
+		}
+
+		// Take the scratch PVStructure so that concurrent updates of the same Structure do not share it
+		PVStructure scratch = scratchStructures.remove(structure);
+		if (scratch == null) {
+			scratch = pvDataCreate.createPVStructure(structure);
+		}
+
+		serialiser.setValues(source, scratch);
+		copyChangedFields(scratch, target, changedBitSet);
+
+		if (scratchStructures.size() < MAX_SCRATCH_STRUCTURES) {
+			scratchStructures.put(structure, scratch);
+		}
+		return true;
+	}
+
+	/**
+	 * Removes the scratch PVStructures
+	 */
+	public void clear() {
+		scratchStructures.clear();
+	}
+
+	/**
+	 * Copies the fields of a PVStructure that differ from another with the same Structure, setting the bit of each copied field
+	 * @param from The PVStructure with the new values
+	 * @param to The PVStructure to update
+	 * @param changedBitSet The BitSet to set the offsets of changed fields in
+	 */
+	private static void copyChangedFields(PVStructure from, PVStructure to, BitSet changedBitSet) {
+		PVField[] fromFields = from.getPVFields();
+		PVField[] toFields = to.getPVFields();
+
+		for (int i = 0; i < fromFields.length; i++) {
+			PVField fromField = fromFields[i];
+			PVField toField = toFields[i];
+
+			if (fromField instanceof PVStructure) {
+				copyChangedFields((PVStructure) fromField, (PVStructure) toField, changedBitSet);
+			} else if (!fromField.equals(toField)) {
+				copyField(fromField, toField);
+				changedBitSet.set(toField.getFieldOffset());
+			}
+		}
+	}
+
+	/**
+	 * Copies the value of a field, resizing arrays to the new length. Unions are copied by value so that the target never
+	 * shares a PVUnion or its value with the source
+	 * @param from The field with the new value
+	 * @param to The field to update
+	 */
+	private static void copyField(PVField from, PVField to) {
+		if (from instanceof PVStructure) {
+			PVField[] fromFields = ((PVStructure) from).getPVFields();
+			PVField[] toFields = ((PVStructure) to).getPVFields();
+			for (int i = 0; i < fromFields.length; i++) {
+				copyField(fromFields[i], toFields[i]);
+			}
+		} else if (from instanceof PVScalarArray) {
+			int length = ((PVScalarArray) from).getLength();
+			((PVScalarArray) to).setCapacity(length);
+			convert.copyScalarArray((PVScalarArray) from, 0, (PVScalarArray) to, 0, length);
+		} else if (from instanceof PVStructureArray) {
+			int length = ((PVStructureArray) from).getLength();
+			((PVStructureArray) to).setCapacity(length);
+			convert.copyStructureArray((PVStructureArray) from, 0, (PVStructureArray) to, 0, length);
+		} else if (from instanceof PVUnionArray) {
+			copyUnionArray((PVUnionArray) from, (PVUnionArray) to);
+		} else if (from instanceof PVUnion) {
+			copyUnion((PVUnion) from, (PVUnion) to);
+		} else {
+			convert.copy(from, to);
+		}
+	}
+
+	/**
+	 * Copies the elements of a union array into the PVUnions already in the target, creating new ones for any extra elements
+	 * @param from The union array with the new values
+	 * @param to The union array to update
+	 */
+	private static void copyUnionArray(PVUnionArray from, PVUnionArray to) {
+		UnionArrayData fromData = new UnionArrayData();
+		int length = from.get(0, from.getLength(), fromData);
+
+		UnionArrayData toData = new UnionArrayData();
+		int existingLength = to.get(0, to.getLength(), toData);
+
+		PVUnion[] unionArray = new PVUnion[length];
+		for (int i = 0; i < length; i++) {
+			PVUnion fromUnion = fromData.data[fromData.offset + i];
+			if (fromUnion == null) {
+				continue;
+			}
+			PVUnion toUnion = i < existingLength ? toData.data[toData.offset + i] : null;
+			if (toUnion == null || toUnion == fromUnion) {
+				toUnion = pvDataCreate.createPVUnion(fromUnion.getUnion());
+			}
+			copyUnion(fromUnion, toUnion);
+			unionArray[i] = toUnion;
+		}
+
+		int numPut = 0;
+		to.setCapacity(length);
+		while (numPut < length) {
+			numPut += to.put(numPut, length - numPut, unionArray, numPut);
+		}
+	}
+
+	/**
+	 * Copies the value of a union, reusing the target's value if it has the same type and is not the source's value
+	 * @param from The union with the new value
+	 * @param to The union to update
+	 */
+	private static void copyUnion(PVUnion from, PVUnion to) {
+		PVField fromValue = from.get();
+		PVField toValue = to.get();
+		if (fromValue == null) {
+			to.set(from.getSelectedIndex(), null);
+			return;
+		}
+		if (toValue == null || toValue == fromValue || to.getSelectedIndex() != from.getSelectedIndex()
+				|| !toValue.getField().equals(fromValue.getField())) {
+			toValue = pvDataCreate.createPVField(fromValue.getField());
+			copyField(fromValue, toValue);
+			to.set(from.getSelectedIndex(), toValue);
+		} else {
+			copyField(fromValue, toValue);
+		}
+	}
+}
@@ -1,7 +1,6 @@
 package org.epics.pvmarshaller.marshaller.serialisers;
 
 import java.lang.reflect.Field;
-import java.lang.reflect.Method;
 import java.util.List;
 import java.util.Map;
 
@@ -10,15 +9,18 @@ import org.epics.pvdata.pv.PVBooleanArray;
 import org.epics.pvdata.pv.PVByteArray;
 import org.epics.pvdata.pv.PVDataCreate;
 import org.epics.pvdata.pv.PVDoubleArray;
+import org.epics.pvdata.pv.PVField;
 import org.epics.pvdata.pv.PVFloatArray;
 import org.epics.pvdata.pv.PVIntArray;
 import org.epics.pvdata.pv.PVLongArray;
 import org.epics.pvdata.pv.PVShortArray;
 import org.epics.pvdata.pv.PVStringArray;
 import org.epics.pvdata.pv.PVStructure;
+import org.epics.pvdata.pv.PVStructureArray;
 import org.epics.pvdata.pv.PVUnion;
 import org.epics.pvdata.pv.PVUnionArray;
 import org.epics.pvdata.pv.Structure;
+import org.epics.pvmarshaller.marshaller.api.IPrimitiveList;
 
 /**
  * Serialises a list
@@ -51,113 +53,52 @@ public class ListSerialiser {
 	{
 		int numPut = 0;
 		
+		// The arrays converted from the list are new, so they are handed to the PVArrays rather than copied again
 		if (componentType.equals(Integer.class) || componentType.equals(int.class)) {
-			List<Integer> value = (List<Integer>)list;
 			PVIntArray array = structure.getSubField(PVIntArray.class, name);
-			int[] valueAsArray = new int[value.size()];
-			for (int i = 0; i < value.size(); i++)
-			{
-				valueAsArray[i] = value.get(i);
-			}
-			while (numPut < valueAsArray.length)
-			{
-				numPut += array.put(numPut, valueAsArray.length - numPut, valueAsArray, numPut);
-			}
+			int[] valueAsArray = PrimitiveListConverter.toIntArray(list);
+			array.shareData(valueAsArray);
 		} else if (componentType.equals(Short.class) || componentType.equals(short.class)) {
-			List<Short> value = (List<Short>)list;
 			PVShortArray array = structure.getSubField(PVShortArray.class, name);
-			short[] valueAsArray = new short[value.size()];
-			for (int i = 0; i < value.size(); i++)
-			{
-				valueAsArray[i] = value.get(i);
-			}
-			while (numPut < valueAsArray.length)
-			{
-				numPut += array.put(numPut, valueAsArray.length - numPut, valueAsArray, numPut);
-			}
+			short[] valueAsArray = PrimitiveListConverter.toShortArray(list);
+			array.shareData(valueAsArray);
 		} else if (componentType.equals(Long.class) || componentType.equals(long.class)) {
-			List<Long> value = (List<Long>)list;
 			PVLongArray array = structure.getSubField(PVLongArray.class, name);
-			long[] valueAsArray = new long[value.size()];
-			for (int i = 0; i < value.size(); i++)
-			{
-				valueAsArray[i] = value.get(i);
-			}
-			while (numPut < valueAsArray.length)
-			{
-				numPut += array.put(numPut, valueAsArray.length - numPut, valueAsArray, numPut);
-			}
+			long[] valueAsArray = PrimitiveListConverter.toLongArray(list);
+			array.shareData(valueAsArray);
 		} else if (componentType.equals(Byte.class) || componentType.equals(byte.class)) {
-			List<Byte> value = (List<Byte>)list;
 			PVByteArray array = structure.getSubField(PVByteArray.class, name);
-			byte[] valueAsArray = new byte[value.size()];
-			for (int i = 0; i < value.size(); i++)
-			{
-				valueAsArray[i] = value.get(i);
-			}
-			while (numPut < valueAsArray.length)
-			{
-				numPut += array.put(numPut, valueAsArray.length - numPut, valueAsArray, numPut);
-			}
+			byte[] valueAsArray = PrimitiveListConverter.toByteArray(list);
+			array.shareData(valueAsArray);
 		} else if (componentType.equals(Boolean.class) || componentType.equals(boolean.class)) {
-			List<Boolean> value = (List<Boolean>)list;
 			PVBooleanArray array = structure.getSubField(PVBooleanArray.class, name);
-			boolean[] valueAsArray = new boolean[value.size()];
-			for (int i = 0; i < value.size(); i++)
-			{
-				valueAsArray[i] = value.get(i);
-			}
-			while (numPut < valueAsArray.length)
-			{
-				numPut += array.put(numPut, valueAsArray.length - numPut, valueAsArray, numPut);
-			}
+			boolean[] valueAsArray = PrimitiveListConverter.toBooleanArray(list);
+			array.shareData(valueAsArray);
 		} else if (componentType.equals(Float.class) || componentType.equals(float.class)) {
-			List<Float> value = (List<Float>)list;
 			PVFloatArray array = structure.getSubField(PVFloatArray.class, name);
-			float[] valueAsArray = new float[value.size()];
-			for (int i = 0; i < value.size(); i++)
-			{
-				valueAsArray[i] = value.get(i);
-			}
-			while (numPut < valueAsArray.length)
-			{
-				numPut += array.put(numPut, valueAsArray.length - numPut, valueAsArray, numPut);
-			}
+			float[] valueAsArray = PrimitiveListConverter.toFloatArray(list);
+			array.shareData(valueAsArray);
 		} else if (componentType.equals(Double.class) || componentType.equals(double.class)) {
-			List<Double> value = (List<Double>)list;
 			PVDoubleArray array = structure.getSubField(PVDoubleArray.class, name);
-			double[] valueAsArray = new double[value.size()];
-			for (int i = 0; i < value.size(); i++)
-			{
-				valueAsArray[i] = value.get(i);
-			}
-			while (numPut < valueAsArray.length)
-			{
-				numPut += array.put(numPut, valueAsArray.length - numPut, valueAsArray, numPut);
-			}
+			double[] valueAsArray = PrimitiveListConverter.toDoubleArray(list);
+			array.shareData(valueAsArray);
 		} else if (componentType.equals(Character.class) || componentType.equals(char.class)) {
 			List<Character> value = (List<Character>)list;
 			PVStringArray array = structure.getSubField(PVStringArray.class, name);
 			String[] stringArray = new String[value.size()];
-			for (int i = 0; i < value.size(); i++) {
-				stringArray[i] = String.valueOf(value.get(i));
+			int index = 0;
+			for (Character character : value) {
+				stringArray[index++] = String.valueOf(character);
 			}
+			array.setCapacity(stringArray.length);
 			while (numPut < stringArray.length)
 			{
 				numPut += array.put(numPut, stringArray.length - numPut, stringArray, numPut);
 			}
 		} else if (componentType.equals(String.class)) {
-			List<String> value = (List<String>)list;
 			PVStringArray array = structure.getSubField(PVStringArray.class, name);
-			String[] valueAsArray = new String[value.size()];
-			for (int i = 0; i < value.size(); i++)
-			{
-				valueAsArray[i] = value.get(i);
-			}
-			while (numPut < valueAsArray.length)
-			{
-				numPut += array.put(numPut, valueAsArray.length - numPut, valueAsArray, numPut);
-			}
+			String[] valueAsArray = PrimitiveListConverter.toStringArray(list);
+			array.shareData(valueAsArray);
 		} else {
 			//throw new Exception();   ??????
 		}
@@ -172,8 +113,7 @@ public class ListSerialiser {
 	 */
 	public void setObjectListValue(Field field, PVStructure structure, Object object) throws Exception
 	{
-		Method method = Serialiser.findGetter(object, field.getName());
-		Object listObject = method.invoke(object);
+		Object listObject = Serialiser.findAccessor(object, field.getName()).get(object);
 		List<Object> value = (List<Object>)listObject;
 		
 		setObjectListValue(field.getName(), structure, value);
@@ -191,20 +131,13 @@ public class ListSerialiser {
 	{
 		List<Object> value = (List<Object>)listObject;
 		
-		PVUnionArray pvUnionValue = structure.getSubField(PVUnionArray.class, name);
-		PVUnion[] unionArray = new PVUnion[value.size()];
-		
-		for (int i = 0; i < value.size(); i++) {
-			PVStructure pvs = serialiser.toPVStructure(value.get(i));
-			PVUnion pvUnion = pvDataCreate.createPVVariantUnion();
-			pvUnion.set(pvs);
-			unionArray[i] = pvUnion;
-		}
-		int numPut = 0;
-		while (numPut < unionArray.length)
-		{
-			numPut += pvUnionValue.put(numPut, unionArray.length - numPut, unionArray, numPut);
+		PVField pvField = structure.getSubField(name);
+		if (pvField instanceof PVStructureArray) {
+			serialiser.getArraySerialiser().setStructureArrayValue((PVStructureArray)pvField, value);
+			return;
 		}
+		
+		serialiser.getArraySerialiser().setUnionArrayValue(structure.getSubField(PVUnionArray.class, name), value);
 	}
 	
 	/**
@@ -216,8 +149,7 @@ public class ListSerialiser {
 	 */
 	public void setMapListValue(Field field, PVStructure structure, Object object) throws Exception
 	{
-		Method method = Serialiser.findGetter(object, field.getName());
-		Object listObject = method.invoke(object);
+		Object listObject = Serialiser.findAccessor(object, field.getName()).get(object);
 		List<Object> value = (List<Object>)listObject;
 		
 		setMapListValue(field.getName(), structure, value);
@@ -237,16 +169,18 @@ public class ListSerialiser {
 		PVUnionArray pvUnionValue = structure.getSubField(PVUnionArray.class, name);
 		PVUnion[] unionArray = new PVUnion[value.size()];
 				
-		for (int i = 0; i < value.size(); i++) {
-			Map map = (Map)value.get(i);
+		int index = 0;
+		for (Object element : value) {
+			Map map = (Map)element;
 			PVUnion pvUnion = pvDataCreate.createPVVariantUnion();
 			Structure mapStructure = serialiser.getMapSerialiser().buildStructureFromMap(map);
 			PVStructure pvs = pvDataCreate.createPVStructure(mapStructure);
 			pvUnion.set(pvs);
-			unionArray[i] = pvUnion;
+			unionArray[index++] = pvUnion;
 			serialiser.getMapSerialiser().setMapValues(pvs, map);
 		}
 		int numPut = 0;
+		pvUnionValue.setCapacity(unionArray.length);
 		while (numPut < unionArray.length)
 		{
 			numPut += pvUnionValue.put(numPut, unionArray.length - numPut, unionArray, numPut);
@@ -262,8 +196,11 @@ public class ListSerialiser {
 	 */
 	public static Class<?> getClassFromList(List<?> list) {
 		Class<?> componentType = null;
-		if ((list != null) && (!list.isEmpty())) {
-			Object firstElement = list.get(0);
+		if (list instanceof IPrimitiveList) {
+			// Known even when the list is empty
+			componentType = ((IPrimitiveList) list).getPrimitiveType();
+		} else if ((list != null) && (!list.isEmpty())) {
+			Object firstElement = list.iterator().next();
 			componentType = firstElement.getClass();
 		}
 		return componentType;
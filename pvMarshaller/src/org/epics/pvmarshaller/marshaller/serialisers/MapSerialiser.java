@@ -67,7 +67,7 @@ public class MapSerialiser {
 		
 		Structure structure = fieldBuilder.createStructure();
 		
-		return structure;
+		return serialiser.getStructureInterner().intern(structure);
 	}
 	
 	/**
@@ -115,7 +115,7 @@ public class MapSerialiser {
 		
 		Structure structure = fieldBuilder.createStructure();
 		
-		return structure;
+		return serialiser.getStructureInterner().intern(structure);
 	}
 	
 	/**
@@ -140,7 +140,7 @@ public class MapSerialiser {
 		
 		Structure structure = fieldBuilder.createStructure();
 		
-		return structure;
+		return serialiser.getStructureInterner().intern(structure);
 	}
 	
 	/**
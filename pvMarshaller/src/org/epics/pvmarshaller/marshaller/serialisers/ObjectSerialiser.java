@@ -2,19 +2,21 @@ package org.epics.pvmarshaller.marshaller.serialisers;
 
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
-import java.lang.reflect.Modifier;
 import java.util.Arrays;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.epics.pvdata.factory.FieldFactory;
 import org.epics.pvdata.pv.FieldBuilder;
 import org.epics.pvdata.pv.FieldCreate;
+import org.epics.pvdata.pv.PVField;
 import org.epics.pvdata.pv.PVStructure;
 import org.epics.pvdata.pv.Structure;
+import org.epics.pvmarshaller.marshaller.accessors.Getter;
 import org.epics.pvmarshaller.marshaller.api.IPVStructureSerialiser;
+import org.epics.pvmarshaller.marshaller.serialisers.ClassDescriptor.FieldDescriptor;
 
 /**
  * Serialises an object
@@ -26,6 +28,13 @@ public class ObjectSerialiser {
 	Serialiser serialiser;
 	Map<Class<?>, IPVStructureSerialiser<?>> registeredSerialisers = new LinkedHashMap<Class<?>, IPVStructureSerialiser<?>>();
 	Map<Class<?>, String> registeredIds = new LinkedHashMap<Class<?>, String>();
+	boolean useCompiledSerialisers = false;
+	boolean useFieldAccess = false;
+	
+	// Resolved custom serialiser and id for each class, including those inherited from superclasses and interfaces
+	private static final Object NOT_REGISTERED = new Object();
+	private final ConcurrentHashMap<Class<?>, Object> serialiserDispatch = new ConcurrentHashMap<Class<?>, Object>();
+	private final ConcurrentHashMap<Class<?>, Object> idDispatch = new ConcurrentHashMap<Class<?>, Object>();
 
 	/**
 	 * Constructor
@@ -63,54 +72,52 @@ public class ObjectSerialiser {
 		IPVStructureSerialiser customSerialiser = getCustomSerialiserForClass(clazz);
 		
 		if (customSerialiser != null) {
-			return customSerialiser.buildStructure(serialiser, obj);
+			return serialiser.getStructureInterner().intern(customSerialiser.buildStructure(serialiser, obj));
+		}
+		
+		CompiledObjectSerialiser<?> compiledSerialiser = getCompiledSerialiserForClass(clazz);
+		
+		if (compiledSerialiser != null) {
+			return serialiser.getStructureInterner().intern(compiledSerialiser.buildObjectStructure(serialiser, obj));
 		} else {
 			
 			FieldCreate fieldCreate = FieldFactory.getFieldCreate();
 	
 			FieldBuilder fieldBuilder = fieldCreate.createFieldBuilder();
 			
-			Class<?> classToCheck = clazz;
-	
-			while (classToCheck != Object.class)
+			for (FieldDescriptor fieldDescriptor : ClassDescriptor.forClass(clazz).getFields())
 			{
-				for (Field field : classToCheck.getDeclaredFields())
-				{
-					if (!field.getName().equals("this$0"))
-					{
-						if (!Modifier.isTransient(field.getModifiers())) {
-							field.setAccessible(true);
-							
-							if (canAddFieldForObject(field, obj))
-							{
-								if (PrimitiveSerialiser.isPrimitive(field.getType()))
-								{
-									PrimitiveSerialiser.addToPVStructure(field, fieldBuilder);
-								}
-								else if (ContainerSerialiser.isContainer(field.getType()))
-								{
-									serialiser.getContainerSerialiser().addToPVStructure(field, fieldBuilder, obj);
-								}
-								else
-								{
-									field.setAccessible(true);
-									Method method = findGetter(obj, field.getName());
-									Object nestedObject = method.invoke(obj);
-									Class<?> nestedObjectClass = nestedObject.getClass();
-									
-									// Check again for primitive here in case of generic class not showing up as a primitive before.
-									if (PrimitiveSerialiser.isPrimitive(nestedObjectClass)) {
-										PrimitiveSerialiser.addGenericToPVStructure(field, fieldBuilder, nestedObject);
-									} else {
-										fieldBuilder.add(field.getName(), buildObjectFromClass(nestedObjectClass, nestedObject));
-									}
-								}
-							}
-						}
-					}
+				Field field = fieldDescriptor.getField();
+				
+				if (!fieldDescriptor.isNullable()) {
+					PrimitiveSerialiser.addToPVStructure(field, fieldBuilder);
+					continue;
 				}
 				
-				classToCheck = classToCheck.getSuperclass();
+				// Read each field once, using the value both to check for null and to build the structure
+				Object value = getAccessor(fieldDescriptor).get(obj);
+				if (value == null) {
+					continue;
+				}
+				
+				switch (fieldDescriptor.getKind()) {
+				case PRIMITIVE:
+					PrimitiveSerialiser.addToPVStructure(field, fieldBuilder);
+					break;
+				case CONTAINER:
+					serialiser.getContainerSerialiser().addContainerToPVStructure(field, fieldBuilder, value);
+					break;
+				default:
+					Class<?> nestedObjectClass = value.getClass();
+					
+					// Check again for primitive here in case of generic class not showing up as a primitive before.
+					if (PrimitiveSerialiser.isPrimitive(nestedObjectClass)) {
+						PrimitiveSerialiser.addGenericToPVStructure(field, fieldBuilder, value);
+					} else {
+						fieldBuilder.add(field.getName(), buildObjectFromClass(nestedObjectClass, value));
+					}
+					break;
+				}
 			}
 			
 			String idMapping = getIdMappingForClass(clazz);
@@ -121,7 +128,7 @@ public class ObjectSerialiser {
 			// Create PVStructure from Structure
 			Structure requestStructure = fieldBuilder.createStructure();
 	
-			return requestStructure;
+			return serialiser.getStructureInterner().intern(requestStructure);
 		}
 	}
 	
@@ -139,90 +146,95 @@ public class ObjectSerialiser {
 		
 		if (customSerialiser != null) {
 			customSerialiser.populatePVStructure(serialiser, obj, pvStructure);
+			return;
+		}
+		
+		CompiledObjectSerialiser<?> compiledSerialiser = getCompiledSerialiserForClass(clazz);
+		
+		if (compiledSerialiser != null) {
+			compiledSerialiser.setValues(serialiser, obj, pvStructure);
 		} else {	
 			// Set values in structure
-			while (clazz != Object.class)
+			for (FieldDescriptor fieldDescriptor : ClassDescriptor.forClass(clazz).getFields())
 			{
-				for (Field field : clazz.getDeclaredFields())
-				{
-					if (!field.getName().equals("this$0"))
-					{
-						if (!Modifier.isTransient(field.getModifiers())) {
-							field.setAccessible(true);
-							if (canAddFieldForObject(field, obj))
-							{
-								if (PrimitiveSerialiser.isPrimitive(field.getType()))
-								{
-									PrimitiveSerialiser.setFieldValue(field, pvStructure, obj);
-								}
-								else if (ContainerSerialiser.isContainer(field.getType()))
-								{
-									serialiser.getContainerSerialiser().setFieldValue(field, pvStructure, obj);
-								}
-								else
-								{
-									setObjectValue(field, pvStructure, obj);
-								}
-							}
-						}
+				if (!fieldDescriptor.isNullable()) {
+					PrimitiveSerialiser.setFieldValue(fieldDescriptor.getField(), pvStructure, obj, getAccessor(fieldDescriptor));
+					continue;
+				}
+				
+				// Read each field once, using the value both to check for null and to populate the structure
+				Object value = getAccessor(fieldDescriptor).get(obj);
+				if (value == null) {
+					// Null fields are left out of the structure, unless it is fixed for the class
+					PVField pvField = pvStructure.getSubField(fieldDescriptor.getName());
+					if (pvField != null) {
+						SchemaStructureBuilder.clearValue(pvField);
 					}
+					continue;
+				}
+				
+				switch (fieldDescriptor.getKind()) {
+				case PRIMITIVE:
+					PrimitiveSerialiser.setValue(fieldDescriptor.getName(), pvStructure, value);
+					break;
+				case CONTAINER:
+					serialiser.getContainerSerialiser().setContainerValue(fieldDescriptor.getField(), pvStructure, value);
+					break;
+				default:
+					setObjectValue(fieldDescriptor, pvStructure, value);
+					break;
 				}
-				clazz = clazz.getSuperclass();
 			}
 		}
 	}
 	
 	/**
-	 * Populates the values in a PVStructure with the specified field in the parent object
-	 * @param childField The child field to get the data from
+	 * Populates the values in a PVStructure with the value of the specified field in the parent object
+	 * @param childField The child field the value was read from
 	 * @param parentStructure The PVStructure to populate
-	 * @param parentObject The parent object to get the child field from
+	 * @param childObject The value of the child field
 	 * @throws Exception
 	 */
-	private void setObjectValue(Field childField, PVStructure parentStructure, Object parentObject) throws Exception
+	private void setObjectValue(FieldDescriptor childField, PVStructure parentStructure, Object childObject) throws Exception
 	{		
-		childField.setAccessible(true);
-		Method method = findGetter(parentObject, childField.getName());
-		Object childObject = method.invoke(parentObject);
+		Class<?> clazz = childObject.getClass();
 		
-		if (childObject != null) {
-			
-			Class<?> clazz = childObject.getClass();
-			
-			// Check again for primitive here in case of generic class not showing up as a primitive before.
-			if (PrimitiveSerialiser.isPrimitive(clazz)) {
-				PrimitiveSerialiser.setGenericFieldValue(childField, parentStructure, parentObject);
-			} else {
-				
-				PVStructure childPVStructure = parentStructure.getStructureField(childField.getName());
+		// Check again for primitive here in case of generic class not showing up as a primitive before.
+		if (PrimitiveSerialiser.isPrimitive(clazz)) {
+			PrimitiveSerialiser.setValue(childField.getName(), parentStructure, childObject);
+		} else {
+			PVStructure childPVStructure = parentStructure.getStructureField(childField.getName());
+			checkFitsStructure(childField.getName(), childObject, childField.getField().getType(), childPVStructure);
+			setValues(childObject, childPVStructure);
+		}
+	}
 	
-				IPVStructureSerialiser customSerialiser = getCustomSerialiserForClass(clazz);
-				
-				if (customSerialiser != null) {
-					customSerialiser.populatePVStructure(serialiser, childObject, childPVStructure);
-				} else {
-					for (Field field : clazz.getDeclaredFields())
-					{
-						if (!field.getName().equals("this$0"))
-						{
-							if (!Modifier.isTransient(field.getModifiers())) {
-								if (PrimitiveSerialiser.isPrimitive(field.getType()))
-								{
-									PrimitiveSerialiser.setFieldValue(field, childPVStructure, childObject);
-								}
-								else if (ContainerSerialiser.isContainer(field.getType()))
-								{
-									serialiser.getContainerSerialiser().setFieldValue(field, childPVStructure, childObject);
-								}
-								else
-								{
-									setObjectValue(field, childPVStructure, childObject);
-								}
-							}
-						}
-					}
-				}
-			}
+	/**
+	 * Checks that an object held by a field fits the PVStructure it is about to populate. When Structures are derived from
+	 * declared types the PVStructure has the fixed Structure of the declared class, which a subclass with more fields does not fit
+	 * @param fieldName The name of the field holding the object
+	 * @param value The object
+	 * @param declaredClass The declared class of the field, or null if it is not known
+	 * @param pvStructure The PVStructure to populate
+	 * @throws IllegalArgumentException if the object does not fit the PVStructure
+	 * @throws IllegalAccessException
+	 * @throws InvocationTargetException
+	 */
+	void checkFitsStructure(String fieldName, Object value, Class<?> declaredClass, PVStructure pvStructure) throws IllegalArgumentException, IllegalAccessException, InvocationTargetException {
+		Class<?> clazz = value.getClass();
+		if (!serialiser.isSchemaFirst() || clazz == declaredClass) {
+			return;
+		}
+		
+		Structure structure;
+		try {
+			structure = serialiser.getSchemaStructureBuilder().getStructure(clazz);
+		} catch (IllegalArgumentException e) {
+			structure = null;
+		}
+		
+		if (!StructureFingerprint.matches(structure, pvStructure.getStructure())) {
+			throw new IllegalArgumentException("Field " + fieldName + " holds an object of " + clazz + ", which does not fit the fixed Structure of the field's declared type");
 		}
 	}
 	
@@ -231,6 +243,9 @@ public class ObjectSerialiser {
 	 * @param customSerialisers
 	 */
 	public void setCustomSerialisers(Map<Class<?>, IPVStructureSerialiser<?>> customSerialisers) {
+		if (registeredSerialisers != customSerialisers) {
+			serialiser.clearCaches();
+		}
 		registeredSerialisers = customSerialisers;
 	}
 	
@@ -239,17 +254,82 @@ public class ObjectSerialiser {
 	 * @param idMappings
 	 */
 	public void setIdMappings(Map<Class<?>, String> idMappings) {
+		if (registeredIds != idMappings) {
+			serialiser.clearCaches();
+		}
 		registeredIds = idMappings;
 	}
 	
 	/**
-	 * Gets the registered custom serialiser for a given class
+	 * Sets whether serialisers compiled for each class are used in place of reflecting over classes that have no custom serialiser
+	 * @param useCompiledSerialisers
+	 */
+	public void setUseCompiledSerialisers(boolean useCompiledSerialisers) {
+		this.useCompiledSerialisers = useCompiledSerialisers;
+	}
+	
+	/**
+	 * Sets whether fields are read directly rather than through their getters
+	 * @param useFieldAccess
+	 */
+	public void setUseFieldAccess(boolean useFieldAccess) {
+		this.useFieldAccess = useFieldAccess;
+	}
+	
+	/**
+	 * Gets the accessor used to read the specified field, which is either its getter or the field itself
+	 * @param fieldDescriptor The field
+	 * @return The accessor
+	 * @throws IllegalArgumentException if getters are in use and the class has no getter for the field
+	 */
+	Getter getAccessor(FieldDescriptor fieldDescriptor) throws IllegalArgumentException {
+		return useFieldAccess ? fieldDescriptor.getFieldAccessor() : fieldDescriptor.getAccessor();
+	}
+	
+	/**
+	 * Gets the compiled serialiser for a given class, if compiled serialisers are in use
+	 * @param clazz The class to get the compiled serialiser for
+	 * @return the serialiser or null if compiled serialisers are not in use or one could not be compiled for the class
+	 */
+	private CompiledObjectSerialiser<?> getCompiledSerialiserForClass(Class<?> clazz) {
+		if (!useCompiledSerialisers) {
+			return null;
+		}
+		return CompiledObjectSerialiser.forClass(clazz, useFieldAccess);
+	}
+	
+	/**
+	 * Clears the resolved custom serialisers and ids for each class. Must be called when the registered serialisers or ids change
+	 */
+	public void clearDispatchTables() {
+		serialiserDispatch.clear();
+		idDispatch.clear();
+	}
+	
+	/**
+	 * Gets the registered custom serialiser for a given class, resolving it the first time the class is seen
 	 * @param clazz The class to get the custom serialiser for
 	 * @return the serialiser or null if there isn't one registered
 	 */
-	private IPVStructureSerialiser getCustomSerialiserForClass(Class<?> clazz) {
+	IPVStructureSerialiser<?> getCustomSerialiserForClass(Class<?> clazz) {
+		Object resolved = serialiserDispatch.get(clazz);
+		if (resolved == null) {
+			IPVStructureSerialiser<?> customSerialiser = resolveCustomSerialiserForClass(clazz);
+			resolved = customSerialiser != null ? customSerialiser : NOT_REGISTERED;
+			serialiserDispatch.put(clazz, resolved);
+		}
+		return resolved != NOT_REGISTERED ? (IPVStructureSerialiser<?>) resolved : null;
+	}
+	
+	/**
+	 * Searches the registered custom serialisers for the serialiser for a given class, its interfaces or its superclasses
+	 * @param clazz The class to get the custom serialiser for
+	 * @return the serialiser or null if there isn't one registered
+	 * @throws IllegalArgumentException if more than one serialiser is registered for the interfaces of the class
+	 */
+	private IPVStructureSerialiser<?> resolveCustomSerialiserForClass(Class<?> clazz) {
 		
-		IPVStructureSerialiser foundSerialiser = null;
+		IPVStructureSerialiser<?> foundSerialiser = null;
 
 		Class<?> classToCheck = clazz;
 		
@@ -287,11 +367,27 @@ public class ObjectSerialiser {
 	}
 	
 	/**
-	 * Gets the registered custom ID mapping for the specified class
+	 * Gets the registered custom ID mapping for the specified class, resolving it the first time the class is seen
+	 * @param clazz The class to get the custom id mapping for
+	 * @return The id or null if there isn't one registered
+	 */
+	String getIdMappingForClass(Class<?> clazz) {
+		Object resolved = idDispatch.get(clazz);
+		if (resolved == null) {
+			String idMapping = resolveIdMappingForClass(clazz);
+			resolved = idMapping != null ? idMapping : NOT_REGISTERED;
+			idDispatch.put(clazz, resolved);
+		}
+		return resolved != NOT_REGISTERED ? (String) resolved : null;
+	}
+	
+	/**
+	 * Searches the registered custom ID mappings for the id of the specified class, its interfaces or its superclasses
 	 * @param clazz The class to get the custom id mapping for
 	 * @return The id or null if there isn't one registered
+	 * @throws IllegalArgumentException if more than one id is registered for the interfaces of the class
 	 */
-	private String getIdMappingForClass(Class<?> clazz) {
+	private String resolveIdMappingForClass(Class<?> clazz) {
 		String foundString = null;
 
 		Class<?> classToCheck = clazz;
@@ -328,54 +424,4 @@ public class ObjectSerialiser {
 		}
 		return null;
 	}
-
-	private static boolean canAddFieldForObject(Field field, Object object) throws IllegalArgumentException, IllegalAccessException, InvocationTargetException {
-		Class<?> fieldType = field.getType();
-
-		if (fieldType.equals(int.class) ||
-			fieldType.equals(short.class) ||
-			fieldType.equals(long.class) ||
-			fieldType.equals(byte.class) ||
-			fieldType.equals(boolean.class) ||
-			fieldType.equals(float.class) ||
-			fieldType.equals(double.class) ||
-			fieldType.equals(char.class))
-		{
-			return true;
-		} else {
-			field.setAccessible(true);
-			Method method = findGetter(object, field.getName());
-			Object fieldObject = method.invoke(object);
-			if (fieldObject != null) {
-				return true;
-			}
-		}
-		return false;
-	}
-	
-	private static Method findGetter(Object object, String variableName) throws IllegalArgumentException {
-		Class<?> clazz = object.getClass();
-		while (clazz != Object.class)  {
-			Method[] allMethods = clazz.getDeclaredMethods();
-			 
-		    for (Method m : allMethods) {
-		    	if (m.getName().toLowerCase().equals("get" + variableName.toLowerCase()) && m.getParameters().length == 0) {
-		    		m.setAccessible(true);
-		    		return m;
-		    	}
-		    }
-		    
-		    // Didn't find a 'get' method, try 'is'
-		    for (Method m : allMethods) {
-		    	if (m.getName().toLowerCase().equals("is" + variableName.toLowerCase()) && m.getParameters().length == 0) {
-		    		m.setAccessible(true);
-		    		return m;
-		    	}
-		    }
-		    
-		    // Didn't find any method in this class, try the superclass
-		    clazz = clazz.getSuperclass();
-		}
-		throw new IllegalArgumentException("Unable to find getter for " + variableName + " in class " + object.getClass());
-	}
-}
+}
\ No newline at end of file
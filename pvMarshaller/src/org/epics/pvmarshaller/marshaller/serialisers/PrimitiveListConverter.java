@@ -0,0 +1,204 @@
+package org.epics.pvmarshaller.marshaller.serialisers;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.RandomAccess;
+
+import org.epics.pvmarshaller.marshaller.api.IPrimitiveList;
+
+/**
+ * Converts lists of boxed primitives into primitive arrays in linear time. Lists with random access are read by index and
+ * other lists, such as LinkedLists, by iterator. Lists implementing {@link IPrimitiveList} are converted without unboxing
+ * @author Matt Taylor
+ *
+ */
+public class PrimitiveListConverter {
+
+	/**
+	 * Converts a list of Integers into an int array
+	 * @param list The list to convert
+	 * @return The array
+	 */
+	public static int[] toIntArray(List<?> list) {
+		if (list instanceof IPrimitiveList && ((IPrimitiveList) list).getPrimitiveType() == int.class) {
+			return (int[]) ((IPrimitiveList) list).toPrimitiveArray();
+		}
+		
+		int[] array = new int[list.size()];
+		if (list instanceof RandomAccess) {
+			for (int i = 0; i < array.length; i++) {
+				array[i] = (Integer) list.get(i);
+			}
+		} else {
+			Iterator<?> iterator = list.iterator();
+			for (int i = 0; i < array.length; i++) {
+				array[i] = (Integer) iterator.next();
+			}
+		}
+		return array;
+	}
+	
+	/**
+	 * Converts a list of Shorts into a short array
+	 * @param list The list to convert
+	 * @return The array
+	 */
+	public static short[] toShortArray(List<?> list) {
+		if (list instanceof IPrimitiveList && ((IPrimitiveList) list).getPrimitiveType() == short.class) {
+			return (short[]) ((IPrimitiveList) list).toPrimitiveArray();
+		}
+		
+		short[] array = new short[list.size()];
+		if (list instanceof RandomAccess) {
+			for (int i = 0; i < array.length; i++) {
+				array[i] = (Short) list.get(i);
+			}
+		} else {
+			Iterator<?> iterator = list.iterator();
+			for (int i = 0; i < array.length; i++) {
+				array[i] = (Short) iterator.next();
+			}
+		}
+		return array;
+	}
+	
+	/**
+	 * Converts a list of Longs into a long array
+	 * @param list The list to convert
+	 * @return The array
+	 */
+	public static long[] toLongArray(List<?> list) {
+		if (list instanceof IPrimitiveList && ((IPrimitiveList) list).getPrimitiveType() == long.class) {
+			return (long[]) ((IPrimitiveList) list).toPrimitiveArray();
+		}
+		
+		long[] array = new long[list.size()];
+		if (list instanceof RandomAccess) {
+			for (int i = 0; i < array.length; i++) {
+				array[i] = (Long) list.get(i);
+			}
+		} else {
+			Iterator<?> iterator = list.iterator();
+			for (int i = 0; i < array.length; i++) {
+				array[i] = (Long) iterator.next();
+			}
+		}
+		return array;
+	}
+	
+	/**
+	 * Converts a list of Bytes into a byte array
+	 * @param list The list to convert
+	 * @return The array
+	 */
+	public static byte[] toByteArray(List<?> list) {
+		if (list instanceof IPrimitiveList && ((IPrimitiveList) list).getPrimitiveType() == byte.class) {
+			return (byte[]) ((IPrimitiveList) list).toPrimitiveArray();
+		}
+		
+		byte[] array = new byte[list.size()];
+		if (list instanceof RandomAccess) {
+			for (int i = 0; i < array.length; i++) {
+				array[i] = (Byte) list.get(i);
+			}
+		} else {
+			Iterator<?> iterator = list.iterator();
+			for (int i = 0; i < array.length; i++) {
+				array[i] = (Byte) iterator.next();
+			}
+		}
+		return array;
+	}
+	
+	/**
+	 * Converts a list of Booleans into a boolean array
+	 * @param list The list to convert
+	 * @return The array
+	 */
+	public static boolean[] toBooleanArray(List<?> list) {
+		if (list instanceof IPrimitiveList && ((IPrimitiveList) list).getPrimitiveType() == boolean.class) {
+			return (boolean[]) ((IPrimitiveList) list).toPrimitiveArray();
+		}
+		
+		boolean[] array = new boolean[list.size()];
+		if (list instanceof RandomAccess) {
+			for (int i = 0; i < array.length; i++) {
+				array[i] = (Boolean) list.get(i);
+			}
+		} else {
+			Iterator<?> iterator = list.iterator();
+			for (int i = 0; i < array.length; i++) {
+				array[i] = (Boolean) iterator.next();
+			}
+		}
+		return array;
+	}
+	
+	/**
+	 * Converts a list of Floats into a float array
+	 * @param list The list to convert
+	 * @return The array
+	 */
+	public static float[] toFloatArray(List<?> list) {
+		if (list instanceof IPrimitiveList && ((IPrimitiveList) list).getPrimitiveType() == float.class) {
+			return (float[]) ((IPrimitiveList) list).toPrimitiveArray();
+		}
+		
+		float[] array = new float[list.size()];
+		if (list instanceof RandomAccess) {
+			for (int i = 0; i < array.length; i++) {
+				array[i] = (Float) list.get(i);
+			}
+		} else {
+			Iterator<?> iterator = list.iterator();
+			for (int i = 0; i < array.length; i++) {
+				array[i] = (Float) iterator.next();
+			}
+		}
+		return array;
+	}
+	
+	/**
+	 * Converts a list of Doubles into a double array
+	 * @param list The list to convert
+	 * @return The array
+	 */
+	public static double[] toDoubleArray(List<?> list) {
+		if (list instanceof IPrimitiveList && ((IPrimitiveList) list).getPrimitiveType() == double.class) {
+			return (double[]) ((IPrimitiveList) list).toPrimitiveArray();
+		}
+		
+		double[] array = new double[list.size()];
+		if (list instanceof RandomAccess) {
+			for (int i = 0; i < array.length; i++) {
+				array[i] = (Double) list.get(i);
+			}
+		} else {
+			Iterator<?> iterator = list.iterator();
+			for (int i = 0; i < array.length; i++) {
+				array[i] = (Double) iterator.next();
+			}
+		}
+		return array;
+	}
+	
+	/**
+	 * Converts a list of Strings into a String array
+	 * @param list The list to convert
+	 * @return The array
+	 */
+	public static String[] toStringArray(List<?> list) {
+		String[] array = new String[list.size()];
+		if (list instanceof RandomAccess) {
+			for (int i = 0; i < array.length; i++) {
+				array[i] = (String) list.get(i);
+			}
+		} else {
+			Iterator<?> iterator = list.iterator();
+			for (int i = 0; i < array.length; i++) {
+				array[i] = (String) iterator.next();
+			}
+		}
+		return array;
+	}
+}
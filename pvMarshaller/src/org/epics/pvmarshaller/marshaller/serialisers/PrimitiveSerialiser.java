@@ -2,7 +2,6 @@ package org.epics.pvmarshaller.marshaller.serialisers;
 
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
 
 import org.epics.pvdata.pv.FieldBuilder;
 import org.epics.pvdata.pv.PVBoolean;
@@ -15,6 +14,15 @@ import org.epics.pvdata.pv.PVShort;
 import org.epics.pvdata.pv.PVString;
 import org.epics.pvdata.pv.PVStructure;
 import org.epics.pvdata.pv.ScalarType;
+import org.epics.pvmarshaller.marshaller.accessors.BooleanGetter;
+import org.epics.pvmarshaller.marshaller.accessors.ByteGetter;
+import org.epics.pvmarshaller.marshaller.accessors.CharGetter;
+import org.epics.pvmarshaller.marshaller.accessors.DoubleGetter;
+import org.epics.pvmarshaller.marshaller.accessors.FloatGetter;
+import org.epics.pvmarshaller.marshaller.accessors.Getter;
+import org.epics.pvmarshaller.marshaller.accessors.IntGetter;
+import org.epics.pvmarshaller.marshaller.accessors.LongGetter;
+import org.epics.pvmarshaller.marshaller.accessors.ShortGetter;
 
 /**
  * Serialises primitive values
@@ -146,6 +154,43 @@ public class PrimitiveSerialiser {
 		}
 	}
 
+	/**
+	 * Populates a PVStructure with data from a Java primitive field, reading it with the given accessor
+	 * @param field The field to get the data from
+	 * @param structure The PVStructure to populate
+	 * @param object The object to get the data from
+	 * @param getter The accessor to read the field with
+	 * @throws IllegalArgumentException
+	 * @throws InvocationTargetException
+	 */
+	public static void setFieldValue(Field field, PVStructure structure, Object object, Getter getter)
+			throws IllegalArgumentException, InvocationTargetException {
+		String name = field.getName();
+
+		if (getter instanceof IntGetter) {
+			structure.getSubField(PVInt.class, name).put(((IntGetter) getter).getInt(object));
+		} else if (getter instanceof ShortGetter) {
+			structure.getSubField(PVShort.class, name).put(((ShortGetter) getter).getShort(object));
+		} else if (getter instanceof LongGetter) {
+			structure.getSubField(PVLong.class, name).put(((LongGetter) getter).getLong(object));
+		} else if (getter instanceof ByteGetter) {
+			structure.getSubField(PVByte.class, name).put(((ByteGetter) getter).getByte(object));
+		} else if (getter instanceof BooleanGetter) {
+			structure.getSubField(PVBoolean.class, name).put(((BooleanGetter) getter).getBoolean(object));
+		} else if (getter instanceof FloatGetter) {
+			structure.getSubField(PVFloat.class, name).put(((FloatGetter) getter).getFloat(object));
+		} else if (getter instanceof DoubleGetter) {
+			structure.getSubField(PVDouble.class, name).put(((DoubleGetter) getter).getDouble(object));
+		} else if (getter instanceof CharGetter) {
+			structure.getSubField(PVString.class, name).put(String.valueOf(((CharGetter) getter).getChar(object)));
+		} else {
+			Object value = getter.get(object);
+			if (value != null) {
+				setValue(name, structure, value);
+			}
+		}
+	}
+
 	/**
 	 * Populates a PVStructure with data from a generic field
 	 * @param field The field
@@ -158,30 +203,38 @@ public class PrimitiveSerialiser {
 	public static void setGenericFieldValue(Field field, PVStructure structure, Object object)
 			throws IllegalArgumentException, IllegalAccessException, InvocationTargetException {
 
-		Method method = Serialiser.findGetter(object, field.getName());
-		Object fieldObject = method.invoke(object);
-		Class<?> fieldType = fieldObject.getClass();
-
-		field.setAccessible(true);
+		Object fieldObject = Serialiser.findAccessor(object, field.getName()).get(object);
+		setValue(field.getName(), structure, fieldObject);
+	}
 
-		if (fieldType.equals(Integer.class) || fieldType.equals(int.class)) {
-			setIntFieldValue(field, structure, object);
-		} else if (fieldType.equals(Short.class) || fieldType.equals(short.class)) {
-			setShortFieldValue(field, structure, object);
-		} else if (fieldType.equals(Long.class) || fieldType.equals(long.class)) {
-			setLongFieldValue(field, structure, object);
-		} else if (fieldType.equals(Byte.class) || fieldType.equals(byte.class)) {
-			setByteFieldValue(field, structure, object);
-		} else if (fieldType.equals(Boolean.class) || fieldType.equals(boolean.class)) {
-			setBooleanFieldValue(field, structure, object);
-		} else if (fieldType.equals(Float.class) || fieldType.equals(float.class)) {
-			setFloatFieldValue(field, structure, object);
-		} else if (fieldType.equals(Double.class) || fieldType.equals(double.class)) {
-			setDoubleFieldValue(field, structure, object);
-		} else if (fieldType.equals(Character.class) || fieldType.equals(char.class)) {
-			setCharFieldValue(field, structure, object);
-		} else if (fieldType.equals(String.class)) {
-			setStringFieldValue(field, structure, object);
+	/**
+	 * Populates a field of a PVStructure with a boxed primitive or String value that has already been read from an object
+	 * @param name The name of the field
+	 * @param structure The PVStructure to populate
+	 * @param value The value
+	 * @throws IllegalArgumentException
+	 */
+	public static void setValue(String name, PVStructure structure, Object value) throws IllegalArgumentException {
+		Class<?> valueType = value.getClass();
+
+		if (valueType.equals(Integer.class)) {
+			structure.getSubField(PVInt.class, name).put((Integer) value);
+		} else if (valueType.equals(Short.class)) {
+			structure.getSubField(PVShort.class, name).put((Short) value);
+		} else if (valueType.equals(Long.class)) {
+			structure.getSubField(PVLong.class, name).put((Long) value);
+		} else if (valueType.equals(Byte.class)) {
+			structure.getSubField(PVByte.class, name).put((Byte) value);
+		} else if (valueType.equals(Boolean.class)) {
+			structure.getSubField(PVBoolean.class, name).put((Boolean) value);
+		} else if (valueType.equals(Float.class)) {
+			structure.getSubField(PVFloat.class, name).put((Float) value);
+		} else if (valueType.equals(Double.class)) {
+			structure.getSubField(PVDouble.class, name).put((Double) value);
+		} else if (valueType.equals(Character.class)) {
+			structure.getSubField(PVString.class, name).put(String.valueOf(value));
+		} else if (valueType.equals(String.class)) {
+			structure.getSubField(PVString.class, name).put((String) value);
 		}
 	}
 
@@ -196,8 +249,13 @@ public class PrimitiveSerialiser {
 	 */
 	public static void setIntFieldValue(Field source, PVStructure structure, Object object)
 			throws IllegalArgumentException, IllegalAccessException, InvocationTargetException {
-		Method method = Serialiser.findGetter(object, source.getName());
-		Object fieldObject = method.invoke(object);
+		Getter getter = Serialiser.findAccessor(object, source.getName());
+		if (getter instanceof IntGetter) {
+			PVInt pvInt = structure.getSubField(PVInt.class, source.getName());
+			pvInt.put(((IntGetter) getter).getInt(object));
+			return;
+		}
+		Object fieldObject = getter.get(object);
 		if (fieldObject != null) {
 			int value = (int) fieldObject;
 			PVInt pvInt = structure.getSubField(PVInt.class, source.getName());
@@ -216,8 +274,13 @@ public class PrimitiveSerialiser {
 	 */
 	public static void setShortFieldValue(Field source, PVStructure structure, Object object)
 			throws IllegalArgumentException, IllegalAccessException, InvocationTargetException {
-		Method method = Serialiser.findGetter(object, source.getName());
-		Object fieldObject = method.invoke(object);
+		Getter getter = Serialiser.findAccessor(object, source.getName());
+		if (getter instanceof ShortGetter) {
+			PVShort pvShort = structure.getSubField(PVShort.class, source.getName());
+			pvShort.put(((ShortGetter) getter).getShort(object));
+			return;
+		}
+		Object fieldObject = getter.get(object);
 		if (fieldObject != null) {
 			short value = (short) fieldObject;
 			PVShort pvShort = structure.getSubField(PVShort.class, source.getName());
@@ -236,8 +299,13 @@ public class PrimitiveSerialiser {
 	 */
 	public static void setLongFieldValue(Field source, PVStructure structure, Object object)
 			throws IllegalArgumentException, IllegalAccessException, InvocationTargetException {
-		Method method = Serialiser.findGetter(object, source.getName());
-		Object fieldObject = method.invoke(object);
+		Getter getter = Serialiser.findAccessor(object, source.getName());
+		if (getter instanceof LongGetter) {
+			PVLong pvLong = structure.getSubField(PVLong.class, source.getName());
+			pvLong.put(((LongGetter) getter).getLong(object));
+			return;
+		}
+		Object fieldObject = getter.get(object);
 		if (fieldObject != null) {
 			long value = (long) fieldObject;
 			PVLong pvLong = structure.getSubField(PVLong.class, source.getName());
@@ -256,8 +324,13 @@ public class PrimitiveSerialiser {
 	 */
 	public static void setByteFieldValue(Field source, PVStructure structure, Object object)
 			throws IllegalArgumentException, IllegalAccessException, InvocationTargetException {
-		Method method = Serialiser.findGetter(object, source.getName());
-		Object fieldObject = method.invoke(object);
+		Getter getter = Serialiser.findAccessor(object, source.getName());
+		if (getter instanceof ByteGetter) {
+			PVByte pvByte = structure.getSubField(PVByte.class, source.getName());
+			pvByte.put(((ByteGetter) getter).getByte(object));
+			return;
+		}
+		Object fieldObject = getter.get(object);
 		if (fieldObject != null) {
 			byte value = (byte) fieldObject;
 			PVByte pvByte = structure.getSubField(PVByte.class, source.getName());
@@ -276,8 +349,13 @@ public class PrimitiveSerialiser {
 	 */
 	public static void setBooleanFieldValue(Field source, PVStructure structure, Object object)
 			throws IllegalArgumentException, IllegalAccessException, InvocationTargetException {
-		Method method = Serialiser.findGetter(object, source.getName());
-		Object fieldObject = method.invoke(object);
+		Getter getter = Serialiser.findAccessor(object, source.getName());
+		if (getter instanceof BooleanGetter) {
+			PVBoolean pvBoolean = structure.getSubField(PVBoolean.class, source.getName());
+			pvBoolean.put(((BooleanGetter) getter).getBoolean(object));
+			return;
+		}
+		Object fieldObject = getter.get(object);
 		if (fieldObject != null) {
 			boolean value = (boolean) fieldObject;
 			PVBoolean pvBoolean = structure.getSubField(PVBoolean.class, source.getName());
@@ -296,8 +374,13 @@ public class PrimitiveSerialiser {
 	 */
 	public static void setFloatFieldValue(Field source, PVStructure structure, Object object)
 			throws IllegalArgumentException, IllegalAccessException, InvocationTargetException {
-		Method method = Serialiser.findGetter(object, source.getName());
-		Object fieldObject = method.invoke(object);
+		Getter getter = Serialiser.findAccessor(object, source.getName());
+		if (getter instanceof FloatGetter) {
+			PVFloat pvFloat = structure.getSubField(PVFloat.class, source.getName());
+			pvFloat.put(((FloatGetter) getter).getFloat(object));
+			return;
+		}
+		Object fieldObject = getter.get(object);
 		if (fieldObject != null) {
 			float value = (float) fieldObject;
 			PVFloat pvFloat = structure.getSubField(PVFloat.class, source.getName());
@@ -316,8 +399,13 @@ public class PrimitiveSerialiser {
 	 */
 	public static void setDoubleFieldValue(Field source, PVStructure structure, Object object)
 			throws IllegalArgumentException, IllegalAccessException, InvocationTargetException {
-		Method method = Serialiser.findGetter(object, source.getName());
-		Object fieldObject = method.invoke(object);
+		Getter getter = Serialiser.findAccessor(object, source.getName());
+		if (getter instanceof DoubleGetter) {
+			PVDouble pvDouble = structure.getSubField(PVDouble.class, source.getName());
+			pvDouble.put(((DoubleGetter) getter).getDouble(object));
+			return;
+		}
+		Object fieldObject = getter.get(object);
 		if (fieldObject != null) {
 			double value = (double) fieldObject;
 			PVDouble pvDouble = structure.getSubField(PVDouble.class, source.getName());
@@ -336,8 +424,13 @@ public class PrimitiveSerialiser {
 	 */
 	public static void setCharFieldValue(Field source, PVStructure structure, Object object)
 			throws IllegalArgumentException, IllegalAccessException, InvocationTargetException {
-		Method method = Serialiser.findGetter(object, source.getName());
-		Object fieldObject = method.invoke(object);
+		Getter getter = Serialiser.findAccessor(object, source.getName());
+		if (getter instanceof CharGetter) {
+			PVString pvString = structure.getSubField(PVString.class, source.getName());
+			pvString.put(String.valueOf(((CharGetter) getter).getChar(object)));
+			return;
+		}
+		Object fieldObject = getter.get(object);
 		if (fieldObject != null) {
 			String value = String.valueOf(fieldObject);
 			PVString pvString = structure.getSubField(PVString.class, source.getName());
@@ -356,8 +449,7 @@ public class PrimitiveSerialiser {
 	 */
 	public static void setStringFieldValue(Field source, PVStructure structure, Object object)
 			throws IllegalArgumentException, IllegalAccessException, InvocationTargetException {
-		Method method = Serialiser.findGetter(object, source.getName());
-		Object fieldObject = method.invoke(object);
+		Object fieldObject = Serialiser.findAccessor(object, source.getName()).get(object);
 		if (fieldObject != null) {
 			String value = (String) fieldObject;
 			PVString pvString = structure.getSubField(PVString.class, source.getName());
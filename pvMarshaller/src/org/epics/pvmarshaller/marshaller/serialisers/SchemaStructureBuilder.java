@@ -0,0 +1,295 @@
+package org.epics.pvmarshaller.marshaller.serialisers;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.lang.reflect.TypeVariable;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.epics.pvdata.factory.ConvertFactory;
+import org.epics.pvdata.factory.FieldFactory;
+import org.epics.pvdata.pv.Convert;
+import org.epics.pvdata.pv.FieldBuilder;
+import org.epics.pvdata.pv.FieldCreate;
+import org.epics.pvdata.pv.PVArray;
+import org.epics.pvdata.pv.PVBoolean;
+import org.epics.pvdata.pv.PVField;
+import org.epics.pvdata.pv.PVScalar;
+import org.epics.pvdata.pv.PVString;
+import org.epics.pvdata.pv.PVStructure;
+import org.epics.pvdata.pv.PVUnion;
+import org.epics.pvdata.pv.ScalarType;
+import org.epics.pvdata.pv.Structure;
+import org.epics.pvmarshaller.marshaller.api.IPVStructureSerialiser;
+import org.epics.pvmarshaller.marshaller.serialisers.ClassDescriptor.FieldDescriptor;
+
+/**
+ * Derives the Structure of a class from the declared types of its fields rather than from the values of an object, so that
+ * every object of the class is given the same Structure and it can be built without an instance. Null fields are kept and
+ * left at their default values, lists are typed from their declared element type, and lists and arrays of objects are always
+ * present, even when empty, as union arrays or, when structure arrays are in use, structure arrays of their declared element
+ * class. Map fields, whose Structure depends on their keys, and fields whose declared type is not a concrete class, e.g.
+ * Object or a type variable, can't be given a fixed Structure.
+ * Classes with a custom serialiser are given the Structure it builds for a null source.
+ * @author Matt Taylor
+ *
+ */
+public class SchemaStructureBuilder {
+
+	private static final FieldCreate fieldCreate = FieldFactory.getFieldCreate();
+	private static final Convert convert = ConvertFactory.getConvert();
+
+	private final Serialiser serialiser;
+	private final ConcurrentHashMap<Class<?>, Structure> structures = new ConcurrentHashMap<Class<?>, Structure>();
+
+	/**
+	 * Constructor
+	 * @param serialiser
+	 */
+	public SchemaStructureBuilder(Serialiser serialiser) {
+		this.serialiser = serialiser;
+	}
+
+	/**
+	 * Gets the Structure for a class, building it the first time the class is seen
+	 * @param clazz The class
+	 * @return The Structure
+	 * @throws IllegalArgumentException if the class has a field that can't be given a fixed Structure
+	 * @throws IllegalAccessException
+	 * @throws InvocationTargetException
+	 */
+	public Structure getStructure(Class<?> clazz) throws IllegalArgumentException, IllegalAccessException, InvocationTargetException {
+		return getStructure(clazz, new HashSet<Class<?>>());
+	}
+
+	/**
+	 * Removes all cached Structures. Must be called when custom serialisers or ids are registered, as they change the Structures built
+	 */
+	public void clear() {
+		structures.clear();
+	}
+
+	/**
+	 * Gets the Structure for a class, from the cache or by building it
+	 * @param clazz The class
+	 * @param building The classes whose Structures are being built, to detect classes that contain themselves
+	 * @return The Structure
+	 */
+	private Structure getStructure(Class<?> clazz, Set<Class<?>> building) throws IllegalArgumentException, IllegalAccessException, InvocationTargetException {
+		Structure structure = structures.get(clazz);
+		if (structure == null) {
+			if (!building.add(clazz)) {
+				throw new IllegalArgumentException("Unable to create a fixed Structure for a class that contains itself: " + clazz);
+			}
+			structure = buildStructure(clazz, building);
+			building.remove(clazz);
+			structures.put(clazz, structure);
+		}
+		return structure;
+	}
+
+	/**
+	 * Builds the Structure for a class from the declared types of its fields, following the same layout as ObjectSerialiser.buildObjectFromClass
+	 * @param clazz The class
+	 * @param building The classes whose Structures are being built
+	 * @return The Structure
+	 */
+	private Structure buildStructure(Class<?> clazz, Set<Class<?>> building) throws IllegalArgumentException, IllegalAccessException, InvocationTargetException {
+		IPVStructureSerialiser<?> customSerialiser = serialiser.getObjectSerialiser().getCustomSerialiserForClass(clazz);
+
+		if (customSerialiser != null) {
+			return serialiser.getStructureInterner().intern(buildCustomStructure(customSerialiser, clazz));
+		}
+
+		FieldBuilder fieldBuilder = fieldCreate.createFieldBuilder();
+
+		for (FieldDescriptor fieldDescriptor : ClassDescriptor.forClass(clazz).getFields()) {
+			Field field = fieldDescriptor.getField();
+
+			switch (fieldDescriptor.getKind()) {
+			case PRIMITIVE:
+				PrimitiveSerialiser.addToPVStructure(field, fieldBuilder);
+				break;
+			case CONTAINER:
+				addContainer(field, fieldBuilder, building);
+				break;
+			default:
+				Class<?> nestedClass = field.getType();
+				if (!isConcreteClass(nestedClass)) {
+					throw new IllegalArgumentException("Unable to create a fixed Structure for a field whose declared type is not a concrete class: " + field.getName());
+				}
+				fieldBuilder.add(field.getName(), getStructure(nestedClass, building));
+				break;
+			}
+		}
+
+		String idMapping = serialiser.getObjectSerialiser().getIdMappingForClass(clazz);
+		if (idMapping != null) {
+			fieldBuilder.setId(idMapping);
+		}
+
+		return serialiser.getStructureInterner().intern(fieldBuilder.createStructure());
+	}
+
+	/**
+	 * Builds the Structure of a class with a custom serialiser, which is given a null source
+	 * @param customSerialiser The custom serialiser
+	 * @param clazz The class
+	 * @return The Structure
+	 * @throws IllegalArgumentException if the custom serialiser can't build a Structure without an object
+	 */
+	private Structure buildCustomStructure(IPVStructureSerialiser<?> customSerialiser, Class<?> clazz) throws IllegalArgumentException, IllegalAccessException, InvocationTargetException {
+		Structure structure;
+		try {
+			structure = customSerialiser.buildStructure(serialiser, null);
+		} catch (RuntimeException e) {
+			throw new IllegalArgumentException("Unable to create a fixed Structure for " + clazz + ", as its custom serialiser can't build a Structure without an object", e);
+		}
+		if (structure == null) {
+			throw new IllegalArgumentException("Unable to create a fixed Structure for " + clazz + ", as its custom serialiser returned no Structure without an object");
+		}
+		return structure;
+	}
+
+	/**
+	 * Adds the array representing a container field to the field builder, following the same steps as ContainerSerialiser.addContainerToPVStructure
+	 * @param field The container field
+	 * @param fieldBuilder The fieldBuilder object with the current structure
+	 * @param building The classes whose Structures are being built
+	 */
+	private void addContainer(Field field, FieldBuilder fieldBuilder, Set<Class<?>> building) throws IllegalArgumentException, IllegalAccessException, InvocationTargetException {
+		String name = field.getName();
+		Class<?> fieldType = field.getType();
+
+		Class<?> componentType;
+		if (fieldType.isArray()) {
+			componentType = fieldType.getComponentType();
+		} else if (List.class.isAssignableFrom(fieldType)) {
+			componentType = getListElementClass(field.getGenericType());
+		} else if (Map.class.isAssignableFrom(fieldType)) {
+			throw new IllegalArgumentException("Unable to create a fixed Structure for a map, as it depends on the keys of the map: " + name);
+		} else {
+			throw new IllegalArgumentException("Unsupported container type: " + fieldType);
+		}
+
+		if (PrimitiveSerialiser.isPrimitive(componentType)) {
+			fieldBuilder.addArray(name, PrimitiveSerialiser.getScalarType(componentType));
+		} else if (ContainerSerialiser.isArrayTypeContainer(componentType)) {
+			throw new IllegalArgumentException("PVData does not support Arrays of Arrays");
+		} else if (serialiser.isUseStructureArrays() && ContainerSerialiser.isStructureElement(componentType) && isConcreteClass(componentType)
+				&& !building.contains(componentType)) {
+			fieldBuilder.addArray(name, getStructure(componentType, building));
+		} else {
+			// Also used for lists of a class whose Structure is being built, e.g. the children of a tree node
+			fieldBuilder.addArray(name, serialiser.getStructureInterner().intern(fieldCreate.createVariantUnion()));
+		}
+	}
+
+	/**
+	 * Returns whether the specified class is a concrete class other than Object, and so can be given a fixed Structure
+	 * @param clazz
+	 * @return
+	 */
+	private static boolean isConcreteClass(Class<?> clazz) {
+		return !clazz.equals(Object.class) && !clazz.isInterface() && !Modifier.isAbstract(clazz.getModifiers());
+	}
+
+	/**
+	 * Gets the element class of a list type from its type arguments, or those of the List it implements
+	 * @param listType The declared type of the list
+	 * @return The element class, or Object if it is not declared
+	 */
+	static Class<?> getListElementClass(Type listType) {
+		Type elementType = findListElementType(listType, Collections.<TypeVariable<?>, Type>emptyMap());
+		if (elementType instanceof Class) {
+			return (Class<?>) elementType;
+		} else if (elementType instanceof ParameterizedType) {
+			return (Class<?>) ((ParameterizedType) elementType).getRawType();
+		}
+		return Object.class;
+	}
+
+	/**
+	 * Searches a type and its supertypes for the type argument of List
+	 * @param type The type to search
+	 * @param bindings The type arguments of the subtype that the type was reached from
+	 * @return The type argument of List, or null if the type is not a List
+	 */
+	private static Type findListElementType(Type type, Map<TypeVariable<?>, Type> bindings) {
+		Class<?> rawType;
+		Map<TypeVariable<?>, Type> typeBindings = new HashMap<TypeVariable<?>, Type>();
+
+		if (type instanceof ParameterizedType) {
+			ParameterizedType parameterizedType = (ParameterizedType) type;
+			rawType = (Class<?>) parameterizedType.getRawType();
+			TypeVariable<?>[] typeVariables = rawType.getTypeParameters();
+			Type[] typeArguments = parameterizedType.getActualTypeArguments();
+			for (int i = 0; i < typeVariables.length; i++) {
+				Type typeArgument = typeArguments[i];
+				if (bindings.containsKey(typeArgument)) {
+					typeArgument = bindings.get(typeArgument);
+				}
+				typeBindings.put(typeVariables[i], typeArgument);
+			}
+		} else if (type instanceof Class) {
+			rawType = (Class<?>) type;
+		} else {
+			return null;
+		}
+
+		if (!List.class.isAssignableFrom(rawType)) {
+			return null;
+		} else if (rawType.equals(List.class)) {
+			return typeBindings.get(List.class.getTypeParameters()[0]);
+		}
+
+		for (Type interfaceType : rawType.getGenericInterfaces()) {
+			Type elementType = findListElementType(interfaceType, typeBindings);
+			if (elementType != null) {
+				return elementType;
+			}
+		}
+		return findListElementType(rawType.getGenericSuperclass(), typeBindings);
+	}
+
+	/**
+	 * Resets a field of a PVStructure to its default value, i.e. zero, false, an empty string or array, or an empty union.
+	 * Used for fields that are null in the object, which are only in the PVStructure when its Structure is fixed
+	 * @param pvField The field to reset
+	 */
+	static void clearValue(PVField pvField) {
+		switch (pvField.getField().getType()) {
+		case scalar:
+			PVScalar pvScalar = (PVScalar) pvField;
+			if (pvScalar.getScalar().getScalarType() == ScalarType.pvString) {
+				((PVString) pvScalar).put("");
+			} else if (pvScalar.getScalar().getScalarType() == ScalarType.pvBoolean) {
+				((PVBoolean) pvScalar).put(false);
+			} else {
+				convert.fromInt(pvScalar, 0);
+			}
+			break;
+		case scalarArray:
+		case structureArray:
+		case unionArray:
+			((PVArray) pvField).setLength(0);
+			break;
+		case structure:
+			for (PVField pvSubField : ((PVStructure) pvField).getPVFields()) {
+				clearValue(pvSubField);
+			}
+			break;
+		case union:
+			((PVUnion) pvField).set(null);
+			break;
+		}
+	}
+}
@@ -4,9 +4,11 @@ import java.lang.reflect.Method;
 import java.util.Map;
 
 import org.epics.pvdata.factory.PVDataFactory;
+import org.epics.pvdata.misc.BitSet;
 import org.epics.pvdata.pv.PVDataCreate;
 import org.epics.pvdata.pv.PVStructure;
 import org.epics.pvdata.pv.Structure;
+import org.epics.pvmarshaller.marshaller.accessors.Getter;
 import org.epics.pvmarshaller.marshaller.api.IPVStructureSerialiser;
 
 /**
@@ -24,6 +26,13 @@ public class Serialiser {
 	ListSerialiser listSerialiser = new ListSerialiser(this);
 	MapSerialiser mapSerialiser = new MapSerialiser(this);
 	ObjectSerialiser objectSerialiser = new ObjectSerialiser(this);
+	StructureCache structureCache = new StructureCache(this);
+	DeltaSerialiser deltaSerialiser = new DeltaSerialiser(this);
+	SchemaStructureBuilder schemaStructureBuilder = new SchemaStructureBuilder(this);
+	StructureInterner structureInterner = new StructureInterner();
+	boolean shareArrays = false;
+	boolean schemaFirst = false;
+	boolean useStructureArrays = false;
 
 	/**
 	 * Converts an Object into a PVStructure with the given set of custom serialisers and custom id to class mappings
@@ -61,7 +70,62 @@ public class Serialiser {
 	}
 	
 	/**
-	 * Creates a Structure representation of the given source Object
+	 * Repopulates an existing PVStructure with the values of an Object, with the given set of custom serialisers and custom id to class mappings
+	 * @param source The object to get the values from
+	 * @param pvStructure The PVStructure to populate
+	 * @param customSerialisers Collection of custom serialisers
+	 * @param idMappings Collection of id to class mappings
+	 * @return true if the PVStructure was populated, or false if its Structure does not match the object, in which case it is left unchanged
+	 * @throws Exception
+	 */
+	public boolean updatePVStructure(Object source, PVStructure pvStructure, Map<Class<?>, IPVStructureSerialiser<?>> customSerialisers, Map<Class<?>, String> idMappings) throws Exception
+	{
+		objectSerialiser.setCustomSerialisers(customSerialisers);
+		objectSerialiser.setIdMappings(idMappings);
+		
+		return updatePVStructure(source, pvStructure);
+	}
+	
+	/**
+	 * Updates an existing PVStructure with the values of an Object and records the fields that changed, with the given set of custom serialisers and custom id to class mappings
+	 * @param source The object to get the values from
+	 * @param pvStructure The PVStructure to update
+	 * @param changedBitSet The BitSet to set the offsets of changed fields in
+	 * @param customSerialisers Collection of custom serialisers
+	 * @param idMappings Collection of id to class mappings
+	 * @return true if the PVStructure was updated, or false if its Structure does not match the object, in which case it is left unchanged
+	 * @throws Exception
+	 */
+	public boolean updatePVStructure(Object source, PVStructure pvStructure, BitSet changedBitSet, Map<Class<?>, IPVStructureSerialiser<?>> customSerialisers, Map<Class<?>, String> idMappings) throws Exception
+	{
+		objectSerialiser.setCustomSerialisers(customSerialisers);
+		objectSerialiser.setIdMappings(idMappings);
+		
+		return deltaSerialiser.updatePVStructure(source, pvStructure, changedBitSet);
+	}
+	
+	/**
+	 * Repopulates an existing PVStructure with the values of an Object, if the object still has the same Structure
+	 * @param source The object to get the values from
+	 * @param pvStructure The PVStructure to populate
+	 * @return true if the PVStructure was populated, or false if its Structure does not match the object, in which case it is left unchanged
+	 * @throws Exception
+	 */
+	public boolean updatePVStructure(Object source, PVStructure pvStructure) throws Exception
+	{
+		Structure requestStructure = buildStructure(source);
+		
+		if (!StructureFingerprint.matches(requestStructure, pvStructure.getStructure())) {
+			return false;
+		}
+		
+		setValues(source, pvStructure);
+		
+		return true;
+	}
+	
+	/**
+	 * Creates a Structure representation of the given source Object, reusing the Structure of a previous Object of the same class and shape
 	 * @param source The Object to convert into a Structure
 	 * @return
 	 * @throws IllegalArgumentException
@@ -69,7 +133,38 @@ public class Serialiser {
 	 * @throws InvocationTargetException
 	 */
 	public Structure buildStructure(Object source) throws IllegalArgumentException, IllegalAccessException, InvocationTargetException {
-		return objectSerialiser.buildObject(source);
+		if (schemaFirst) {
+			return schemaStructureBuilder.getStructure(source.getClass());
+		}
+		return structureCache.getStructure(source);
+	}
+	
+	/**
+	 * Creates the Structure of a class from the declared types of its fields, with the given set of custom serialisers and custom id to class mappings.
+	 * This is the Structure given to every object of the class when schema-first serialisation is in use
+	 * @param clazz The class to create the Structure for
+	 * @param customSerialisers Collection of custom serialisers
+	 * @param idMappings Collection of id to class mappings
+	 * @return
+	 * @throws IllegalArgumentException if the class has a field that can't be given a fixed Structure
+	 * @throws IllegalAccessException
+	 * @throws InvocationTargetException
+	 */
+	public Structure buildStructure(Class<?> clazz, Map<Class<?>, IPVStructureSerialiser<?>> customSerialisers, Map<Class<?>, String> idMappings) throws IllegalArgumentException, IllegalAccessException, InvocationTargetException {
+		objectSerialiser.setCustomSerialisers(customSerialisers);
+		objectSerialiser.setIdMappings(idMappings);
+		
+		return schemaStructureBuilder.getStructure(clazz);
+	}
+	
+	/**
+	 * Removes all cached Structures and resolved custom serialisers and ids, so that changes to custom serialisers or ids are picked up
+	 */
+	public void clearCaches() {
+		structureCache.clear();
+		schemaStructureBuilder.clear();
+		deltaSerialiser.clear();
+		objectSerialiser.clearDispatchTables();
 	}
 	
 	/**
@@ -82,6 +177,104 @@ public class Serialiser {
 		objectSerialiser.setValues(source, pvStructure);
 	}
 	
+	/**
+	 * Sets whether serialisers compiled for each class are used for classes that have no custom serialiser
+	 * @param useCompiledSerialisers
+	 */
+	public void setUseCompiledSerialisers(boolean useCompiledSerialisers) {
+		objectSerialiser.setUseCompiledSerialisers(useCompiledSerialisers);
+	}
+
+	/**
+	 * Sets whether arrays of primitive types are handed to the PVStructure by reference rather than copied
+	 * @param shareArrays
+	 */
+	public void setShareArrays(boolean shareArrays) {
+		this.shareArrays = shareArrays;
+	}
+
+	/**
+	 * Gets whether arrays of primitive types are handed to the PVStructure by reference rather than copied
+	 * @return
+	 */
+	public boolean isShareArrays() {
+		return shareArrays;
+	}
+
+	/**
+	 * Sets whether the Structure of each object is derived from the declared types of its class rather than from its values
+	 * @param schemaFirst
+	 */
+	public void setSchemaFirst(boolean schemaFirst) {
+		this.schemaFirst = schemaFirst;
+	}
+
+	/**
+	 * Gets whether the Structure of each object is derived from the declared types of its class rather than from its values
+	 * @return
+	 */
+	public boolean isSchemaFirst() {
+		return schemaFirst;
+	}
+
+	/**
+	 * Sets whether lists and arrays of objects that all have the same Structure are serialised into structure arrays rather than union arrays
+	 * @param useStructureArrays
+	 */
+	public void setUseStructureArrays(boolean useStructureArrays) {
+		this.useStructureArrays = useStructureArrays;
+		clearCaches();
+	}
+
+	/**
+	 * Gets whether lists and arrays of objects that all have the same Structure are serialised into structure arrays rather than union arrays
+	 * @return
+	 */
+	public boolean isUseStructureArrays() {
+		return useStructureArrays;
+	}
+
+	/**
+	 * Sets whether fields are read directly rather than through their getters
+	 * @param useFieldAccess
+	 */
+	public void setUseFieldAccess(boolean useFieldAccess) {
+		objectSerialiser.setUseFieldAccess(useFieldAccess);
+	}
+
+	/**
+	 * Gets the cache of Structures built by this serialiser
+	 * @return
+	 */
+	public StructureCache getStructureCache() {
+		return structureCache;
+	}
+
+	/**
+	 * Gets the interner used to canonicalise the Structures built by this serialiser
+	 * @return
+	 */
+	public StructureInterner getStructureInterner() {
+		return structureInterner;
+	}
+
+	/**
+	 * Sets the interner used to canonicalise the Structures built by this serialiser, e.g. to share one between serialisers
+	 * @param structureInterner
+	 */
+	public void setStructureInterner(StructureInterner structureInterner) {
+		this.structureInterner = structureInterner;
+		clearCaches();
+	}
+
+	/**
+	 * Gets the builder of the Structures derived from the declared types of classes
+	 * @return
+	 */
+	public SchemaStructureBuilder getSchemaStructureBuilder() {
+		return schemaStructureBuilder;
+	}
+	
 	/**
 	 * Gets the PrimitiveSerialiser used for serialising Primitive values
 	 * @return
@@ -138,28 +331,17 @@ public class Serialiser {
 	 * @throws IllegalArgumentException
 	 */
 	public static Method findGetter(Object object, String variableName) throws IllegalArgumentException {
-		Class<?> clazz = object.getClass();
-		while (clazz != Object.class)  {
-			Method[] allMethods = clazz.getDeclaredMethods();
-			 
-		    for (Method m : allMethods) {
-		    	if (m.getName().toLowerCase().equals("get" + variableName.toLowerCase()) && m.getParameters().length == 0) {
-		    		m.setAccessible(true);
-		    		return m;
-		    	}
-		    }
-		    
-		    // Didn't find a 'get' method, try 'is'
-		    for (Method m : allMethods) {
-		    	if (m.getName().toLowerCase().equals("is" + variableName.toLowerCase()) && m.getParameters().length == 0) {
-		    		m.setAccessible(true);
-		    		return m;
-		    	}
-		    }
-		    
-		    // Didn't find any method in this class, try the superclass
-		    clazz = clazz.getSuperclass();
-		}
-		throw new IllegalArgumentException("Unable to find getter for " + variableName + " in class " + object.getClass());
+		return ClassDescriptor.forClass(object.getClass()).findGetter(variableName);
+	}
+
+	/**
+	 * Finds the accessor for the getter method of the given variable in the given object
+	 * @param object The object to search
+	 * @param variableName The name of the variable
+	 * @return The accessor
+	 * @throws IllegalArgumentException
+	 */
+	public static Getter findAccessor(Object object, String variableName) throws IllegalArgumentException {
+		return ClassDescriptor.forClass(object.getClass()).findAccessor(variableName);
 	}
 }
@@ -0,0 +1,267 @@
+package org.epics.pvmarshaller.marshaller.serialisers;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.epics.pvdata.pv.Structure;
+import org.epics.pvmarshaller.marshaller.serialisers.ClassDescriptor.FieldDescriptor;
+
+/**
+ * Cache of the Structures built for objects, keyed by the class of the object and a signature of its shape.
+ * The shape covers everything that the Structure depends on other than the class: which nullable fields are present,
+ * the runtime types of generic and container values, whether object lists and arrays are empty, the keys of maps,
+ * and, when structure arrays are in use, the shapes of the objects in lists and arrays.
+ * Objects of the same class and shape are given the same Structure without building it again.
+ * Objects that use a custom serialiser anywhere are not cached, as the Structure a custom serialiser builds can't be predicted.
+ * @author Matt Taylor
+ *
+ */
+public class StructureCache {
+
+	/**
+	 * The maximum number of Structures to cache for each class, to limit the memory used when shapes vary a lot, e.g. maps with
+	 * many different key sets. When it is reached the Structures of that class are cleared, so one class can't fill the cache
+	 */
+	public static final int MAX_SHAPES_PER_CLASS = 64;
+
+	private static final Object MAP_END = new Object();
+
+	private final Serialiser serialiser;
+	private final ConcurrentHashMap<Class<?>, ConcurrentHashMap<ShapeKey, Structure>> structures = new ConcurrentHashMap<Class<?>, ConcurrentHashMap<ShapeKey, Structure>>();
+
+	/**
+	 * Constructor
+	 * @param serialiser
+	 */
+	public StructureCache(Serialiser serialiser) {
+		this.serialiser = serialiser;
+	}
+
+	/**
+	 * Gets the Structure for an object, from the cache if an object of the same class and shape has been seen before
+	 * @param source The object
+	 * @return The Structure
+	 * @throws IllegalArgumentException
+	 * @throws IllegalAccessException
+	 * @throws InvocationTargetException
+	 */
+	public Structure getStructure(Object source) throws IllegalArgumentException, IllegalAccessException, InvocationTargetException {
+		List<Object> shape = new ArrayList<Object>();
+		if (!appendObjectShape(source, shape)) {
+			return serialiser.getObjectSerialiser().buildObject(source);
+		}
+
+		ConcurrentHashMap<ShapeKey, Structure> shapes = structures.get(source.getClass());
+		if (shapes == null) {
+			shapes = new ConcurrentHashMap<ShapeKey, Structure>();
+			ConcurrentHashMap<ShapeKey, Structure> existing = structures.putIfAbsent(source.getClass(), shapes);
+			if (existing != null) {
+				shapes = existing;
+			}
+		}
+
+		ShapeKey key = new ShapeKey(shape.toArray());
+		Structure structure = shapes.get(key);
+		if (structure == null) {
+			structure = serialiser.getObjectSerialiser().buildObject(source);
+			if (shapes.size() >= MAX_SHAPES_PER_CLASS) {
+				shapes.clear();
+			}
+			shapes.put(key, structure);
+		}
+		return structure;
+	}
+
+	/**
+	 * Removes all cached Structures. Must be called when custom serialisers or ids are registered, as they change the Structures built
+	 */
+	public void clear() {
+		structures.clear();
+	}
+
+	/**
+	 * Gets the number of cached Structures
+	 * @return
+	 */
+	public int size() {
+		int size = 0;
+		for (ConcurrentHashMap<ShapeKey, Structure> shapes : structures.values()) {
+			size += shapes.size();
+		}
+		return size;
+	}
+
+	/**
+	 * Appends the shape of an object, following the same steps as ObjectSerialiser.buildObjectFromClass
+	 * @param object The object
+	 * @param shape The shape to append to
+	 * @return false if the shape can't be determined, in which case the Structure should not be cached
+	 */
+	private boolean appendObjectShape(Object object, List<Object> shape) throws IllegalArgumentException, IllegalAccessException, InvocationTargetException {
+		Class<?> clazz = object.getClass();
+		shape.add(clazz);
+
+		if (serialiser.getObjectSerialiser().getCustomSerialiserForClass(clazz) != null) {
+			return false;
+		}
+
+		for (FieldDescriptor fieldDescriptor : ClassDescriptor.forClass(clazz).getFields()) {
+			if (fieldDescriptor.getKind() == ClassDescriptor.FieldKind.PRIMITIVE && !fieldDescriptor.isNullable()) {
+				// Always present and always the same type
+				continue;
+			}
+
+			Object value = serialiser.getObjectSerialiser().getAccessor(fieldDescriptor).get(object);
+			if (value == null) {
+				shape.add(Boolean.FALSE);
+				continue;
+			}
+			shape.add(Boolean.TRUE);
+
+			switch (fieldDescriptor.getKind()) {
+			case PRIMITIVE:
+				break;
+			case CONTAINER:
+				if (!appendContainerShape(value, true, shape)) {
+					return false;
+				}
+				break;
+			default:
+				if (PrimitiveSerialiser.isPrimitive(value.getClass())) {
+					shape.add(value.getClass());
+				} else if (!appendObjectShape(value, shape)) {
+					return false;
+				}
+				break;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Appends the shape of a container, following the same steps as ContainerSerialiser.addToPVStructure for container fields
+	 * and ContainerSerialiser.addToStructureWithContainerObject for containers in maps
+	 * @param container The container
+	 * @param isField Whether the container is the value of a field rather than of a map
+	 * @param shape The shape to append to
+	 * @return false if the shape can't be determined
+	 */
+	private boolean appendContainerShape(Object container, boolean isField, List<Object> shape) throws IllegalArgumentException, IllegalAccessException, InvocationTargetException {
+		Class<?> containerType = container.getClass();
+		shape.add(containerType);
+
+		if (containerType.isArray()) {
+			Class<?> componentType = containerType.getComponentType();
+			if (!PrimitiveSerialiser.isPrimitive(componentType)) {
+				if (ContainerSerialiser.isArrayTypeContainer(componentType) || ContainerSerialiser.isStructureTypeContainer(componentType)) {
+					return false;
+				}
+				if (isField) {
+					// Empty arrays of objects are left out of the structure of an object
+					shape.add(Array.getLength(container) > 0);
+				}
+				if (serialiser.isUseStructureArrays() && !appendElementShapes(Arrays.asList((Object[]) container), shape)) {
+					return false;
+				}
+			}
+		} else if (container instanceof List) {
+			List<?> list = (List<?>) container;
+			if (list.isEmpty() || list.get(0) == null) {
+				return false;
+			}
+			Class<?> componentType = list.get(0).getClass();
+			shape.add(componentType);
+			if (ContainerSerialiser.isArrayTypeContainer(componentType)) {
+				return false;
+			}
+			if (serialiser.isUseStructureArrays() && !PrimitiveSerialiser.isPrimitive(componentType) && !appendElementShapes(list, shape)) {
+				return false;
+			}
+		} else if (container instanceof Map) {
+			return appendMapShape((Map<?, ?>) container, shape);
+		} else {
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Appends the shape of each object in a list or array, as whether it is serialised into a structure array depends on whether they all have the same Structure
+	 * @param elements The objects in the list or array
+	 * @param shape The shape to append to
+	 * @return false if the shape can't be determined
+	 */
+	private boolean appendElementShapes(Collection<?> elements, List<Object> shape) throws IllegalArgumentException, IllegalAccessException, InvocationTargetException {
+		for (Object element : elements) {
+			if (element == null || !ContainerSerialiser.isStructureElement(element.getClass()) || !appendObjectShape(element, shape)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Appends the shape of a map, following the same steps as MapSerialiser.buildStructureFromMap
+	 * @param map The map
+	 * @param shape The shape to append to
+	 * @return false if the shape can't be determined
+	 */
+	private boolean appendMapShape(Map<?, ?> map, List<Object> shape) throws IllegalArgumentException, IllegalAccessException, InvocationTargetException {
+		for (Map.Entry<?, ?> entry : map.entrySet()) {
+			Object value = entry.getValue();
+			if (!(entry.getKey() instanceof String) || value == null) {
+				return false;
+			}
+			shape.add(entry.getKey());
+
+			Class<?> valueType = value.getClass();
+			if (PrimitiveSerialiser.isPrimitive(valueType)) {
+				shape.add(valueType);
+			} else if (ContainerSerialiser.isContainer(valueType)) {
+				if (!appendContainerShape(value, false, shape)) {
+					return false;
+				}
+			} else if (!appendObjectShape(value, shape)) {
+				return false;
+			}
+		}
+		shape.add(MAP_END);
+		return true;
+	}
+
+	/**
+	 * Key of a cached Structure, made of the tokens of the shape of an object, starting with its class
+	 */
+	private static class ShapeKey {
+		final Object[] tokens;
+		final int hash;
+
+		ShapeKey(Object[] tokens) {
+			this.tokens = tokens;
+			this.hash = Arrays.hashCode(tokens);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof ShapeKey)) {
+				return false;
+			}
+			ShapeKey other = (ShapeKey) obj;
+			return hash == other.hash && Arrays.equals(tokens, other.tokens);
+		}
+	}
+}
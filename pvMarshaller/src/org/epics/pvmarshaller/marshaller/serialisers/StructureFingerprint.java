@@ -0,0 +1,200 @@
+package org.epics.pvmarshaller.marshaller.serialisers;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.epics.pvdata.pv.Field;
+import org.epics.pvdata.pv.Structure;
+import org.epics.pvdata.pv.StructureArray;
+import org.epics.pvdata.pv.Union;
+import org.epics.pvdata.pv.UnionArray;
+
+/**
+ * Computes a 64-bit fingerprint of an introspection interface from the types, ids and names of its fields and those of any
+ * nested Structures and Unions. Equal interfaces always have the same fingerprint, so interfaces with different fingerprints
+ * can be told apart without walking them, unlike Structure.equals, which walks the whole tree each time.
+ * The fingerprints of Structures and Unions are memoised per instance, and only weakly held, so are released with the instance.
+ * @author Matt Taylor
+ *
+ */
+public final class StructureFingerprint {
+
+	private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+	private static final long FNV_PRIME = 0x100000001b3L;
+
+	private static final ConcurrentHashMap<FingerprintedField, Long> fingerprints = new ConcurrentHashMap<FingerprintedField, Long>();
+	private static final ReferenceQueue<Field> releasedFields = new ReferenceQueue<Field>();
+
+	private StructureFingerprint() {
+	}
+
+	/**
+	 * Gets the fingerprint of an introspection interface, computing it the first time a Structure or Union instance is seen
+	 * @param field The introspection interface
+	 * @return The fingerprint
+	 */
+	public static long of(Field field) {
+		switch (field.getType()) {
+		case structure:
+		case union:
+			break;
+		default:
+			// Cheaper to compute than to look up
+			return compute(field);
+		}
+
+		expungeReleasedFields();
+
+		Long fingerprint = fingerprints.get(new FingerprintedField(field, null));
+		if (fingerprint == null) {
+			fingerprint = compute(field);
+			fingerprints.put(new FingerprintedField(field, releasedFields), fingerprint);
+		}
+		return fingerprint;
+	}
+
+	/**
+	 * Returns whether two introspection interfaces are equal, only walking them if they are different instances with the same fingerprint
+	 * @param field The first introspection interface
+	 * @param other The second introspection interface
+	 * @return
+	 */
+	public static boolean matches(Field field, Field other) {
+		if (field == other) {
+			return true;
+		} else if (field == null || other == null) {
+			return false;
+		}
+		return of(field) == of(other) && field.equals(other);
+	}
+
+	/**
+	 * Computes the fingerprint of an introspection interface, using the memoised fingerprints of nested Structures and Unions
+	 * @param field The introspection interface
+	 * @return The fingerprint
+	 */
+	private static long compute(Field field) {
+		long hash = FNV_OFFSET_BASIS;
+		hash = mix(hash, field.getType().ordinal());
+		// The id also distinguishes the scalar types
+		hash = mix(hash, field.getID());
+
+		switch (field.getType()) {
+		case structure:
+			Structure structure = (Structure) field;
+			hash = mixFields(hash, structure.getFieldNames(), structure.getFields());
+			break;
+		case union:
+			Union union = (Union) field;
+			hash = mixFields(hash, union.getFieldNames(), union.getFields());
+			break;
+		case structureArray:
+			hash = mix(hash, of(((StructureArray) field).getStructure()));
+			break;
+		case unionArray:
+			hash = mix(hash, of(((UnionArray) field).getUnion()));
+			break;
+		default:
+			break;
+		}
+
+		return finalise(hash);
+	}
+
+	/**
+	 * Mixes the number of fields, and the name and fingerprint of each field, into a hash
+	 * @param hash The current hash
+	 * @param fieldNames The names of the fields
+	 * @param fields The fields
+	 * @return The new hash
+	 */
+	private static long mixFields(long hash, String[] fieldNames, Field[] fields) {
+		hash = mix(hash, fields.length);
+		for (int i = 0; i < fields.length; i++) {
+			hash = mix(hash, fieldNames[i]);
+			hash = mix(hash, of(fields[i]));
+		}
+		return hash;
+	}
+
+	/**
+	 * Mixes a string into a hash, followed by a terminator so that adjacent strings can't run into each other
+	 * @param hash The current hash
+	 * @param value The string
+	 * @return The new hash
+	 */
+	private static long mix(long hash, String value) {
+		for (int i = 0; i < value.length(); i++) {
+			hash = (hash ^ value.charAt(i)) * FNV_PRIME;
+		}
+		return (hash ^ 0xffff) * FNV_PRIME;
+	}
+
+	/**
+	 * Mixes a long into a hash, a byte at a time
+	 * @param hash The current hash
+	 * @param value The long
+	 * @return The new hash
+	 */
+	private static long mix(long hash, long value) {
+		for (int i = 0; i < 8; i++) {
+			hash = (hash ^ (value & 0xff)) * FNV_PRIME;
+			value >>>= 8;
+		}
+		return hash;
+	}
+
+	/**
+	 * Spreads the bits of a hash, so that fingerprints of similar interfaces differ in many bits
+	 * @param hash The hash
+	 * @return The fingerprint
+	 */
+	private static long finalise(long hash) {
+		hash ^= hash >>> 33;
+		hash *= 0xff51afd7ed558ccdL;
+		hash ^= hash >>> 33;
+		hash *= 0xc4ceb9fe1a85ec53L;
+		hash ^= hash >>> 33;
+		return hash;
+	}
+
+	/**
+	 * Removes the fingerprints of instances that have been released
+	 */
+	private static void expungeReleasedFields() {
+		Object released;
+		while ((released = releasedFields.poll()) != null) {
+			fingerprints.remove(released);
+		}
+	}
+
+	/**
+	 * Weak reference to an instance whose fingerprint has been memoised, which is only equal to another for the same instance
+	 */
+	private static class FingerprintedField extends WeakReference<Field> {
+		private final int hashCode;
+
+		FingerprintedField(Field field, ReferenceQueue<Field> queue) {
+			super(field, queue);
+			this.hashCode = System.identityHashCode(field);
+		}
+
+		@Override
+		public int hashCode() {
+			return hashCode;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (obj == this) {
+				return true;
+			}
+			if (!(obj instanceof FingerprintedField)) {
+				return false;
+			}
+			Field field = get();
+			return field != null && field == ((FingerprintedField) obj).get();
+		}
+	}
+}
@@ -0,0 +1,129 @@
+package org.epics.pvmarshaller.marshaller.serialisers;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.epics.pvdata.pv.Field;
+
+/**
+ * Canonicalises introspection interfaces, so that equal Structures, Unions and ScalarArrays built by the serialisers are
+ * replaced with a single instance. FieldCreate creates a new instance each time, which defeats caches that compare
+ * introspection interfaces by identity, such as the deserialisation plans and pvAccess introspection registries.
+ * Interned instances are only weakly held, so they are released once nothing else refers to them.
+ * An interner can be shared between marshallers.
+ * @author Matt Taylor
+ *
+ */
+public class StructureInterner {
+
+	private final ConcurrentHashMap<InternedField, InternedField> fields = new ConcurrentHashMap<InternedField, InternedField>();
+	private final ReferenceQueue<Field> releasedFields = new ReferenceQueue<Field>();
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+
+	/**
+	 * Gets the canonical instance of an introspection interface, which is the one given if no equal instance has been interned
+	 * @param field The Structure, Union or ScalarArray to intern
+	 * @return The canonical instance
+	 */
+	@SuppressWarnings("unchecked")
+	public <T extends Field> T intern(T field) {
+		expungeReleasedFields();
+
+		InternedField key = new InternedField(field, null);
+		while (true) {
+			InternedField existing = fields.get(key);
+			if (existing == null) {
+				InternedField entry = new InternedField(field, releasedFields);
+				existing = fields.putIfAbsent(entry, entry);
+				if (existing == null) {
+					misses.incrementAndGet();
+					return field;
+				}
+			}
+
+			Field canonical = existing.get();
+			if (canonical != null) {
+				hits.incrementAndGet();
+				return (T) canonical;
+			}
+			// Released but not yet expunged, so replace it
+			fields.remove(existing);
+		}
+	}
+
+	/**
+	 * Gets the number of calls to intern that returned an equal instance that had already been interned
+	 * @return
+	 */
+	public long getHits() {
+		return hits.get();
+	}
+
+	/**
+	 * Gets the number of calls to intern that interned a new instance
+	 * @return
+	 */
+	public long getMisses() {
+		return misses.get();
+	}
+
+	/**
+	 * Gets the number of interned instances, including any that have been released but not yet removed
+	 * @return
+	 */
+	public int size() {
+		return fields.size();
+	}
+
+	/**
+	 * Resets the hit and miss counts to zero
+	 */
+	public void resetStatistics() {
+		hits.set(0);
+		misses.set(0);
+	}
+
+	/**
+	 * Removes interned instances that have been released
+	 */
+	private void expungeReleasedFields() {
+		Object released;
+		while ((released = releasedFields.poll()) != null) {
+			fields.remove(released);
+		}
+	}
+
+	/**
+	 * Weak reference to an interned instance, which is equal to another for an equal instance. The hash code is kept so that a
+	 * released instance can still be removed from the table
+	 */
+	private static class InternedField extends WeakReference<Field> {
+		private final int hashCode;
+
+		InternedField(Field field, ReferenceQueue<Field> queue) {
+			super(field, queue);
+			this.hashCode = field.hashCode();
+		}
+
+		@Override
+		public int hashCode() {
+			return hashCode;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (obj == this) {
+				return true;
+			}
+			if (!(obj instanceof InternedField)) {
+				return false;
+			}
+			Field field = get();
+			Field otherField = ((InternedField) obj).get();
+			return field != null && (field == otherField || field.equals(otherField));
+		}
+	}
+}
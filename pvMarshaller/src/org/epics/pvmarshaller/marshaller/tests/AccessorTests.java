@@ -0,0 +1,176 @@
+package org.epics.pvmarshaller.marshaller.tests;
+
+import static org.junit.Assert.*;
+
+import java.lang.reflect.Method;
+
+import org.epics.pvmarshaller.marshaller.accessors.Accessors;
+import org.epics.pvmarshaller.marshaller.accessors.DoubleGetter;
+import org.epics.pvmarshaller.marshaller.accessors.DoubleSetter;
+import org.epics.pvmarshaller.marshaller.accessors.Getter;
+import org.epics.pvmarshaller.marshaller.accessors.IntGetter;
+import org.epics.pvmarshaller.marshaller.accessors.IntSetter;
+import org.epics.pvmarshaller.marshaller.accessors.Setter;
+import org.junit.Test;
+
+public class AccessorTests {
+
+	@Test
+	public void testLambdaAccessors() {
+		try {
+			PublicBean bean = new PublicBean();
+			bean.setIntValue(5);
+			bean.setDoubleValue(2.5);
+			bean.setStringValue("Test String");
+
+			Getter intGetter = Accessors.lambdaGetter(PublicBean.class.getMethod("getIntValue"));
+			Getter doubleGetter = Accessors.lambdaGetter(PublicBean.class.getMethod("getDoubleValue"));
+			Getter stringGetter = Accessors.lambdaGetter(PublicBean.class.getMethod("getStringValue"));
+
+			assertTrue(intGetter instanceof IntGetter);
+			assertTrue(doubleGetter instanceof DoubleGetter);
+			assertEquals(5, ((IntGetter) intGetter).getInt(bean));
+			assertEquals(2.5, ((DoubleGetter) doubleGetter).getDouble(bean), 0);
+			assertEquals(5, intGetter.get(bean));
+			assertEquals("Test String", stringGetter.get(bean));
+
+			Setter intSetter = Accessors.lambdaSetter(PublicBean.class.getMethod("setIntValue", int.class));
+			Setter doubleSetter = Accessors.lambdaSetter(PublicBean.class.getMethod("setDoubleValue", double.class));
+			Setter stringSetter = Accessors.lambdaSetter(PublicBean.class.getMethod("setStringValue", String.class));
+
+			assertTrue(intSetter instanceof IntSetter);
+			assertTrue(doubleSetter instanceof DoubleSetter);
+			((IntSetter) intSetter).setInt(bean, 10);
+			((DoubleSetter) doubleSetter).setDouble(bean, 7.5);
+			stringSetter.set(bean, "Other String");
+
+			assertEquals(10, bean.getIntValue());
+			assertEquals(7.5, bean.getDoubleValue(), 0);
+			assertEquals("Other String", bean.getStringValue());
+		} catch (Exception e) {
+			fail(e.getMessage());
+		}
+	}
+
+	@Test
+	public void testFallbackAccessors() {
+		try {
+			NonPublicBean bean = new NonPublicBean();
+			bean.setIntValue(5);
+
+			Method getMethod = NonPublicBean.class.getDeclaredMethod("getIntValue");
+			Method setMethod = NonPublicBean.class.getDeclaredMethod("setIntValue", int.class);
+			getMethod.setAccessible(true);
+			setMethod.setAccessible(true);
+
+			// Can't generate accessors for a class that isn't public
+			assertNull(Accessors.lambdaGetter(getMethod));
+			assertNull(Accessors.lambdaSetter(setMethod));
+
+			Getter getter = Accessors.getter(getMethod);
+			Setter setter = Accessors.setter(setMethod);
+			assertTrue(getter instanceof IntGetter);
+			assertTrue(setter instanceof IntSetter);
+			assertEquals(5, ((IntGetter) getter).getInt(bean));
+			((IntSetter) setter).setInt(bean, 10);
+			assertEquals(10, bean.getIntValue());
+
+			Getter reflectiveGetter = Accessors.reflectiveGetter(getMethod);
+			Setter reflectiveSetter = Accessors.reflectiveSetter(setMethod);
+			reflectiveSetter.set(bean, 15);
+			assertEquals(15, reflectiveGetter.get(bean));
+		} catch (Exception e) {
+			fail(e.getMessage());
+		}
+	}
+
+	@Test
+	public void testBoxedSetterConversions() {
+		try {
+			PublicBean bean = new PublicBean();
+			Setter intSetter = Accessors.setter(PublicBean.class.getMethod("setIntValue", int.class));
+			Setter doubleSetter = Accessors.setter(PublicBean.class.getMethod("setDoubleValue", double.class));
+
+			// Widening conversions are allowed, as with Method.invoke
+			intSetter.set(bean, (short) 3);
+			doubleSetter.set(bean, 4);
+			assertEquals(3, bean.getIntValue());
+			assertEquals(4.0, bean.getDoubleValue(), 0);
+		} catch (Exception e) {
+			fail(e.getMessage());
+		}
+
+		try {
+			PublicBean bean = new PublicBean();
+			Setter intSetter = Accessors.setter(PublicBean.class.getMethod("setIntValue", int.class));
+			intSetter.set(bean, 3L);
+			fail("Narrowing conversion should not be allowed");
+		} catch (IllegalArgumentException e) {
+			// Expected
+		} catch (Exception e) {
+			fail(e.getMessage());
+		}
+	}
+
+	@Test
+	public void testSetterTypeMismatch() {
+		try {
+			Method method = PublicBean.class.getMethod("setStringValue", String.class);
+			Setter[] setters = new Setter[] {Accessors.lambdaSetter(method), Accessors.methodHandleSetter(method), Accessors.reflectiveSetter(method)};
+
+			// Every kind of Setter reports a value of the wrong type as an IllegalArgumentException
+			for (Setter setter : setters) {
+				try {
+					setter.set(new PublicBean(), 5);
+					fail("Expected IllegalArgumentException");
+				} catch (IllegalArgumentException e) {
+					// Expected
+				}
+			}
+		} catch (Exception e) {
+			fail(e.getMessage());
+		}
+	}
+
+	public static class PublicBean {
+		private int intValue;
+		private double doubleValue;
+		private String stringValue;
+
+		public int getIntValue() {
+			return intValue;
+		}
+
+		public void setIntValue(int intValue) {
+			this.intValue = intValue;
+		}
+
+		public double getDoubleValue() {
+			return doubleValue;
+		}
+
+		public void setDoubleValue(double doubleValue) {
+			this.doubleValue = doubleValue;
+		}
+
+		public String getStringValue() {
+			return stringValue;
+		}
+
+		public void setStringValue(String stringValue) {
+			this.stringValue = stringValue;
+		}
+	}
+
+	static class NonPublicBean {
+		private int intValue;
+
+		int getIntValue() {
+			return intValue;
+		}
+
+		void setIntValue(int intValue) {
+			this.intValue = intValue;
+		}
+	}
+}
@@ -0,0 +1,110 @@
+package org.epics.pvmarshaller.marshaller.tests;
+
+import static org.junit.Assert.*;
+
+import org.epics.pvdata.misc.BitSet;
+import org.epics.pvdata.pv.PVIntArray;
+import org.epics.pvdata.pv.PVStructure;
+import org.epics.pvmarshaller.marshaller.PVMarshaller;
+import org.junit.Test;
+
+public class ChangedBitSetTests {
+
+	@Test
+	public void testOnlyChangedFieldsAreMarked() {
+		PVMarshaller marshaller = new PVMarshaller();
+
+		DeltaClass source = new DeltaClass();
+		source.intValue = 1;
+		source.stringValue = "First";
+		source.intArray = new int[] {1, 2, 3};
+		source.child = new DeltaChild();
+		source.child.childValue = 1;
+		source.child.otherValue = 2;
+
+		try {
+			PVStructure pvStructure = marshaller.toPVStructure(source);
+
+			// Nothing has changed
+			BitSet changedBitSet = new BitSet(pvStructure.getNumberFields());
+			assertTrue(marshaller.updatePVStructure(source, pvStructure, changedBitSet));
+			assertEquals(0, changedBitSet.cardinality());
+
+			source.stringValue = "Second";
+			source.intArray = new int[] {4, 5};
+			source.child.childValue = 3;
+
+			assertTrue(marshaller.updatePVStructure(source, pvStructure, changedBitSet));
+			assertEquals(3, changedBitSet.cardinality());
+			assertTrue(changedBitSet.get(pvStructure.getSubField("stringValue").getFieldOffset()));
+			assertTrue(changedBitSet.get(pvStructure.getSubField("intArray").getFieldOffset()));
+			assertTrue(changedBitSet.get(pvStructure.getSubField("child.childValue").getFieldOffset()));
+			assertFalse(changedBitSet.get(pvStructure.getSubField("child.otherValue").getFieldOffset()));
+
+			// Values must match a newly created PVStructure
+			TestHelper.assertPVStructuresEqual(marshaller.toPVStructure(source), pvStructure);
+			assertEquals(2, pvStructure.getSubField(PVIntArray.class, "intArray").getLength());
+		} catch (Exception e) {
+			fail(e.getMessage());
+		}
+	}
+
+	@Test
+	public void testShapeMismatchIsReported() {
+		PVMarshaller marshaller = new PVMarshaller();
+
+		DeltaClass source = new DeltaClass();
+		source.intValue = 1;
+		source.stringValue = "First";
+
+		try {
+			PVStructure pvStructure = marshaller.toPVStructure(source);
+
+			source.stringValue = null;
+			source.intValue = 2;
+
+			BitSet changedBitSet = new BitSet(pvStructure.getNumberFields());
+			assertFalse(marshaller.updatePVStructure(source, pvStructure, changedBitSet));
+			assertEquals(0, changedBitSet.cardinality());
+			assertEquals(1, pvStructure.getIntField("intValue").get());
+		} catch (Exception e) {
+			fail(e.getMessage());
+		}
+	}
+
+	public static class DeltaChild {
+		int childValue;
+		int otherValue;
+
+		public int getChildValue() {
+			return childValue;
+		}
+
+		public int getOtherValue() {
+			return otherValue;
+		}
+	}
+
+	public static class DeltaClass {
+		int intValue;
+		String stringValue;
+		int[] intArray;
+		DeltaChild child;
+
+		public int getIntValue() {
+			return intValue;
+		}
+
+		public String getStringValue() {
+			return stringValue;
+		}
+
+		public int[] getIntArray() {
+			return intArray;
+		}
+
+		public DeltaChild getChild() {
+			return child;
+		}
+	}
+}
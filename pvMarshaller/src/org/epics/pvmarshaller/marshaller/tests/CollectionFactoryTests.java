@@ -0,0 +1,124 @@
+package org.epics.pvmarshaller.marshaller.tests;
+
+import static org.junit.Assert.*;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.epics.pvdata.pv.PVStructure;
+import org.epics.pvmarshaller.marshaller.PVMarshaller;
+import org.epics.pvmarshaller.marshaller.api.ICollectionFactory;
+import org.junit.Test;
+
+public class CollectionFactoryTests {
+
+	@Test
+	public void testDefaultCollections() {
+		PVMarshaller marshaller = new PVMarshaller();
+
+		CollectionClass source = createSource();
+
+		try {
+			PVStructure pvStructure = marshaller.toPVStructure(source);
+			CollectionClass deserialisedObject = marshaller.fromPVStructure(pvStructure, CollectionClass.class);
+
+			assertEquals(ArrayList.class, deserialisedObject.getIntegers().getClass());
+			assertEquals(ArrayList.class, deserialisedObject.getStrings().getClass());
+			assertEquals(LinkedHashMap.class, deserialisedObject.getMap().getClass());
+			assertEquals(source.getIntegers(), deserialisedObject.getIntegers());
+			assertEquals(source.getStrings(), deserialisedObject.getStrings());
+			assertEquals(source.getMap(), deserialisedObject.getMap());
+		} catch (Exception e) {
+			fail(e.getMessage());
+		}
+	}
+
+	@Test
+	public void testCustomCollectionFactory() {
+		PVMarshaller marshaller = new PVMarshaller();
+		RecordingCollectionFactory factory = new RecordingCollectionFactory();
+		marshaller.setCollectionFactory(factory);
+
+		CollectionClass source = createSource();
+
+		try {
+			PVStructure pvStructure = marshaller.toPVStructure(source);
+			CollectionClass deserialisedObject = marshaller.fromPVStructure(pvStructure, CollectionClass.class);
+
+			assertEquals(LinkedList.class, deserialisedObject.getIntegers().getClass());
+			assertEquals(TreeMap.class, deserialisedObject.getMap().getClass());
+			assertEquals(source.getIntegers(), deserialisedObject.getIntegers());
+			assertEquals(source.getMap(), deserialisedObject.getMap());
+
+			assertTrue(factory.listRequests.contains("Integer:3"));
+			assertTrue(factory.listRequests.contains("String:2"));
+			assertTrue(factory.mapRequests.contains(2));
+		} catch (Exception e) {
+			fail(e.getMessage());
+		}
+	}
+
+	private static CollectionClass createSource() {
+		CollectionClass source = new CollectionClass();
+		source.setIntegers(Arrays.asList(1, 2, 3));
+		source.setStrings(Arrays.asList("a", "b"));
+		Map<String, Integer> map = new LinkedHashMap<String, Integer>();
+		map.put("first", 1);
+		map.put("second", 2);
+		source.setMap(map);
+		return source;
+	}
+
+	public static class RecordingCollectionFactory implements ICollectionFactory {
+		List<String> listRequests = new ArrayList<String>();
+		List<Integer> mapRequests = new ArrayList<Integer>();
+
+		@Override
+		public <E> List<E> createList(Class<?> listClass, Class<?> elementClass, int size) throws InstantiationException, InvocationTargetException {
+			listRequests.add(elementClass.getSimpleName() + ":" + size);
+			return new LinkedList<E>();
+		}
+
+		@Override
+		public <K, V> Map<K, V> createMap(Class<?> mapClass, int size) throws InstantiationException, InvocationTargetException {
+			mapRequests.add(size);
+			return new TreeMap<K, V>();
+		}
+	}
+
+	public static class CollectionClass {
+		List<Integer> integers;
+		List<String> strings;
+		Map<String, Integer> map;
+
+		public List<Integer> getIntegers() {
+			return integers;
+		}
+
+		public void setIntegers(List<Integer> integers) {
+			this.integers = integers;
+		}
+
+		public List<String> getStrings() {
+			return strings;
+		}
+
+		public void setStrings(List<String> strings) {
+			this.strings = strings;
+		}
+
+		public Map<String, Integer> getMap() {
+			return map;
+		}
+
+		public void setMap(Map<String, Integer> map) {
+			this.map = map;
+		}
+	}
+}
@@ -0,0 +1,170 @@
+package org.epics.pvmarshaller.marshaller.tests;
+
+import static org.junit.Assert.*;
+
+import java.util.LinkedList;
+import java.util.List;
+
+import org.epics.pvdata.pv.PVStructure;
+import org.epics.pvmarshaller.marshaller.PVMarshaller;
+import org.epics.pvmarshaller.marshaller.serialisers.CompiledObjectSerialiser;
+import org.junit.Test;
+
+public class CompiledSerialiserTests {
+
+	@Test
+	public void testCompiledMatchesReflective() {
+		PVMarshaller reflectiveMarshaller = new PVMarshaller();
+		PVMarshaller compiledMarshaller = new PVMarshaller();
+		compiledMarshaller.setUseCompiledSerialisers(true);
+
+		// Create test class to serialise
+		AllTypesClass testClass = new AllTypesClass();
+		testClass.intValue = 1;
+		testClass.shortValue = 2;
+		testClass.longValue = 3;
+		testClass.byteValue = 4;
+		testClass.booleanValue = true;
+		testClass.floatValue = 5.5f;
+		testClass.doubleValue = 6.5;
+		testClass.charValue = 'x';
+		testClass.stringValue = "Test String";
+		testClass.wrapperValue = 7;
+		testClass.nestedObject = new NestedClass();
+		testClass.nestedObject.nestedInt = 8;
+		testClass.intList = new LinkedList<Integer>();
+		testClass.intList.add(9);
+		testClass.intList.add(10);
+		testClass.doubleArray = new double[] {11.5, 12.5};
+
+		try {
+			PVStructure expectedPVStructure = reflectiveMarshaller.toPVStructure(testClass);
+			PVStructure serialisedPVStructure = compiledMarshaller.toPVStructure(testClass);
+
+			System.out.println("Serialised Structure:\n" + serialisedPVStructure + "\n---\n");
+
+			TestHelper.assertPVStructuresEqual(expectedPVStructure, serialisedPVStructure);
+		} catch (Exception e) {
+			fail(e.getMessage());
+		}
+	}
+
+	@Test
+	public void testCompiledOmitsNullFields() {
+		PVMarshaller reflectiveMarshaller = new PVMarshaller();
+		PVMarshaller compiledMarshaller = new PVMarshaller();
+		compiledMarshaller.setUseCompiledSerialisers(true);
+
+		// Leave the wrapper, string, nested object and containers null
+		AllTypesClass testClass = new AllTypesClass();
+		testClass.intValue = 1;
+
+		try {
+			PVStructure expectedPVStructure = reflectiveMarshaller.toPVStructure(testClass);
+			PVStructure serialisedPVStructure = compiledMarshaller.toPVStructure(testClass);
+
+			assertNull(serialisedPVStructure.getSubField("stringValue"));
+			assertNull(serialisedPVStructure.getSubField("nestedObject"));
+			TestHelper.assertPVStructuresEqual(expectedPVStructure, serialisedPVStructure);
+		} catch (Exception e) {
+			fail(e.getMessage());
+		}
+	}
+
+	@Test
+	public void testCompiledWithId() {
+		PVMarshaller reflectiveMarshaller = new PVMarshaller();
+		reflectiveMarshaller.registerIdForClass(NestedClass.class, "NestedId");
+		PVMarshaller compiledMarshaller = new PVMarshaller();
+		compiledMarshaller.setUseCompiledSerialisers(true);
+		compiledMarshaller.registerIdForClass(NestedClass.class, "NestedId");
+
+		NestedClass testClass = new NestedClass();
+		testClass.nestedInt = 42;
+
+		try {
+			PVStructure expectedPVStructure = reflectiveMarshaller.toPVStructure(testClass);
+			PVStructure serialisedPVStructure = compiledMarshaller.toPVStructure(testClass);
+
+			assertEquals("NestedId", serialisedPVStructure.getStructure().getID());
+			TestHelper.assertPVStructuresEqual(expectedPVStructure, serialisedPVStructure);
+		} catch (Exception e) {
+			fail(e.getMessage());
+		}
+	}
+
+	@Test
+	public void testNoCompiledSerialiserWithoutGetter() {
+		// A field without a getter means a serialiser can't be compiled, so the reflective serialiser should be used
+		assertNull(CompiledObjectSerialiser.forClass(NoGetterClass.class));
+		assertNotNull(CompiledObjectSerialiser.forClass(NestedClass.class));
+	}
+
+	public static class AllTypesClass {
+		int intValue;
+		short shortValue;
+		long longValue;
+		byte byteValue;
+		boolean booleanValue;
+		float floatValue;
+		double doubleValue;
+		char charValue;
+		String stringValue;
+		Integer wrapperValue;
+		NestedClass nestedObject;
+		List<Integer> intList;
+		double[] doubleArray;
+
+		public int getIntValue() {
+			return intValue;
+		}
+		public short getShortValue() {
+			return shortValue;
+		}
+		public long getLongValue() {
+			return longValue;
+		}
+		public byte getByteValue() {
+			return byteValue;
+		}
+		public boolean isBooleanValue() {
+			return booleanValue;
+		}
+		public float getFloatValue() {
+			return floatValue;
+		}
+		public double getDoubleValue() {
+			return doubleValue;
+		}
+		public char getCharValue() {
+			return charValue;
+		}
+		public String getStringValue() {
+			return stringValue;
+		}
+		public Integer getWrapperValue() {
+			return wrapperValue;
+		}
+		public NestedClass getNestedObject() {
+			return nestedObject;
+		}
+		public List<Integer> getIntList() {
+			return intList;
+		}
+		public double[] getDoubleArray() {
+			return doubleArray;
+		}
+	}
+
+	public static class NestedClass {
+		int nestedInt;
+
+		public int getNestedInt() {
+			return nestedInt;
+		}
+	}
+
+	public static class NoGetterClass {
+		int noGetterInt;
+	}
+}
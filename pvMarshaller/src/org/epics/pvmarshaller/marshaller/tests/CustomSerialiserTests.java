@@ -406,6 +406,31 @@ public class CustomSerialiserTests {
 		TestHelper.assertPVStructuresEqual(expectedPVStructure, serialisedPVStructure);
 	}
 	
+	@Test
+	public void testCustomSerialiserRegisteredAfterUse() {
+
+		// Create test class to serialise
+		ImplementingClass testObject = new ImplementingClass();
+		testObject.implentingInteger = 25;
+
+		try {
+			PVMarshaller marshaller = new PVMarshaller();
+
+			// Serialise once without a custom serialiser so the class has been resolved
+			PVStructure plainPVStructure = marshaller.toPVStructure(testObject);
+			assertEquals(25, plainPVStructure.getIntField("implentingInteger").get());
+
+			// The custom serialiser should be used once registered
+			marshaller.registerSerialiser(IAnInterface.class, new CustomDoublerSerialiser());
+			PVStructure customPVStructure = marshaller.toPVStructure(testObject);
+			assertEquals(50, customPVStructure.getIntField("aNumber").get());
+			assertEquals("TESTID", customPVStructure.getStructure().getID());
+		} catch (Exception e) {
+			e.printStackTrace();
+			fail(e.getMessage());
+		}
+	}
+
 	@Test
 	public void testCustomSerialiseWithExtends() {
 		
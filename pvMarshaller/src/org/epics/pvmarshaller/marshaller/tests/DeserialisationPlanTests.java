@@ -0,0 +1,120 @@
+package org.epics.pvmarshaller.marshaller.tests;
+
+import static org.junit.Assert.*;
+
+import org.epics.pvdata.factory.FieldFactory;
+import org.epics.pvdata.factory.PVDataFactory;
+import org.epics.pvdata.pv.FieldCreate;
+import org.epics.pvdata.pv.PVDataCreate;
+import org.epics.pvdata.pv.PVInt;
+import org.epics.pvdata.pv.PVStructure;
+import org.epics.pvdata.pv.ScalarType;
+import org.epics.pvdata.pv.Structure;
+import org.epics.pvmarshaller.marshaller.PVMarshaller;
+import org.epics.pvmarshaller.marshaller.deserialisers.Deserialiser;
+import org.epics.pvmarshaller.marshaller.deserialisers.StructureDeserialiser;
+import org.epics.pvmarshaller.marshaller.tests.DeserialiseNestedObjectTests.ChildTestClass;
+import org.epics.pvmarshaller.marshaller.tests.DeserialiseNestedObjectTests.ParentTestClass;
+import org.junit.Test;
+
+public class DeserialisationPlanTests {
+
+	@Test
+	public void testRepeatedDeserialisationOfSameStructure() {
+		PVMarshaller marshaller = new PVMarshaller();
+
+		Structure parentStructure = createParentStructure("childObject");
+
+		PVDataCreate pvDataCreate = PVDataFactory.getPVDataCreate();
+
+		try {
+			for (int i = 0; i < 5; i++) {
+				// Each PVStructure shares the same Structure so the same plan is used for each
+				PVStructure testPVStructure = pvDataCreate.createPVStructure(parentStructure);
+				testPVStructure.getSubField(PVInt.class, "childObject.primitiveValue").put(i);
+
+				ParentTestClass expectedObject = new ParentTestClass();
+				expectedObject.setChildObject(new ChildTestClass());
+				expectedObject.getChildObject().setPrimitiveValue(i);
+
+				ParentTestClass deserialisedObject = marshaller.fromPVStructure(testPVStructure, ParentTestClass.class);
+				assertEquals(expectedObject, deserialisedObject);
+			}
+		} catch (Exception e) {
+			fail(e.getMessage());
+		}
+	}
+
+	@Test
+	public void testChangingIgnoreUnknownFieldsAfterUse() {
+		PVMarshaller marshaller = new PVMarshaller();
+
+		Structure parentStructure = createParentStructure("unknownObject");
+
+		PVStructure testPVStructure = PVDataFactory.getPVDataCreate().createPVStructure(parentStructure);
+		testPVStructure.getSubField(PVInt.class, "unknownObject.primitiveValue").put(99);
+
+		try {
+			marshaller.setIgnoreUnknownFields(true);
+			ParentTestClass deserialisedObject = marshaller.fromPVStructure(testPVStructure, ParentTestClass.class);
+			assertNull(deserialisedObject.getChildObject());
+		} catch (Exception e) {
+			fail(e.getMessage());
+		}
+
+		try {
+			// The plan compiled while ignoring unknown fields must not be used any more
+			marshaller.setIgnoreUnknownFields(false);
+			marshaller.fromPVStructure(testPVStructure, ParentTestClass.class);
+			fail("No exception thrown");
+		} catch (Exception e) {
+			assertTrue(e instanceof IllegalArgumentException);
+			assertTrue(e.getMessage().contains("unknownObject"));
+		}
+	}
+
+	@Test
+	public void testPlansAreStillCachedOnceCacheIsFull() {
+		Deserialiser deserialiser = new Deserialiser();
+		StructureDeserialiser structureDeserialiser = deserialiser.getStructureDeserialiser();
+		FieldCreate fieldCreate = FieldFactory.getFieldCreate();
+		PVDataCreate pvDataCreate = PVDataFactory.getPVDataCreate();
+
+		try {
+			// Structures with different ids each get their own plan
+			for (int i = 0; i < StructureDeserialiser.MAX_PLANS; i++) {
+				Structure structure = fieldCreate.createFieldBuilder().setId("id" + i).add("primitiveValue", ScalarType.pvInt).createStructure();
+				deserialiser.fromPVStructure(pvDataCreate.createPVStructure(structure), ChildTestClass.class);
+			}
+			assertEquals(StructureDeserialiser.MAX_PLANS, structureDeserialiser.getPlanCount());
+
+			Structure newStructure = fieldCreate.createFieldBuilder().setId("new").add("primitiveValue", ScalarType.pvInt).createStructure();
+			PVStructure testPVStructure = pvDataCreate.createPVStructure(newStructure);
+			testPVStructure.getIntField("primitiveValue").put(5);
+
+			ChildTestClass deserialisedObject = deserialiser.fromPVStructure(testPVStructure, ChildTestClass.class);
+			assertEquals(5, deserialisedObject.getPrimitiveValue());
+
+			// The full cache made room for the new plan
+			assertTrue(structureDeserialiser.getPlanCount() < StructureDeserialiser.MAX_PLANS);
+			assertTrue(structureDeserialiser.isCompatible(newStructure, ChildTestClass.class));
+			int planCount = structureDeserialiser.getPlanCount();
+			deserialiser.fromPVStructure(testPVStructure, ChildTestClass.class);
+			assertEquals(planCount, structureDeserialiser.getPlanCount());
+		} catch (Exception e) {
+			fail(e.getMessage());
+		}
+	}
+
+	private static Structure createParentStructure(String childName) {
+		FieldCreate fieldCreate = FieldFactory.getFieldCreate();
+
+		Structure childStructure = fieldCreate.createFieldBuilder().
+				add("primitiveValue", ScalarType.pvInt).
+				createStructure();
+
+		return fieldCreate.createFieldBuilder().
+				add(childName, childStructure).
+				createStructure();
+	}
+}
@@ -0,0 +1,168 @@
+package org.epics.pvmarshaller.marshaller.tests;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+
+import org.epics.pvdata.pv.PVStructure;
+import org.epics.pvmarshaller.marshaller.PVMarshaller;
+import org.junit.Test;
+
+public class DeserialiseIntoExistingTests {
+
+	@Test
+	public void testNestedObjectsAndArraysAreReused() {
+		PVMarshaller marshaller = new PVMarshaller();
+
+		ExistingClass source = new ExistingClass();
+		source.setIntValue(1);
+		source.setStringValue("First");
+		source.setDoubleArray(new double[] {1.0, 2.0});
+		source.setChild(new ExistingChild());
+		source.getChild().setChildValue(2);
+
+		ExistingClass existing = new ExistingClass();
+		double[] existingArray = new double[2];
+		ExistingChild existingChild = new ExistingChild();
+		existing.setDoubleArray(existingArray);
+		existing.setChild(existingChild);
+
+		try {
+			PVStructure pvStructure = marshaller.toPVStructure(source);
+
+			ExistingClass deserialisedObject = marshaller.fromPVStructure(pvStructure, existing);
+
+			assertSame(existing, deserialisedObject);
+			assertSame(existingArray, deserialisedObject.getDoubleArray());
+			assertSame(existingChild, deserialisedObject.getChild());
+			assertEquals(source, deserialisedObject);
+		} catch (Exception e) {
+			fail(e.getMessage());
+		}
+	}
+
+	@Test
+	public void testAllocatesWhenShapeRequires() {
+		PVMarshaller marshaller = new PVMarshaller();
+
+		ExistingClass source = new ExistingClass();
+		source.setIntValue(3);
+		source.setDoubleArray(new double[] {1.0, 2.0, 3.0});
+		source.setChild(new ExistingChild());
+		source.getChild().setChildValue(4);
+
+		// Existing object has an array of a different length and no child
+		ExistingClass existing = new ExistingClass();
+		double[] existingArray = new double[1];
+		existing.setDoubleArray(existingArray);
+
+		try {
+			PVStructure pvStructure = marshaller.toPVStructure(source);
+
+			ExistingClass deserialisedObject = marshaller.fromPVStructure(pvStructure, existing);
+
+			assertSame(existing, deserialisedObject);
+			assertNotSame(existingArray, deserialisedObject.getDoubleArray());
+			assertNotNull(deserialisedObject.getChild());
+			assertEquals(source, deserialisedObject);
+
+			// Must give the same result as deserialising into a new object
+			assertEquals(marshaller.fromPVStructure(pvStructure, ExistingClass.class), deserialisedObject);
+		} catch (Exception e) {
+			fail(e.getMessage());
+		}
+	}
+
+	public static class ExistingChild {
+		int childValue;
+
+		public int getChildValue() {
+			return childValue;
+		}
+
+		public void setChildValue(int childValue) {
+			this.childValue = childValue;
+		}
+
+		@Override
+		public int hashCode() {
+			return childValue;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj)
+				return true;
+			if (obj == null)
+				return false;
+			if (getClass() != obj.getClass())
+				return false;
+			ExistingChild other = (ExistingChild) obj;
+			return childValue == other.childValue;
+		}
+	}
+
+	public static class ExistingClass {
+		int intValue;
+		String stringValue;
+		double[] doubleArray;
+		ExistingChild child;
+
+		public int getIntValue() {
+			return intValue;
+		}
+
+		public void setIntValue(int intValue) {
+			this.intValue = intValue;
+		}
+
+		public String getStringValue() {
+			return stringValue;
+		}
+
+		public void setStringValue(String stringValue) {
+			this.stringValue = stringValue;
+		}
+
+		public double[] getDoubleArray() {
+			return doubleArray;
+		}
+
+		public void setDoubleArray(double[] doubleArray) {
+			this.doubleArray = doubleArray;
+		}
+
+		public ExistingChild getChild() {
+			return child;
+		}
+
+		public void setChild(ExistingChild child) {
+			this.child = child;
+		}
+
+		@Override
+		public int hashCode() {
+			return intValue;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj)
+				return true;
+			if (obj == null)
+				return false;
+			if (getClass() != obj.getClass())
+				return false;
+			ExistingClass other = (ExistingClass) obj;
+			if (intValue != other.intValue)
+				return false;
+			if (stringValue == null ? other.stringValue != null : !stringValue.equals(other.stringValue))
+				return false;
+			if (!Arrays.equals(doubleArray, other.doubleArray))
+				return false;
+			if (child == null ? other.child != null : !child.equals(other.child))
+				return false;
+			return true;
+		}
+	}
+}
@@ -250,6 +250,53 @@ public class DeserialiseObjectArraysTests {
 		assertEquals(expectedObject, deserialisedObject);
 	}
 	
+	@Test
+	public void testDeserialiseUnknownArrayOfObjectsWithIgnore() {
+		PVMarshaller marshaller = new PVMarshaller();
+		marshaller.setIgnoreUnknownFields(true);
+		
+		// Create test PVStructure to deserialise
+		FieldCreate fieldCreate = FieldFactory.getFieldCreate();
+		PVDataCreate pvDataCreate = PVDataFactory.getPVDataCreate();
+		
+		Structure nestedStructure = fieldCreate.createFieldBuilder().
+				add("primitiveValue", ScalarType.pvInt).
+				createStructure();
+		
+		Structure structure = fieldCreate.createFieldBuilder().
+			addArray("unknownArray", nestedStructure).
+			addArray("objectArray", nestedStructure).
+			createStructure();
+		
+		PVStructure nestedPVStructure = pvDataCreate.createPVStructure(nestedStructure);
+		PVInt primitiveValue1 = nestedPVStructure.getSubField(PVInt.class, "primitiveValue");
+		primitiveValue1.put(20);
+		
+		PVStructure testPVStructure = pvDataCreate.createPVStructure(structure);
+		PVStructure[] structureArray = {nestedPVStructure};
+		testPVStructure.getSubField(PVStructureArray.class, "unknownArray").put(0, 1, structureArray, 0);
+		testPVStructure.getSubField(PVStructureArray.class, "objectArray").put(0, 1, structureArray, 0);
+
+		// Create expected object
+		ArrayOfObjectsTestClass expectedObject = new ArrayOfObjectsTestClass();
+		expectedObject.objectArray = new ObjectTestClass[1];
+		expectedObject.objectArray[0] = new ObjectTestClass();
+		expectedObject.objectArray[0].primitiveValue = 20;
+		
+		ArrayOfObjectsTestClass deserialisedObject = null;
+		
+		try {
+			// Deserialise twice so the second pass uses the cached missing setter
+			marshaller.fromPVStructure(testPVStructure, ArrayOfObjectsTestClass.class);
+			deserialisedObject = marshaller.fromPVStructure(testPVStructure, ArrayOfObjectsTestClass.class);
+		} catch (Exception e) {
+			e.printStackTrace();
+			fail(e.getMessage());
+		}
+		
+		assertEquals(expectedObject, deserialisedObject);
+	}
+	
 	public static class ObjectTestClass
 	{
 		private int primitiveValue;
@@ -0,0 +1,144 @@
+package org.epics.pvmarshaller.marshaller.tests;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.epics.pvdata.pv.PVInt;
+import org.epics.pvdata.pv.PVIntArray;
+import org.epics.pvdata.pv.PVString;
+import org.epics.pvdata.pv.PVStructure;
+import org.epics.pvmarshaller.marshaller.PVMarshaller;
+import org.junit.Test;
+
+public class FieldAccessTests {
+
+	@Test
+	public void testRoundTripWithoutAccessors() {
+		for (boolean compiled : new boolean[] {false, true}) {
+			PVMarshaller marshaller = new PVMarshaller();
+			marshaller.setUseFieldAccess(true);
+			marshaller.setUseCompiledSerialisers(compiled);
+
+			NoAccessorsClass source = new NoAccessorsClass();
+			source.intValue = 5;
+			source.charValue = 'x';
+			source.stringValue = "test";
+			source.intArray = new int[] {1, 2, 3};
+			source.intList = new ArrayList<Integer>(Arrays.asList(4, 5));
+			source.map = new LinkedHashMap<String, Integer>();
+			source.map.put("a", 6);
+			source.child = new NoAccessorsChild();
+			source.child.childValue = 7;
+			source.transientValue = 8;
+
+			try {
+				PVStructure pvStructure = marshaller.toPVStructure(source);
+				assertEquals(5, pvStructure.getSubField(PVInt.class, "intValue").get());
+				assertEquals("x", pvStructure.getSubField(PVString.class, "charValue").get());
+				assertEquals("test", pvStructure.getSubField(PVString.class, "stringValue").get());
+				assertEquals(3, pvStructure.getSubField(PVIntArray.class, "intArray").getLength());
+				assertEquals(7, pvStructure.getSubField(PVInt.class, "child.childValue").get());
+				assertNull(pvStructure.getSubField("transientValue"));
+
+				NoAccessorsClass deserialisedObject = marshaller.fromPVStructure(pvStructure, NoAccessorsClass.class);
+				assertEquals(5, deserialisedObject.intValue);
+				assertEquals('x', deserialisedObject.charValue);
+				assertEquals("test", deserialisedObject.stringValue);
+				assertArrayEquals(new int[] {1, 2, 3}, deserialisedObject.intArray);
+				assertEquals(source.intList, deserialisedObject.intList);
+				assertEquals(source.map, deserialisedObject.map);
+				assertEquals(7, deserialisedObject.child.childValue);
+				assertEquals(0, deserialisedObject.transientValue);
+			} catch (Exception e) {
+				fail(e.getMessage());
+			}
+		}
+	}
+
+	@Test
+	public void testGettersRequiredByDefault() {
+		PVMarshaller marshaller = new PVMarshaller();
+
+		NoAccessorsClass source = new NoAccessorsClass();
+
+		try {
+			marshaller.toPVStructure(source);
+			fail("No exception thrown");
+		} catch (Exception e) {
+			assertTrue(e instanceof IllegalArgumentException);
+		}
+	}
+
+	@Test
+	public void testEachFieldReadOncePerPass() {
+		for (boolean compiled : new boolean[] {false, true}) {
+			PVMarshaller marshaller = new PVMarshaller();
+			marshaller.setUseCompiledSerialisers(compiled);
+
+			CountingGetterClass source = new CountingGetterClass();
+			source.list = new ArrayList<Integer>(Arrays.asList(1, 2, 3));
+			source.value = 1;
+
+			try {
+				marshaller.toPVStructure(source);
+
+				// Once the Structure is cached, one read to find the shape of the object and one to populate the values
+				source.listReads = 0;
+				source.valueReads = 0;
+				PVStructure pvStructure = marshaller.toPVStructure(source);
+
+				assertEquals(2, source.listReads);
+				assertEquals(2, source.valueReads);
+				assertEquals(3, pvStructure.getSubField(PVIntArray.class, "list").getLength());
+				assertEquals(1, pvStructure.getSubField(PVInt.class, "value").get());
+			} catch (Exception e) {
+				fail(e.getMessage());
+			}
+		}
+	}
+
+	public static class NoAccessorsChild {
+		int childValue;
+	}
+
+	public static class NoAccessorsClass {
+		int intValue;
+		char charValue;
+		String stringValue;
+		int[] intArray;
+		List<Integer> intList;
+		Map<String, Integer> map;
+		NoAccessorsChild child;
+		transient int transientValue;
+	}
+
+	public static class CountingGetterClass {
+		List<Integer> list;
+		Integer value;
+		transient int listReads = 0;
+		transient int valueReads = 0;
+
+		public List<Integer> getList() {
+			listReads++;
+			return list;
+		}
+
+		public void setList(List<Integer> list) {
+			this.list = list;
+		}
+
+		public Integer getValue() {
+			valueReads++;
+			return value;
+		}
+
+		public void setValue(Integer value) {
+			this.value = value;
+		}
+	}
+}
@@ -0,0 +1,50 @@
+package org.epics.pvmarshaller.marshaller.tests;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+import java.util.Map;
+
+import org.epics.pvmarshaller.marshaller.deserialisers.ContainerFunctions;
+import org.epics.pvmarshaller.marshaller.deserialisers.ResolvedFieldType;
+import org.junit.Test;
+
+public class FieldTypeTests {
+
+	@Test
+	public void testResolveListOfMaps() {
+		ResolvedFieldType fieldType = ContainerFunctions.getFieldType(ChildClass.class, "mapList");
+
+		assertNotNull(fieldType);
+		assertEquals(List.class, fieldType.getRawClass());
+		assertEquals(Map.class, fieldType.getComponentClass());
+		assertEquals(String.class, fieldType.getKeyType());
+		assertEquals(Double.class, fieldType.getValueType());
+
+		// Resolved types are cached
+		assertSame(fieldType, ContainerFunctions.getFieldType(ChildClass.class, "mapList"));
+	}
+
+	@Test
+	public void testResolveFieldsInHierarchy() {
+		ResolvedFieldType arrayType = ContainerFunctions.getFieldType(ChildClass.class, "intArray");
+		assertNotNull(arrayType);
+		assertEquals(int.class, arrayType.getComponentClass());
+
+		ResolvedFieldType mapType = ContainerFunctions.getFieldType(ChildClass.class, "map");
+		assertNotNull(mapType);
+		assertEquals(String.class, mapType.getKeyType());
+		assertEquals(Integer.class, mapType.getValueType());
+
+		assertNull(ContainerFunctions.getFieldType(ChildClass.class, "unknownField"));
+	}
+
+	public static class ParentClass {
+		int[] intArray;
+		Map<String, Integer> map;
+	}
+
+	public static class ChildClass extends ParentClass {
+		List<Map<String, Double>> mapList;
+	}
+}
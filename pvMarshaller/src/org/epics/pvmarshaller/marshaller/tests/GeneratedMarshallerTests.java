@@ -0,0 +1,370 @@
+package org.epics.pvmarshaller.marshaller.tests;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+import org.epics.pvdata.factory.FieldFactory;
+import org.epics.pvdata.factory.PVDataFactory;
+import org.epics.pvdata.pv.DoubleArrayData;
+import org.epics.pvdata.pv.FieldCreate;
+import org.epics.pvdata.pv.PVDataCreate;
+import org.epics.pvdata.pv.PVDouble;
+import org.epics.pvdata.pv.PVDoubleArray;
+import org.epics.pvdata.pv.PVInt;
+import org.epics.pvdata.pv.PVIntArray;
+import org.epics.pvdata.pv.PVString;
+import org.epics.pvdata.pv.PVStructure;
+import org.epics.pvdata.pv.ScalarType;
+import org.epics.pvdata.pv.Structure;
+import org.epics.pvmarshaller.marshaller.PVMarshaller;
+import org.epics.pvmarshaller.marshaller.api.IPVStructureMarshallerProvider;
+import org.epics.pvmarshaller.marshaller.processor.PVMarshallableProcessor;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+public class GeneratedMarshallerTests {
+
+	private static final String POSITION_SOURCE =
+		"package generated.test;\n" +
+		"import org.epics.pvmarshaller.marshaller.api.PVMarshallable;\n" +
+		"@PVMarshallable(id = \"Position\")\n" +
+		"public class Position {\n" +
+		"	double x;\n" +
+		"	private double y;\n" +
+		"	public double getY() { return y; }\n" +
+		"	public void setY(double y) { this.y = y; }\n" +
+		"}\n";
+
+	private static final String SAMPLE_SOURCE =
+		"package generated.test;\n" +
+		"import org.epics.pvmarshaller.marshaller.api.PVMarshallable;\n" +
+		"@PVMarshallable\n" +
+		"public class Sample {\n" +
+		"	int count;\n" +
+		"	String name;\n" +
+		"	char letter;\n" +
+		"	double[] values;\n" +
+		"	Position position;\n" +
+		"	transient int ignored;\n" +
+		"}\n";
+
+	private static final String UNSUPPORTED_SOURCE =
+		"package generated.test;\n" +
+		"import org.epics.pvmarshaller.marshaller.api.PVMarshallable;\n" +
+		"@PVMarshallable\n" +
+		"public class Unsupported {\n" +
+		"	java.util.List<Integer> list;\n" +
+		"}\n";
+
+	private static final String WRAPPER_ARRAY_SOURCE =
+		"package generated.test;\n" +
+		"import org.epics.pvmarshaller.marshaller.api.PVMarshallable;\n" +
+		"@PVMarshallable\n" +
+		"public class WrapperArrays {\n" +
+		"	Integer[] integers;\n" +
+		"	Double[] doubles;\n" +
+		"	Boolean[] booleans;\n" +
+		"}\n";
+
+	private final List<File> temporaryDirectories = new ArrayList<File>();
+
+	@Before
+	public void setUp() {
+		// The compiler is only available when running on a JDK
+		Assume.assumeNotNull(ToolProvider.getSystemJavaCompiler());
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		for (File directory : temporaryDirectories) {
+			try (Stream<Path> paths = Files.walk(directory.toPath())) {
+				paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+			}
+		}
+		temporaryDirectories.clear();
+	}
+
+	@Test
+	public void testGeneratedMarshaller() {
+		ClassLoader originalClassLoader = Thread.currentThread().getContextClassLoader();
+
+		try (URLClassLoader classLoader = compile(POSITION_SOURCE, SAMPLE_SOURCE)) {
+			assertNotNull(classLoader);
+
+			Class<?> sampleClass = classLoader.loadClass("generated.test.Sample");
+			Class<?> positionClass = classLoader.loadClass("generated.test.Position");
+
+			Object position = positionClass.newInstance();
+			setField(position, "x", 1.5);
+			positionClass.getMethod("setY", double.class).invoke(position, 2.5);
+
+			Object sample = sampleClass.newInstance();
+			setField(sample, "count", 7);
+			setField(sample, "name", "Test String");
+			setField(sample, "letter", 'q');
+			setField(sample, "values", new double[] {3.5, 4.5});
+			setField(sample, "position", position);
+
+			// Create expected PVStructure
+			FieldCreate fieldCreate = FieldFactory.getFieldCreate();
+			PVDataCreate pvDataCreate = PVDataFactory.getPVDataCreate();
+
+			Structure positionStructure = fieldCreate.createFieldBuilder().
+				add("x", ScalarType.pvDouble).
+				add("y", ScalarType.pvDouble).
+				setId("Position").
+				createStructure();
+
+			Structure structure = fieldCreate.createFieldBuilder().
+				add("count", ScalarType.pvInt).
+				add("name", ScalarType.pvString).
+				add("letter", ScalarType.pvString).
+				addArray("values", ScalarType.pvDouble).
+				add("position", positionStructure).
+				setId("generated.test.Sample").
+				createStructure();
+
+			PVStructure expectedPVStructure = pvDataCreate.createPVStructure(structure);
+			expectedPVStructure.getSubField(PVInt.class, "count").put(7);
+			expectedPVStructure.getSubField(PVString.class, "name").put("Test String");
+			expectedPVStructure.getSubField(PVString.class, "letter").put("q");
+			expectedPVStructure.getSubField(PVDoubleArray.class, "values").put(0, 2, new double[] {3.5, 4.5}, 0);
+			expectedPVStructure.getSubField(PVDouble.class, "position.x").put(1.5);
+			expectedPVStructure.getSubField(PVDouble.class, "position.y").put(2.5);
+
+			// The generated marshallers should be found through ServiceLoader
+			Thread.currentThread().setContextClassLoader(classLoader);
+			PVMarshaller marshaller = new PVMarshaller();
+
+			PVStructure serialisedPVStructure = marshaller.toPVStructure(sample);
+
+			System.out.println("Serialised Structure:\n" + serialisedPVStructure + "\n---\n");
+
+			TestHelper.assertPVStructuresEqual(expectedPVStructure, serialisedPVStructure);
+
+			Object deserialised = marshaller.fromPVStructure(serialisedPVStructure, sampleClass);
+
+			assertEquals(7, getField(deserialised, "count"));
+			assertEquals("Test String", getField(deserialised, "name"));
+			assertEquals('q', getField(deserialised, "letter"));
+			assertArrayEquals(new double[] {3.5, 4.5}, (double[]) getField(deserialised, "values"), 0);
+			Object deserialisedPosition = getField(deserialised, "position");
+			assertEquals(1.5, getField(deserialisedPosition, "x"));
+			assertEquals(2.5, positionClass.getMethod("getY").invoke(deserialisedPosition));
+		} catch (Exception e) {
+			fail(e.getMessage());
+		} finally {
+			Thread.currentThread().setContextClassLoader(originalClassLoader);
+		}
+	}
+
+	@Test
+	public void testGeneratedMarshallerUpdatesInPlace() {
+		ClassLoader originalClassLoader = Thread.currentThread().getContextClassLoader();
+
+		try (URLClassLoader classLoader = compile(POSITION_SOURCE, SAMPLE_SOURCE)) {
+			assertNotNull(classLoader);
+
+			Class<?> sampleClass = classLoader.loadClass("generated.test.Sample");
+			Class<?> positionClass = classLoader.loadClass("generated.test.Position");
+
+			Object position = positionClass.newInstance();
+			setField(position, "x", 1.5);
+
+			Object sample = sampleClass.newInstance();
+			setField(sample, "count", 7);
+			setField(sample, "name", "Test String");
+			setField(sample, "values", new double[] {3.5, 4.5, 5.5});
+			setField(sample, "position", position);
+
+			Thread.currentThread().setContextClassLoader(classLoader);
+			PVMarshaller marshaller = new PVMarshaller();
+
+			PVStructure target = marshaller.toPVStructure(sample);
+
+			// Null fields should be reset and a shorter array should not keep the old trailing elements
+			setField(sample, "name", null);
+			setField(sample, "values", new double[] {6.5});
+			setField(sample, "position", null);
+
+			assertTrue(marshaller.updatePVStructure(sample, target));
+
+			assertEquals(7, target.getSubField(PVInt.class, "count").get());
+			assertEquals("", target.getSubField(PVString.class, "name").get());
+			PVDoubleArray values = target.getSubField(PVDoubleArray.class, "values");
+			assertEquals(1, values.getLength());
+			DoubleArrayData data = new DoubleArrayData();
+			values.get(0, values.getLength(), data);
+			assertEquals(6.5, data.data[data.offset], 0);
+			assertEquals(0, target.getSubField(PVDouble.class, "position.x").get(), 0);
+		} catch (Exception e) {
+			fail(e.getMessage());
+		} finally {
+			Thread.currentThread().setContextClassLoader(originalClassLoader);
+		}
+	}
+
+	@Test
+	public void testWrapperArrays() {
+		ClassLoader originalClassLoader = Thread.currentThread().getContextClassLoader();
+
+		try (URLClassLoader classLoader = compile(WRAPPER_ARRAY_SOURCE)) {
+			assertNotNull(classLoader);
+
+			Class<?> wrapperClass = classLoader.loadClass("generated.test.WrapperArrays");
+			Object source = wrapperClass.newInstance();
+			setField(source, "integers", new Integer[] {1, 2, 3});
+			setField(source, "doubles", new Double[] {1.5});
+			setField(source, "booleans", new Boolean[] {true, false});
+
+			Thread.currentThread().setContextClassLoader(classLoader);
+			PVMarshaller marshaller = new PVMarshaller();
+
+			PVStructure pvStructure = marshaller.toPVStructure(source);
+			assertEquals(3, pvStructure.getSubField(PVIntArray.class, "integers").getLength());
+
+			Object deserialised = marshaller.fromPVStructure(pvStructure, wrapperClass);
+			assertArrayEquals(new Integer[] {1, 2, 3}, (Integer[]) getField(deserialised, "integers"));
+			assertArrayEquals(new Double[] {1.5}, (Double[]) getField(deserialised, "doubles"));
+			assertArrayEquals(new Boolean[] {true, false}, (Boolean[]) getField(deserialised, "booleans"));
+		} catch (Exception e) {
+			fail(e.getMessage());
+		} finally {
+			Thread.currentThread().setContextClassLoader(originalClassLoader);
+		}
+	}
+
+	@Test
+	public void testIncrementalCompilationKeepsProviders() {
+		try {
+			File directory = Files.createTempDirectory("pvMarshallable").toFile();
+			temporaryDirectories.add(directory);
+
+			assertTrue(compileInto(directory, POSITION_SOURCE, SAMPLE_SOURCE));
+			// Recompile only one of the annotated classes, as an incremental build would
+			assertTrue(compileInto(directory, WRAPPER_ARRAY_SOURCE));
+
+			File serviceFile = new File(directory, "META-INF/services/" + IPVStructureMarshallerProvider.class.getName());
+			List<String> providers = Files.readAllLines(serviceFile.toPath(), StandardCharsets.UTF_8);
+			assertTrue(providers.contains("generated.test.Position_PVMarshaller"));
+			assertTrue(providers.contains("generated.test.Sample_PVMarshaller"));
+			assertTrue(providers.contains("generated.test.WrapperArrays_PVMarshaller"));
+		} catch (Exception e) {
+			fail(e.getMessage());
+		}
+	}
+
+	@Test
+	public void testBrokenProviderIsSkipped() {
+		ClassLoader originalClassLoader = Thread.currentThread().getContextClassLoader();
+
+		try {
+			File directory = Files.createTempDirectory("pvMarshallable").toFile();
+			temporaryDirectories.add(directory);
+			assertTrue(compileInto(directory, POSITION_SOURCE));
+
+			// List a provider whose class no longer exists, as a stale service file would
+			File serviceFile = new File(directory, "META-INF/services/" + IPVStructureMarshallerProvider.class.getName());
+			Files.write(serviceFile.toPath(), "generated.test.Removed_PVMarshaller\n".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+
+			try (URLClassLoader classLoader = new URLClassLoader(new URL[] {directory.toURI().toURL()}, GeneratedMarshallerTests.class.getClassLoader())) {
+				Thread.currentThread().setContextClassLoader(classLoader);
+				PVMarshaller marshaller = new PVMarshaller();
+
+				Object position = classLoader.loadClass("generated.test.Position").newInstance();
+				assertEquals("Position", marshaller.toPVStructure(position).getStructure().getID());
+			}
+		} catch (Exception e) {
+			fail(e.getMessage());
+		} finally {
+			Thread.currentThread().setContextClassLoader(originalClassLoader);
+		}
+	}
+
+	@Test
+	public void testUnsupportedFieldFailsCompilation() {
+		try (URLClassLoader classLoader = compile(UNSUPPORTED_SOURCE)) {
+			assertNull(classLoader);
+		} catch (Exception e) {
+			fail(e.getMessage());
+		}
+	}
+
+	/**
+	 * Compiles the sources with the PVMarshallableProcessor
+	 * @param sources The sources to compile
+	 * @return A class loader for the compiled classes, or null if compilation failed
+	 * @throws IOException
+	 */
+	private URLClassLoader compile(String... sources) throws IOException {
+		File directory = Files.createTempDirectory("pvMarshallable").toFile();
+		temporaryDirectories.add(directory);
+		if (!compileInto(directory, sources)) {
+			return null;
+		}
+		return new URLClassLoader(new URL[] {directory.toURI().toURL()}, GeneratedMarshallerTests.class.getClassLoader());
+	}
+
+	/**
+	 * Compiles the sources with the PVMarshallableProcessor into a directory, which is also on the class path
+	 * @param directory The directory to write the sources and classes to
+	 * @param sources The sources to compile
+	 * @return true if compilation succeeded
+	 * @throws IOException
+	 */
+	private boolean compileInto(File directory, String... sources) throws IOException {
+		File sourceDirectory = new File(directory, "generated/test");
+		sourceDirectory.mkdirs();
+
+		List<File> sourceFiles = new ArrayList<File>();
+		for (String source : sources) {
+			String className = source.substring(source.indexOf("public class ") + 13, source.indexOf(" {"));
+			File sourceFile = new File(sourceDirectory, className + ".java");
+			Files.write(sourceFile.toPath(), source.getBytes(StandardCharsets.UTF_8));
+			sourceFiles.add(sourceFile);
+		}
+
+		JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+		try (StandardJavaFileManager fileManager = compiler.getStandardFileManager(null, null, null)) {
+			Iterable<? extends JavaFileObject> compilationUnits = fileManager.getJavaFileObjectsFromFiles(sourceFiles);
+			List<String> options = Arrays.asList("-d", directory.getPath(), "-cp", System.getProperty("java.class.path") + File.pathSeparator + directory.getPath());
+			DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<JavaFileObject>();
+			JavaCompiler.CompilationTask task = compiler.getTask(null, fileManager, diagnostics, options, null, compilationUnits);
+			task.setProcessors(Arrays.asList(new PVMarshallableProcessor()));
+			return task.call();
+		}
+	}
+
+	private static void setField(Object object, String name, Object value) throws Exception {
+		java.lang.reflect.Field field = object.getClass().getDeclaredField(name);
+		field.setAccessible(true);
+		field.set(object, value);
+	}
+
+	private static Object getField(Object object, String name) throws Exception {
+		java.lang.reflect.Field field = object.getClass().getDeclaredField(name);
+		field.setAccessible(true);
+		return field.get(object);
+	}
+}
@@ -156,6 +156,52 @@ public class InheritanceTests {
 		TestHelper.assertPVStructuresEqual(expectedPVStructure, serialisedPVStructure);
 	}
 	
+	@Test
+	public void testNestedExtends() {
+		
+		PVMarshaller marshaller = new PVMarshaller();
+		
+		// Create test class to serialise
+		ContainingExtendingClass testClass = new ContainingExtendingClass();
+		testClass.extendingObject = new ExtendingClass();
+		testClass.extendingObject.baseInteger = 12;
+		testClass.extendingObject.extendingInteger = 34;
+		
+		// Create expected PVStructure
+		FieldCreate fieldCreate = FieldFactory.getFieldCreate();
+		PVDataCreate pvDataCreate = PVDataFactory.getPVDataCreate();
+		
+		Structure extendingStructure = fieldCreate.createFieldBuilder().
+			add("extendingInteger", ScalarType.pvInt).
+			add("baseInteger", ScalarType.pvInt).
+			createStructure();
+		
+		Structure structure = fieldCreate.createFieldBuilder().
+			add("extendingObject", extendingStructure).
+			createStructure();
+		
+		PVStructure expectedPVStructure = pvDataCreate.createPVStructure(structure);
+		PVStructure extendingPVStructure = expectedPVStructure.getStructureField("extendingObject");
+		PVInt baseValue = extendingPVStructure.getSubField(PVInt.class, "baseInteger");
+		baseValue.put(12);
+		PVInt extendingValue = extendingPVStructure.getSubField(PVInt.class, "extendingInteger");
+		extendingValue.put(34);
+		
+		PVStructure serialisedPVStructure = null;
+		
+		try {
+			// Serialise twice to make sure the cached class description gives the same result
+			marshaller.toPVStructure(testClass);
+			serialisedPVStructure = marshaller.toPVStructure(testClass);
+		} catch (Exception e) {
+			fail(e.getMessage());
+		}
+		
+		System.out.println("Serialised Structure:\n" + serialisedPVStructure + "\n---\n");
+		
+		TestHelper.assertPVStructuresEqual(expectedPVStructure, serialisedPVStructure);
+	}
+	
 	class TestObjClass {
 		String objString;
 
@@ -222,5 +268,12 @@ public class InheritanceTests {
 			return implementingObject;
 		}
 	}
+	
+	class ContainingExtendingClass {
+		ExtendingClass extendingObject;
+		public ExtendingClass getExtendingObject() {
+			return extendingObject;
+		}
+	}
 
 }
@@ -0,0 +1,110 @@
+package org.epics.pvmarshaller.marshaller.tests;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+
+import org.epics.pvdata.factory.FieldFactory;
+import org.epics.pvdata.factory.PVDataFactory;
+import org.epics.pvdata.pv.FieldCreate;
+import org.epics.pvdata.pv.PVDataCreate;
+import org.epics.pvdata.pv.PVIntArray;
+import org.epics.pvdata.pv.PVStructure;
+import org.epics.pvdata.pv.ScalarType;
+import org.epics.pvdata.pv.Structure;
+import org.epics.pvmarshaller.marshaller.PVMarshaller;
+import org.junit.Test;
+
+public class InstantiatorTests {
+
+	@Test
+	public void testRegisteredFactoriesAreUsed() {
+		PVMarshaller marshaller = new PVMarshaller();
+
+		// Factories that mark the instances they create
+		marshaller.registerFactory(FactoryTestClass.class, () -> {
+			FactoryTestClass created = new FactoryTestClass();
+			created.fromFactory = true;
+			return created;
+		});
+		marshaller.registerFactory(MarkedList.class, () -> {
+			MarkedList created = new MarkedList();
+			created.fromFactory = true;
+			return created;
+		});
+
+		FieldCreate fieldCreate = FieldFactory.getFieldCreate();
+		PVDataCreate pvDataCreate = PVDataFactory.getPVDataCreate();
+
+		Structure structure = fieldCreate.createFieldBuilder().
+				addArray("intList", ScalarType.pvInt).
+				createStructure();
+
+		PVStructure testPVStructure = pvDataCreate.createPVStructure(structure);
+		testPVStructure.getSubField(PVIntArray.class, "intList").put(0, 3, new int[] {1, 2, 3}, 0);
+
+		try {
+			FactoryTestClass deserialisedObject = marshaller.fromPVStructure(testPVStructure, FactoryTestClass.class);
+			assertTrue(deserialisedObject.fromFactory);
+			assertTrue(deserialisedObject.intList.fromFactory);
+			assertEquals(3, deserialisedObject.intList.size());
+			assertEquals(Integer.valueOf(3), deserialisedObject.intList.get(2));
+		} catch (Exception e) {
+			fail(e.getMessage());
+		}
+	}
+
+	@Test
+	public void testNoArgConstructorRequired() {
+		PVMarshaller marshaller = new PVMarshaller();
+
+		Structure structure = FieldFactory.getFieldCreate().createFieldBuilder().
+				addArray("intList", ScalarType.pvInt).
+				createStructure();
+
+		PVStructure testPVStructure = PVDataFactory.getPVDataCreate().createPVStructure(structure);
+
+		try {
+			marshaller.fromPVStructure(testPVStructure, NoDefaultConstructorClass.class);
+			fail("No exception thrown");
+		} catch (Exception e) {
+			assertTrue(e instanceof InstantiationException);
+		}
+
+		// Registering a factory makes the class usable
+		marshaller.registerFactory(NoDefaultConstructorClass.class, () -> new NoDefaultConstructorClass(1));
+		try {
+			NoDefaultConstructorClass deserialisedObject = marshaller.fromPVStructure(testPVStructure, NoDefaultConstructorClass.class);
+			assertEquals(1, deserialisedObject.value);
+		} catch (Exception e) {
+			fail(e.getMessage());
+		}
+	}
+
+	public static class MarkedList extends ArrayList<Integer> {
+		private static final long serialVersionUID = 1L;
+		boolean fromFactory = false;
+	}
+
+	public static class FactoryTestClass {
+		boolean fromFactory = false;
+		MarkedList intList;
+
+		public void setIntList(MarkedList intList) {
+			this.intList = intList;
+		}
+	}
+
+	public static class NoDefaultConstructorClass {
+		int value;
+		int[] intList;
+
+		public NoDefaultConstructorClass(int value) {
+			this.value = value;
+		}
+
+		public void setIntList(int[] intList) {
+			this.intList = intList;
+		}
+	}
+}
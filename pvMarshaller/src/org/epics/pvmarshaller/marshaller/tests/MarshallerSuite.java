@@ -21,7 +21,29 @@ import org.junit.runners.Suite.SuiteClasses;
 	CustomDeserialiserTests.class,
 	UnionTests.class,
 	MiscellaneousTests.class,
-	EndToEndTests.class
+	EndToEndTests.class,
+	AccessorTests.class,
+	CompiledSerialiserTests.class,
+	GeneratedMarshallerTests.class,
+	StructureCacheTests.class,
+	DeserialisationPlanTests.class,
+	InstantiatorTests.class,
+	FieldTypeTests.class,
+	FieldAccessTests.class,
+	UpdatePVStructureTests.class,
+	ChangedBitSetTests.class,
+	DeserialiseIntoExistingTests.class,
+	PartialDeserialisationTests.class,
+	ShareArraysTests.class,
+	ScalarArrayReaderTests.class,
+	PrimitiveListConverterTests.class,
+	CollectionFactoryTests.class,
+	PrimitiveListTests.class,
+	SchemaFirstTests.class,
+	StructureArrayTests.class,
+	UnionArrayReuseTests.class,
+	StructureInternerTests.class,
+	StructureFingerprintTests.class
 })
 public class MarshallerSuite {
 
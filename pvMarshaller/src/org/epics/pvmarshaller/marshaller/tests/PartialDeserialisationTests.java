@@ -0,0 +1,175 @@
+package org.epics.pvmarshaller.marshaller.tests;
+
+import static org.junit.Assert.*;
+
+import org.epics.pvdata.misc.BitSet;
+import org.epics.pvdata.pv.PVStructure;
+import org.epics.pvmarshaller.marshaller.PVMarshaller;
+import org.junit.Test;
+
+public class PartialDeserialisationTests {
+
+	@Test
+	public void testOnlyChangedFieldsAreVisited() {
+		PVMarshaller marshaller = new PVMarshaller();
+
+		PartialClass source = new PartialClass();
+		source.setIntValue(1);
+		source.setStringValue("First");
+		source.setChild(new PartialChild());
+		source.getChild().setChildValue(2);
+		source.getChild().setOtherValue(3);
+
+		try {
+			PVStructure pvStructure = marshaller.toPVStructure(source);
+			PartialClass target = marshaller.fromPVStructure(pvStructure, PartialClass.class);
+			PartialChild targetChild = target.getChild();
+
+			source.setStringValue("Second");
+			source.getChild().setChildValue(4);
+
+			BitSet changedBitSet = new BitSet(pvStructure.getNumberFields());
+			assertTrue(marshaller.updatePVStructure(source, pvStructure, changedBitSet));
+
+			target.setCount = 0;
+			targetChild.setCount = 0;
+			PartialClass updatedObject = marshaller.fromPVStructure(pvStructure, changedBitSet, target);
+
+			assertSame(target, updatedObject);
+			assertSame(targetChild, updatedObject.getChild());
+			assertEquals(source, updatedObject);
+
+			// Only the changed string and the changed child field are set
+			assertEquals(1, target.setCount);
+			assertEquals(1, targetChild.setCount);
+		} catch (Exception e) {
+			fail(e.getMessage());
+		}
+	}
+
+	@Test
+	public void testWholeStructureChanged() {
+		PVMarshaller marshaller = new PVMarshaller();
+
+		PartialClass source = new PartialClass();
+		source.setIntValue(5);
+		source.setStringValue("Value");
+		source.setChild(new PartialChild());
+		source.getChild().setChildValue(6);
+
+		try {
+			PVStructure pvStructure = marshaller.toPVStructure(source);
+
+			BitSet changedBitSet = new BitSet(pvStructure.getNumberFields());
+			changedBitSet.set(0);
+
+			PartialClass updatedObject = marshaller.fromPVStructure(pvStructure, changedBitSet, new PartialClass());
+			assertEquals(source, updatedObject);
+
+			// Nothing changed
+			PartialClass unchangedObject = new PartialClass();
+			marshaller.fromPVStructure(pvStructure, new BitSet(pvStructure.getNumberFields()), unchangedObject);
+			assertEquals(new PartialClass(), unchangedObject);
+		} catch (Exception e) {
+			fail(e.getMessage());
+		}
+	}
+
+	public static class PartialChild {
+		int childValue;
+		int otherValue;
+		transient int setCount = 0;
+
+		public int getChildValue() {
+			return childValue;
+		}
+
+		public void setChildValue(int childValue) {
+			setCount++;
+			this.childValue = childValue;
+		}
+
+		public int getOtherValue() {
+			return otherValue;
+		}
+
+		public void setOtherValue(int otherValue) {
+			setCount++;
+			this.otherValue = otherValue;
+		}
+
+		@Override
+		public int hashCode() {
+			return childValue;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj)
+				return true;
+			if (obj == null)
+				return false;
+			if (getClass() != obj.getClass())
+				return false;
+			PartialChild other = (PartialChild) obj;
+			return childValue == other.childValue && otherValue == other.otherValue;
+		}
+	}
+
+	public static class PartialClass {
+		int intValue;
+		String stringValue;
+		PartialChild child;
+		transient int setCount = 0;
+
+		public int getIntValue() {
+			return intValue;
+		}
+
+		public void setIntValue(int intValue) {
+			setCount++;
+			this.intValue = intValue;
+		}
+
+		public String getStringValue() {
+			return stringValue;
+		}
+
+		public void setStringValue(String stringValue) {
+			setCount++;
+			this.stringValue = stringValue;
+		}
+
+		public PartialChild getChild() {
+			return child;
+		}
+
+		public void setChild(PartialChild child) {
+			setCount++;
+			this.child = child;
+		}
+
+		@Override
+		public int hashCode() {
+			return intValue;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj)
+				return true;
+			if (obj == null)
+				return false;
+			if (getClass() != obj.getClass())
+				return false;
+			PartialClass other = (PartialClass) obj;
+			if (intValue != other.intValue)
+				return false;
+			if (stringValue == null ? other.stringValue != null : !stringValue.equals(other.stringValue))
+				return false;
+			if (child == null ? other.child != null : !child.equals(other.child))
+				return false;
+			return true;
+		}
+	}
+}
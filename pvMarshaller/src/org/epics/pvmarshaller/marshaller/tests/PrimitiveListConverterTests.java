@@ -0,0 +1,109 @@
+package org.epics.pvmarshaller.marshaller.tests;
+
+import static org.junit.Assert.*;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+
+import org.epics.pvdata.pv.DoubleArrayData;
+import org.epics.pvdata.pv.PVDoubleArray;
+import org.epics.pvdata.pv.PVStructure;
+import org.epics.pvmarshaller.marshaller.PVMarshaller;
+import org.epics.pvmarshaller.marshaller.api.IPrimitiveList;
+import org.epics.pvmarshaller.marshaller.serialisers.PrimitiveListConverter;
+import org.junit.Test;
+
+public class PrimitiveListConverterTests {
+
+	@Test
+	public void testLinkedAndArrayLists() {
+		List<Integer> linkedList = new LinkedList<Integer>();
+		List<Integer> arrayList = new ArrayList<Integer>();
+		int[] expected = new int[100000];
+		for (int i = 0; i < expected.length; i++) {
+			linkedList.add(i);
+			arrayList.add(i);
+			expected[i] = i;
+		}
+
+		assertArrayEquals(expected, PrimitiveListConverter.toIntArray(linkedList));
+		assertArrayEquals(expected, PrimitiveListConverter.toIntArray(arrayList));
+
+		List<String> strings = new LinkedList<String>();
+		strings.add("a");
+		strings.add(null);
+		assertArrayEquals(new String[] {"a", null}, PrimitiveListConverter.toStringArray(strings));
+	}
+
+	@Test
+	public void testPrimitiveListIsNotUnboxed() {
+		PVMarshaller marshaller = new PVMarshaller();
+
+		ListClass source = new ListClass();
+		source.setValues(new FixedDoubleList(new double[] {1.0, 2.0, 3.0}));
+
+		try {
+			PVStructure pvStructure = marshaller.toPVStructure(source);
+
+			PVDoubleArray pvValues = pvStructure.getSubField(PVDoubleArray.class, "values");
+			DoubleArrayData arrayData = new DoubleArrayData();
+			pvValues.get(0, pvValues.getLength(), arrayData);
+			assertArrayEquals(new double[] {1.0, 2.0, 3.0}, arrayData.data, 0);
+		} catch (Exception e) {
+			fail(e.getMessage());
+		}
+	}
+
+	/**
+	 * List backed by a double array that fails if more than its first element is unboxed
+	 */
+	public static class FixedDoubleList extends AbstractList<Double> implements IPrimitiveList {
+		final double[] values;
+
+		public FixedDoubleList(double[] values) {
+			this.values = values;
+		}
+
+		@Override
+		public Double get(int index) {
+			if (index > 0) {
+				throw new IllegalStateException("Element unboxed");
+			}
+			return values[index];
+		}
+
+		@Override
+		public int size() {
+			return values.length;
+		}
+
+		@Override
+		public Class<?> getPrimitiveType() {
+			return double.class;
+		}
+
+		@Override
+		public Object toPrimitiveArray() {
+			return values.clone();
+		}
+
+		@Override
+		public void addPrimitiveArray(Object array) {
+			throw new UnsupportedOperationException();
+		}
+	}
+
+	public static class ListClass {
+		List<Double> values;
+
+		public List<Double> getValues() {
+			return values;
+		}
+
+		public void setValues(List<Double> values) {
+			this.values = values;
+		}
+	}
+}
@@ -0,0 +1,171 @@
+package org.epics.pvmarshaller.marshaller.tests;
+
+import static org.junit.Assert.*;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+
+import org.epics.pvdata.pv.PVDoubleArray;
+import org.epics.pvdata.pv.PVIntArray;
+import org.epics.pvdata.pv.PVLongArray;
+import org.epics.pvdata.pv.PVStructure;
+import org.epics.pvmarshaller.marshaller.PVMarshaller;
+import org.epics.pvmarshaller.marshaller.collections.DoubleList;
+import org.epics.pvmarshaller.marshaller.collections.IntList;
+import org.epics.pvmarshaller.marshaller.collections.LongList;
+import org.epics.pvmarshaller.marshaller.deserialisers.DefaultCollectionFactory;
+import org.epics.pvmarshaller.marshaller.deserialisers.Instantiator;
+import org.junit.Test;
+
+public class PrimitiveListTests {
+
+	@Test
+	public void testPrimitiveListFields() {
+		PVMarshaller marshaller = new PVMarshaller();
+
+		PrimitiveListClass source = new PrimitiveListClass();
+		source.setDoubles(DoubleList.of(1.5, 2.5, 3.5));
+		source.setInts(IntList.of(1, 2));
+		source.setLongs(new LongList());
+
+		try {
+			PVStructure pvStructure = marshaller.toPVStructure(source);
+
+			assertEquals(3, pvStructure.getSubField(PVDoubleArray.class, "doubles").getLength());
+			assertEquals(2, pvStructure.getSubField(PVIntArray.class, "ints").getLength());
+			// The element type of an empty list is known
+			assertEquals(0, pvStructure.getSubField(PVLongArray.class, "longs").getLength());
+
+			PrimitiveListClass deserialisedObject = marshaller.fromPVStructure(pvStructure, PrimitiveListClass.class);
+
+			assertArrayEquals(new double[] {1.5, 2.5, 3.5}, deserialisedObject.getDoubles().toDoubleArray(), 0);
+			assertArrayEquals(new int[] {1, 2}, deserialisedObject.getInts().toIntArray());
+			assertEquals(0, deserialisedObject.getLongs().size());
+			assertEquals(source.getDoubles(), deserialisedObject.getDoubles());
+		} catch (Exception e) {
+			fail(e.getMessage());
+		}
+	}
+
+	@Test
+	public void testDoubleListForListInterface() {
+		PVMarshaller marshaller = new PVMarshaller();
+		marshaller.setCollectionFactory(new DefaultCollectionFactory(new Instantiator()) {
+			@Override
+			public <E> List<E> createList(Class<?> listClass, Class<?> elementClass, int size) throws InstantiationException, InvocationTargetException {
+				if (listClass.isInterface() && Double.class.equals(elementClass)) {
+					return (List<E>) new DoubleList(size);
+				}
+				return super.createList(listClass, elementClass, size);
+			}
+		});
+
+		InterfaceListClass source = new InterfaceListClass();
+		source.setValues(Arrays.asList(4.0, 5.0));
+
+		try {
+			PVStructure pvStructure = marshaller.toPVStructure(source);
+			InterfaceListClass deserialisedObject = marshaller.fromPVStructure(pvStructure, InterfaceListClass.class);
+
+			assertEquals(DoubleList.class, deserialisedObject.getValues().getClass());
+			assertEquals(source.getValues(), deserialisedObject.getValues());
+		} catch (Exception e) {
+			fail(e.getMessage());
+		}
+	}
+
+	@Test
+	public void testListOperations() {
+		IntList list = new IntList(1);
+		list.addInt(1);
+		list.add(3);
+		list.add(1, 2);
+		assertEquals(Arrays.asList(1, 2, 3), list);
+
+		assertEquals(2, list.setInt(1, 5));
+		assertEquals(Integer.valueOf(5), list.remove(1));
+		assertArrayEquals(new int[] {1, 3}, list.toIntArray());
+
+		try {
+			list.getInt(2);
+			fail("Expected IndexOutOfBoundsException");
+		} catch (IndexOutOfBoundsException e) {
+			// Expected
+		}
+
+		list.clear();
+		assertTrue(list.isEmpty());
+	}
+
+	@Test
+	public void testPrimitiveAppendIsFailFast() {
+		DoubleList doubles = new DoubleList();
+		IntList ints = new IntList();
+		LongList longs = new LongList();
+		doubles.addDouble(1.5);
+		ints.addInt(1);
+		longs.addLong(1L);
+
+		// Appending without boxing is a structural change, so must be seen by an open iterator
+		Iterator<Double> doubleIterator = doubles.iterator();
+		Iterator<Integer> intIterator = ints.iterator();
+		Iterator<Long> longIterator = longs.iterator();
+		doubles.addDouble(2.5);
+		ints.addInt(2);
+		longs.addLong(2L);
+
+		for (Iterator<?> iterator : Arrays.<Iterator<?>>asList(doubleIterator, intIterator, longIterator)) {
+			try {
+				iterator.next();
+				fail("Expected ConcurrentModificationException");
+			} catch (ConcurrentModificationException e) {
+				// Expected
+			}
+		}
+	}
+
+	public static class PrimitiveListClass {
+		DoubleList doubles;
+		IntList ints;
+		LongList longs;
+
+		public DoubleList getDoubles() {
+			return doubles;
+		}
+
+		public void setDoubles(DoubleList doubles) {
+			this.doubles = doubles;
+		}
+
+		public IntList getInts() {
+			return ints;
+		}
+
+		public void setInts(IntList ints) {
+			this.ints = ints;
+		}
+
+		public LongList getLongs() {
+			return longs;
+		}
+
+		public void setLongs(LongList longs) {
+			this.longs = longs;
+		}
+	}
+
+	public static class InterfaceListClass {
+		List<Double> values;
+
+		public List<Double> getValues() {
+			return values;
+		}
+
+		public void setValues(List<Double> values) {
+			this.values = values;
+		}
+	}
+}
@@ -0,0 +1,92 @@
+package org.epics.pvmarshaller.marshaller.tests;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.epics.pvdata.factory.FieldFactory;
+import org.epics.pvdata.factory.PVDataFactory;
+import org.epics.pvdata.pv.DoubleArrayData;
+import org.epics.pvdata.pv.PVDoubleArray;
+import org.epics.pvdata.pv.PVIntArray;
+import org.epics.pvdata.pv.PVStructure;
+import org.epics.pvdata.pv.ScalarType;
+import org.epics.pvdata.pv.Structure;
+import org.epics.pvmarshaller.marshaller.PVMarshaller;
+import org.epics.pvmarshaller.marshaller.deserialisers.ScalarArrayReader;
+import org.junit.Test;
+
+public class ScalarArrayReaderTests {
+
+	@Test
+	public void testBackingArrayIsOnlyReturnedWhenShared() {
+		PVDoubleArray pvArray = (PVDoubleArray) PVDataFactory.getPVDataCreate().createPVScalarArray(ScalarType.pvDouble);
+		double[] values = new double[] {1.0, 2.0, 3.0};
+		pvArray.shareData(values);
+
+		assertSame(values, ScalarArrayReader.toDoubleArray(pvArray, true));
+
+		double[] copy = ScalarArrayReader.toDoubleArray(pvArray, false);
+		assertNotSame(values, copy);
+		assertArrayEquals(values, copy, 0);
+
+		// With spare capacity the backing array is longer than the PVArray, so it is copied
+		pvArray.setCapacity(10);
+		pvArray.setLength(3);
+		DoubleArrayData arrayData = new DoubleArrayData();
+		pvArray.get(0, 3, arrayData);
+
+		double[] result = ScalarArrayReader.toDoubleArray(pvArray, true);
+		assertNotSame(arrayData.data, result);
+		assertArrayEquals(values, result, 0);
+	}
+
+	@Test
+	public void testBoxedAndListFieldsFromArrayWithSpareCapacity() {
+		PVMarshaller marshaller = new PVMarshaller();
+
+		Structure structure = FieldFactory.getFieldCreate().createFieldBuilder()
+				.addArray("boxed", ScalarType.pvInt)
+				.addArray("list", ScalarType.pvDouble)
+				.createStructure();
+		PVStructure pvStructure = PVDataFactory.getPVDataCreate().createPVStructure(structure);
+
+		PVIntArray pvBoxed = pvStructure.getSubField(PVIntArray.class, "boxed");
+		pvBoxed.setCapacity(8);
+		pvBoxed.put(0, 3, new int[] {1, 2, 3}, 0);
+		PVDoubleArray pvList = pvStructure.getSubField(PVDoubleArray.class, "list");
+		pvList.setCapacity(8);
+		pvList.put(0, 2, new double[] {4.0, 5.0}, 0);
+
+		try {
+			BoxedClass deserialisedObject = marshaller.fromPVStructure(pvStructure, BoxedClass.class);
+
+			assertArrayEquals(new Integer[] {1, 2, 3}, deserialisedObject.getBoxed());
+			assertEquals(Arrays.asList(4.0, 5.0), deserialisedObject.getList());
+		} catch (Exception e) {
+			fail(e.getMessage());
+		}
+	}
+
+	public static class BoxedClass {
+		Integer[] boxed;
+		List<Double> list;
+
+		public Integer[] getBoxed() {
+			return boxed;
+		}
+
+		public void setBoxed(Integer[] boxed) {
+			this.boxed = boxed;
+		}
+
+		public List<Double> getList() {
+			return list;
+		}
+
+		public void setList(List<Double> list) {
+			this.list = list;
+		}
+	}
+}
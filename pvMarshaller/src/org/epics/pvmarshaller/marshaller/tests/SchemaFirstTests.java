@@ -0,0 +1,386 @@
+package org.epics.pvmarshaller.marshaller.tests;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.epics.pvdata.factory.FieldFactory;
+import org.epics.pvdata.misc.BitSet;
+import org.epics.pvdata.pv.PVBoolean;
+import org.epics.pvdata.pv.PVDoubleArray;
+import org.epics.pvdata.pv.PVInt;
+import org.epics.pvdata.pv.PVString;
+import org.epics.pvdata.pv.PVStructure;
+import org.epics.pvdata.pv.PVUnionArray;
+import org.epics.pvdata.pv.Structure;
+import org.epics.pvmarshaller.marshaller.PVMarshaller;
+import org.epics.pvmarshaller.marshaller.api.IPVStructureSerialiser;
+import org.epics.pvmarshaller.marshaller.collections.DoubleList;
+import org.epics.pvmarshaller.marshaller.serialisers.Serialiser;
+import org.junit.Test;
+
+public class SchemaFirstTests {
+
+	@Test
+	public void testStructureDoesNotDependOnValues() {
+		PVMarshaller marshaller = new PVMarshaller();
+		marshaller.setSchemaFirst(true);
+
+		try {
+			Structure structure = marshaller.getStructure(SchemaClass.class);
+
+			PVStructure populated = marshaller.toPVStructure(createPopulated());
+			PVStructure empty = marshaller.toPVStructure(new SchemaClass());
+
+			assertSame(structure, populated.getStructure());
+			assertSame(structure, empty.getStructure());
+
+			// Fields that would otherwise be left out are present with default values
+			assertEquals(0, empty.getSubField(PVInt.class, "count").get());
+			assertEquals("", empty.getSubField(PVString.class, "name").get());
+			assertEquals(0, empty.getSubField(PVInt.class, "nested.id").get());
+			assertEquals(0, empty.getSubField(PVDoubleArray.class, "values").getLength());
+			assertEquals(0, empty.getSubField(PVDoubleArray.class, "doubles").getLength());
+			assertEquals(0, empty.getSubField(PVUnionArray.class, "nestedList").getLength());
+			assertEquals(0, empty.getSubField(PVUnionArray.class, "nestedArray").getLength());
+		} catch (Exception e) {
+			fail(e.getMessage());
+		}
+	}
+
+	@Test
+	public void testRoundTrip() {
+		PVMarshaller marshaller = new PVMarshaller();
+		marshaller.setSchemaFirst(true);
+
+		SchemaClass source = createPopulated();
+
+		try {
+			PVStructure pvStructure = marshaller.toPVStructure(source);
+			SchemaClass deserialisedObject = marshaller.fromPVStructure(pvStructure, SchemaClass.class);
+
+			assertEquals(source.getCount(), deserialisedObject.getCount());
+			assertEquals(source.getName(), deserialisedObject.getName());
+			assertEquals(source.getNested().getId(), deserialisedObject.getNested().getId());
+			assertEquals(source.getValues(), deserialisedObject.getValues());
+			assertEquals(source.getDoubles(), deserialisedObject.getDoubles());
+			assertEquals(2, deserialisedObject.getNestedList().size());
+			assertEquals(3, deserialisedObject.getNestedList().get(1).getId());
+			assertEquals(1, deserialisedObject.getNestedArray().length);
+		} catch (Exception e) {
+			fail(e.getMessage());
+		}
+	}
+
+	@Test
+	public void testUpdateWithNullFields() {
+		PVMarshaller marshaller = new PVMarshaller();
+		marshaller.setSchemaFirst(true);
+		marshaller.setUseCompiledSerialisers(true);
+
+		try {
+			PVStructure pvStructure = marshaller.toPVStructure(createPopulated());
+
+			assertTrue(marshaller.updatePVStructure(new SchemaClass(), pvStructure));
+
+			assertEquals(0, pvStructure.getSubField(PVInt.class, "count").get());
+			assertEquals("", pvStructure.getSubField(PVString.class, "name").get());
+			assertEquals(0, pvStructure.getSubField(PVInt.class, "nested.id").get());
+			assertEquals(0, pvStructure.getSubField(PVDoubleArray.class, "values").getLength());
+			assertEquals(0, pvStructure.getSubField(PVUnionArray.class, "nestedList").getLength());
+		} catch (Exception e) {
+			fail(e.getMessage());
+		}
+	}
+
+	@Test
+	public void testNullBoolean() {
+		for (boolean compiled : new boolean[] {false, true}) {
+			PVMarshaller marshaller = new PVMarshaller();
+			marshaller.setSchemaFirst(true);
+			marshaller.setUseCompiledSerialisers(compiled);
+
+			try {
+				BooleanClass source = new BooleanClass();
+				source.setFlag(Boolean.TRUE);
+				PVStructure pvStructure = marshaller.toPVStructure(source);
+				assertTrue(pvStructure.getSubField(PVBoolean.class, "flag").get());
+
+				PVStructure empty = marshaller.toPVStructure(new BooleanClass());
+				assertFalse(empty.getSubField(PVBoolean.class, "flag").get());
+
+				assertTrue(marshaller.updatePVStructure(new BooleanClass(), pvStructure));
+				assertFalse(pvStructure.getSubField(PVBoolean.class, "flag").get());
+			} catch (Exception e) {
+				fail(e.getMessage());
+			}
+		}
+	}
+
+	@Test
+	public void testNullCharacter() {
+		PVMarshaller marshaller = new PVMarshaller();
+		marshaller.setSchemaFirst(true);
+
+		try {
+			PVStructure pvStructure = marshaller.toPVStructure(new CharacterClass());
+			assertEquals("", pvStructure.getSubField(PVString.class, "letter").get());
+
+			CharacterClass deserialisedObject = marshaller.fromPVStructure(pvStructure, CharacterClass.class);
+			assertNull(deserialisedObject.getLetter());
+
+			// Also through the partial deserialiser, and into a char
+			pvStructure.getSubField(PVString.class, "initial").put("");
+			BitSet changedBitSet = new BitSet(pvStructure.getNumberFields());
+			changedBitSet.set(0);
+			CharacterClass existing = new CharacterClass();
+			existing.setLetter('a');
+			existing.setInitial('b');
+			marshaller.fromPVStructure(pvStructure, changedBitSet, existing);
+			assertNull(existing.getLetter());
+			assertEquals('\0', existing.getInitial());
+		} catch (Exception e) {
+			fail(e.getMessage());
+		}
+	}
+
+	@Test
+	public void testMapFieldHasNoFixedStructure() {
+		PVMarshaller marshaller = new PVMarshaller();
+		marshaller.setSchemaFirst(true);
+
+		try {
+			marshaller.getStructure(MapClass.class);
+			fail("Expected IllegalArgumentException");
+		} catch (IllegalArgumentException e) {
+			// Expected
+		} catch (Exception e) {
+			fail(e.getMessage());
+		}
+	}
+
+	@Test
+	public void testSubclassWithMoreFieldsDoesNotFit() {
+		PVMarshaller marshaller = new PVMarshaller();
+		marshaller.setSchemaFirst(true);
+
+		SchemaClass source = createPopulated();
+		source.setNested(new ExtendedNestedClass(1, 2));
+
+		try {
+			marshaller.toPVStructure(source);
+			fail("Expected IllegalArgumentException");
+		} catch (IllegalArgumentException e) {
+			assertTrue(e.getMessage().contains("nested"));
+			assertTrue(e.getMessage().contains(ExtendedNestedClass.class.getName()));
+		} catch (Exception e) {
+			fail(e.getMessage());
+		}
+
+		// Elements of a list serialised as a structure array of the declared element class
+		marshaller.setUseStructureArrays(true);
+		source = createPopulated();
+		source.setNestedList(Arrays.<NestedClass>asList(new NestedClass(2), new ExtendedNestedClass(3, 4)));
+
+		try {
+			marshaller.toPVStructure(source);
+			fail("Expected IllegalArgumentException");
+		} catch (IllegalArgumentException e) {
+			assertTrue(e.getMessage().contains("nestedList"));
+			assertTrue(e.getMessage().contains(ExtendedNestedClass.class.getName()));
+		} catch (Exception e) {
+			fail(e.getMessage());
+		}
+	}
+
+	@Test
+	public void testCustomSerialiserThatNeedsSource() {
+		PVMarshaller marshaller = new PVMarshaller();
+		marshaller.setSchemaFirst(true);
+		marshaller.registerSerialiser(NestedClass.class, new IPVStructureSerialiser<NestedClass>() {
+			@Override
+			public Structure buildStructure(Serialiser serialiser, NestedClass source) {
+				// Reads the source, so can't build a Structure for a null source
+				return FieldFactory.getFieldCreate().createFieldBuilder().setId("Nested" + source.getId()).createStructure();
+			}
+
+			@Override
+			public void populatePVStructure(Serialiser serialiser, NestedClass source, PVStructure pvStructure) {
+			}
+		});
+
+		try {
+			marshaller.getStructure(SchemaClass.class);
+			fail("Expected IllegalArgumentException");
+		} catch (IllegalArgumentException e) {
+			assertTrue(e.getMessage().contains(NestedClass.class.getName()));
+		} catch (Exception e) {
+			fail(e.getMessage());
+		}
+	}
+
+	private static SchemaClass createPopulated() {
+		SchemaClass source = new SchemaClass();
+		source.setCount(5);
+		source.setName("name");
+		source.setNested(new NestedClass(1));
+		source.setValues(new ArrayList<Double>(Arrays.asList(1.5, 2.5)));
+		source.setDoubles(DoubleList.of(3.5));
+		source.setNestedList(Arrays.asList(new NestedClass(2), new NestedClass(3)));
+		source.setNestedArray(new NestedClass[] {new NestedClass(4)});
+		return source;
+	}
+
+	public static class SchemaClass {
+		Integer count;
+		String name;
+		NestedClass nested;
+		List<Double> values;
+		DoubleList doubles;
+		List<NestedClass> nestedList;
+		NestedClass[] nestedArray;
+
+		public Integer getCount() {
+			return count;
+		}
+
+		public void setCount(Integer count) {
+			this.count = count;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public void setName(String name) {
+			this.name = name;
+		}
+
+		public NestedClass getNested() {
+			return nested;
+		}
+
+		public void setNested(NestedClass nested) {
+			this.nested = nested;
+		}
+
+		public List<Double> getValues() {
+			return values;
+		}
+
+		public void setValues(List<Double> values) {
+			this.values = values;
+		}
+
+		public DoubleList getDoubles() {
+			return doubles;
+		}
+
+		public void setDoubles(DoubleList doubles) {
+			this.doubles = doubles;
+		}
+
+		public List<NestedClass> getNestedList() {
+			return nestedList;
+		}
+
+		public void setNestedList(List<NestedClass> nestedList) {
+			this.nestedList = nestedList;
+		}
+
+		public NestedClass[] getNestedArray() {
+			return nestedArray;
+		}
+
+		public void setNestedArray(NestedClass[] nestedArray) {
+			this.nestedArray = nestedArray;
+		}
+	}
+
+	public static class NestedClass {
+		int id;
+
+		public NestedClass() {
+		}
+
+		public NestedClass(int id) {
+			this.id = id;
+		}
+
+		public int getId() {
+			return id;
+		}
+
+		public void setId(int id) {
+			this.id = id;
+		}
+	}
+
+	public static class ExtendedNestedClass extends NestedClass {
+		int extra;
+
+		public ExtendedNestedClass() {
+		}
+
+		public ExtendedNestedClass(int id, int extra) {
+			super(id);
+			this.extra = extra;
+		}
+
+		public int getExtra() {
+			return extra;
+		}
+
+		public void setExtra(int extra) {
+			this.extra = extra;
+		}
+	}
+
+	public static class BooleanClass {
+		Boolean flag;
+
+		public Boolean getFlag() {
+			return flag;
+		}
+
+		public void setFlag(Boolean flag) {
+			this.flag = flag;
+		}
+	}
+
+	public static class CharacterClass {
+		Character letter;
+		char initial;
+
+		public Character getLetter() {
+			return letter;
+		}
+
+		public void setLetter(Character letter) {
+			this.letter = letter;
+		}
+
+		public char getInitial() {
+			return initial;
+		}
+
+		public void setInitial(char initial) {
+			this.initial = initial;
+		}
+	}
+
+	public static class MapClass {
+		Map<String, Integer> map;
+
+		public Map<String, Integer> getMap() {
+			return map;
+		}
+
+		public void setMap(Map<String, Integer> map) {
+			this.map = map;
+		}
+	}
+}
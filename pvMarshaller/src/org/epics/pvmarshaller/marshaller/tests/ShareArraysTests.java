@@ -0,0 +1,104 @@
+package org.epics.pvmarshaller.marshaller.tests;
+
+import static org.junit.Assert.*;
+
+import org.epics.pvdata.pv.DoubleArrayData;
+import org.epics.pvdata.pv.IntArrayData;
+import org.epics.pvdata.pv.PVDoubleArray;
+import org.epics.pvdata.pv.PVIntArray;
+import org.epics.pvdata.pv.PVStructure;
+import org.epics.pvmarshaller.marshaller.PVMarshaller;
+import org.junit.Test;
+
+public class ShareArraysTests {
+
+	@Test
+	public void testArraysAreSharedWhenEnabled() {
+		PVMarshaller marshaller = new PVMarshaller();
+		marshaller.setShareArrays(true);
+
+		WaveformClass source = new WaveformClass();
+		source.setWaveform(new double[] {1.0, 2.0, 3.0});
+		source.setCounts(new int[] {4, 5});
+		source.setBoxed(new Integer[] {6, 7});
+
+		try {
+			PVStructure pvStructure = marshaller.toPVStructure(source);
+
+			DoubleArrayData doubleArrayData = new DoubleArrayData();
+			pvStructure.getSubField(PVDoubleArray.class, "waveform").get(0, 3, doubleArrayData);
+			assertSame(source.getWaveform(), doubleArrayData.data);
+
+			IntArrayData intArrayData = new IntArrayData();
+			pvStructure.getSubField(PVIntArray.class, "counts").get(0, 2, intArrayData);
+			assertSame(source.getCounts(), intArrayData.data);
+
+			WaveformClass deserialisedObject = marshaller.fromPVStructure(pvStructure, WaveformClass.class);
+			assertSame(source.getWaveform(), deserialisedObject.getWaveform());
+			assertSame(source.getCounts(), deserialisedObject.getCounts());
+			assertArrayEquals(source.getBoxed(), deserialisedObject.getBoxed());
+
+			// Arrays with spare capacity are copied
+			PVDoubleArray pvWaveform = pvStructure.getSubField(PVDoubleArray.class, "waveform");
+			pvWaveform.setCapacity(10);
+			pvWaveform.setLength(3);
+			deserialisedObject = marshaller.fromPVStructure(pvStructure, WaveformClass.class);
+			assertNotSame(source.getWaveform(), deserialisedObject.getWaveform());
+			assertArrayEquals(source.getWaveform(), deserialisedObject.getWaveform(), 0);
+		} catch (Exception e) {
+			fail(e.getMessage());
+		}
+	}
+
+	@Test
+	public void testArraysAreCopiedByDefault() {
+		PVMarshaller marshaller = new PVMarshaller();
+
+		WaveformClass source = new WaveformClass();
+		source.setWaveform(new double[] {1.0, 2.0, 3.0});
+
+		try {
+			PVStructure pvStructure = marshaller.toPVStructure(source);
+
+			DoubleArrayData doubleArrayData = new DoubleArrayData();
+			pvStructure.getSubField(PVDoubleArray.class, "waveform").get(0, 3, doubleArrayData);
+			assertNotSame(source.getWaveform(), doubleArrayData.data);
+
+			WaveformClass deserialisedObject = marshaller.fromPVStructure(pvStructure, WaveformClass.class);
+			assertNotSame(doubleArrayData.data, deserialisedObject.getWaveform());
+			assertArrayEquals(source.getWaveform(), deserialisedObject.getWaveform(), 0);
+		} catch (Exception e) {
+			fail(e.getMessage());
+		}
+	}
+
+	public static class WaveformClass {
+		double[] waveform;
+		int[] counts;
+		Integer[] boxed;
+
+		public double[] getWaveform() {
+			return waveform;
+		}
+
+		public void setWaveform(double[] waveform) {
+			this.waveform = waveform;
+		}
+
+		public int[] getCounts() {
+			return counts;
+		}
+
+		public void setCounts(int[] counts) {
+			this.counts = counts;
+		}
+
+		public Integer[] getBoxed() {
+			return boxed;
+		}
+
+		public void setBoxed(Integer[] boxed) {
+			this.boxed = boxed;
+		}
+	}
+}
@@ -0,0 +1,223 @@
+package org.epics.pvmarshaller.marshaller.tests;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.epics.pvdata.misc.BitSet;
+import org.epics.pvdata.pv.PVStructure;
+import org.epics.pvdata.pv.PVStructureArray;
+import org.epics.pvdata.pv.PVUnionArray;
+import org.epics.pvmarshaller.marshaller.PVMarshaller;
+import org.junit.Test;
+
+public class StructureArrayTests {
+
+	@Test
+	public void testHomogeneousListsAndArrays() {
+		PVMarshaller marshaller = new PVMarshaller();
+		marshaller.setUseStructureArrays(true);
+
+		ContainerClass source = new ContainerClass();
+		source.setList(Arrays.asList(new Element(1, "a"), new Element(2, "b"), new Element(3, "c")));
+		source.setArray(new Element[] {new Element(4, "d")});
+		Map<String, List<Element>> map = new LinkedHashMap<String, List<Element>>();
+		map.put("key", Arrays.asList(new Element(5, "e"), new Element(6, "f")));
+		source.setMap(map);
+
+		try {
+			PVStructure pvStructure = marshaller.toPVStructure(source);
+
+			PVStructureArray pvList = pvStructure.getSubField(PVStructureArray.class, "list");
+			assertNotNull(pvList);
+			assertEquals(3, pvList.getLength());
+			assertNotNull(pvStructure.getSubField(PVStructureArray.class, "array"));
+			assertNotNull(pvStructure.getSubField(PVStructureArray.class, "map.key"));
+
+			ContainerClass deserialisedObject = marshaller.fromPVStructure(pvStructure, ContainerClass.class);
+
+			assertEquals(source.getList(), deserialisedObject.getList());
+			assertArrayEquals(source.getArray(), deserialisedObject.getArray());
+			assertEquals(source.getMap(), deserialisedObject.getMap());
+		} catch (Exception e) {
+			fail(e.getMessage());
+		}
+	}
+
+	@Test
+	public void testDifferentStructuresUseUnionArray() {
+		PVMarshaller marshaller = new PVMarshaller();
+		marshaller.setUseStructureArrays(true);
+
+		ContainerClass source = new ContainerClass();
+		// The null name leaves the field out of the second element's Structure
+		source.setList(Arrays.asList(new Element(1, "a"), new Element(2, null)));
+
+		try {
+			PVStructure pvStructure = marshaller.toPVStructure(source);
+
+			assertNotNull(pvStructure.getSubField(PVUnionArray.class, "list"));
+
+			ContainerClass deserialisedObject = marshaller.fromPVStructure(pvStructure, ContainerClass.class);
+			assertEquals(source.getList(), deserialisedObject.getList());
+		} catch (Exception e) {
+			fail(e.getMessage());
+		}
+	}
+
+	@Test
+	public void testUnionArrayByDefault() {
+		PVMarshaller marshaller = new PVMarshaller();
+
+		ContainerClass source = new ContainerClass();
+		source.setList(Arrays.asList(new Element(1, "a"), new Element(2, "b")));
+
+		try {
+			PVStructure pvStructure = marshaller.toPVStructure(source);
+
+			assertNotNull(pvStructure.getSubField(PVUnionArray.class, "list"));
+		} catch (Exception e) {
+			fail(e.getMessage());
+		}
+	}
+
+	@Test
+	public void testUpdateStructureArray() {
+		PVMarshaller marshaller = new PVMarshaller();
+		marshaller.setUseStructureArrays(true);
+
+		ContainerClass source = new ContainerClass();
+		source.setList(new ArrayList<Element>(Arrays.asList(new Element(1, "a"), new Element(2, "b"))));
+
+		try {
+			PVStructure pvStructure = marshaller.toPVStructure(source);
+			int listOffset = pvStructure.getSubField("list").getFieldOffset();
+
+			source.getList().get(1).setId(7);
+			BitSet changedBitSet = new BitSet();
+			assertTrue(marshaller.updatePVStructure(source, pvStructure, changedBitSet));
+			assertTrue(changedBitSet.get(listOffset));
+
+			ContainerClass deserialisedObject = marshaller.fromPVStructure(pvStructure, ContainerClass.class);
+			assertEquals(7, deserialisedObject.getList().get(1).getId());
+		} catch (Exception e) {
+			fail(e.getMessage());
+		}
+	}
+
+	@Test
+	public void testSchemaFirstStructureArray() {
+		PVMarshaller marshaller = new PVMarshaller();
+		marshaller.setSchemaFirst(true);
+		marshaller.setUseStructureArrays(true);
+
+		ContainerClass source = new ContainerClass();
+		source.setList(Arrays.asList(new Element(1, "a"), null));
+
+		try {
+			PVStructure pvStructure = marshaller.toPVStructure(new ListOnlyClass());
+
+			// Present even though the list is null
+			assertEquals(0, pvStructure.getSubField(PVStructureArray.class, "list").getLength());
+
+			ListOnlyClass listSource = new ListOnlyClass();
+			listSource.setList(source.getList());
+			PVStructure populated = marshaller.toPVStructure(listSource);
+			assertSame(pvStructure.getStructure(), populated.getStructure());
+
+			ListOnlyClass deserialisedObject = marshaller.fromPVStructure(populated, ListOnlyClass.class);
+			assertEquals(source.getList(), deserialisedObject.getList());
+		} catch (Exception e) {
+			fail(e.getMessage());
+		}
+	}
+
+	public static class ContainerClass {
+		List<Element> list;
+		Element[] array;
+		Map<String, List<Element>> map;
+
+		public List<Element> getList() {
+			return list;
+		}
+
+		public void setList(List<Element> list) {
+			this.list = list;
+		}
+
+		public Element[] getArray() {
+			return array;
+		}
+
+		public void setArray(Element[] array) {
+			this.array = array;
+		}
+
+		public Map<String, List<Element>> getMap() {
+			return map;
+		}
+
+		public void setMap(Map<String, List<Element>> map) {
+			this.map = map;
+		}
+	}
+
+	public static class ListOnlyClass {
+		List<Element> list;
+
+		public List<Element> getList() {
+			return list;
+		}
+
+		public void setList(List<Element> list) {
+			this.list = list;
+		}
+	}
+
+	public static class Element {
+		int id;
+		String name;
+
+		public Element() {
+		}
+
+		public Element(int id, String name) {
+			this.id = id;
+			this.name = name;
+		}
+
+		public int getId() {
+			return id;
+		}
+
+		public void setId(int id) {
+			this.id = id;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public void setName(String name) {
+			this.name = name;
+		}
+
+		@Override
+		public int hashCode() {
+			return id;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Element)) {
+				return false;
+			}
+			Element other = (Element) obj;
+			return id == other.id && (name == null ? other.name == null : name.equals(other.name));
+		}
+	}
+}
@@ -0,0 +1,158 @@
+package org.epics.pvmarshaller.marshaller.tests;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.epics.pvdata.pv.PVStructure;
+import org.epics.pvmarshaller.marshaller.PVMarshaller;
+import org.epics.pvmarshaller.marshaller.serialisers.Serialiser;
+import org.epics.pvmarshaller.marshaller.serialisers.StructureCache;
+import org.junit.Test;
+
+public class StructureCacheTests {
+
+	@Test
+	public void testSameShapeReusesStructure() {
+		PVMarshaller marshaller = new PVMarshaller();
+
+		ShapeClass first = new ShapeClass();
+		first.intValue = 1;
+		first.stringValue = "First";
+		first.objectList = new ArrayList<Object>();
+		first.objectList.add("Element");
+
+		ShapeClass second = new ShapeClass();
+		second.intValue = 2;
+		second.stringValue = "Second";
+		second.objectList = new ArrayList<Object>();
+		second.objectList.add("Other Element");
+
+		try {
+			PVStructure firstPVStructure = marshaller.toPVStructure(first);
+			PVStructure secondPVStructure = marshaller.toPVStructure(second);
+
+			assertSame(firstPVStructure.getStructure(), secondPVStructure.getStructure());
+			assertEquals(2, secondPVStructure.getIntField("intValue").get());
+			assertEquals("Second", secondPVStructure.getStringField("stringValue").get());
+		} catch (Exception e) {
+			fail(e.getMessage());
+		}
+	}
+
+	@Test
+	public void testDifferentShapesGetDifferentStructures() {
+		PVMarshaller marshaller = new PVMarshaller();
+
+		ShapeClass withString = new ShapeClass();
+		withString.stringValue = "Present";
+
+		ShapeClass withoutString = new ShapeClass();
+
+		ShapeClass withList = new ShapeClass();
+		withList.objectList = new ArrayList<Object>();
+		withList.objectList.add(1);
+
+		ShapeClass withMap = new ShapeClass();
+		withMap.map = new HashMap<String, Integer>();
+		withMap.map.put("a", 1);
+
+		ShapeClass withOtherMap = new ShapeClass();
+		withOtherMap.map = new HashMap<String, Integer>();
+		withOtherMap.map.put("b", 1);
+
+		ShapeClass[] objects = new ShapeClass[] {withString, withoutString, withList, withMap, withOtherMap};
+
+		try {
+			for (ShapeClass object : objects) {
+				// Cached result must match a marshaller that has not seen any other shapes
+				PVStructure expectedPVStructure = new PVMarshaller().toPVStructure(object);
+				PVStructure serialisedPVStructure = marshaller.toPVStructure(object);
+				TestHelper.assertPVStructuresEqual(expectedPVStructure, serialisedPVStructure);
+			}
+
+			assertNull(marshaller.toPVStructure(withoutString).getSubField("stringValue"));
+			assertNotNull(marshaller.toPVStructure(withList).getSubField("objectList"));
+			assertNotNull(marshaller.toPVStructure(withOtherMap).getSubField("map.b"));
+			assertNull(marshaller.toPVStructure(withOtherMap).getSubField("map.a"));
+		} catch (Exception e) {
+			fail(e.getMessage());
+		}
+	}
+
+	@Test
+	public void testRegisteringIdClearsCache() {
+		PVMarshaller marshaller = new PVMarshaller();
+
+		ShapeClass testClass = new ShapeClass();
+
+		try {
+			PVStructure before = marshaller.toPVStructure(testClass);
+			assertEquals("structure", before.getStructure().getID());
+
+			marshaller.registerIdForClass(ShapeClass.class, "ShapeId");
+
+			PVStructure after = marshaller.toPVStructure(testClass);
+			assertEquals("ShapeId", after.getStructure().getID());
+		} catch (Exception e) {
+			fail(e.getMessage());
+		}
+	}
+
+	@Test
+	public void testShapesOfOneClassCannotFillCache() {
+		Serialiser serialiser = new Serialiser();
+		StructureCache structureCache = serialiser.getStructureCache();
+
+		try {
+			// Maps with changing keys give a new shape every time
+			for (int i = 0; i < StructureCache.MAX_SHAPES_PER_CLASS * 2; i++) {
+				ShapeClass testClass = new ShapeClass();
+				testClass.map = new HashMap<String, Integer>();
+				testClass.map.put("key" + i, i);
+				serialiser.buildStructure(testClass);
+			}
+			assertTrue(structureCache.size() <= StructureCache.MAX_SHAPES_PER_CLASS);
+
+			// Other classes are still cached
+			int size = structureCache.size();
+			serialiser.buildStructure(new OtherShapeClass());
+			assertEquals(size + 1, structureCache.size());
+			serialiser.buildStructure(new OtherShapeClass());
+			assertEquals(size + 1, structureCache.size());
+		} catch (Exception e) {
+			fail(e.getMessage());
+		}
+	}
+
+	public static class OtherShapeClass {
+		int value;
+
+		public int getValue() {
+			return value;
+		}
+	}
+
+	public static class ShapeClass {
+		int intValue;
+		String stringValue;
+		List<Object> objectList;
+		Map<String, Integer> map;
+
+		public int getIntValue() {
+			return intValue;
+		}
+		public String getStringValue() {
+			return stringValue;
+		}
+		public List<Object> getObjectList() {
+			return objectList;
+		}
+		public Map<String, Integer> getMap() {
+			return map;
+		}
+	}
+}
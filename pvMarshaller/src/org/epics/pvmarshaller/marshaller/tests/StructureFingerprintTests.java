@@ -0,0 +1,142 @@
+package org.epics.pvmarshaller.marshaller.tests;
+
+import static org.junit.Assert.*;
+
+import org.epics.pvdata.factory.FieldFactory;
+import org.epics.pvdata.factory.PVDataFactory;
+import org.epics.pvdata.pv.Field;
+import org.epics.pvdata.pv.FieldCreate;
+import org.epics.pvdata.pv.PVStructure;
+import org.epics.pvdata.pv.ScalarType;
+import org.epics.pvdata.pv.Structure;
+import org.epics.pvmarshaller.marshaller.PVMarshaller;
+import org.epics.pvmarshaller.marshaller.serialisers.StructureFingerprint;
+import org.junit.Test;
+
+public class StructureFingerprintTests {
+
+	@Test
+	public void testFingerprints() {
+		FieldCreate fieldCreate = FieldFactory.getFieldCreate();
+
+		Structure first = createStructure("point", "x", ScalarType.pvInt);
+		Structure equal = createStructure("point", "x", ScalarType.pvInt);
+		Structure differentType = createStructure("point", "x", ScalarType.pvLong);
+		Structure differentName = createStructure("point", "y", ScalarType.pvInt);
+		Structure differentId = createStructure("other", "x", ScalarType.pvInt);
+		assertNotSame(first, equal);
+
+		assertEquals(StructureFingerprint.of(first), StructureFingerprint.of(first));
+		assertEquals(StructureFingerprint.of(first), StructureFingerprint.of(equal));
+		assertNotEquals(StructureFingerprint.of(first), StructureFingerprint.of(differentType));
+		assertNotEquals(StructureFingerprint.of(first), StructureFingerprint.of(differentName));
+		assertNotEquals(StructureFingerprint.of(first), StructureFingerprint.of(differentId));
+
+		// Nesting is covered, so moving a field into a substructure changes the fingerprint
+		Structure flat = fieldCreate.createFieldBuilder().add("a", ScalarType.pvInt).add("b", ScalarType.pvInt).createStructure();
+		Structure nested = fieldCreate.createFieldBuilder().add("a", ScalarType.pvInt).addNestedStructure("b").add("b", ScalarType.pvInt).endNested().createStructure();
+		assertNotEquals(StructureFingerprint.of(flat), StructureFingerprint.of(nested));
+
+		Structure structureArray = fieldCreate.createFieldBuilder().addArray("points", first).createStructure();
+		Structure otherStructureArray = fieldCreate.createFieldBuilder().addArray("points", differentType).createStructure();
+		assertNotEquals(StructureFingerprint.of(structureArray), StructureFingerprint.of(otherStructureArray));
+
+		assertTrue(StructureFingerprint.matches(first, equal));
+		assertFalse(StructureFingerprint.matches(first, differentType));
+		assertFalse(StructureFingerprint.matches(first, null));
+	}
+
+	@Test
+	public void testIsCompatible() {
+		PVMarshaller marshaller = new PVMarshaller();
+
+		PointClass point = new PointClass();
+		point.setX(1);
+		point.setY(2);
+
+		try {
+			PVStructure pvStructure = marshaller.toPVStructure(point);
+			assertTrue(marshaller.isCompatible(pvStructure, PointClass.class));
+
+			// An equal Structure from elsewhere, e.g. received over the network
+			Structure copy = FieldFactory.getFieldCreate().createFieldBuilder().add("x", ScalarType.pvInt).add("y", ScalarType.pvInt).createStructure();
+			assertNotSame(pvStructure.getStructure(), copy);
+			PVStructure received = PVDataFactory.getPVDataCreate().createPVStructure(copy);
+			assertTrue(marshaller.isCompatible(received, PointClass.class));
+
+			// No setter for z
+			Structure extraField = FieldFactory.getFieldCreate().createFieldBuilder().add("x", ScalarType.pvInt).add("z", ScalarType.pvInt).createStructure();
+			assertFalse(marshaller.isCompatible(PVDataFactory.getPVDataCreate().createPVStructure(extraField), PointClass.class));
+
+			marshaller.setIgnoreUnknownFields(true);
+			assertTrue(marshaller.isCompatible(PVDataFactory.getPVDataCreate().createPVStructure(extraField), PointClass.class));
+
+			PointClass deserialisedObject = marshaller.fromPVStructure(received, PointClass.class);
+			assertEquals(0, deserialisedObject.getX());
+		} catch (Exception e) {
+			fail(e.getMessage());
+		}
+	}
+
+	@Test
+	public void testIsCompatibleChecksSettersOfAllFieldTypes() {
+		PVMarshaller marshaller = new PVMarshaller();
+		FieldCreate fieldCreate = FieldFactory.getFieldCreate();
+
+		Structure[] structures = new Structure[] {
+			fieldCreate.createFieldBuilder().add("x", ScalarType.pvInt).addArray("b", ScalarType.pvDouble).createStructure(),
+			fieldCreate.createFieldBuilder().add("x", ScalarType.pvInt).addArray("b", fieldCreate.createStructure(new String[0], new Field[0])).createStructure(),
+			fieldCreate.createFieldBuilder().add("x", ScalarType.pvInt).add("b", fieldCreate.createVariantUnion()).createStructure(),
+			fieldCreate.createFieldBuilder().add("x", ScalarType.pvInt).addArray("b", fieldCreate.createVariantUnion()).createStructure(),
+		};
+
+		for (Structure structure : structures) {
+			PVStructure pvStructure = PVDataFactory.getPVDataCreate().createPVStructure(structure);
+
+			marshaller.setIgnoreUnknownFields(false);
+			// Asked twice, as the second answer comes from the remembered incompatible Structure
+			assertFalse(marshaller.isCompatible(pvStructure, PointClass.class));
+			assertFalse(marshaller.isCompatible(pvStructure, PointClass.class));
+			try {
+				marshaller.fromPVStructure(pvStructure, PointClass.class);
+				fail("No exception thrown");
+			} catch (Exception e) {
+				assertTrue(e instanceof IllegalArgumentException);
+				assertTrue(e.getMessage().contains("b"));
+			}
+
+			marshaller.setIgnoreUnknownFields(true);
+			assertTrue(marshaller.isCompatible(pvStructure, PointClass.class));
+			try {
+				marshaller.fromPVStructure(pvStructure, PointClass.class);
+			} catch (Exception e) {
+				fail(e.getMessage());
+			}
+		}
+	}
+
+	private static Structure createStructure(String id, String fieldName, ScalarType scalarType) {
+		return FieldFactory.getFieldCreate().createFieldBuilder().setId(id).add(fieldName, scalarType).createStructure();
+	}
+
+	public static class PointClass {
+		int x;
+		int y;
+
+		public int getX() {
+			return x;
+		}
+
+		public void setX(int x) {
+			this.x = x;
+		}
+
+		public int getY() {
+			return y;
+		}
+
+		public void setY(int y) {
+			this.y = y;
+		}
+	}
+}
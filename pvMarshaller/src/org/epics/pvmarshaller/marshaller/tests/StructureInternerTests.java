@@ -0,0 +1,118 @@
+package org.epics.pvmarshaller.marshaller.tests;
+
+import static org.junit.Assert.*;
+
+import org.epics.pvdata.factory.FieldFactory;
+import org.epics.pvdata.pv.Field;
+import org.epics.pvdata.pv.FieldCreate;
+import org.epics.pvdata.pv.ScalarArray;
+import org.epics.pvdata.pv.ScalarType;
+import org.epics.pvdata.pv.Structure;
+import org.epics.pvdata.pv.Union;
+import org.epics.pvmarshaller.marshaller.PVMarshaller;
+import org.epics.pvmarshaller.marshaller.serialisers.StructureInterner;
+import org.junit.Test;
+
+public class StructureInternerTests {
+
+	@Test
+	public void testEqualFieldsInterned() {
+		FieldCreate fieldCreate = FieldFactory.getFieldCreate();
+		StructureInterner interner = new StructureInterner();
+
+		Structure first = fieldCreate.createFieldBuilder().add("value", ScalarType.pvInt).createStructure();
+		Structure second = fieldCreate.createFieldBuilder().add("value", ScalarType.pvInt).createStructure();
+		Structure different = fieldCreate.createFieldBuilder().add("value", ScalarType.pvLong).createStructure();
+		assertNotSame(first, second);
+
+		assertSame(first, interner.intern(first));
+		assertSame(first, interner.intern(second));
+		assertSame(different, interner.intern(different));
+
+		ScalarArray scalarArray = fieldCreate.createScalarArray(ScalarType.pvDouble);
+		assertSame(scalarArray, interner.intern(scalarArray));
+		Union union = fieldCreate.createUnion(new String[] {"a"}, new Field[] {fieldCreate.createScalar(ScalarType.pvInt)});
+		Union equalUnion = fieldCreate.createUnion(new String[] {"a"}, new Field[] {fieldCreate.createScalar(ScalarType.pvInt)});
+		assertSame(union, interner.intern(union));
+		assertSame(union, interner.intern(equalUnion));
+
+		assertEquals(2, interner.getHits());
+		assertEquals(4, interner.getMisses());
+		assertEquals(4, interner.size());
+
+		interner.resetStatistics();
+		assertEquals(0, interner.getHits());
+		assertEquals(0, interner.getMisses());
+	}
+
+	@Test
+	public void testSharedBetweenMarshallers() {
+		StructureInterner interner = new StructureInterner();
+
+		PVMarshaller firstMarshaller = new PVMarshaller();
+		firstMarshaller.setStructureInterner(interner);
+		PVMarshaller secondMarshaller = new PVMarshaller();
+		secondMarshaller.setStructureInterner(interner);
+
+		PointClass point = new PointClass();
+		point.setX(1);
+		point.setY(2);
+		OtherPointClass otherPoint = new OtherPointClass();
+		otherPoint.setX(3);
+		otherPoint.setY(4);
+
+		try {
+			// Different classes with the same fields have equal Structures
+			Structure first = firstMarshaller.toPVStructure(point).getStructure();
+			Structure second = secondMarshaller.toPVStructure(otherPoint).getStructure();
+
+			assertSame(first, second);
+			assertSame(interner, firstMarshaller.getStructureInterner());
+			assertTrue(interner.getHits() > 0);
+		} catch (Exception e) {
+			fail(e.getMessage());
+		}
+	}
+
+	public static class PointClass {
+		int x;
+		int y;
+
+		public int getX() {
+			return x;
+		}
+
+		public void setX(int x) {
+			this.x = x;
+		}
+
+		public int getY() {
+			return y;
+		}
+
+		public void setY(int y) {
+			this.y = y;
+		}
+	}
+
+	public static class OtherPointClass {
+		int x;
+		int y;
+
+		public int getX() {
+			return x;
+		}
+
+		public void setX(int x) {
+			this.x = x;
+		}
+
+		public int getY() {
+			return y;
+		}
+
+		public void setY(int y) {
+			this.y = y;
+		}
+	}
+}
@@ -0,0 +1,169 @@
+package org.epics.pvmarshaller.marshaller.tests;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.epics.pvdata.misc.BitSet;
+import org.epics.pvdata.pv.PVInt;
+import org.epics.pvdata.pv.PVStructure;
+import org.epics.pvdata.pv.PVUnion;
+import org.epics.pvdata.pv.PVUnionArray;
+import org.epics.pvdata.pv.UnionArrayData;
+import org.epics.pvmarshaller.marshaller.PVMarshaller;
+import org.junit.Test;
+
+public class UnionArrayReuseTests {
+
+	@Test
+	public void testElementsReusedOnUpdate() {
+		PVMarshaller marshaller = new PVMarshaller();
+
+		ListClass source = createSource();
+
+		try {
+			PVStructure pvStructure = marshaller.toPVStructure(source);
+			PVUnion[] before = getElements(pvStructure);
+
+			source.getElements().get(0).setId(10);
+			source.getElements().get(1).setName(null);
+			assertTrue(marshaller.updatePVStructure(source, pvStructure));
+			PVUnion[] after = getElements(pvStructure);
+
+			// The first element has the same Structure, so is repopulated in place
+			assertSame(before[0], after[0]);
+			assertSame(before[0].get(), after[0].get());
+			assertEquals(10, ((PVStructure) after[0].get()).getSubField(PVInt.class, "id").get());
+
+			// The second element has lost a field, so is replaced
+			assertNotSame(before[1].get(), after[1].get());
+			assertNull(((PVStructure) after[1].get()).getSubField("name"));
+
+			ListClass deserialisedObject = marshaller.fromPVStructure(pvStructure, ListClass.class);
+			assertEquals(10, deserialisedObject.getElements().get(0).getId());
+			assertNull(deserialisedObject.getElements().get(1).getName());
+		} catch (Exception e) {
+			fail(e.getMessage());
+		}
+	}
+
+	@Test
+	public void testRepeatedUpdatesWithBitSet() {
+		PVMarshaller marshaller = new PVMarshaller();
+
+		ListClass source = createSource();
+
+		try {
+			PVStructure pvStructure = marshaller.toPVStructure(source);
+			int elementsOffset = pvStructure.getSubField("elements").getFieldOffset();
+
+			for (int id = 1; id <= 3; id++) {
+				source.getElements().get(1).setId(id);
+				BitSet changedBitSet = new BitSet();
+				assertTrue(marshaller.updatePVStructure(source, pvStructure, changedBitSet));
+				assertTrue(changedBitSet.get(elementsOffset));
+
+				ListClass deserialisedObject = marshaller.fromPVStructure(pvStructure, ListClass.class);
+				assertEquals(id, deserialisedObject.getElements().get(1).getId());
+			}
+
+			// No change since the last update
+			BitSet changedBitSet = new BitSet();
+			assertTrue(marshaller.updatePVStructure(source, pvStructure, changedBitSet));
+			assertFalse(changedBitSet.get(elementsOffset));
+		} catch (Exception e) {
+			fail(e.getMessage());
+		}
+	}
+
+	@Test
+	public void testUpdatesWithBitSetDoNotShareElements() {
+		PVMarshaller marshaller = new PVMarshaller();
+
+		ListClass source = createSource();
+
+		try {
+			PVStructure first = marshaller.toPVStructure(source);
+			PVStructure second = marshaller.toPVStructure(source);
+			PVUnion[] before = getElements(first);
+
+			source.getElements().get(1).setId(5);
+			assertTrue(marshaller.updatePVStructure(source, first, new BitSet()));
+
+			// The changed element is copied into the PVUnion already in the target
+			PVUnion[] after = getElements(first);
+			assertSame(before[1], after[1]);
+			assertSame(before[1].get(), after[1].get());
+
+			// Updating another PVStructure with the same Structure must not change the first
+			source.getElements().get(1).setId(6);
+			assertTrue(marshaller.updatePVStructure(source, second, new BitSet()));
+
+			assertEquals(5, marshaller.fromPVStructure(first, ListClass.class).getElements().get(1).getId());
+			assertEquals(6, marshaller.fromPVStructure(second, ListClass.class).getElements().get(1).getId());
+		} catch (Exception e) {
+			fail(e.getMessage());
+		}
+	}
+
+	private static PVUnion[] getElements(PVStructure pvStructure) {
+		PVUnionArray pvUnionArray = pvStructure.getSubField(PVUnionArray.class, "elements");
+		UnionArrayData unionArrayData = new UnionArrayData();
+		pvUnionArray.get(0, pvUnionArray.getLength(), unionArrayData);
+		PVUnion[] elements = new PVUnion[pvUnionArray.getLength()];
+		System.arraycopy(unionArrayData.data, unionArrayData.offset, elements, 0, elements.length);
+		return elements;
+	}
+
+	private static ListClass createSource() {
+		List<Element> elements = new ArrayList<Element>();
+		elements.add(new Element(0, "a"));
+		elements.add(new Element(0, "b"));
+
+		ListClass source = new ListClass();
+		source.setElements(elements);
+		return source;
+	}
+
+	public static class ListClass {
+		List<Element> elements;
+
+		public List<Element> getElements() {
+			return elements;
+		}
+
+		public void setElements(List<Element> elements) {
+			this.elements = elements;
+		}
+	}
+
+	public static class Element {
+		int id;
+		String name;
+
+		public Element() {
+		}
+
+		public Element(int id, String name) {
+			this.id = id;
+			this.name = name;
+		}
+
+		public int getId() {
+			return id;
+		}
+
+		public void setId(int id) {
+			this.id = id;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public void setName(String name) {
+			this.name = name;
+		}
+	}
+}
@@ -0,0 +1,105 @@
+package org.epics.pvmarshaller.marshaller.tests;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.epics.pvdata.pv.IntArrayData;
+import org.epics.pvdata.pv.PVIntArray;
+import org.epics.pvdata.pv.PVStringArray;
+import org.epics.pvdata.pv.PVStructure;
+import org.epics.pvmarshaller.marshaller.PVMarshaller;
+import org.junit.Test;
+
+public class UpdatePVStructureTests {
+
+	@Test
+	public void testUpdateInPlace() {
+		PVMarshaller marshaller = new PVMarshaller();
+
+		UpdateClass source = new UpdateClass();
+		source.intValue = 1;
+		source.stringValue = "First";
+		source.intArray = new int[] {1, 2, 3};
+		source.objectList = new ArrayList<Object>(Arrays.asList("a", "b", "c"));
+
+		try {
+			PVStructure pvStructure = marshaller.toPVStructure(source);
+
+			source.intValue = 2;
+			source.stringValue = "Second";
+			source.intArray = new int[] {4, 5};
+			source.objectList = new ArrayList<Object>(Arrays.asList("d"));
+
+			assertTrue(marshaller.updatePVStructure(source, pvStructure));
+
+			// Must match a newly created PVStructure, including arrays that have become shorter
+			TestHelper.assertPVStructuresEqual(marshaller.toPVStructure(source), pvStructure);
+			assertEquals(2, pvStructure.getIntField("intValue").get());
+			assertEquals("Second", pvStructure.getStringField("stringValue").get());
+
+			PVIntArray intArray = pvStructure.getSubField(PVIntArray.class, "intArray");
+			assertEquals(2, intArray.getLength());
+			IntArrayData intArrayData = new IntArrayData();
+			intArray.get(0, intArray.getLength(), intArrayData);
+			assertEquals(5, intArrayData.data[1]);
+
+			assertEquals(1, pvStructure.getSubField(PVStringArray.class, "objectList").getLength());
+		} catch (Exception e) {
+			fail(e.getMessage());
+		}
+	}
+
+	@Test
+	public void testShapeMismatchLeavesPVStructureUnchanged() {
+		PVMarshaller marshaller = new PVMarshaller();
+
+		UpdateClass source = new UpdateClass();
+		source.intValue = 1;
+		source.stringValue = "First";
+
+		UpdateClass otherShape = new UpdateClass();
+		otherShape.intValue = 2;
+
+		try {
+			PVStructure pvStructure = marshaller.toPVStructure(source);
+
+			assertFalse(marshaller.updatePVStructure(otherShape, pvStructure));
+			assertEquals(1, pvStructure.getIntField("intValue").get());
+			assertEquals("First", pvStructure.getStringField("stringValue").get());
+
+			// A PVStructure with the same Structure created elsewhere can also be updated
+			PVStructure otherPVStructure = new PVMarshaller().toPVStructure(otherShape);
+			otherShape.intValue = 3;
+			assertTrue(marshaller.updatePVStructure(otherShape, otherPVStructure));
+			assertEquals(3, otherPVStructure.getIntField("intValue").get());
+		} catch (Exception e) {
+			fail(e.getMessage());
+		}
+	}
+
+	public static class UpdateClass {
+		int intValue;
+		String stringValue;
+		int[] intArray;
+		List<Object> objectList;
+
+		public int getIntValue() {
+			return intValue;
+		}
+
+		public String getStringValue() {
+			return stringValue;
+		}
+
+		public int[] getIntArray() {
+			return intArray;
+		}
+
+		public List<Object> getObjectList() {
+			return objectList;
+		}
+	}
+}